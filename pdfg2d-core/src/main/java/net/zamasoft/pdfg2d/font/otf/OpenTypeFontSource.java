@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,8 +44,14 @@ public class OpenTypeFontSource extends AbstractFontSource {
 
 	private static final long serialVersionUID = 4L;
 
+	/** Guards {@link #fileToFont}, and the loading of font files. */
+	private static final ReentrantLock FILE_LOCK = new ReentrantLock();
+
 	protected static Map<File, FontFile> fileToFont = new WeakHashMap<>();
 
+	/** The font file last used by this source, read without locking. */
+	private transient volatile FontFile fontFile;
+
 	protected final File file;
 
 	protected final int index;
@@ -179,7 +186,16 @@ public class OpenTypeFontSource extends AbstractFontSource {
 	 * @return the OpenType font
 	 */
 	public OpenTypeFont getOpenTypeFont() {
-		return getOpenTypeFont(this.file, this.index);
+		var fontFile = this.fontFile;
+		if (fontFile == null || fontFile.timestamp != this.file.lastModified()) {
+			fontFile = getFontFile(this.file);
+			this.fontFile = fontFile;
+		}
+		try {
+			return fontFile.getFont(this.index);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
@@ -189,17 +205,32 @@ public class OpenTypeFontSource extends AbstractFontSource {
 	 * @param index the font index
 	 * @return the OpenType font
 	 */
-	public static synchronized OpenTypeFont getOpenTypeFont(final File file, final int index) {
-		var fontFile = fileToFont.get(file);
+	public static OpenTypeFont getOpenTypeFont(final File file, final int index) {
+		try {
+			return getFontFile(file).getFont(index);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the up to date font file, loading it if needed. The lock is not a
+	 * monitor, so that virtual threads waiting for a font file being loaded do
+	 * not pin their carriers.
+	 */
+	private static FontFile getFontFile(final File file) {
+		FILE_LOCK.lock();
 		try {
-			if (fontFile != null && fontFile.timestamp == file.lastModified()) {
-				return fontFile.getFont(index);
+			var fontFile = fileToFont.get(file);
+			if (fontFile == null || fontFile.timestamp != file.lastModified()) {
+				fontFile = new FontFile(file);
+				fileToFont.put(file, fontFile);
 			}
-			fontFile = new FontFile(file);
-			fileToFont.put(file, fontFile);
-			return fontFile.getFont(index);
-		} catch (final Exception e) {
+			return fontFile;
+		} catch (final IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			FILE_LOCK.unlock();
 		}
 	}
 
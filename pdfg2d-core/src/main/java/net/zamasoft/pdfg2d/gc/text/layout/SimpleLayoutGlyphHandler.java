@@ -24,6 +24,9 @@ public class SimpleLayoutGlyphHandler implements GlyphHandler {
 
 	private double advance = 0, line = 0, maxLineHeight = 0;
 
+	/** Position of the first line. */
+	private double originX = 0, originY = 0;
+
 	public GC getGC() {
 		return this.gc;
 	}
@@ -32,6 +35,21 @@ public class SimpleLayoutGlyphHandler implements GlyphHandler {
 		this.gc = gc;
 	}
 
+	/**
+	 * Sets the position of the start of the first line.
+	 * <p>
+	 * Passing the position with the text rather than translating the graphics
+	 * context lets consecutive strings be written as one text object.
+	 * </p>
+	 *
+	 * @param x the X coordinate
+	 * @param y the Y coordinate
+	 */
+	public void setOrigin(final double x, final double y) {
+		this.originX = x;
+		this.originY = y;
+	}
+
 	public double getAdvance() {
 		return this.advance;
 	}
@@ -63,11 +81,11 @@ public class SimpleLayoutGlyphHandler implements GlyphHandler {
 				case LTR:
 				case RTL:
 					// Horizontal writing
-					this.gc.drawText(this.text, this.advance, this.line);
+					this.gc.drawText(this.text, this.originX + this.advance, this.originY + this.line);
 					break;
 				case TB:
 					// Vertical writing
-					this.gc.drawText(this.text, -this.line, this.advance);
+					this.gc.drawText(this.text, this.originX - this.line, this.originY + this.advance);
 					break;
 				default:
 					throw new IllegalArgumentException();
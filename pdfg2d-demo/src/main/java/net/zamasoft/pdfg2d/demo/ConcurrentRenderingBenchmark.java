@@ -0,0 +1,150 @@
+package net.zamasoft.pdfg2d.demo;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import net.zamasoft.pdfg2d.gc.font.FontFace;
+import net.zamasoft.pdfg2d.gc.font.FontFamilyList;
+import net.zamasoft.pdfg2d.gc.paint.RGBColor;
+import net.zamasoft.pdfg2d.gc.text.TextLayoutHandler;
+import net.zamasoft.pdfg2d.gc.text.breaking.TextBreakingRulesBundle;
+import net.zamasoft.pdfg2d.gc.text.layout.SimpleLayoutGlyphHandler;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.font.PDFFontSourceManager;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.protocol.file.FileSource;
+
+/**
+ * Measures how the throughput scales with the number of documents rendered
+ * at the same time.
+ * <p>
+ * Every document looks up its fonts in the same font source manager and reads
+ * glyphs from the same font files, which is where concurrent jobs used to wait
+ * for each other. The documents are rendered on pools of platform threads of
+ * increasing size, then on virtual threads with the same limits, and the
+ * documents per second are reported for each.
+ * </p>
+ * <p>
+ * Usage: {@code ConcurrentRenderingBenchmark [documents] [pages] [font file]}
+ * </p>
+ * <p>
+ * Without a font file, the fonts of the default configuration are used; a
+ * TrueType file is embedded, which also reads its glyph outlines.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ */
+public class ConcurrentRenderingBenchmark {
+	private static final String TEXT = "The quick brown fox jumps over the lazy dog. "
+			+ "Pack my box with five dozen liquor jugs. 0123456789";
+
+	public static void main(final String[] args) throws Exception {
+		final var documents = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		final var pages = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+		var params = PDFParams.createDefault();
+		final FontFamilyList families;
+		PDFFontSourceManager fsm = null;
+		if (args.length > 2) {
+			fsm = new PDFFontSourceManager();
+			final var face = new FontFace();
+			face.src = new FileSource(new File(args[2]));
+			face.fontFamily = FontFamilyList.create("Benchmark");
+			fsm.addFontFace(face);
+			params = params.withFontSourceManager(fsm);
+			families = FontFamilyList.create("Benchmark");
+		} else {
+			families = FontFamilyList.create("serif");
+		}
+
+		System.out.println("Rendering " + documents + " documents of " + pages + " pages");
+		final var cpus = Runtime.getRuntime().availableProcessors();
+		// Warm up
+		run(Executors.newFixedThreadPool(cpus), cpus, documents, pages, params, families);
+		double base = 0;
+		for (final var virtual : new boolean[] { false, true }) {
+			for (var threads = 1; threads <= cpus * 4; threads *= 2) {
+				final var executor = virtual ? Executors.newVirtualThreadPerTaskExecutor()
+						: Executors.newFixedThreadPool(threads);
+				final var time = run(executor, threads, documents, pages, params, families);
+				final var rate = documents * 1e9 / time;
+				if (base == 0) {
+					base = rate;
+				}
+				System.out.printf("%-8s %4d %8.1f ms %8.1f docs/s %6.2fx%n", virtual ? "virtual" : "platform",
+						threads, time / 1e6, rate, rate / base);
+			}
+		}
+		if (fsm != null) {
+			fsm.close();
+		}
+	}
+
+	private static long run(final ExecutorService executor, final int concurrency, final int documents,
+			final int pages, final PDFParams params, final FontFamilyList families)
+			throws InterruptedException, ExecutionException {
+		// Bounds the documents in progress, as virtual threads are not pooled
+		final var permits = new Semaphore(concurrency);
+		final var start = System.nanoTime();
+		try (executor) {
+			final var futures = new ArrayList<Future<?>>();
+			for (var i = 0; i < documents; ++i) {
+				futures.add(executor.submit(() -> {
+					permits.acquire();
+					try {
+						render(pages, params, families);
+					} finally {
+						permits.release();
+					}
+					return null;
+				}));
+			}
+			for (final var future : futures) {
+				future.get();
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static void render(final int pages, final PDFParams params, final FontFamilyList families)
+			throws IOException {
+		final var builder = new StreamFragmentedOutput(OutputStream.nullOutputStream());
+		final var pdf = new PDFWriterImpl(builder, params);
+		for (var page = 0; page < pages; ++page) {
+			try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+				for (var line = 0; line < 50; ++line) {
+					final var y = 60 + line * 15;
+					if (line % 10 == 0) {
+						gc.setFillPaint(RGBColor.create(0.9f, 0.9f, 0.9f));
+						gc.fill(new Rectangle2D.Double(50, y - 11, 495, 14));
+					}
+					gc.setFillPaint(RGBColor.BLACK);
+					gc.begin();
+					gc.transform(AffineTransform.getTranslateInstance(50, y));
+					final var lgh = new SimpleLayoutGlyphHandler();
+					lgh.setGC(gc);
+					try (final var tlf = new TextLayoutHandler(gc, TextBreakingRulesBundle.getRules("en"), lgh)) {
+						tlf.setFontFamilies(families);
+						tlf.setFontSize(line % 10 == 0 ? 12 : 9);
+						tlf.characters(TEXT);
+						tlf.flush();
+					}
+					gc.end();
+				}
+			}
+		}
+		pdf.close();
+		builder.close();
+	}
+}
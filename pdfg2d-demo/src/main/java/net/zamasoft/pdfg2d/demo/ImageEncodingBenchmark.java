@@ -0,0 +1,78 @@
+package net.zamasoft.pdfg2d.demo;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+/**
+ * Measures how fast buffered images of the common types are written as
+ * Flate-compressed images.
+ * <p>
+ * Each image is drawn on a page of its own, and written with a soft mask when
+ * it has alpha. The megapixels per second are reported for each type.
+ * </p>
+ * <p>
+ * Usage: {@code ImageEncodingBenchmark [megapixels] [iterations]}
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ */
+public class ImageEncodingBenchmark {
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_INT_ARGB_PRE };
+
+	private static final String[] NAMES = { "INT_RGB", "INT_ARGB", "3BYTE_BGR", "4BYTE_ABGR", "BYTE_GRAY",
+			"BYTE_INDEXED", "INT_ARGB_PRE" };
+
+	public static void main(final String[] args) throws Exception {
+		final var megapixels = args.length > 0 ? Double.parseDouble(args[0]) : 4;
+		final var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final var width = (int) Math.sqrt(megapixels * 1e6 * 3 / 2);
+		final var height = (int) (megapixels * 1e6 / width);
+
+		System.out.println("Writing images of " + width + "x" + height);
+		for (var i = 0; i < TYPES.length; ++i) {
+			final var image = createImage(width, height, TYPES[i]);
+			// Warm up
+			write(image);
+			final var start = System.nanoTime();
+			for (var j = 0; j < iterations; ++j) {
+				write(image);
+			}
+			final var time = (System.nanoTime() - start) / iterations;
+			System.out.printf("%-14s %8.1f ms %8.1f MP/s%n", NAMES[i], time / 1e6,
+					(double) width * height / 1e6 / (time / 1e9));
+		}
+	}
+
+	private static BufferedImage createImage(final int width, final int height, final int type) {
+		final var image = new BufferedImage(width, height, type);
+		final var g = image.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, new Color(255, 0, 0, 255), width, height, new Color(0, 0, 255, 64)));
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.WHITE);
+		for (var x = 0; x < width; x += 40) {
+			g.drawLine(x, 0, width - x, height);
+		}
+		g.dispose();
+		return image;
+	}
+
+	private static void write(final BufferedImage image) throws IOException {
+		final var builder = new StreamFragmentedOutput(OutputStream.nullOutputStream());
+		final var pdf = new PDFWriterImpl(builder, PDFParams.createDefault());
+		try (final var gc = new PDFGC(pdf.nextPage(image.getWidth(), image.getHeight()))) {
+			gc.drawImage(pdf.addImage(image));
+		}
+		pdf.close();
+		builder.close();
+	}
+}
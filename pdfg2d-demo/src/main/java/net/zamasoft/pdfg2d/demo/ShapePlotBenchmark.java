@@ -0,0 +1,91 @@
+package net.zamasoft.pdfg2d.demo;
+
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+/**
+ * Compares the shortcuts of PDFGC for common shapes with the generic path.
+ * <p>
+ * Draws the cells and rules of a large table, once with rectangles, lines and
+ * rounded rectangles as they are, and once with the same shapes wrapped in a
+ * {@link Path2D}, which goes through the path iterator. The time and the
+ * bytes allocated by the drawing thread are reported for each.
+ * </p>
+ * <p>
+ * Usage: {@code ShapePlotBenchmark [shapes] [iterations]}
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ */
+public class ShapePlotBenchmark {
+	public static void main(final String[] args) throws IOException {
+		final var count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		final var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		final var shapes = new Shape[count];
+		for (var i = 0; i < count; ++i) {
+			final var x = (i % 10) * 50.0;
+			final var y = ((i / 10) % 80) * 10.0;
+			shapes[i] = switch (i % 3) {
+				case 0 -> new Rectangle2D.Double(x, y, 50, 10);
+				case 1 -> new Line2D.Double(x, y, x + 50, y);
+				default -> new RoundRectangle2D.Double(x + 2, y + 1, 46, 8, 4, 4);
+			};
+		}
+		final var paths = new Shape[count];
+		for (var i = 0; i < count; ++i) {
+			paths[i] = new Path2D.Double(shapes[i]);
+		}
+
+		System.out.println("Drawing " + count + " shapes, " + iterations + " iterations");
+		for (final var generic : new boolean[] { false, true }) {
+			final var target = generic ? paths : shapes;
+			// Warm up
+			run(target);
+			var best = Long.MAX_VALUE;
+			var bytes = 0L;
+			for (var i = 0; i < iterations; ++i) {
+				final var allocated = allocatedBytes();
+				best = Math.min(best, run(target));
+				bytes = allocatedBytes() - allocated;
+			}
+			System.out.printf("%-8s %8.1f ms %10.0f shapes/s %8.1f bytes/shape%n", generic ? "path" : "shortcut",
+					best / 1e6, count * 1e9 / best, (double) bytes / count);
+		}
+	}
+
+	private static long run(final Shape[] shapes) throws IOException {
+		final var start = System.nanoTime();
+		final var builder = new StreamFragmentedOutput(OutputStream.nullOutputStream());
+		final var pdf = new PDFWriterImpl(builder,
+				PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+		try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+			for (var i = 0; i < shapes.length; ++i) {
+				if (i % 3 == 0) {
+					gc.fill(shapes[i]);
+				} else {
+					gc.draw(shapes[i]);
+				}
+			}
+		}
+		pdf.close();
+		builder.close();
+		return System.nanoTime() - start;
+	}
+
+	private static long allocatedBytes() {
+		final var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().threadId());
+	}
+}
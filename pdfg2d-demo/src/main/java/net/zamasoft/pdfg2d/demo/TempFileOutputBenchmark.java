@@ -0,0 +1,87 @@
+package net.zamasoft.pdfg2d.demo;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import net.zamasoft.pdfg2d.io.impl.AbstractTempFileOutput.Backend;
+import net.zamasoft.pdfg2d.io.impl.AbstractTempFileOutput.Config;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+
+/**
+ * Compares the spill backends of the temporary file output.
+ * <p>
+ * Writes interleaved fragments with a small memory limit, so most of the data
+ * is spilled to the temporary file and read back when the output is
+ * assembled. Each backend is measured with a plain stream sink, which copies
+ * spilled data through the heap, and with a file sink, which is assembled with
+ * {@code FileChannel.transferTo}.
+ * </p>
+ * <p>
+ * Usage: {@code TempFileOutputBenchmark [megabytes] [iterations]}
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ */
+public class TempFileOutputBenchmark {
+	private static final int FRAGMENTS = 64;
+
+	private static final int WRITE_SIZE = 4096;
+
+	public static void main(final String[] args) throws IOException {
+		final var megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		final var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final var file = new File(DemoUtils.getOutputDir(), "temp-file-output-benchmark.bin");
+
+		final var data = new byte[WRITE_SIZE];
+		new Random(0).nextBytes(data);
+		final var total = (long) megabytes << 20;
+
+		System.out.println("Writing " + megabytes + " MB in " + FRAGMENTS + " fragments, " + iterations
+				+ " iterations");
+		for (final var backend : Backend.values()) {
+			final var config = new Config(64 * 1024, 16 * 1024 * 1024, backend);
+			for (final var channel : new boolean[] { false, true }) {
+				// Warm up
+				run(file, config, channel, data, total);
+				var best = Long.MAX_VALUE;
+				for (var i = 0; i < iterations; ++i) {
+					best = Math.min(best, run(file, config, channel, data, total));
+				}
+				final var mbps = megabytes * 1e9 / best;
+				System.out.printf("%-7s %-7s %8.1f ms %8.1f MB/s%n", backend, channel ? "channel" : "stream",
+						best / 1e6, mbps);
+			}
+		}
+		file.delete();
+	}
+
+	private static long run(final File file, final Config config, final boolean channel, final byte[] data,
+			final long total) throws IOException {
+		final var start = System.nanoTime();
+		// A buffered stream hides the FileOutputStream, so the heap copy path is used
+		final OutputStream out = channel ? new FileOutputStream(file)
+				: new BufferedOutputStream(new FileOutputStream(file));
+		try (final var builder = new StreamFragmentedOutput(out, config)) {
+			for (var i = 0; i < FRAGMENTS; ++i) {
+				if (i == 0) {
+					builder.addFragment();
+				} else {
+					// Insert in reverse order, like forked fragments
+					builder.insertFragmentBefore(i - 1);
+				}
+			}
+			for (var written = 0L; written < total; written += data.length) {
+				final var id = (int) ((written / data.length) % FRAGMENTS);
+				builder.write(id, data, 0, data.length);
+			}
+			for (var i = 0; i < FRAGMENTS; ++i) {
+				builder.finishFragment(i);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,108 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.AbstractTempFileOutput.Config;
+import net.zamasoft.pdfg2d.io.impl.ChannelFragmentedOutput;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class ChannelFragmentedOutputTest {
+
+    @TempDir
+    File tempDir;
+
+    private ChannelFragmentedOutput generate(final File file, final PDFParams params, final Config config)
+            throws Exception {
+        final var builder = new ChannelFragmentedOutput(file, config);
+        this.draw(new PDFWriterImpl(builder, params));
+        builder.close();
+        return builder;
+    }
+
+    private void draw(final PDFWriterImpl pdf) throws Exception {
+        for (var i = 0; i < 30; ++i) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                g.setColor(Color.BLACK);
+                g.setFont(new Font("Serif", Font.PLAIN, 12));
+                g.drawString("Page " + (i + 1), 100, 100);
+                for (var j = 0; j < 100; ++j) {
+                    g.setColor(new Color(j, i, 255 - j));
+                    g.fillRect(j * 2, j * 3, 60, 40);
+                }
+            }
+        }
+        pdf.close();
+    }
+
+    private static PDFParams fixedParams() {
+        final var meta = new PDFMetaInfo();
+        meta.setCreationDate(0);
+        meta.setModDate(0);
+        return PDFParams.createDefault().withFileId(new byte[16]).withMetaInfo(meta).withPageStreaming(true);
+    }
+
+    /**
+     * Removes the spaces which pad the reserved slots at the ends of lines, and
+     * the cross-reference table, whose offsets move with the padding.
+     */
+    private static String normalize(final byte[] pdf) {
+        final var s = new String(pdf, StandardCharsets.ISO_8859_1);
+        return s.substring(0, s.lastIndexOf("\nxref")).replaceAll(" +\r\n", "\r\n");
+    }
+
+    @Test
+    public void testChannelOutput() throws Exception {
+        final var file = new File(tempDir, "channel.pdf");
+        final var builder = this.generate(file, fixedParams(), Config.DEFAULT);
+        // With the pages ahead of the document-level objects and reserved /Length
+        // slots, the pages are written in place. Only the catalog, the page tree
+        // and the other objects completed at the end wait behind open fragments.
+        final long size = file.length();
+        assertTrue(builder.getDirectBytes() > size * 3 / 4, builder.getDirectBytes() + " of " + size);
+        assertTrue(builder.getBufferedBytes() < size / 4, builder.getBufferedBytes() + " of " + size);
+
+        final var out = new ByteArrayOutputStream();
+        final var stream = new StreamFragmentedOutput(out);
+        this.draw(new PDFWriterImpl(stream, fixedParams()));
+        stream.close();
+        assertEquals(normalize(out.toByteArray()), normalize(Files.readAllBytes(file.toPath())));
+
+        try (final var doc = Loader.loadPDF(file)) {
+            assertEquals(30, doc.getNumberOfPages());
+            final var stripper = new PDFTextStripper();
+            stripper.setStartPage(30);
+            stripper.setEndPage(30);
+            assertTrue(stripper.getText(doc).contains("Page 30"));
+        }
+    }
+
+    @Test
+    public void testSpillAndObjectStreams() throws Exception {
+        // Tiny memory limit, so buffered fragments go through the temp file
+        final var file = new File(tempDir, "channel-spill.pdf");
+        final var params = PDFParams.createDefault().withObjectStreams(true);
+        this.generate(file, params, new Config(1024, 4096));
+
+        try (final var doc = Loader.loadPDF(file)) {
+            assertEquals(30, doc.getNumberOfPages());
+        }
+    }
+}
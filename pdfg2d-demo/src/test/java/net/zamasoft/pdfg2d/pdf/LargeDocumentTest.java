@@ -0,0 +1,194 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.io.FragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+/**
+ * Streams a document larger than 2 GB to a sink that only counts bytes, and
+ * checks that the offsets in the xref table point to the right objects.
+ */
+public class LargeDocumentTest {
+
+    private static final long CONTENT_SIZE = (1L << 31) + (64L << 20);
+
+    /** Writes of at least this size are counted but not kept. */
+    private static final int SKIP_THRESHOLD = 4096;
+
+    private static final class Fragment {
+        long length = 0;
+        final TreeMap<Long, ByteArrayOutputStream> runs = new TreeMap<>();
+        ByteArrayOutputStream run = null;
+
+        void write(final byte[] b, final int off, final int len) {
+            if (len >= SKIP_THRESHOLD) {
+                this.run = null;
+            } else {
+                if (this.run == null) {
+                    this.run = new ByteArrayOutputStream();
+                    this.runs.put(this.length, this.run);
+                }
+                this.run.write(b, off, len);
+            }
+            this.length += len;
+        }
+
+        String read(final long pos, final int len) {
+            final var entry = this.runs.floorEntry(pos);
+            if (entry == null) {
+                return "";
+            }
+            final var bytes = entry.getValue().toByteArray();
+            final var start = (int) (pos - entry.getKey());
+            if (start >= bytes.length) {
+                return "";
+            }
+            return new String(bytes, start, Math.min(len, bytes.length - start), StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Counting sink without position support, so the writer tracks positions
+     * itself. Small writes are kept for verification.
+     */
+    private static final class CountingSink implements FragmentedOutput {
+        final List<Fragment> fragments = new ArrayList<>();
+        final List<Fragment> order = new ArrayList<>();
+
+        @Override
+        public void addFragment() {
+            final var fragment = new Fragment();
+            this.fragments.add(fragment);
+            this.order.add(fragment);
+        }
+
+        @Override
+        public void insertFragmentBefore(final int anchorId) {
+            final var fragment = new Fragment();
+            this.order.add(this.order.indexOf(this.fragments.get(anchorId)), fragment);
+            this.fragments.add(fragment);
+        }
+
+        @Override
+        public void write(final int id, final byte[] b, final int off, final int len) {
+            this.fragments.get(id).write(b, off, len);
+        }
+
+        @Override
+        public boolean supportsPositionInfo() {
+            return false;
+        }
+
+        @Override
+        public PositionInfo getPositionInfo() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void finishFragment(final int id) {
+            // Nothing to do
+        }
+
+        @Override
+        public void close() {
+            // Nothing to do
+        }
+
+        long getLength() {
+            return this.order.stream().mapToLong(f -> f.length).sum();
+        }
+
+        String read(final long pos, final int len) {
+            var start = 0L;
+            for (final var fragment : this.order) {
+                if (pos < start + fragment.length) {
+                    return fragment.read(pos - start, len);
+                }
+                start += fragment.length;
+            }
+            return "";
+        }
+
+        long find(final String text) {
+            var start = 0L;
+            for (final var fragment : this.order) {
+                for (final var run : fragment.runs.entrySet()) {
+                    final var s = run.getValue().toString(StandardCharsets.ISO_8859_1);
+                    final var i = s.lastIndexOf(text);
+                    if (i != -1) {
+                        return start + run.getKey() + i;
+                    }
+                }
+                start += fragment.length;
+            }
+            return -1;
+        }
+    }
+
+    @Test
+    public void testOffsetsBeyond2GB() throws Exception {
+        final var sink = new CountingSink();
+        // Uncompressed content, so the stream really is that large
+        final var params = PDFParams.createDefault().withCompression(PDFParams.Compression.NONE);
+        final var pdf = new PDFWriterImpl(sink, params);
+        try (final var page = pdf.nextPage(595, 842)) {
+            final var filler = new byte[1 << 20];
+            Arrays.fill(filler, (byte) ' ');
+            for (var written = 0L; written < CONTENT_SIZE; written += filler.length) {
+                page.write(filler);
+            }
+        }
+        // Objects written after the 2 GB boundary
+        try (final var page = pdf.nextPage(595, 842)) {
+            page.writeOperator("n");
+        }
+        pdf.close();
+
+        final var length = sink.getLength();
+        assertTrue(length > CONTENT_SIZE);
+
+        // startxref
+        final var startxref = sink.find("startxref");
+        assertTrue(startxref != -1, "startxref not found");
+        final var xrefPosition = Long.parseLong(sink.read(startxref, 40).split("\r\n")[1]);
+        assertTrue(xrefPosition > Integer.MAX_VALUE);
+        assertTrue(sink.read(xrefPosition, 4).equals("xref"), "startxref does not point to the xref table");
+
+        // Each entry must point to its object
+        final var header = sink.read(xrefPosition, 40).split("\r\n");
+        final var size = Integer.parseInt(header[1].split(" ")[1]);
+        final var entriesPosition = xrefPosition + header[0].length() + header[1].length() + 4;
+        var beyond = 0;
+        for (var i = 1; i < size; ++i) {
+            final var entry = sink.read(entriesPosition + i * 20L, 20);
+            assertEquals(20, entry.length());
+            if (entry.charAt(17) != 'n') {
+                continue;
+            }
+            final var offset = Long.parseLong(entry.substring(0, 10));
+            assertTrue(sink.read(offset, 20).startsWith(i + " 0 obj"), "Wrong offset for object " + i);
+            if (offset > Integer.MAX_VALUE) {
+                ++beyond;
+            }
+        }
+        assertTrue(beyond > 0, "No object beyond 2 GB");
+
+        // The /Length of the content stream is a forked fragment holding only the number
+        final var hasLength = sink.fragments.stream().map(f -> f.read(0, 20))
+                .filter(s -> !s.isEmpty() && s.chars().allMatch(Character::isDigit))
+                .anyMatch(s -> Long.parseLong(s) >= CONTENT_SIZE);
+        assertTrue(hasLength, "Stream length should exceed 2 GB");
+    }
+}
@@ -0,0 +1,72 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.AsyncCompression;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFAsyncCompressionTest {
+
+    private byte[] generate(final PDFParams params) throws Exception {
+        final var meta = new PDFMetaInfo();
+        meta.setCreationDate(0);
+        meta.setModDate(0);
+        final var fixedParams = params.withFileId(new byte[16]).withMetaInfo(meta);
+
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, fixedParams);
+        for (var i = 0; i < 20; ++i) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                for (var j = 0; j < 100; ++j) {
+                    g.setColor(new Color((i * 10 + j) % 256, j, 128));
+                    g.fillRect(j * 3, j * 5, 80, 40);
+                }
+                final var image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+                for (var y = 0; y < image.getHeight(); ++y) {
+                    for (var x = 0; x < image.getWidth(); ++x) {
+                        image.setRGB(x, y, (x * i) << 8 | y);
+                    }
+                }
+                g.drawImage(image, 100, 500, null);
+            }
+        }
+        pdf.close();
+        builder.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSameOutputAsSynchronous() throws Exception {
+        final var params = PDFParams.createDefault();
+        final var sync = this.generate(params);
+        final var async = this.generate(params.withAsyncCompression(AsyncCompression.create()));
+        assertArrayEquals(sync, async, "Background compression must not change the output");
+
+        try (final var doc = Loader.loadPDF(async)) {
+            assertEquals(20, doc.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testSmallMemoryLimit() throws Exception {
+        // Forces waiting for workers and synchronous compression of large streams
+        final var params = PDFParams.createDefault();
+        final var sync = this.generate(params);
+        final var async = this.generate(params.withAsyncCompression(new AsyncCompression(2, 16 * 1024)));
+        assertArrayEquals(sync, async);
+    }
+}
@@ -0,0 +1,75 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.Deflater;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels;
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels.StreamClass;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFCompressionLevelsTest {
+
+    @TempDir
+    File tempDir;
+
+    private PDFWriterImpl generate(final File file, final CompressionLevels levels) throws Exception {
+        final var params = PDFParams.createDefault().withCompressionLevels(levels);
+        try (final var out = new FileOutputStream(file)) {
+            final var builder = new StreamFragmentedOutput(out);
+            final var pdf = new PDFWriterImpl(builder, params);
+            for (var i = 0; i < 10; ++i) {
+                try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                    final var g = new BridgeGraphics2D(gc);
+                    for (var j = 0; j < 200; ++j) {
+                        g.setColor(new Color(j, 0, 255 - j));
+                        g.fillRect(j, j, 100, 50);
+                    }
+                }
+            }
+            pdf.close();
+            builder.close();
+            return pdf;
+        }
+    }
+
+    @Test
+    public void testContentLevels() throws Exception {
+        final var stored = new File(tempDir, "stored.pdf");
+        final var storedPdf = this.generate(stored,
+                new CompressionLevels(Deflater.NO_COMPRESSION, Deflater.DEFAULT_COMPRESSION,
+                        Deflater.DEFAULT_COMPRESSION));
+        final var best = new File(tempDir, "best.pdf");
+        final var bestPdf = this.generate(best,
+                new CompressionLevels(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_COMPRESSION,
+                        Deflater.DEFAULT_COMPRESSION));
+
+        // Same content, different levels
+        final var storedStats = storedPdf.getDeflaterPool();
+        final var bestStats = bestPdf.getDeflaterPool();
+        assertTrue(storedStats.getBytesIn(StreamClass.CONTENT) > 0);
+        assertEquals(storedStats.getBytesIn(StreamClass.CONTENT), bestStats.getBytesIn(StreamClass.CONTENT));
+        assertTrue(storedStats.getBytesOut(StreamClass.CONTENT) >= storedStats.getBytesIn(StreamClass.CONTENT));
+        assertTrue(bestStats.getBytesOut(StreamClass.CONTENT) < bestStats.getBytesIn(StreamClass.CONTENT));
+        assertTrue(best.length() < stored.length());
+
+        try (final var doc = Loader.loadPDF(stored)) {
+            assertEquals(10, doc.getNumberOfPages());
+        }
+        try (final var doc = Loader.loadPDF(best)) {
+            assertEquals(10, doc.getNumberOfPages());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.pdf.util.io.ContentStreamOptimizer;
+
+public class PDFContentOptimizationTest {
+
+    private static String optimize(final String contents) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        try (final var optimizer = new ContentStreamOptimizer(out)) {
+            optimizer.write(contents.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testPeephole() throws Exception {
+        // Empty save/restore pairs
+        assertEquals("0 0 m 1 1 l S", optimize("q Q q 1 w 0 g Q 0 0 m 1 1 l S"));
+        assertEquals("", optimize("q 0 0 10 10 re W n 1 0 0 RG Q"));
+        // Identity and consecutive matrices
+        assertEquals("q 2 0 0 2 5 5 cm 0 0 m 1 1 l S Q",
+                optimize("q 1 0 0 1 0 0 cm 1 0 0 1 5 5 cm 2 0 0 2 0 0 cm 0 0 m 1 1 l S Q"));
+        assertEquals("0 0 10 10 re f", optimize("1 0 0 1 5 5 cm 1 0 0 1 -5 -5 cm 0 0 10 10 re f"));
+        // Settings overwritten, restored or already in effect
+        assertEquals("2 w 0 0 m 1 1 l S 3 3 m 4 4 l S", optimize("1 w 2 w 0 0 m 1 1 l S 2 w 3 3 m 4 4 l S 1 g 0 g"));
+        assertEquals("q 1 w S Q", optimize("q 1 w q 2 w Q S Q"));
+        assertEquals("1 0 0 RG 0 0 m 1 1 l S 0 0 1 rg 0 0 1 1 re f",
+                optimize("1 0 0 RG 1 0 0 rg 0 0 m 1 1 l S 0 0 1 rg 0 0 1 1 re f"));
+        // Values that an ExtGState may change are not known
+        assertEquals("1 w /GS0 gs 1 w S", optimize("1 w /GS0 gs 1 w S"));
+        // Strings and inline images are kept as they are
+        assertEquals("q (a\\) b (c) Q) Tj Q", optimize("q (a\\) b (c) Q) Tj Q"));
+        assertEquals("BI /W 1 /H 1 /BPC 8 /CS /G ID \u00ffEI x EI", optimize("BI /W 1 /H 1 /BPC 8 /CS /G ID \u00ffEI x EI"));
+    }
+
+    private static byte[] generate(final PDFParams params, final long[] eliminated) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params);
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setFont(new Font("Serif", Font.PLAIN, 12));
+            for (var i = 0; i < 20; ++i) {
+                final var bar = (Graphics2D) g.create();
+                bar.translate(50, 50);
+                bar.setStroke(new BasicStroke(2));
+                bar.setColor(Color.RED);
+                bar.draw(new Line2D.Double(0, i * 20, 400, i * 20));
+                bar.setColor(Color.BLUE);
+                bar.fill(new Rectangle2D.Double(i * 20, 500, 10, 100));
+                bar.dispose();
+                g.setColor(Color.BLACK);
+                g.drawString("Label " + i, 460, 50 + i * 20);
+            }
+        }
+        pdf.close();
+        builder.close();
+        eliminated[0] = pdf.getEliminatedOperators();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testOptimizedDocument() throws Exception {
+        final var params = PDFParams.createDefault().withCompression(PDFParams.Compression.NONE);
+        final var eliminated = new long[1];
+        final var plain = generate(params, eliminated);
+        assertEquals(0, eliminated[0]);
+        final var optimized = generate(params.withOptimizeContents(true), eliminated);
+        assertTrue(eliminated[0] > 0);
+        assertTrue(optimized.length < plain.length);
+
+        try (final var plainDoc = Loader.loadPDF(plain); final var optimizedDoc = Loader.loadPDF(optimized)) {
+            final var stripper = new PDFTextStripper();
+            assertEquals(stripper.getText(plainDoc), stripper.getText(optimizedDoc));
+        }
+    }
+}
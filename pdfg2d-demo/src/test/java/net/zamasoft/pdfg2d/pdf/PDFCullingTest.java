@@ -0,0 +1,71 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFCullingTest {
+
+    @Test
+    public void testZoomedPanel() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder,
+                PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+        final long culled;
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setFont(new Font("Serif", Font.PLAIN, 10));
+            // A panel showing a tenth of the data, zoomed in ten times
+            gc.begin();
+            final var panel = (Graphics2D) g.create();
+            panel.clipRect(50, 50, 400, 300);
+            panel.translate(50, 50);
+            panel.scale(10, 10);
+            panel.setStroke(new BasicStroke(0.1f));
+            for (var i = 0; i < 100; ++i) {
+                panel.setColor(Color.BLUE);
+                panel.fill(new Ellipse2D.Double(i * 4, 10, 1, 1));
+                panel.setColor(Color.BLACK);
+                panel.draw(new Line2D.Double(i * 4, 0, i * 4 + 4, 20));
+                panel.drawString("P" + i, i * 4, 25);
+            }
+            panel.dispose();
+            gc.end();
+
+            // Out of the page
+            g.setColor(Color.RED);
+            g.fill(new Ellipse2D.Double(-100, -100, 50, 50));
+            g.drawString("Outside", 700, 100);
+            culled = gc.getCulledCount();
+        }
+        pdf.close();
+        builder.close();
+
+        // Only the columns within the panel are drawn
+        assertTrue(culled > 250);
+        final var data = out.toByteArray();
+        try (final var doc = Loader.loadPDF(data)) {
+            assertEquals(1, doc.getNumberOfPages());
+            final var text = new PDFTextStripper().getText(doc);
+            assertTrue(!text.contains("P50") && !text.contains("Outside"));
+        }
+    }
+}
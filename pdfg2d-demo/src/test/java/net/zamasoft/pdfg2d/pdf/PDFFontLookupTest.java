@@ -0,0 +1,77 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.font.FontSource;
+import net.zamasoft.pdfg2d.gc.font.FontFamilyList;
+import net.zamasoft.pdfg2d.gc.font.FontPolicyList;
+import net.zamasoft.pdfg2d.gc.font.FontStyle;
+import net.zamasoft.pdfg2d.gc.font.FontStyleImpl;
+import net.zamasoft.pdfg2d.pdf.font.ConfigurablePDFFontSourceManager;
+import net.zamasoft.pdfg2d.pdf.font.PDFFontSourceManager;
+import net.zamasoft.pdfg2d.resolver.protocol.url.URLSource;
+
+public class PDFFontLookupTest {
+
+    private static PDFFontSourceManager newManager() throws Exception {
+        return new ConfigurablePDFFontSourceManager(
+                new URLSource(ConfigurablePDFFontSourceManager.class.getResource("builtin/fonts.xml")));
+    }
+
+    private static List<FontStyle> styles() {
+        final var styles = new ArrayList<FontStyle>();
+        final FontFamilyList[] families = { FontFamilyList.SERIF, FontFamilyList.SANS_SERIF,
+                FontFamilyList.MONOSPACE, FontFamilyList.create("Helvetica"), FontFamilyList.create("Courier") };
+        for (final var family : families) {
+            for (final var style : FontStyle.Style.values()) {
+                for (final var weight : new FontStyle.Weight[] { FontStyle.Weight.W_400, FontStyle.Weight.W_700 }) {
+                    for (final var direction : new FontStyle.Direction[] { FontStyle.Direction.LTR,
+                            FontStyle.Direction.TB }) {
+                        styles.add(new FontStyleImpl(family, 12, style, weight, direction,
+                                FontPolicyList.FONT_POLICY_CORE_CID_KEYED_VALUE));
+                    }
+                }
+            }
+        }
+        return styles;
+    }
+
+    private static String lookupAll(final PDFFontSourceManager fsm, final List<FontStyle> styles) {
+        final var sb = new StringBuilder();
+        for (final var style : styles) {
+            for (final FontSource font : fsm.lookup(style)) {
+                sb.append(font.getFontName()).append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testConcurrentLookup() throws Exception {
+        final var styles = styles();
+        final String expected = lookupAll(newManager(), styles);
+        assertFalse(expected.isBlank());
+
+        // Many threads look up the same styles at once on a fresh manager, filling
+        // its cache together
+        final var fsm = newManager();
+        final var tasks = new ArrayList<Callable<String>>();
+        for (int i = 0; i < 64; i++) {
+            tasks.add(() -> lookupAll(fsm, styles));
+        }
+        try (final var executor = Executors.newFixedThreadPool(16)) {
+            for (final var result : executor.invokeAll(tasks)) {
+                assertEquals(expected, result.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.protocol.file.FileSource;
+
+public class PDFImageBandsTest {
+
+    @TempDir
+    File tempDir;
+
+    private static byte[] generate(final PDFParams params, final File file) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params);
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            gc.drawImage(pdf.loadImage(new FileSource(file)));
+        }
+        pdf.close();
+        builder.close();
+
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(1, doc.getNumberOfPages());
+        }
+        return out.toByteArray();
+    }
+
+    private static PDFParams fixedParams() {
+        final var meta = new PDFMetaInfo();
+        meta.setCreationDate(0);
+        meta.setModDate(0);
+        return PDFParams.createDefault().withFileId(new byte[16]).withMetaInfo(meta);
+    }
+
+    private File photo(final String name, final int type, final String format) throws Exception {
+        final var image = new BufferedImage(300, 200, type);
+        final var g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(255, 0, 0, 255), 300, 200, new Color(0, 0, 255, 64)));
+        g.fillRect(0, 0, 300, 200);
+        g.dispose();
+        final var file = new File(tempDir, name);
+        ImageIO.write(image, format, file);
+        return file;
+    }
+
+    @Test
+    public void testBandsWithAlpha() throws Exception {
+        // Bands of 10 rows, with the soft mask read in a second pass
+        final var file = photo("photo.png", BufferedImage.TYPE_INT_ARGB, "png");
+        final var params = fixedParams();
+        assertArrayEquals(generate(params.withImageBandMemory(0), file),
+                generate(params.withImageBandMemory(300 * 4 * 10), file));
+    }
+
+    @Test
+    public void testBandsToGray() throws Exception {
+        final var file = photo("photo.bmp", BufferedImage.TYPE_3BYTE_BGR, "bmp");
+        final var params = fixedParams().withColorMode(PDFParams.ColorMode.GRAY);
+        assertArrayEquals(generate(params.withImageBandMemory(0), file),
+                generate(params.withImageBandMemory(300 * 3 * 10), file));
+    }
+}
@@ -0,0 +1,100 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.protocol.file.FileSource;
+
+public class PDFImageDedupTest {
+
+    @TempDir
+    File tempDir;
+
+    private static BufferedImage logo(final Color color) {
+        final var image = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        final var g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 64, 32);
+        g.setColor(color);
+        g.fillOval(4, 4, 56, 24);
+        g.dispose();
+        return image;
+    }
+
+    private static int countImages(final ByteArrayOutputStream out) {
+        // Soft masks are images too, but have no name
+        return out.toString(StandardCharsets.ISO_8859_1).split("/Name /I", -1).length - 1;
+    }
+
+    @Test
+    public void testRasterizedPerPage() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder,
+                PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+        for (var page = 0; page < 5; ++page) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                // A letterhead rasterized again for each page
+                g.drawImage(logo(Color.BLUE), 50, 50, null);
+                if (page == 4) {
+                    g.drawImage(logo(Color.RED), 50, 100, null);
+                }
+            }
+        }
+        pdf.close();
+        builder.close();
+
+        assertEquals(2, countImages(out));
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(5, doc.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testSameBytesFromOtherURI() throws Exception {
+        final var a = new File(tempDir, "logo.png");
+        final var b = new File(tempDir, "logo-copy.png");
+        final var c = new File(tempDir, "other.png");
+        ImageIO.write(logo(Color.BLUE), "png", a);
+        ImageIO.write(logo(Color.BLUE), "png", b);
+        ImageIO.write(logo(Color.RED), "png", c);
+
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder,
+                PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var imageA = pdf.loadImage(new FileSource(a));
+            final var imageB = pdf.loadImage(new FileSource(b));
+            final var imageC = pdf.loadImage(new FileSource(c));
+            assertSame(imageA, imageB);
+            assertNotSame(imageA, imageC);
+            gc.drawImage(imageA);
+            gc.drawImage(imageB);
+            gc.drawImage(imageC);
+        }
+        pdf.close();
+        builder.close();
+
+        assertEquals(2, countImages(out));
+    }
+}
@@ -0,0 +1,116 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.gc.image.Image;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.protocol.file.FileSource;
+
+public class PDFImageScalingTest {
+
+    @TempDir
+    File tempDir;
+
+    private interface ImageLoader {
+        Image load(PDFWriter pdf) throws IOException;
+    }
+
+    private static String generate(final PDFParams params, final BufferedImage image) throws Exception {
+        return generate(params, pdf -> pdf.addImage(image));
+    }
+
+    private static String generate(final PDFParams params, final ImageLoader loader) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params.withCompression(PDFParams.Compression.NONE));
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            gc.drawImage(loader.load(pdf));
+        }
+        pdf.close();
+        builder.close();
+
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(1, doc.getNumberOfPages());
+        }
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static BufferedImage photo(final int width, final int height, final int type) {
+        final var image = new BufferedImage(width, height, type);
+        final var g = image.createGraphics();
+        g.setColor(new Color(255, 0, 0, 128));
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(Color.BLUE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+        return image;
+    }
+
+    private static long count(final String pdf, final String entry) {
+        return Pattern.compile(entry + "\\s").matcher(pdf).results().count();
+    }
+
+    private static void assertSize(final String pdf, final int width, final int height) {
+        assertTrue(count(pdf, "/Width " + width) > 0, "Width " + width);
+        assertTrue(count(pdf, "/Height " + height) > 0, "Height " + height);
+    }
+
+    @Test
+    public void testWidthBound() throws Exception {
+        final var pdf = generate(PDFParams.createDefault().withMaxImageWidth(100),
+                photo(400, 300, BufferedImage.TYPE_INT_RGB));
+        // The height follows, keeping the aspect ratio
+        assertSize(pdf, 100, 75);
+    }
+
+    @Test
+    public void testHeightBound() throws Exception {
+        final var pdf = generate(PDFParams.createDefault().withMaxImageHeight(50),
+                photo(300, 200, BufferedImage.TYPE_3BYTE_BGR));
+        assertSize(pdf, 75, 50);
+    }
+
+    @Test
+    public void testBothBounds() throws Exception {
+        final var pdf = generate(PDFParams.createDefault().withMaxImageWidth(120).withMaxImageHeight(120),
+                photo(1000, 500, BufferedImage.TYPE_INT_ARGB));
+        // The tighter bound wins; the soft mask has the same size
+        assertSize(pdf, 120, 60);
+        assertEquals(2, count(pdf, "/Width 120"));
+    }
+
+    @Test
+    public void testSubsampledJpeg() throws Exception {
+        // Decoded at a quarter of its size, then scaled by half
+        final var file = new File(tempDir, "photo.jpg");
+        ImageIO.write(photo(800, 600, BufferedImage.TYPE_3BYTE_BGR), "jpeg", file);
+        final var pdf = generate(PDFParams.createDefault().withMaxImageWidth(100),
+                writer -> writer.loadImage(new FileSource(file)));
+        assertSize(pdf, 100, 75);
+    }
+
+    @Test
+    public void testWithinBounds() throws Exception {
+        final var pdf = generate(PDFParams.createDefault().withMaxImageWidth(500).withMaxImageHeight(500),
+                photo(300, 200, BufferedImage.TYPE_INT_RGB));
+        assertSize(pdf, 300, 200);
+    }
+}
@@ -0,0 +1,226 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.annot.SquareAnnot;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGroupImage;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFIncrementalUpdateTest {
+
+    @TempDir
+    File tempDir;
+
+    private void generate(final File file, final PDFParams params, final int pages) throws Exception {
+        final var builder = new StreamFragmentedOutput(new BufferedOutputStream(new FileOutputStream(file)));
+        final var pdf = new PDFWriterImpl(builder, params);
+        for (var i = 0; i < pages; ++i) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                g.setColor(Color.BLACK);
+                g.setFont(new Font("Serif", Font.PLAIN, 12));
+                g.drawString("Page " + (i + 1), 100, 100);
+            }
+        }
+        pdf.close();
+    }
+
+    private void appendPage(final File file, final PDFParams params, final String text) throws Exception {
+        final var pdf = PDFWriterImpl.append(file, params);
+        try (final var gc = new PDFGC(pdf.nextPage(400, 600))) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setColor(Color.BLACK);
+            g.setFont(new Font("Serif", Font.PLAIN, 12));
+            g.drawString(text, 100, 100);
+        }
+        pdf.close();
+    }
+
+    private static void attach(final PDFWriter pdf, final String name, final String text) throws Exception {
+        try (final var out = pdf.addAttachment(name, new Attachment(null, "text/plain"))) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Draws a square in an optional content group hidden when printed. */
+    private static void drawWatermark(final PDFWriter pdf, final PDFGC gc) throws Exception {
+        final var image = pdf.createGroupImage(100, 100);
+        image.setOCG(PDFGroupImage.PRINT_OFF);
+        try (final var igc = new PDFGC(image)) {
+            igc.fill(new Rectangle2D.Double(0, 0, 100, 100));
+        }
+        gc.begin();
+        gc.transform(AffineTransform.getTranslateInstance(100, 300));
+        gc.drawImage(image);
+        gc.end();
+    }
+
+    private String getText(final PDDocument doc, final int page) throws Exception {
+        final var stripper = new PDFTextStripper();
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(doc);
+    }
+
+    @Test
+    public void testAppendPageAndStamp() throws Exception {
+        final var file = new File(this.tempDir, "update.pdf");
+        final var params = PDFParams.createDefault();
+        this.generate(file, params, 3);
+        final var original = Files.readAllBytes(file.toPath());
+
+        final var pdf = PDFWriterImpl.append(file, params);
+        try (final var gc = new PDFGC(pdf.nextPage(400, 600))) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setColor(Color.BLACK);
+            g.setFont(new Font("Serif", Font.PLAIN, 12));
+            g.drawString("Appended", 100, 100);
+        }
+        final var page = pdf.editPage(0);
+        try (final var gc = new PDFGC(page)) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setColor(Color.RED);
+            g.setFont(new Font("Serif", Font.PLAIN, 12));
+            g.drawString("Stamp", 100, 200);
+
+            final var annot = new SquareAnnot();
+            annot.setShape(new Rectangle2D.Double(90, 180, 80, 30));
+            annot.setContents("Reviewed");
+            page.addAnnotation(annot);
+        }
+        pdf.close();
+
+        // The original bytes are kept as they are
+        final var updated = Files.readAllBytes(file.toPath());
+        assertTrue(updated.length > original.length);
+        assertArrayEquals(original, Arrays.copyOf(updated, original.length));
+
+        try (final var doc = Loader.loadPDF(file)) {
+            assertEquals(4, doc.getNumberOfPages());
+            assertTrue(this.getText(doc, 4).contains("Appended"));
+
+            final var text = this.getText(doc, 1);
+            assertTrue(text.contains("Page 1"));
+            assertTrue(text.contains("Stamp"));
+            assertEquals(1, doc.getPage(0).getAnnotations().size());
+        }
+    }
+
+    @Test
+    public void testAttachments() throws Exception {
+        final var file = new File(this.tempDir, "attachments.pdf");
+        final var params = PDFParams.createDefault();
+        final var builder = new StreamFragmentedOutput(new BufferedOutputStream(new FileOutputStream(file)));
+        final var pdf = new PDFWriterImpl(builder, params);
+        pdf.nextPage(595, 842).close();
+        attach(pdf, "a.txt", "First");
+        attach(pdf, "c.txt", "Third");
+        pdf.close();
+
+        final var update = PDFWriterImpl.append(file, params);
+        attach(update, "b.txt", "Second");
+        // Replaces the attachment of the base document with the same name
+        attach(update, "c.txt", "Replaced");
+        update.close();
+
+        try (final var doc = Loader.loadPDF(file)) {
+            final var files = doc.getDocumentCatalog().getNames().getEmbeddedFiles().getNames();
+            assertEquals(3, files.size());
+            assertEquals("First", new String(files.get("a.txt").getEmbeddedFile().toByteArray(),
+                    StandardCharsets.UTF_8));
+            assertEquals("Second", new String(files.get("b.txt").getEmbeddedFile().toByteArray(),
+                    StandardCharsets.UTF_8));
+            assertEquals("Replaced", new String(files.get("c.txt").getEmbeddedFile().toByteArray(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testDestinationsAndOptionalContent() throws Exception {
+        final var file = new File(this.tempDir, "catalog.pdf");
+        final var params = PDFParams.createDefault();
+        final var builder = new StreamFragmentedOutput(new BufferedOutputStream(new FileOutputStream(file)));
+        final var pdf = new PDFWriterImpl(builder, params);
+        final var page = pdf.nextPage(595, 842);
+        try (final var gc = new PDFGC(page)) {
+            drawWatermark(pdf, gc);
+            page.addFragment("base", new Point2D.Double(0, 100));
+        }
+        attach(pdf, "base.txt", "Kept");
+        pdf.close();
+
+        final var update = PDFWriterImpl.append(file, params);
+        try (final var appended = update.nextPage(400, 600)) {
+            appended.addFragment("appended", new Point2D.Double(0, 100));
+        }
+        final var edited = update.editPage(0);
+        try (final var gc = new PDFGC(edited)) {
+            drawWatermark(update, gc);
+            edited.addFragment("edited", new Point2D.Double(0, 200));
+        }
+        update.close();
+
+        try (final var doc = Loader.loadPDF(file)) {
+            final var names = doc.getDocumentCatalog().getNames();
+            final var dests = names.getDests().getNames();
+            assertEquals(3, dests.size());
+            assertEquals(742, ((PDPageXYZDestination) dests.get("base")).getTop());
+            assertEquals(500, ((PDPageXYZDestination) dests.get("appended")).getTop());
+            assertEquals(642, ((PDPageXYZDestination) dests.get("edited")).getTop());
+            assertEquals(doc.getPage(1).getCOSObject(),
+                    ((PDPageXYZDestination) dests.get("appended")).getPage().getCOSObject());
+
+            // The name tree without new entries is kept
+            assertEquals(1, names.getEmbeddedFiles().getNames().size());
+
+            final var properties = doc.getDocumentCatalog().getOCProperties();
+            assertEquals(2, properties.getOptionalContentGroups().size());
+            final var config = properties.getCOSObject().getCOSDictionary(COSName.D);
+            assertEquals(2, config.getCOSArray(COSName.ON).size());
+        }
+    }
+
+    @Test
+    public void testRepeatedUpdatesWithObjectStreams() throws Exception {
+        final var file = new File(this.tempDir, "updates.pdf");
+        final var params = PDFParams.createDefault().withObjectStreams(true).withVersion(PDFParams.Version.V_1_5)
+                .withPageTreeFanout(4);
+        this.generate(file, params, 10);
+        this.appendPage(file, params, "First update");
+        // An update with a cross-reference table on top of a stream
+        this.appendPage(file, PDFParams.createDefault(), "Second update");
+
+        try (final var doc = Loader.loadPDF(file)) {
+            assertEquals(12, doc.getNumberOfPages());
+            assertTrue(this.getText(doc, 10).contains("Page 10"));
+            assertTrue(this.getText(doc, 11).contains("First update"));
+            assertTrue(this.getText(doc, 12).contains("Second update"));
+        }
+    }
+}
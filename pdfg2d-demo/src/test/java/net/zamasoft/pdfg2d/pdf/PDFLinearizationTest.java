@@ -0,0 +1,451 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.gc.font.FontFace;
+import net.zamasoft.pdfg2d.gc.font.FontFamilyList;
+import net.zamasoft.pdfg2d.gc.image.Image;
+import net.zamasoft.pdfg2d.gc.text.TextLayoutHandler;
+import net.zamasoft.pdfg2d.gc.text.breaking.TextBreakingRulesBundle;
+import net.zamasoft.pdfg2d.gc.text.layout.SimpleLayoutGlyphHandler;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.font.PDFFontSourceManager;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.protocol.file.FileSource;
+
+public class PDFLinearizationTest {
+
+    private byte[] generate(final PDFParams params, final int pages) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params);
+        for (var i = 0; i < pages; ++i) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                g.setColor(Color.BLACK);
+                g.setFont(new Font("Serif", Font.PLAIN, 12));
+                g.drawString("Page " + (i + 1), 100, 100);
+                // Pages of different lengths
+                for (var j = 0; j < i % 5; ++j) {
+                    g.drawLine(0, j * 10, 200, j * 13);
+                }
+            }
+        }
+        pdf.close();
+        builder.close();
+        return out.toByteArray();
+    }
+
+    private static long number(final String dict, final String key) {
+        final var m = Pattern.compile("/" + key + "\\s+(\\d+)").matcher(dict);
+        assertTrue(m.find(), "/" + key);
+        return Long.parseLong(m.group(1));
+    }
+
+    /**
+     * Reads a cross-reference table, and the ones it refers to if requested,
+     * and returns the trailer of the first.
+     */
+    private static String readXref(final String pdf, final int pos, final Map<Integer, Long> offsets,
+            final boolean prev) {
+        assertTrue(pdf.startsWith("xref", pos), "xref at " + pos);
+        final var subsection = Pattern.compile("\\s*(\\d+) (\\d+)\\r\\n").matcher(pdf);
+        var i = pos + 4;
+        while (subsection.find(i) && subsection.start() == i) {
+            final var first = Integer.parseInt(subsection.group(1));
+            final var count = Integer.parseInt(subsection.group(2));
+            i = subsection.end();
+            for (var k = 0; k < count; ++k, i += 20) {
+                if (pdf.charAt(i + 17) == 'n') {
+                    offsets.put(first + k, Long.parseLong(pdf.substring(i, i + 10)));
+                }
+            }
+        }
+        final var trailer = pdf.substring(pdf.indexOf("trailer", i), pdf.indexOf(">>", i) + 2);
+        if (prev && trailer.contains("/Prev")) {
+            readXref(pdf, (int) number(trailer, "Prev"), offsets, true);
+        }
+        return trailer;
+    }
+
+    /**
+     * Returns the first object number and the number of entries of each
+     * subsection of a cross-reference table.
+     */
+    private static List<int[]> subsections(final String pdf, final int pos) {
+        final var subsection = Pattern.compile("\\s*(\\d+) (\\d+)\\r\\n").matcher(pdf);
+        final var subsections = new ArrayList<int[]>();
+        var i = pos + 4;
+        while (subsection.find(i) && subsection.start() == i) {
+            final var count = Integer.parseInt(subsection.group(2));
+            subsections.add(new int[] { Integer.parseInt(subsection.group(1)), count });
+            i = subsection.end() + count * 20;
+        }
+        return subsections;
+    }
+
+    private static class BitReader {
+        private final byte[] data;
+
+        private int pos;
+
+        BitReader(final byte[] data, final int offset) {
+            this.data = data;
+            this.pos = offset * 8;
+        }
+
+        long read(final int bits) {
+            var value = 0L;
+            for (var i = 0; i < bits; ++i, ++this.pos) {
+                value = (value << 1) | ((this.data[this.pos >> 3] >> (7 - (this.pos & 7))) & 1);
+            }
+            return value;
+        }
+
+        long[] readItem(final int count, final long min, final int bits) {
+            final var values = new long[count];
+            for (var i = 0; i < count; ++i) {
+                values[i] = min + this.read(bits);
+            }
+            this.align();
+            return values;
+        }
+
+        void align() {
+            this.pos = (this.pos + 7) & ~7;
+        }
+    }
+
+    /**
+     * Positions read from a linearized file.
+     *
+     * @param offsets         offsets of all objects by object number
+     * @param firstPageEnd    the end of the first page section (/E)
+     * @param groups          offsets of the shared object groups
+     * @param firstPageGroups the number of groups in the first page section
+     * @param pageGroups      the groups referenced by each page
+     */
+    private record Layout(Map<Integer, Long> offsets, long firstPageEnd, List<Long> groups, int firstPageGroups,
+            List<List<Integer>> pageGroups) {
+    }
+
+    /**
+     * Checks the linearization dictionary, the cross-reference tables and the
+     * hint tables against the objects of the file.
+     */
+    private static Layout check(final byte[] data, final int pages) {
+        final var pdf = new String(data, StandardCharsets.ISO_8859_1);
+
+        // The linearization dictionary is the first object
+        final var lin = Pattern.compile("\\A%PDF-1\\.\\d\\r\\n\\d+ 0 obj\\s*<<\\s*/Linearized 1([^>]*)>>")
+                .matcher(pdf);
+        assertTrue(lin.find());
+        final var dict = lin.group(1);
+        assertEquals(data.length, number(dict, "L"));
+        assertEquals(pages, number(dict, "N"));
+        final var h = Pattern.compile("/H\\s*\\[\\s*(\\d+)\\s+(\\d+)\\s*\\]").matcher(dict);
+        assertTrue(h.find());
+        final var hintOffset = Long.parseLong(h.group(1));
+        final var hintLength = Long.parseLong(h.group(2));
+
+        // The last startxref refers to the first-page table, which refers to the
+        // main table
+        final var startxref = pdf.lastIndexOf("startxref");
+        final var firstPageXref = Integer.parseInt(pdf.substring(startxref + 9).trim().split("\\s")[0]);
+        assertTrue(firstPageXref < pdf.indexOf(" obj", lin.end()));
+        final var offsets = new HashMap<Integer, Long>();
+        final var trailer = readXref(pdf, firstPageXref, offsets, true);
+        for (final var entry : offsets.entrySet()) {
+            assertTrue(pdf.startsWith(entry.getKey() + " 0 obj", entry.getValue().intValue()),
+                    "Object " + entry.getKey());
+        }
+        // /T is the end of line before the first entry of the main table
+        final var mainXref = (int) number(trailer, "Prev");
+        assertEquals(pdf.indexOf("\r\n", pdf.indexOf("\r\n", mainXref) + 2) + 1, number(dict, "T"));
+
+        // Pages in order
+        final var root = (int) number(trailer, "Root");
+        final var pagesRoot = (int) number(objectAt(pdf, offsets.get(root)), "Pages");
+        final var kids = Pattern.compile("(\\d+) 0 R")
+                .matcher(objectAt(pdf, offsets.get(pagesRoot)).replaceFirst("(?s).*/Kids", ""));
+        final var pageObjects = new ArrayList<Integer>();
+        while (kids.find() && pageObjects.size() < pages) {
+            pageObjects.add(Integer.parseInt(kids.group(1)));
+        }
+        assertEquals(pageObjects.get(0).longValue(), number(dict, "O"));
+        final var firstPageEnd = number(dict, "E");
+        assertEquals(offsets.get(pageObjects.get(1)).longValue(), firstPageEnd);
+
+        // The first-page table holds the objects before the end of the first page
+        final var firstPageOffsets = new HashMap<Integer, Long>();
+        readXref(pdf, firstPageXref, firstPageOffsets, false);
+        for (final var entry : offsets.entrySet()) {
+            assertEquals(entry.getValue() < firstPageEnd, firstPageOffsets.containsKey(entry.getKey()),
+                    "Object " + entry.getKey());
+        }
+
+        // Each table is a single subsection: the main one from 0, and the
+        // first-page one up to the end
+        final var firstPageSubsections = subsections(pdf, firstPageXref);
+        final var mainSubsections = subsections(pdf, mainXref);
+        assertEquals(1, firstPageSubsections.size());
+        assertEquals(1, mainSubsections.size());
+        assertEquals(0, mainSubsections.get(0)[0]);
+        assertEquals(mainSubsections.get(0)[1], firstPageSubsections.get(0)[0]);
+        assertEquals(number(trailer, "Size"), firstPageSubsections.get(0)[0] + firstPageSubsections.get(0)[1]);
+        final var numbers = new HashMap<Long, Integer>();
+        offsets.forEach((objectNumber, offset) -> numbers.put(offset, objectNumber));
+
+        // Hint stream
+        final var hintDict = objectAt(pdf, hintOffset);
+        final var streamStart = pdf.indexOf("stream\r\n", (int) hintOffset) + 8;
+        final var hints = new byte[(int) number(hintDict, "Length")];
+        System.arraycopy(data, streamStart, hints, 0, hints.length);
+        assertTrue(pdf.substring((int) hintOffset, (int) (hintOffset + hintLength)).endsWith("endobj\r\n"));
+
+        final var bits = new BitReader(hints, 0);
+        final var header = new long[13];
+        final int[] widths = { 32, 32, 16, 32, 16, 32, 16, 32, 16, 16, 16, 16, 16 };
+        for (var i = 0; i < header.length; ++i) {
+            header[i] = bits.read(widths[i]);
+        }
+        final var objects = bits.readItem(pages, header[0], (int) header[2]);
+        final var lengths = bits.readItem(pages, header[3], (int) header[4]);
+        final var shared = bits.readItem(pages, 0, (int) header[9]);
+        final var pageGroups = new ArrayList<List<Integer>>();
+        for (var i = 0; i < pages; ++i) {
+            final var groups = new ArrayList<Integer>();
+            for (var j = 0; j < shared[i]; ++j) {
+                groups.add((int) bits.read((int) header[10]));
+            }
+            pageGroups.add(groups);
+        }
+        bits.align();
+        bits.readItem((int) Arrays.stream(shared).sum(), 0, (int) header[11]);
+        final var contentOffsets = bits.readItem(pages, header[5], (int) header[6]);
+        final var contentLengths = bits.readItem(pages, header[7], (int) header[8]);
+
+        // Hint table offsets leave out the hint stream. The objects of the first
+        // page are numbered from its page object, and those of the other pages
+        // from 1 in page order.
+        final List<Long> sorted = offsets.values().stream().sorted().toList();
+        var location = header[1];
+        var nextObject = 1;
+        for (var i = 0; i < pages; ++i) {
+            final var start = adjust(location, hintOffset, hintLength);
+            final var end = adjust(location + lengths[i], hintOffset, hintLength);
+            final var pageObject = pageObjects.get(i);
+            assertEquals(offsets.get(pageObject).longValue(), start, "Page " + (i + 1));
+            final var pageOffsets = sorted.stream().filter(p -> p >= start && p < end).toList();
+            assertEquals(pageOffsets.size(), objects[i]);
+            final var firstObject = i == 0 ? (int) number(dict, "O") : nextObject;
+            for (var j = 0; j < pageOffsets.size(); ++j) {
+                assertEquals(firstObject + j, numbers.get(pageOffsets.get(j)), "Page " + (i + 1));
+            }
+            if (i > 0) {
+                nextObject += pageOffsets.size();
+            }
+
+            final var contents = (int) number(objectAt(pdf, start).replace(" 0 R", ""), "Contents");
+            final var contentsStart = adjust(location + contentOffsets[i], hintOffset, hintLength);
+            assertEquals(offsets.get(contents).longValue(), contentsStart);
+            assertTrue(pdf.substring((int) contentsStart, (int) (contentsStart + contentLengths[i]))
+                    .endsWith("endobj\r\n"));
+            location += lengths[i];
+        }
+        final var pagesEnd = location;
+
+        // Shared object hint table: a group for each object of the first page,
+        // then for each object following the last page
+        final var so = new BitReader(hints, (int) number(hintDict, "S"));
+        final var firstSharedObject = (int) so.read(32);
+        final var firstSharedOffset = so.read(32);
+        final var firstPageGroups = (int) so.read(32);
+        final var groupCount = (int) so.read(32);
+        final var groupObjectsBits = (int) so.read(16);
+        final var minGroupLength = so.read(32);
+        final var groupLengthBits = (int) so.read(16);
+        final var groupLengths = so.readItem(groupCount, minGroupLength, groupLengthBits);
+        for (final var signature : so.readItem(groupCount, 0, 1)) {
+            assertEquals(0, signature);
+        }
+        for (final var groupObjects : so.readItem(groupCount, 1, groupObjectsBits)) {
+            assertEquals(1, groupObjects);
+        }
+        assertEquals(pagesEnd, firstSharedOffset);
+        assertEquals(nextObject, firstSharedObject);
+        assertEquals(offsets.get(firstSharedObject).longValue(), adjust(firstSharedOffset, hintOffset, hintLength));
+        assertEquals(objects[0], firstPageGroups);
+
+        final var groups = new ArrayList<Long>();
+        var groupOffset = header[1];
+        for (var i = 0; i < groupCount; ++i) {
+            if (i == firstPageGroups) {
+                assertEquals(header[1] + lengths[0], groupOffset);
+                groupOffset = firstSharedOffset;
+            }
+            // One object each, numbered on from the first of its section
+            final var offset = adjust(groupOffset, hintOffset, hintLength);
+            final var groupObject = i < firstPageGroups ? number(dict, "O") + i
+                    : firstSharedObject + i - firstPageGroups;
+            assertEquals(offsets.get((int) groupObject).longValue(), offset, "Group " + i);
+            groups.add(offset);
+            groupOffset += groupLengths[i];
+        }
+        assertEquals(mainXref, adjust(groupOffset, hintOffset, hintLength));
+        for (final var refs : pageGroups) {
+            for (final var group : refs) {
+                assertTrue(group < groupCount);
+            }
+        }
+        return new Layout(offsets, firstPageEnd, groups, firstPageGroups, pageGroups);
+    }
+
+    @Test
+    public void testHintTables() throws Exception {
+        final var pages = 20;
+        final var data = this.generate(PDFParams.createDefault().withLinearized(true), pages);
+        check(data, pages);
+
+        try (final var doc = Loader.loadPDF(data)) {
+            assertEquals(pages, doc.getNumberOfPages());
+            final var stripper = new PDFTextStripper();
+            stripper.setStartPage(pages);
+            stripper.setEndPage(pages);
+            assertTrue(stripper.getText(doc).contains("Page " + pages));
+        }
+    }
+
+    private static void drawText(final PDFGC gc, final String text) {
+        final var lgh = new SimpleLayoutGlyphHandler();
+        lgh.setGC(gc);
+        gc.begin();
+        gc.transform(AffineTransform.getTranslateInstance(50, 50));
+        try (final var tlf = new TextLayoutHandler(gc, TextBreakingRulesBundle.getRules("en"), lgh)) {
+            tlf.setFontFamilies(FontFamilyList.create("Embedded"));
+            tlf.setFontSize(12);
+            tlf.characters(text);
+            tlf.flush();
+        }
+        gc.end();
+    }
+
+    private static Image image(final PDFWriterImpl pdf, final int width, final Color color) throws Exception {
+        final var image = new BufferedImage(width, 20, BufferedImage.TYPE_INT_RGB);
+        final var g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, 20);
+        g.dispose();
+        return pdf.addImage(image);
+    }
+
+    @Test
+    public void testFirstPageResources() throws Exception {
+        try (final var fsm = new PDFFontSourceManager()) {
+            final var face = new FontFace();
+            face.src = new FileSource(new File("src/test/resources/data/test.ttf"));
+            face.fontFamily = FontFamilyList.create("Embedded");
+            fsm.addFontFace(face);
+
+            final var out = new ByteArrayOutputStream();
+            final var builder = new StreamFragmentedOutput(out);
+            final var pdf = new PDFWriterImpl(builder,
+                    PDFParams.createDefault().withLinearized(true).withFontSourceManager(fsm));
+            final var pages = 3;
+            for (var i = 0; i < pages; ++i) {
+                try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                    // The test font has digits only
+                    drawText(gc, String.valueOf(i + 1));
+                    if (i != 1) {
+                        // The image of the first page, and another one used only by the last
+                        gc.drawImage(image(pdf, i == 0 ? 40 : 30, i == 0 ? Color.RED : Color.BLUE));
+                    }
+                }
+            }
+            pdf.close();
+            builder.close();
+            final var data = out.toByteArray();
+            final var pdfString = new String(data, StandardCharsets.ISO_8859_1);
+            final var layout = check(data, pages);
+
+            // The font, with its descriptor and program, and the first image go
+            // before the end of the first page; the other image follows the pages
+            final var fontObjects = new ArrayList<Integer>();
+            var firstImage = -1;
+            var lastImage = -1;
+            for (final var entry : layout.offsets().entrySet()) {
+                final var object = objectAt(pdfString, entry.getValue());
+                if (object.contains("/Type /Font") || object.contains("/FontDescriptor")) {
+                    fontObjects.add(entry.getKey());
+                    final var file = Pattern.compile("/FontFile\\d?\\s+(\\d+) 0 R").matcher(object);
+                    if (file.find()) {
+                        fontObjects.add(Integer.parseInt(file.group(1)));
+                    }
+                } else if (object.contains("/Subtype /Image")) {
+                    if (number(object, "Width") == 40) {
+                        firstImage = entry.getKey();
+                    } else {
+                        lastImage = entry.getKey();
+                    }
+                }
+            }
+            assertTrue(fontObjects.size() >= 3, fontObjects.toString());
+            assertTrue(pdfString.contains("/FontFile"));
+            for (final var object : fontObjects) {
+                assertTrue(layout.offsets().get(object) < layout.firstPageEnd(), "Object " + object);
+            }
+            assertTrue(layout.offsets().get(firstImage) < layout.firstPageEnd());
+            assertTrue(layout.offsets().get(lastImage) > layout.firstPageEnd());
+
+            // Each page refers to the groups of the resources it uses
+            final var groupOf = new HashMap<Long, Integer>();
+            for (var i = 0; i < layout.groups().size(); ++i) {
+                groupOf.put(layout.groups().get(i), i);
+            }
+            final var fontGroup = groupOf.get(layout.offsets().get(fontObjects.get(0)));
+            final var firstImageGroup = groupOf.get(layout.offsets().get(firstImage));
+            final var lastImageGroup = groupOf.get(layout.offsets().get(lastImage));
+            assertTrue(fontGroup < layout.firstPageGroups());
+            assertTrue(firstImageGroup < layout.firstPageGroups());
+            assertTrue(lastImageGroup >= layout.firstPageGroups());
+            assertEquals(Set.of(fontGroup, firstImageGroup), Set.copyOf(layout.pageGroups().get(0)));
+            assertEquals(Set.of(fontGroup), Set.copyOf(layout.pageGroups().get(1)));
+            assertEquals(Set.of(fontGroup, lastImageGroup), Set.copyOf(layout.pageGroups().get(2)));
+
+            try (final var doc = Loader.loadPDF(data)) {
+                assertEquals(pages, doc.getNumberOfPages());
+            }
+        }
+    }
+
+    private static long adjust(final long offset, final long hintOffset, final long hintLength) {
+        return offset >= hintOffset ? offset + hintLength : offset;
+    }
+
+    private static String objectAt(final String pdf, final long offset) {
+        return pdf.substring((int) offset, pdf.indexOf("endobj", (int) offset));
+    }
+}
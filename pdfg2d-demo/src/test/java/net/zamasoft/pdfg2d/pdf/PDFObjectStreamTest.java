@@ -0,0 +1,81 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams.Version;
+
+public class PDFObjectStreamTest {
+
+    @TempDir
+    File tempDir;
+
+    private void generate(final File file, final PDFParams params, final int pages) throws Exception {
+        try (final var out = new FileOutputStream(file)) {
+            final var builder = new StreamFragmentedOutput(out);
+            final var pdf = new PDFWriterImpl(builder, params);
+            for (var i = 0; i < pages; ++i) {
+                try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                    final var g = new BridgeGraphics2D(gc);
+                    g.setColor(Color.BLACK);
+                    g.drawString("Page " + (i + 1), 100, 100);
+                    g.setColor(new Color(255, 0, 0, 128));
+                    g.fillRect(100, 200, 100, 100);
+                }
+            }
+            pdf.close();
+            builder.close();
+        }
+    }
+
+    @Test
+    public void testObjectStreams() throws Exception {
+        final var file = new File(tempDir, "objstm.pdf");
+        final var meta = new PDFMetaInfo();
+        meta.setTitle("Object Stream Test");
+        final var params = PDFParams.createDefault().withMetaInfo(meta).withObjectStreams(true);
+        // More pages than fit in one object stream
+        this.generate(file, params, 150);
+
+        final var raw = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        assertTrue(raw.contains("/ObjStm"), "Objects should be packed into object streams");
+        assertTrue(raw.contains("/XRef"), "A cross-reference stream should be written");
+        assertFalse(raw.contains("\r\ntrailer"), "No classic trailer should be written");
+
+        try (final var doc = Loader.loadPDF(file)) {
+            assertEquals(150, doc.getNumberOfPages());
+            assertEquals("Object Stream Test", doc.getDocumentInformation().getTitle());
+        }
+    }
+
+    @Test
+    public void testObjectStreamsIgnoredBeforePDF15() throws Exception {
+        final var file = new File(tempDir, "objstm14.pdf");
+        final var params = PDFParams.createDefault().withVersion(Version.V_1_4).withObjectStreams(true);
+        this.generate(file, params, 2);
+
+        final var raw = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(raw.contains("/ObjStm"), "Object streams require PDF 1.5");
+        assertTrue(raw.contains("\r\ntrailer"), "A classic trailer should be written");
+
+        try (final var doc = Loader.loadPDF(file)) {
+            assertEquals(2, doc.getNumberOfPages());
+        }
+    }
+}
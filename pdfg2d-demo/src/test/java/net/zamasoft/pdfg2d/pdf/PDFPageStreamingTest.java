@@ -0,0 +1,116 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFPageStreamingTest {
+
+    private static void drawPage(final PDFWriterImpl pdf, final int i) throws Exception {
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setColor(Color.BLACK);
+            g.setFont(new Font("Serif", Font.PLAIN, 12));
+            g.drawString("Page " + (i + 1), 100, 100);
+            for (var j = 0; j < 20; ++j) {
+                g.setColor(new Color(j * 10, i % 256, 128));
+                g.fillRect(j * 5, j * 7 + 200, 50, 30);
+            }
+        }
+    }
+
+    /** Output that tells how many fragments it still holds. */
+    private static class CountingOutput extends StreamFragmentedOutput {
+        CountingOutput(final OutputStream out) {
+            super(out);
+        }
+
+        /** Fragments not yet written out, which are replaced by null once they are. */
+        int liveFragments() {
+            return (int) this.fragments.stream().filter(Objects::nonNull).count();
+        }
+
+        long memoryUsage() {
+            return this.currentMemoryUsage;
+        }
+    }
+
+    @Test
+    public void testPagesWrittenOnClose() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, PDFParams.createDefault().withPageStreaming(true));
+        var written = 0;
+        for (var i = 0; i < 50; ++i) {
+            drawPage(pdf, i);
+            assertTrue(out.size() > written, "Page " + (i + 1) + " must be written when closed");
+            written = out.size();
+        }
+        pdf.close();
+        builder.close();
+
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(50, doc.getNumberOfPages());
+            final var stripper = new PDFTextStripper();
+            stripper.setStartPage(50);
+            stripper.setEndPage(50);
+            assertTrue(stripper.getText(doc).contains("Page 50"));
+        }
+    }
+
+    @Test
+    public void testObjectStreams() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var params = PDFParams.createDefault().withPageStreaming(true).withObjectStreams(true)
+                .withVersion(PDFParams.Version.V_1_5);
+        final var pdf = new PDFWriterImpl(builder, params);
+        for (var i = 0; i < 30; ++i) {
+            drawPage(pdf, i);
+        }
+        pdf.close();
+        builder.close();
+
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(30, doc.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testFragmentsReleased() throws Exception {
+        final var builder = new CountingOutput(OutputStream.nullOutputStream());
+        final var pdf = new PDFWriterImpl(builder, PDFParams.createDefault().withPageStreaming(true));
+        var i = 0;
+        for (; i < 10; ++i) {
+            drawPage(pdf, i);
+        }
+        final var live = builder.liveFragments();
+        final var memory = builder.memoryUsage();
+        for (; i < 500; ++i) {
+            drawPage(pdf, i);
+        }
+
+        // The fragments of closed pages have been written out and their buffers
+        // reused, so nothing held grows with the number of pages.
+        assertEquals(live, builder.liveFragments());
+        assertTrue(builder.memoryUsage() <= memory,
+                "Buffers grew from " + memory + " to " + builder.memoryUsage() + " bytes");
+        pdf.close();
+        builder.close();
+    }
+}
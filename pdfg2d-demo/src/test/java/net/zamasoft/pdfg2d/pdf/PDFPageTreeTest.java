@@ -0,0 +1,85 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFPageTreeTest {
+
+    private byte[] generate(final PDFParams params, final int pages) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params);
+        for (var i = 0; i < pages; ++i) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                g.setColor(Color.BLACK);
+                g.setFont(new Font("Serif", Font.PLAIN, 12));
+                g.drawString("Page " + (i + 1), 100, 100);
+            }
+        }
+        pdf.close();
+        builder.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks the kids and counts of a node and returns the number of pages
+     * below it.
+     */
+    private int checkNode(final COSDictionary node, final int fanout) {
+        if (!COSName.PAGES.equals(node.getCOSName(COSName.TYPE))) {
+            return 1;
+        }
+        final var kids = node.getCOSArray(COSName.KIDS);
+        assertTrue(kids.size() <= fanout, "Node has " + kids.size() + " kids");
+        var count = 0;
+        for (var i = 0; i < kids.size(); ++i) {
+            final var kid = (COSDictionary) kids.getObject(i);
+            assertSame(node, kid.getCOSDictionary(COSName.PARENT));
+            count += this.checkNode(kid, fanout);
+        }
+        assertEquals(count, node.getInt(COSName.COUNT));
+        return count;
+    }
+
+    @Test
+    public void testBalancedTree() throws Exception {
+        final var params = PDFParams.createDefault().withPageTreeFanout(8);
+        try (final var doc = Loader.loadPDF(this.generate(params, 300))) {
+            assertEquals(300, doc.getNumberOfPages());
+            assertEquals(300, this.checkNode(doc.getPages().getCOSObject(), 8));
+
+            final var stripper = new PDFTextStripper();
+            stripper.setStartPage(300);
+            stripper.setEndPage(300);
+            assertTrue(stripper.getText(doc).contains("Page 300"));
+        }
+    }
+
+    @Test
+    public void testStreamingWithObjectStreams() throws Exception {
+        final var params = PDFParams.createDefault().withPageTreeFanout(32).withPageStreaming(true)
+                .withObjectStreams(true).withVersion(PDFParams.Version.V_1_5);
+        try (final var doc = Loader.loadPDF(this.generate(params, 1025))) {
+            assertEquals(1025, doc.getNumberOfPages());
+            assertEquals(1025, this.checkNode(doc.getPages().getCOSObject(), 32));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.gc.font.FontFace;
+import net.zamasoft.pdfg2d.gc.font.FontFamilyList;
+import net.zamasoft.pdfg2d.gc.text.TextLayoutHandler;
+import net.zamasoft.pdfg2d.gc.text.breaking.TextBreakingRulesBundle;
+import net.zamasoft.pdfg2d.gc.text.layout.SimpleLayoutGlyphHandler;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.protocol.file.FileSource;
+
+public class PDFParallelRenderingTest {
+
+    private static final int PAGES = 50;
+
+    /** Rows of an invoice, computed apart from the writer. */
+    private record Invoice(String title, List<String> rows) {
+    }
+
+    /** Orders of the digits drawn with the embedded font. */
+    private static final String[] DIGITS = { "3", "21", "123", "312", "2", "231" };
+
+    /** An image drawn on every fifth page, which is loaded by the first of them. */
+    private static final BufferedImage LOGO;
+
+    static {
+        LOGO = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        final var g = LOGO.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, 40, 20);
+        g.dispose();
+    }
+
+    private static class InvoiceRenderer implements PageRenderer<Invoice> {
+        /** Names of the threads that drew each page. */
+        final Map<Integer, List<String>> drawThreads = new ConcurrentHashMap<>();
+
+        @Override
+        public Invoice prepare(final int index) {
+            final var rows = new ArrayList<String>();
+            for (var i = 0; i < 20 + index % 7; ++i) {
+                rows.add("Item " + (index * 31 + i) + " x " + (i % 5 + 1));
+            }
+            return new Invoice("Invoice " + index, rows);
+        }
+
+        @Override
+        public void draw(final int index, final Invoice page, final PDFWriter pdf) throws IOException {
+            this.drawThreads.computeIfAbsent(index, i -> new CopyOnWriteArrayList<>())
+                    .add(Thread.currentThread().getName());
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                final var g = new BridgeGraphics2D(gc);
+                // Some pages use a font of their own, which is named when first drawn
+                g.setFont(new Font(index % 3 == 0 ? "SansSerif" : "Serif", Font.PLAIN, 14));
+                g.drawString(page.title(), 50, 60);
+                g.setFont(new Font("Serif", Font.PLAIN, 10));
+                for (var i = 0; i < page.rows().size(); ++i) {
+                    g.setColor(i % 2 == 0 ? Color.LIGHT_GRAY : Color.WHITE);
+                    g.fill(new Rectangle2D.Double(50, 90 + i * 14, 495, 14));
+                    g.setColor(Color.BLACK);
+                    g.drawString(page.rows().get(i), 55, 100 + i * 14);
+                }
+
+                // Graphics states and shadings shared with other pages
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, .3f + index % 4 * .2f));
+                g.setPaint(new GradientPaint(0, 500, Color.RED, 100 + index % 3 * 100, 500, Color.BLUE));
+                g.fill(new Rectangle2D.Double(50, 500, 495, 50));
+
+                // Glyphs of the embedded font, first used in a different order on each page
+                drawText(gc, DIGITS[index % DIGITS.length], 50, 600);
+
+                if (index % 5 == 0) {
+                    gc.transform(AffineTransform.getTranslateInstance(50, 700));
+                    gc.drawImage(pdf.addImage(LOGO));
+                }
+            }
+        }
+    }
+
+    private static void drawText(final PDFGC gc, final String text, final double x, final double y) {
+        final var lgh = new SimpleLayoutGlyphHandler();
+        lgh.setGC(gc);
+        gc.begin();
+        gc.transform(AffineTransform.getTranslateInstance(x, y));
+        try (final var tlf = new TextLayoutHandler(gc, TextBreakingRulesBundle.getRules("en"), lgh)) {
+            tlf.setFontFamilies(FontFamilyList.create("Embedded"));
+            tlf.setFontSize(12);
+            tlf.characters(text);
+            tlf.flush();
+        }
+        gc.end();
+    }
+
+    /**
+     * Generates the invoices.
+     *
+     * @param threads the number of threads, or 0 to draw the pages one after
+     *                another without rendering them
+     */
+    private static byte[] generate(final int threads, final InvoiceRenderer renderer) throws Exception {
+        final var meta = new PDFMetaInfo();
+        meta.setCreationDate(0);
+        meta.setModDate(0);
+        final var params = PDFParams.createDefault().withFileId(new byte[16]).withMetaInfo(meta);
+
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params);
+        final var face = new FontFace();
+        face.src = new FileSource(new File("src/test/resources/data/test.ttf"));
+        face.fontFamily = FontFamilyList.create("Embedded");
+        pdf.getFontManager().addFontFace(face);
+        if (threads == 0) {
+            for (var i = 0; i < PAGES; ++i) {
+                renderer.draw(i, renderer.prepare(i), pdf);
+            }
+        } else {
+            pdf.renderPages(PAGES, threads, renderer);
+        }
+        pdf.close();
+        builder.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSameOutputAsSerial() throws Exception {
+        final var serial = generate(0, new InvoiceRenderer());
+        for (final var threads : new int[] { 1, 4 }) {
+            final var renderer = new InvoiceRenderer();
+            final var parallel = generate(threads, renderer);
+            assertArrayEquals(serial, parallel, "The number of threads must not change the output");
+
+            // The pages are drawn on the workers, but those loading an image are
+            // drawn again on the writer
+            for (var i = 0; i < PAGES; ++i) {
+                final var names = renderer.drawThreads.get(i);
+                assertEquals("pdfg2d-renderer", names.get(0), "Page " + i);
+                if (i % 5 != 0) {
+                    assertEquals(1, names.size(), "Page " + i);
+                }
+            }
+            assertTrue(renderer.drawThreads.get(0).size() == 2);
+        }
+
+        try (final var doc = Loader.loadPDF(serial)) {
+            assertEquals(PAGES, doc.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        final var builder = new StreamFragmentedOutput(new ByteArrayOutputStream());
+        final var pdf = new PDFWriterImpl(builder);
+        final var e = assertThrows(IOException.class, () -> pdf.renderPages(10, 2, new PageRenderer<Object>() {
+            @Override
+            public Object prepare(final int index) throws IOException {
+                if (index == 5) {
+                    throw new IOException("Missing data");
+                }
+                return index;
+            }
+
+            @Override
+            public void draw(final int index, final Object page, final PDFWriter pdf) throws IOException {
+                pdf.nextPage(595, 842).close();
+            }
+        }));
+        assertEquals("Missing data", e.getMessage());
+    }
+}
@@ -0,0 +1,80 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.TexturePaint;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFPatternTest {
+
+    private static int count(final String pdf, final String regex) {
+        final var m = Pattern.compile(regex).matcher(pdf);
+        var count = 0;
+        while (m.find()) {
+            ++count;
+        }
+        return count;
+    }
+
+    @Test
+    public void testSharedPatternCell() throws Exception {
+        final var tile = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        final var tg = tile.createGraphics();
+        tg.setColor(Color.WHITE);
+        tg.fillRect(0, 0, 8, 8);
+        tg.setColor(Color.BLUE);
+        tg.drawLine(0, 8, 8, 0);
+        tg.dispose();
+
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder,
+                PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+        final var panels = 12;
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var g = new BridgeGraphics2D(gc);
+            for (var i = 0; i < panels; ++i) {
+                // The copy shares the graphics context, so its state is saved around it
+                gc.begin();
+                final var panel = (Graphics2D) g.create();
+                panel.translate(50 + (i % 4) * 130, 50 + (i / 4) * 200);
+                panel.rotate(i * 0.05);
+                panel.setPaint(new TexturePaint(tile, new Rectangle(0, 0, 8, 8)));
+                panel.fill(new Rectangle2D.Double(0, 0, 100, 100));
+                // Same matrix, same pattern
+                panel.fill(new Rectangle2D.Double(0, 110, 100, 20));
+                panel.dispose();
+                gc.end();
+            }
+        }
+        pdf.close();
+        builder.close();
+
+        // One pattern per matrix, all drawing a single cell
+        final var data = out.toByteArray();
+        final var str = new String(data, StandardCharsets.ISO_8859_1);
+        assertEquals(panels, count(str, "/PatternType 1"));
+        assertEquals(1, count(str, "/Subtype /Form"));
+        assertEquals(panels, count(str, "stream\\r\\n/X0 Do"));
+
+        try (final var doc = Loader.loadPDF(data)) {
+            assertEquals(1, doc.getNumberOfPages());
+        }
+    }
+}
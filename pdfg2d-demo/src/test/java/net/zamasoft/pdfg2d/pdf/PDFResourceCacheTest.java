@@ -0,0 +1,74 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.gc.paint.Color;
+import net.zamasoft.pdfg2d.gc.paint.LinearGradient;
+import net.zamasoft.pdfg2d.gc.paint.RGBColor;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFResourceCacheTest {
+
+    @Test
+    public void testQuantizedKeys() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder,
+                PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+        final var colors = new Color[] { RGBColor.create(1, 0, 0), RGBColor.create(0, 0, 1) };
+        for (var page = 0; page < 2; ++page) {
+            try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+                for (var i = 0; i < 10; ++i) {
+                    // Differences far below the precision of the output
+                    final var e = i * 1e-9;
+                    gc.setFillPaint(new LinearGradient(0, 0, 100 + e, 0, new double[] { 0, 0.5 + e },
+                            colors, new AffineTransform()));
+                    gc.setFillAlpha(0.5f + (float) e);
+                    gc.fill(new Rectangle2D.Double(0, i * 20, 100, 10));
+                }
+            }
+        }
+        pdf.close();
+        builder.close();
+
+        final var cache = pdf.getResourceCache();
+        // One shading and one graphics state for the whole document
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getMisses());
+        assertTrue(cache.getHits() >= 2);
+
+        final var str = out.toString(StandardCharsets.ISO_8859_1);
+        assertEquals(1, str.split("/ShadingType", -1).length - 1);
+        assertEquals(1, str.split("/ca ", -1).length - 1);
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            assertEquals(2, doc.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testCapacity() {
+        final var cache = new ResourceCache(2, 2);
+        cache.put("a", "R1");
+        cache.put("b", "R2");
+        assertEquals("R1", cache.get("a"));
+        cache.put("c", "R3");
+        // The least recently used entry is dropped
+        assertEquals(null, cache.get("b"));
+        assertEquals("R1", cache.get("a"));
+        assertEquals(2, cache.size());
+        assertEquals(2.0 / 3.0, cache.getHitRate(), 1e-9);
+        assertEquals(1.23, cache.quantize(1.234), 1e-12);
+    }
+}
@@ -0,0 +1,85 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.gc.ShapeCache;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFShapeCacheTest {
+
+    private static byte[] generate(final PDFWriter[] writer, final PDFParams params) throws Exception {
+        final var star = new Path2D.Double();
+        star.moveTo(0, -10);
+        for (var k = 1; k < 10; ++k) {
+            final var r = k % 2 == 1 ? 4 : 10;
+            final var t = Math.PI * k / 5;
+            star.lineTo(r * Math.sin(t), -r * Math.cos(t));
+        }
+        star.closePath();
+
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params);
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var g = new BridgeGraphics2D(gc);
+            for (var i = 0; i < 100; ++i) {
+                // The copy shares the graphics context, so its state is saved around it
+                gc.begin();
+                final var marker = (Graphics2D) g.create();
+                marker.translate(30 + (i % 20) * 27, 40 + (i / 20) * 40);
+                marker.setColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+                marker.fill(star);
+                marker.setStroke(new BasicStroke(1));
+                marker.setColor(Color.BLACK);
+                marker.draw(star);
+                marker.dispose();
+                gc.end();
+            }
+        }
+        pdf.close();
+        builder.close();
+        writer[0] = pdf;
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSharedMarkers() throws Exception {
+        final var params = PDFParams.createDefault().withCompression(PDFParams.Compression.NONE);
+        final var writer = new PDFWriter[1];
+        final var plain = generate(writer, params);
+        assertNull(ShapeCache.getInstance(writer[0]));
+
+        final var shared = generate(writer, params.withShapeCacheThreshold(3));
+        final var cache = ShapeCache.getInstance(writer[0]);
+        // The fill and the stroke of the marker are a form each
+        assertEquals(2, cache.getFormCount());
+        assertEquals(6, cache.getMisses());
+        assertEquals(194, cache.getHits());
+        assertTrue(shared.length < plain.length);
+
+        final var str = new String(shared, StandardCharsets.ISO_8859_1);
+        assertTrue(str.contains("/Subtype /Form"));
+        assertTrue(str.contains("/X0 Do"));
+        assertTrue(str.contains("/X1 Do"));
+
+        try (final var doc = Loader.loadPDF(shared)) {
+            assertEquals(1, doc.getNumberOfPages());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFShapePlotTest {
+
+    private static String contents(final Shape shape, final boolean fill) throws Exception {
+        return contents(shape, fill, PDFParams.createDefault());
+    }
+
+    private static String contents(final Shape shape, final boolean fill, final PDFParams params) throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder, params.withCompression(PDFParams.Compression.NONE));
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            if (fill) {
+                gc.fill(shape);
+            } else {
+                gc.draw(shape);
+            }
+        }
+        pdf.close();
+        builder.close();
+
+        // The page contents are the last stream before the page tree
+        final var str = out.toString(StandardCharsets.ISO_8859_1);
+        final var end = str.lastIndexOf("\r\nendstream");
+        return str.substring(str.lastIndexOf("stream\r\n", end) + 8, end);
+    }
+
+    @Test
+    public void testRoundRectangle() throws Exception {
+        final var shapes = new RoundRectangle2D[] { new RoundRectangle2D.Double(10, 20, 100, 50, 10, 20),
+                new RoundRectangle2D.Double(10, 20, 100, 50, 200, 50),
+                new RoundRectangle2D.Double(10, 20, 30, 40, 30, 40) };
+        for (final var shape : shapes) {
+            // The same curves as the path iterator
+            assertEquals(contents(new Path2D.Double(shape), false), contents(shape, false));
+            assertEquals(contents(new Path2D.Double(shape), true), contents(shape, true));
+        }
+        assertEquals("10 772 100 50 re S", contents(new RoundRectangle2D.Double(10, 20, 100, 50, 0, 10), false));
+    }
+
+    @Test
+    public void testLineAndRectangle() throws Exception {
+        assertEquals("10 822 m 110 772 l S", contents(new Line2D.Double(10, 20, 110, 70), false));
+        assertEquals("10 772 100 50 re f", contents(new Rectangle2D.Double(10, 20, 100, 50), true));
+    }
+
+    @Test
+    public void testSimplification() throws Exception {
+        final var params = PDFParams.createDefault().withPathTolerance(0.1);
+        // Straight runs and flat curves become single lines
+        final var path = new Path2D.Double();
+        path.moveTo(10, 10);
+        for (var i = 1; i <= 10; ++i) {
+            path.lineTo(10 + i * 10, 10 + (i % 2) * 0.05);
+        }
+        path.curveTo(120, 10, 130, 10.01, 140, 10);
+        path.quadTo(150, 30, 160, 10);
+        assertEquals("10 832 m 140 832 l 146.67 818.67 153.33 818.67 160 832 c S", contents(path, false, params));
+
+        // A dense polyline keeps only the points needed to stay within the tolerance
+        final var plot = new Path2D.Double();
+        plot.moveTo(0, 400);
+        for (var i = 1; i <= 5000; ++i) {
+            final var x = i * 0.1;
+            plot.lineTo(x, 400 + 100 * Math.sin(x / 20));
+        }
+        final var plain = contents(plot, false);
+        final var simplified = contents(plot, false, params);
+        assertTrue(simplified.length() * 10 < plain.length());
+        assertTrue(simplified.startsWith("0 442 m "));
+        assertTrue(simplified.endsWith(" 500 455.24 l S"));
+    }
+}
@@ -0,0 +1,70 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import net.zamasoft.pdfg2d.g2d.gc.BridgeGraphics2D;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
+import net.zamasoft.pdfg2d.pdf.impl.PDFWriterImpl;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+
+public class PDFTextRunTest {
+
+    private static int count(final String contents, final String operator) {
+        return (" " + contents + " ").split(" " + operator + " ", -1).length - 1;
+    }
+
+    @Test
+    public void testConsecutiveRuns() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        final var builder = new StreamFragmentedOutput(out);
+        final var pdf = new PDFWriterImpl(builder,
+                PDFParams.createDefault().withCompression(PDFParams.Compression.NONE));
+        try (final var gc = new PDFGC(pdf.nextPage(595, 842))) {
+            final var g = new BridgeGraphics2D(gc);
+            g.setFont(new Font("Serif", Font.PLAIN, 12));
+            g.setColor(Color.BLACK);
+            // Words of a paragraph, each drawn as a run of its own
+            for (var line = 0; line < 10; ++line) {
+                for (var word = 0; word < 5; ++word) {
+                    g.drawString("w" + line + "x" + word, 50 + word * 60.123f, 100 + line * 14.4f);
+                }
+            }
+            // A rule between paragraphs ends the text object
+            g.fill(new Rectangle2D.Double(50, 250, 300, 1));
+            g.setColor(Color.RED);
+            g.drawString("after", 50, 270);
+        }
+        pdf.close();
+        builder.close();
+
+        final var str = out.toString(StandardCharsets.ISO_8859_1);
+        final var end = str.lastIndexOf("\r\nendstream");
+        final var contents = str.substring(str.lastIndexOf("stream\r\n", end) + 8, end);
+        assertEquals(2, count(contents, "BT"));
+        assertEquals(2, count(contents, "ET"));
+        assertEquals(1, count(contents, "Tf"));
+        assertEquals(51, count(contents, "Td"));
+        assertTrue(contents.indexOf(" re f ") > contents.indexOf(" ET "));
+        // The last word of the first line, relative to the one before
+        assertTrue(contents.contains(" 60.12 0 Td "));
+        // The first word of the second line; the rounding errors do not add up
+        assertTrue(contents.contains(" -240.49 -14.4 Td "));
+
+        try (final var doc = Loader.loadPDF(out.toByteArray())) {
+            final var text = new PDFTextStripper().getText(doc);
+            assertTrue(text.contains("w9x4") && text.contains("after"));
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.InflaterInputStream;
 
 import net.zamasoft.pdfg2d.font.util.BufferedRandomAccessFile;
@@ -15,11 +17,16 @@ import net.zamasoft.pdfg2d.font.util.BufferedRandomAccessFile;
 /**
  * Class for accessing TTC, TTF, or WOFF files.
  * Provides file format handling and extraction.
+ * <p>
+ * Instances are shared by threads; a font is opened once, by the first thread
+ * that asks for it.
+ * </p>
  */
 public class FontFile {
 	public final long timestamp;
 
-	private final OpenTypeFont[] fonts;
+	private final AtomicReferenceArray<OpenTypeFont> fonts;
+	private final ReentrantLock lock = new ReentrantLock();
 	private final long[] offsets;
 	private final File file;
 	private final boolean woff;
@@ -48,14 +55,14 @@ public class FontFile {
 						tempRaf.skipBytes(4);
 						final int numFonts = tempRaf.readInt();
 						this.offsets = new long[numFonts];
-						this.fonts = new OpenTypeFont[numFonts];
+						this.fonts = new AtomicReferenceArray<>(numFonts);
 						for (int i = 0; i < numFonts; i++) {
 							this.offsets[i] = tempRaf.readInt();
 						}
 					} else {
 						// Single TTF
 						this.offsets = new long[] { 0 };
-						this.fonts = new OpenTypeFont[1];
+						this.fonts = new AtomicReferenceArray<>(1);
 					}
 				}
 			} else {
@@ -66,14 +73,14 @@ public class FontFile {
 					raf.skipBytes(4);
 					final int numFonts = raf.readInt();
 					this.offsets = new long[numFonts];
-					this.fonts = new OpenTypeFont[numFonts];
+					this.fonts = new AtomicReferenceArray<>(numFonts);
 					for (int i = 0; i < numFonts; i++) {
 						this.offsets[i] = raf.readInt();
 					}
 				} else {
 					// Single TTF
 					this.offsets = new long[] { 0 };
-					this.fonts = new OpenTypeFont[1];
+					this.fonts = new AtomicReferenceArray<>(1);
 				}
 			}
 		}
@@ -212,7 +219,7 @@ public class FontFile {
 	 * @return true if TTC.
 	 */
 	public boolean isFontCollection() {
-		return this.fonts != null && this.fonts.length > 1;
+		return this.fonts != null && this.fonts.length() > 1;
 	}
 
 	/**
@@ -222,7 +229,7 @@ public class FontFile {
 	 * @return Number of fonts.
 	 */
 	public int getNumFonts() {
-		return this.fonts.length;
+		return this.fonts.length();
 	}
 
 	/**
@@ -234,20 +241,29 @@ public class FontFile {
 	 * @throws IOException If I/O error occurs.
 	 */
 	public OpenTypeFont getFont(final int i) throws IOException {
-		if (this.fonts[i] == null) {
-			final RandomAccessFile fontRaf = new BufferedRandomAccessFile(this.file, "r");
-			fontRaf.seek(this.offsets[i]);
-			if (this.woff) {
-				this.fonts[i] = new OpenTypeFont(fontRaf, () -> {
-					if (!this.file.delete()) {
-						// ignore
-					}
-				});
-			} else {
-				this.fonts[i] = new OpenTypeFont(fontRaf);
+		final OpenTypeFont font = this.fonts.get(i);
+		if (font != null) {
+			return font;
+		}
+		this.lock.lock();
+		try {
+			if (this.fonts.get(i) == null) {
+				final RandomAccessFile fontRaf = new BufferedRandomAccessFile(this.file, "r");
+				fontRaf.seek(this.offsets[i]);
+				if (this.woff) {
+					this.fonts.set(i, new OpenTypeFont(fontRaf, () -> {
+						if (!this.file.delete()) {
+							// ignore
+						}
+					}));
+				} else {
+					this.fonts.set(i, new OpenTypeFont(fontRaf));
+				}
 			}
+			return this.fonts.get(i);
+		} finally {
+			this.lock.unlock();
 		}
-		return this.fonts[i];
 	}
 
 	/**
@@ -2,6 +2,8 @@ package net.zamasoft.pdfg2d.font.table;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import net.zamasoft.pdfg2d.font.truetype.GlyfCompositeDescript;
 import net.zamasoft.pdfg2d.font.truetype.GlyfDescript;
@@ -9,35 +11,43 @@ import net.zamasoft.pdfg2d.font.truetype.GlyfSimpleDescript;
 
 /**
  * Glyph data table.
- * 
+ * <p>
+ * The table is mapped into memory, so that glyphs are read concurrently
+ * without locking the file shared with the other tables.
+ * </p>
+ *
  * @param de   the directory entry
  * @param loca the index to location table
  * @param raf  the file to read from
+ * @param data the contents of the table
  * @since 1.0
  * @author <a href="mailto:david@steadystate.co.uk">David Schweinsberg</a>
  */
-public record GlyfTable(DirectoryEntry de, LocaTable loca, RandomAccessFile raf) implements Table {
+public record GlyfTable(DirectoryEntry de, LocaTable loca, RandomAccessFile raf, ByteBuffer data) implements Table {
+
+	public GlyfTable(final DirectoryEntry de, final LocaTable loca, final RandomAccessFile raf) throws IOException {
+		this(de, loca, raf, map(de, raf));
+	}
+
+	private static ByteBuffer map(final DirectoryEntry de, final RandomAccessFile raf) throws IOException {
+		final FileChannel channel = raf.getChannel();
+		final long length = Math.max(0, Math.min(de.length(), channel.size() - de.offset()));
+		return channel.map(FileChannel.MapMode.READ_ONLY, de.offset(), length);
+	}
 
 	public GlyfDescript getDescription(final int i) {
-		GlyfDescript desc = null;
-		try {
-			final int len = this.loca.getOffset((i + 1)) - this.loca.getOffset(i);
-			if (len <= 0) {
-				return null;
-			}
-			synchronized (this.raf) {
-				this.raf.seek(this.de.offset() + this.loca.getOffset(i));
-				final int numberOfContours = this.raf.readShort();
-				if (numberOfContours >= 0) {
-					desc = GlyfSimpleDescript.read(this, numberOfContours, this.raf);
-				} else {
-					desc = GlyfCompositeDescript.read(this, this.raf);
-				}
-			}
-		} catch (final IOException e) {
-			throw new RuntimeException(e);
+		final int offset = this.loca.getOffset(i);
+		final int len = this.loca.getOffset((i + 1)) - offset;
+		if (len <= 0) {
+			return null;
+		}
+		// A view of its own, so that glyphs are read concurrently
+		final ByteBuffer in = this.data.duplicate().position(offset);
+		final int numberOfContours = in.getShort();
+		if (numberOfContours >= 0) {
+			return GlyfSimpleDescript.read(this, numberOfContours, in);
 		}
-		return desc;
+		return GlyfCompositeDescript.read(this, in);
 	}
 
 	@Override
@@ -3,6 +3,7 @@ package net.zamasoft.pdfg2d.font.table;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 /**
  * Interface for tables that contain instructions.
@@ -50,4 +51,22 @@ public interface Program {
 		}
 		return instructions;
 	}
+
+	/**
+	 * Reads instructions from the given buffer.
+	 * 
+	 * @param buffer the buffer to read from
+	 * @param count  the number of instructions to read
+	 * @return the instructions array
+	 */
+	static short[] readInstructions(final ByteBuffer buffer, final int count) {
+		if (count < 0) {
+			return null;
+		}
+		final short[] instructions = new short[count];
+		for (int i = 0; i < count; i++) {
+			instructions[i] = (short) (buffer.get() & 0xFF);
+		}
+		return instructions;
+	}
 }
@@ -1,7 +1,6 @@
 package net.zamasoft.pdfg2d.font.truetype;
 
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 /**
  * Component of a composite glyph.
@@ -45,19 +44,18 @@ public record GlyfCompositeComp(
 	public static final short WE_HAVE_INSTRUCTIONS = 0x0100;
 	public static final short USE_MY_METRICS = 0x0200;
 
-	protected static GlyfCompositeComp read(final int firstIndex, final int firstContour, final RandomAccessFile raf)
-			throws IOException {
-		final short flags = (short) (raf.read() << 8 | raf.read());
-		final short glyphIndex = (short) Math.abs((short) (raf.read() << 8 | raf.read()));
+	protected static GlyfCompositeComp read(final int firstIndex, final int firstContour, final ByteBuffer in) {
+		final short flags = in.getShort();
+		final short glyphIndex = (short) Math.abs(in.getShort());
 
 		short argument1, argument2;
 		// Get the arguments as just their raw values
 		if ((flags & ARG_1_AND_2_ARE_WORDS) != 0) {
-			argument1 = (short) (raf.read() << 8 | raf.read());
-			argument2 = (short) (raf.read() << 8 | raf.read());
+			argument1 = in.getShort();
+			argument2 = in.getShort();
 		} else {
-			argument1 = (short) raf.read();
-			argument2 = (short) raf.read();
+			argument1 = (short) (in.get() & 0xFF);
+			argument2 = (short) (in.get() & 0xFF);
 		}
 
 		int xtranslate = 0;
@@ -74,21 +72,21 @@ public record GlyfCompositeComp(
 		double scale01 = 0.0;
 		double scale10 = 0.0;
 		if ((flags & WE_HAVE_A_SCALE) != 0) {
-			final int i = (short) (raf.read() << 8 | raf.read());
+			final int i = in.getShort();
 			xscale = yscale = (double) i / (double) 0x4000;
 		} else if ((flags & WE_HAVE_AN_X_AND_Y_SCALE) != 0) {
-			short i = (short) (raf.read() << 8 | raf.read());
+			short i = in.getShort();
 			xscale = (double) i / (double) 0x4000;
-			i = (short) (raf.read() << 8 | raf.read());
+			i = in.getShort();
 			yscale = (double) i / (double) 0x4000;
 		} else if ((flags & WE_HAVE_A_TWO_BY_TWO) != 0) {
-			int i = (short) (raf.read() << 8 | raf.read());
+			int i = in.getShort();
 			xscale = (double) i / (double) 0x4000;
-			i = (short) (raf.read() << 8 | raf.read());
+			i = in.getShort();
 			scale01 = (double) i / (double) 0x4000;
-			i = (short) (raf.read() << 8 | raf.read());
+			i = in.getShort();
 			scale10 = (double) i / (double) 0x4000;
-			i = (short) (raf.read() << 8 | raf.read());
+			i = in.getShort();
 			yscale = (double) i / (double) 0x4000;
 		}
 
@@ -1,7 +1,6 @@
 package net.zamasoft.pdfg2d.font.truetype;
 
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,12 +24,11 @@ public class GlyfCompositeDescript extends GlyfDescript {
 		this.components = components;
 	}
 
-	public static GlyfCompositeDescript read(final GlyfTable parentTable, final RandomAccessFile raf)
-			throws IOException {
-		final short xMin = (short) (raf.read() << 8 | raf.read());
-		final short yMin = (short) (raf.read() << 8 | raf.read());
-		final short xMax = (short) (raf.read() << 8 | raf.read());
-		final short yMax = (short) (raf.read() << 8 | raf.read());
+	public static GlyfCompositeDescript read(final GlyfTable parentTable, final ByteBuffer in) {
+		final short xMin = in.getShort();
+		final short yMin = in.getShort();
+		final short xMax = in.getShort();
+		final short yMax = in.getShort();
 
 		// Get all of the composite components
 		final List<GlyfCompositeComp> components = new ArrayList<>();
@@ -38,12 +36,10 @@ public class GlyfCompositeDescript extends GlyfDescript {
 		int firstIndex = 0;
 		int firstContour = 0;
 		do {
-			comp = GlyfCompositeComp.read(firstIndex, firstContour, raf);
+			comp = GlyfCompositeComp.read(firstIndex, firstContour, in);
 			components.add(comp);
 
-			final long off = raf.getFilePointer();
 			final GlyfDescript desc = parentTable.getDescription(comp.getGlyphIndex());
-			raf.seek(off);
 			if (desc != null) {
 				firstIndex += desc.getPointCount();
 				firstContour += desc.getContourCount();
@@ -53,7 +49,7 @@ public class GlyfCompositeDescript extends GlyfDescript {
 		// Are there hinting instructions to read?
 		short[] instructions = null;
 		if ((comp.getFlags() & GlyfCompositeComp.WE_HAVE_INSTRUCTIONS) != 0) {
-			instructions = Program.readInstructions(raf, (raf.read() << 8 | raf.read()));
+			instructions = Program.readInstructions(in, in.getShort() & 0xFFFF);
 		}
 
 		return new GlyfCompositeDescript(parentTable, xMin, yMin, xMax, yMax, instructions, components);
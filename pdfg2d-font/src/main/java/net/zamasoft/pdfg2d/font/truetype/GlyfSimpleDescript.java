@@ -1,7 +1,6 @@
 package net.zamasoft.pdfg2d.font.truetype;
 
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 import net.zamasoft.pdfg2d.font.table.GlyfTable;
 import net.zamasoft.pdfg2d.font.table.Program;
@@ -33,15 +32,15 @@ public class GlyfSimpleDescript extends GlyfDescript {
 	}
 
 	public static GlyfSimpleDescript read(final GlyfTable parentTable, final int numberOfContours,
-			final RandomAccessFile raf) throws IOException {
-		final short xMin = (short) (raf.read() << 8 | raf.read());
-		final short yMin = (short) (raf.read() << 8 | raf.read());
-		final short xMax = (short) (raf.read() << 8 | raf.read());
-		final short yMax = (short) (raf.read() << 8 | raf.read());
+			final ByteBuffer in) {
+		final short xMin = in.getShort();
+		final short yMin = in.getShort();
+		final short xMax = in.getShort();
+		final short yMax = in.getShort();
 
 		final int[] endPtsOfContours = new int[numberOfContours];
 		for (int i = 0; i < numberOfContours; i++) {
-			endPtsOfContours[i] = (raf.read() << 8 | raf.read());
+			endPtsOfContours[i] = in.getShort() & 0xFFFF;
 		}
 
 		// The last end point index reveals the total number of points
@@ -50,10 +49,10 @@ public class GlyfSimpleDescript extends GlyfDescript {
 		final short[] xCoordinates = new short[count];
 		final short[] yCoordinates = new short[count];
 
-		final int instructionCount = (raf.read() << 8 | raf.read());
-		final short[] instructions = Program.readInstructions(raf, instructionCount);
-		readFlags(flags, count, raf);
-		readCoords(xCoordinates, yCoordinates, flags, count, raf);
+		final int instructionCount = in.getShort() & 0xFFFF;
+		final short[] instructions = Program.readInstructions(in, instructionCount);
+		readFlags(flags, count, in);
+		readCoords(xCoordinates, yCoordinates, flags, count, in);
 
 		return new GlyfSimpleDescript(parentTable, numberOfContours, xMin, yMin, xMax, yMax, instructions,
 				endPtsOfContours, flags, xCoordinates, yCoordinates, count);
@@ -98,19 +97,19 @@ public class GlyfSimpleDescript extends GlyfDescript {
 	 * The table is stored as relative values, but we'll store them as absolutes.
 	 */
 	private static void readCoords(final short[] xCoordinates, final short[] yCoordinates, final byte[] flags,
-			final int count, final RandomAccessFile raf) throws IOException {
+			final int count, final ByteBuffer in) {
 		short x = 0;
 		short y = 0;
 		for (int i = 0; i < count; i++) {
 			if ((flags[i] & xDual) != 0) {
 				if ((flags[i] & xShortVector) != 0) {
-					x += (short) raf.read();
+					x += (short) (in.get() & 0xFF);
 				}
 			} else {
 				if ((flags[i] & xShortVector) != 0) {
-					x += (short) -((short) raf.read());
+					x += (short) -(in.get() & 0xFF);
 				} else {
-					x += (short) (raf.read() << 8 | raf.read());
+					x += in.getShort();
 				}
 			}
 			xCoordinates[i] = x;
@@ -119,13 +118,13 @@ public class GlyfSimpleDescript extends GlyfDescript {
 		for (int i = 0; i < count; i++) {
 			if ((flags[i] & yDual) != 0) {
 				if ((flags[i] & yShortVector) != 0) {
-					y += (short) raf.read();
+					y += (short) (in.get() & 0xFF);
 				}
 			} else {
 				if ((flags[i] & yShortVector) != 0) {
-					y += (short) -((short) raf.read());
+					y += (short) -(in.get() & 0xFF);
 				} else {
-					y += (short) (raf.read() << 8 | raf.read());
+					y += in.getShort();
 				}
 			}
 			yCoordinates[i] = y;
@@ -135,13 +134,12 @@ public class GlyfSimpleDescript extends GlyfDescript {
 	/**
 	 * The flags are run-length encoded.
 	 */
-	private static void readFlags(final byte[] flags, final int flagCount, final RandomAccessFile raf)
-			throws IOException {
+	private static void readFlags(final byte[] flags, final int flagCount, final ByteBuffer in) {
 		try {
 			for (int index = 0; index < flagCount; index++) {
-				flags[index] = (byte) raf.read();
+				flags[index] = in.get();
 				if ((flags[index] & repeat) != 0) {
-					final int repeats = raf.read();
+					final int repeats = in.get() & 0xFF;
 					for (int i = 1; i <= repeats; i++) {
 						flags[index + i] = flags[index];
 					}
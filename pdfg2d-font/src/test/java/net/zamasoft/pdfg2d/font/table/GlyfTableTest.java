@@ -0,0 +1,185 @@
+package net.zamasoft.pdfg2d.font.table;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.zamasoft.pdfg2d.font.OpenTypeFont;
+import net.zamasoft.pdfg2d.font.truetype.GlyfCompositeComp;
+import net.zamasoft.pdfg2d.font.truetype.GlyfDescript;
+
+public class GlyfTableTest {
+    private static final int SQUARE = 0;
+    private static final int PAIR = 16;
+    private static final int NESTED = 17;
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * Copies test.ttf with glyph 16 replaced by two squares side by side and
+     * glyph 17 by glyph 16 with a third square on top.
+     */
+    private File nestedCompositeFont() throws Exception {
+        final var data = Files.readAllBytes(new File("src/test/resources/data/test.ttf").toPath());
+        final var bb = ByteBuffer.wrap(data);
+        final int numTables = bb.getShort(4);
+        int glyfEntry = -1, locaEntry = -1, headEntry = -1;
+        for (int i = 0; i < numTables; i++) {
+            final int entry = 12 + i * 16;
+            switch (new String(data, entry, 4, "ISO-8859-1")) {
+            case "glyf" -> glyfEntry = entry;
+            case "loca" -> locaEntry = entry;
+            case "head" -> headEntry = entry;
+            }
+        }
+        final int glyfOffset = bb.getInt(glyfEntry + 8);
+        final int locaOffset = bb.getInt(locaEntry + 8);
+        final boolean shortLoca = bb.getShort(bb.getInt(headEntry + 8) + 50) == 0;
+
+        final int numGlyphs = NESTED + 1;
+        final var loca = new int[numGlyphs + 1];
+        for (int i = 0; i <= numGlyphs; i++) {
+            loca[i] = shortLoca ? (bb.getShort(locaOffset + i * 2) & 0xFFFF) * 2 : bb.getInt(locaOffset + i * 4);
+        }
+
+        final var glyf = new ByteArrayOutputStream();
+        final var newLoca = new int[numGlyphs + 1];
+        glyf.write(data, glyfOffset, loca[PAIR]);
+        newLoca[PAIR] = glyf.size();
+        composite(glyf, SQUARE, 0, 0, SQUARE, 1000, 0);
+        newLoca[NESTED] = glyf.size();
+        composite(glyf, PAIR, 0, 0, SQUARE, 0, 1000);
+        newLoca[numGlyphs] = glyf.size();
+        System.arraycopy(loca, 0, newLoca, 0, PAIR);
+
+        final var locaData = new ByteArrayOutputStream();
+        final var locaOut = new DataOutputStream(locaData);
+        for (final int offset : newLoca) {
+            if (shortLoca) {
+                locaOut.writeShort(offset / 2);
+            } else {
+                locaOut.writeInt(offset);
+            }
+        }
+
+        // The new tables go after the old ones, which stay where they are
+        final var out = new ByteArrayOutputStream();
+        out.write(data);
+        pad(out);
+        final int newGlyfOffset = out.size();
+        glyf.writeTo(out);
+        pad(out);
+        final int newLocaOffset = out.size();
+        locaData.writeTo(out);
+        final var font = ByteBuffer.wrap(out.toByteArray());
+        font.putInt(glyfEntry + 8, newGlyfOffset).putInt(glyfEntry + 12, glyf.size());
+        font.putInt(locaEntry + 8, newLocaOffset).putInt(locaEntry + 12, locaData.size());
+
+        final var file = new File(this.tempDir, "nested.ttf");
+        Files.write(file.toPath(), font.array());
+        return file;
+    }
+
+    private static void composite(final ByteArrayOutputStream glyf, final int glyph1, final int x1, final int y1,
+            final int glyph2, final int x2, final int y2) throws Exception {
+        final var out = new DataOutputStream(glyf);
+        out.writeShort(-1);
+        for (int i = 0; i < 4; i++) {
+            out.writeShort(0);
+        }
+        final int flags = GlyfCompositeComp.ARG_1_AND_2_ARE_WORDS | GlyfCompositeComp.ARGS_ARE_XY_VALUES;
+        out.writeShort(flags | GlyfCompositeComp.MORE_COMPONENTS);
+        out.writeShort(glyph1);
+        out.writeShort(x1);
+        out.writeShort(y1);
+        out.writeShort(flags);
+        out.writeShort(glyph2);
+        out.writeShort(x2);
+        out.writeShort(y2);
+    }
+
+    private static void pad(final ByteArrayOutputStream out) {
+        while (out.size() % 4 != 0) {
+            out.write(0);
+        }
+    }
+
+    @Test
+    public void testNestedComposite() throws Exception {
+        try (final var raf = new RandomAccessFile(this.nestedCompositeFont(), "r")) {
+            final var font = new OpenTypeFont(raf);
+            final var glyf = (GlyfTable) font.getTable(Table.GLYF);
+            final GlyfDescript square = glyf.getDescription(SQUARE);
+            final int n = square.getPointCount();
+            assertTrue(n > 0);
+
+            final GlyfDescript nested = glyf.getDescription(NESTED);
+            assertTrue(nested.isComposite());
+            assertEquals(n * 3, nested.getPointCount());
+            assertEquals(3, nested.getContourCount());
+            final int[][] offsets = { { 0, 0 }, { 1000, 0 }, { 0, 1000 } };
+            for (int c = 0; c < 3; c++) {
+                assertEquals(n * (c + 1) - 1, nested.getEndPtOfContours(c));
+                for (int i = 0; i < n; i++) {
+                    assertEquals(square.getXCoordinate(i) + offsets[c][0], nested.getXCoordinate(n * c + i));
+                    assertEquals(square.getYCoordinate(i) + offsets[c][1], nested.getYCoordinate(n * c + i));
+                }
+            }
+            font.close();
+        }
+    }
+
+    private static String describe(final GlyfTable glyf, final int numGlyphs) {
+        final var sb = new StringBuilder();
+        for (int g = 0; g < numGlyphs; g++) {
+            final GlyfDescript desc = glyf.getDescription(g);
+            sb.append(g).append(':');
+            if (desc != null) {
+                for (int c = 0; c < desc.getContourCount(); c++) {
+                    sb.append(' ').append(desc.getEndPtOfContours(c));
+                }
+                for (int i = 0; i < desc.getPointCount(); i++) {
+                    sb.append(' ').append(desc.getXCoordinate(i)).append(',').append(desc.getYCoordinate(i))
+                            .append(',').append(desc.getFlags(i));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testConcurrentDescriptions() throws Exception {
+        try (final var raf = new RandomAccessFile(this.nestedCompositeFont(), "r")) {
+            final var font = new OpenTypeFont(raf);
+            final var glyf = (GlyfTable) font.getTable(Table.GLYF);
+            final int numGlyphs = font.getNumGlyphs();
+            final String expected = describe(glyf, numGlyphs);
+
+            // Every glyph is read by many threads at once, each with its own position
+            final var tasks = new ArrayList<Callable<String>>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(() -> describe(glyf, numGlyphs));
+            }
+            try (final var executor = Executors.newFixedThreadPool(16)) {
+                for (final var result : executor.invokeAll(tasks)) {
+                    assertEquals(expected, result.get());
+                }
+            }
+            font.close();
+        }
+    }
+}
@@ -62,6 +62,24 @@ public interface FragmentedOutput extends Closeable {
 	 */
 	void insertFragmentBefore(int anchorId) throws IOException;
 
+	/**
+	 * Declares that a fragment holds at most the given number of bytes and may be
+	 * padded up to that size. This call is not mandatory, but builders that write
+	 * fragments at their final position can then place the data following the
+	 * fragment before it is finished. Other builders ignore it.
+	 * <p>
+	 * It must be called before any data is added to the fragment.
+	 * </p>
+	 * 
+	 * @param id       fragment ID.
+	 * @param capacity maximum length of the fragment data.
+	 * @param pad      byte used to fill the rest of the fragment.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	default void reserveFragment(int id, int capacity, byte pad) throws IOException {
+		// Optional
+	}
+
 	/**
 	 * Adds data to a fragment.
 	 * 
@@ -1,12 +1,17 @@
 package net.zamasoft.pdfg2d.io.impl;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -28,13 +33,45 @@ import net.zamasoft.pdfg2d.io.FragmentedOutput;
 public abstract class AbstractTempFileOutput implements FragmentedOutput {
 	private static final Logger LOG = Logger.getLogger(AbstractTempFileOutput.class.getName());
 
+	/**
+	 * How memory chunks are held and spilled to the temporary file.
+	 */
+	public enum Backend {
+		/**
+		 * Chunks are heap arrays, spilled with channel writes.
+		 */
+		HEAP,
+
+		/**
+		 * Chunks are direct buffers taken from a pool and reused after spilling.
+		 * <p>
+		 * The channel writes direct buffers without copying them into a temporary
+		 * native buffer first. Note that direct memory is limited by
+		 * {@code -XX:MaxDirectMemorySize}, so {@code maxMemory} should stay below it.
+		 * </p>
+		 */
+		DIRECT,
+
+		/**
+		 * Chunks are heap arrays, spilled by copying them into memory-mapped regions
+		 * of the temporary file.
+		 * <p>
+		 * This avoids a system call for each spill. The mapped regions are released
+		 * by the garbage collector, so on some platforms the temporary file can only
+		 * be deleted on exit.
+		 * </p>
+		 */
+		MAPPED
+	}
+
 	/**
 	 * Configuration for buffer management.
 	 * 
 	 * @param chunkSize maximum size of each memory chunk (e.g., 64KB).
 	 * @param maxMemory maximum total memory to use before spilling to disk.
+	 * @param backend   how chunks are held and spilled.
 	 */
-	public record Config(int chunkSize, long maxMemory) {
+	public record Config(int chunkSize, long maxMemory, Backend backend) {
 		/**
 		 * Default configuration: 64KB chunks, 64MB max memory.
 		 */
@@ -54,12 +91,38 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 				throw new IllegalArgumentException("chunkSize must be positive");
 			if (maxMemory <= 0)
 				throw new IllegalArgumentException("maxMemory must be positive");
+			if (backend == null)
+				backend = Backend.HEAP;
+		}
+
+		/**
+		 * Creates a configuration with the {@link Backend#HEAP} backend.
+		 * 
+		 * @param chunkSize maximum size of each memory chunk.
+		 * @param maxMemory maximum total memory to use before spilling to disk.
+		 */
+		public Config(final int chunkSize, final long maxMemory) {
+			this(chunkSize, maxMemory, Backend.HEAP);
+		}
+
+		/**
+		 * Returns a copy with the specified backend.
+		 * 
+		 * @param backend the backend.
+		 * @return a new configuration.
+		 */
+		public Config withBackend(final Backend backend) {
+			return new Config(this.chunkSize, this.maxMemory, backend);
 		}
 	}
 
+	/** Size of each memory-mapped region of the temporary file. */
+	private static final int MAP_REGION_SIZE = 64 * 1024 * 1024;
+
 	// Configuration
 	protected final int chunkSize;
 	protected final long maxMemory;
+	protected final Backend backend;
 
 	// Global State
 	protected long currentMemoryUsage = 0;
@@ -69,12 +132,26 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 	protected File tempFile;
 	protected RandomAccessFile raf;
 	protected FileChannel fileChannel;
+	protected long spillPosition = 0;
+
+	// Currently mapped region of the temp file (MAPPED backend)
+	private MappedByteBuffer mapped = null;
+	private long mappedBase = 0;
+
+	// Free chunk buffers, reused instead of allocating new ones
+	private final ArrayDeque<ByteBuffer> chunkPool = new ArrayDeque<>();
 
 	// Data Structure
+	// Fragments already written out by flushFinished() are replaced by null
 	protected final List<Fragment> fragments = new ArrayList<>();
 	protected Fragment first = null;
 	protected Fragment last = null;
 
+	// Positions of fragments written out before the output was finished
+	private long[] flushedPositions = new long[0];
+	private long flushedLength = 0;
+	private byte[] copyBuffer = null;
+
 	// Spill Management
 	// We scan for the largest fragment only when spilling is required.
 	// This avoids overhead during normal writes.
@@ -86,25 +163,43 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 		long getLength();
 
 		void writeTo(OutputStream out, FileChannel channel, byte[] buffer) throws IOException;
+
+		void writeTo(WritableByteChannel out, FileChannel channel) throws IOException;
 	}
 
 	private final class MemoryChunk implements Chunk {
-		final byte[] data;
-		int length;
+		// Heap or direct; the position is the length of the data
+		final ByteBuffer data;
 
-		MemoryChunk(int capacity) {
-			this.data = new byte[capacity];
-			this.length = 0;
+		MemoryChunk(ByteBuffer data) {
+			this.data = data;
 		}
 
 		@Override
 		public long getLength() {
-			return length;
+			return data.position();
 		}
 
 		@Override
 		public void writeTo(OutputStream out, FileChannel channel, byte[] buffer) throws IOException {
-			out.write(data, 0, length);
+			if (data.hasArray()) {
+				out.write(data.array(), data.arrayOffset(), data.position());
+				return;
+			}
+			ByteBuffer src = data.duplicate().flip();
+			while (src.hasRemaining()) {
+				int len = Math.min(src.remaining(), buffer.length);
+				src.get(buffer, 0, len);
+				out.write(buffer, 0, len);
+			}
+		}
+
+		@Override
+		public void writeTo(WritableByteChannel out, FileChannel channel) throws IOException {
+			ByteBuffer src = data.duplicate().flip();
+			while (src.hasRemaining()) {
+				out.write(src);
+			}
 		}
 	}
 
@@ -140,6 +235,21 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 				remaining -= read;
 			}
 		}
+
+		@Override
+		public void writeTo(WritableByteChannel out, FileChannel channel) throws IOException {
+			// Lets the OS copy file to file (or socket) without passing through the heap
+			long remaining = length;
+			long currentPos = position;
+			while (remaining > 0) {
+				long transferred = channel.transferTo(currentPos, remaining, out);
+				if (transferred <= 0) {
+					throw new IOException("Temporary file truncated at " + currentPos);
+				}
+				currentPos += transferred;
+				remaining -= transferred;
+			}
+		}
 	}
 
 	protected class Fragment {
@@ -154,6 +264,9 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 		// appending
 		MemoryChunk activeChunk = null;
 
+		// Set by finishFragment()
+		boolean finished = false;
+
 		Fragment(int id) {
 			this.id = id;
 		}
@@ -173,17 +286,16 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 			while (remaining > 0) {
 				ensureActiveChunk();
 
-				int space = activeChunk.data.length - activeChunk.length;
-				int toWrite = Math.min(remaining, space);
+				ByteBuffer data = activeChunk.data;
+				int toWrite = Math.min(remaining, data.remaining());
 
-				System.arraycopy(b, offset, activeChunk.data, activeChunk.length, toWrite);
+				data.put(b, offset, toWrite);
 
-				activeChunk.length += toWrite;
 				this.totalLength += toWrite;
 				offset += toWrite;
 				remaining -= toWrite;
 
-				if (activeChunk.length == activeChunk.data.length) {
+				if (!data.hasRemaining()) {
 					// Current chunk is full
 					activeChunk = null;
 				}
@@ -194,7 +306,7 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 			if (activeChunk == null) {
 				checkSpill(); // Check memory limit before allocation
 
-				activeChunk = new MemoryChunk(chunkSize);
+				activeChunk = new MemoryChunk(allocateChunk());
 				chunks.add(activeChunk);
 
 				this.memoryUsage += chunkSize;
@@ -226,8 +338,8 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 				if (c instanceof MemoryChunk mc) {
 					if (firstMemoryIndex == -1)
 						firstMemoryIndex = i;
-					buffersToWrite.add(ByteBuffer.wrap(mc.data, 0, mc.length));
-					bytesToSpill += mc.length;
+					buffersToWrite.add(mc.data.flip());
+					bytesToSpill += mc.data.limit();
 				} else if (firstMemoryIndex != -1) {
 					// End of a contiguous block of memory chunks -> write them
 					flushMemoryBlock(firstMemoryIndex, i, buffersToWrite, bytesToSpill);
@@ -248,19 +360,54 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 			this.activeChunk = null; // Forces new chunk on next write
 		}
 
+		/**
+		 * Writes the buffered data to a channel at its current position.
+		 */
+		void writeTo(WritableByteChannel out) throws IOException {
+			for (Chunk chunk : chunks) {
+				chunk.writeTo(out, fileChannel);
+			}
+		}
+
+		/**
+		 * Drops the buffered data. Spilled data stays in the temp file.
+		 */
+		void release() {
+			for (Chunk chunk : chunks) {
+				if (chunk instanceof MemoryChunk mc) {
+					chunkPool.push(mc.data.clear());
+				}
+			}
+			chunks.clear();
+			updateGlobalMemory(-memoryUsage);
+			memoryUsage = 0;
+			activeChunk = null;
+			totalLength = 0;
+		}
+
 		private void flushMemoryBlock(int startIndex, int endIndex, List<ByteBuffer> buffers, long length)
 				throws IOException {
 			if (length == 0)
 				return;
 
-			long filePos = fileChannel.position(); // Append to end
+			long filePos = spillPosition; // Append to end
 
-			// Write all buffers
-			ByteBuffer[] bufArray = buffers.toArray(new ByteBuffer[0]);
-			long written = 0;
-			while (written < length) {
-				written += fileChannel.write(bufArray);
+			if (backend == Backend.MAPPED) {
+				for (ByteBuffer buf : buffers) {
+					writeMapped(buf);
+				}
+			} else {
+				// Write all buffers
+				ByteBuffer[] bufArray = buffers.toArray(new ByteBuffer[0]);
+				long written = 0;
+				while (written < length) {
+					written += fileChannel.write(bufArray);
+				}
 			}
+			for (ByteBuffer buf : buffers) {
+				chunkPool.push(buf.clear());
+			}
+			spillPosition += length;
 
 			// Replace chunks in list with a single FileChunk
 			chunks.subList(startIndex, endIndex).clear();
@@ -271,6 +418,7 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 	public AbstractTempFileOutput(Config config) {
 		this.chunkSize = config.chunkSize();
 		this.maxMemory = config.maxMemory();
+		this.backend = config.backend();
 	}
 
 	@Deprecated
@@ -284,9 +432,19 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 
 	// --- FragmentedOutput Implementation ---
 
+	/**
+	 * Creates a fragment. Subclasses may return a subclass to keep extra state.
+	 * 
+	 * @param id the fragment ID.
+	 * @return a new fragment.
+	 */
+	protected Fragment newFragment(int id) {
+		return new Fragment(id);
+	}
+
 	@Override
 	public void addFragment() throws IOException {
-		Fragment f = new Fragment(fragments.size());
+		Fragment f = newFragment(fragments.size());
 		fragments.add(f);
 
 		if (first == null) {
@@ -300,8 +458,8 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 
 	@Override
 	public void insertFragmentBefore(int anchorId) throws IOException {
-		Fragment anchor = fragments.get(anchorId);
-		Fragment f = new Fragment(fragments.size());
+		Fragment anchor = getFragment(anchorId);
+		Fragment f = newFragment(fragments.size());
 		fragments.add(f);
 
 		f.prev = anchor.prev;
@@ -316,14 +474,26 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 
 	@Override
 	public void write(int id, byte[] b, int off, int len) throws IOException {
-		Fragment f = fragments.get(id);
+		Fragment f = getFragment(id);
 		f.write(b, off, len);
 		this.totalLength += len;
 	}
 
+	/**
+	 * Marks a fragment as finished. Finished fragments at the start of the
+	 * output are written out at once if {@link #getFlushOutput()} provides a
+	 * stream, so their memory can be reused.
+	 */
 	@Override
 	public void finishFragment(int id) throws IOException {
-		// No-op in this strategy
+		Fragment f = fragments.get(id);
+		if (f == null || f.finished) {
+			return;
+		}
+		f.finished = true;
+		if (f == first) {
+			flushFinished();
+		}
 	}
 
 	@Override
@@ -333,7 +503,8 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 			{
 				// Calculate all positions strictly by linked list order
 				positions = new long[fragments.size()];
-				long pos = 0;
+				System.arraycopy(flushedPositions, 0, positions, 0, Math.min(flushedPositions.length, positions.length));
+				long pos = flushedLength;
 				Fragment curr = first;
 				while (curr != null) {
 					positions[curr.getId()] = pos;
@@ -368,7 +539,77 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 		clean();
 	}
 
+	/**
+	 * Returns the stream that finished fragments at the start of the output are
+	 * written to before the output is finished. Subclasses that write to a stream
+	 * anyway should return it, and must then pass the same stream to
+	 * {@link #finish(OutputStream)}.
+	 * 
+	 * @return the stream, or null to keep all fragments until the output is
+	 *         finished.
+	 * @throws IOException if the stream cannot be opened.
+	 */
+	protected OutputStream getFlushOutput() throws IOException {
+		return null;
+	}
+
+	/**
+	 * Writes out the finished fragments at the start of the output and drops
+	 * them. Fragments after the first unfinished one stay, since data may still
+	 * be inserted before them.
+	 */
+	private void flushFinished() throws IOException {
+		OutputStream out = null;
+		while (first != null && first.finished) {
+			if (out == null) {
+				out = getFlushOutput();
+				if (out == null) {
+					return;
+				}
+			}
+			Fragment f = first;
+			if (out instanceof FileOutputStream fos) {
+				f.writeTo(fos.getChannel());
+			} else {
+				if (copyBuffer == null) {
+					copyBuffer = new byte[8192];
+				}
+				for (Chunk chunk : f.chunks) {
+					chunk.writeTo(out, fileChannel, copyBuffer);
+				}
+			}
+
+			if (f.id >= flushedPositions.length) {
+				flushedPositions = Arrays.copyOf(flushedPositions, Math.max(f.id + 1, flushedPositions.length * 2));
+			}
+			flushedPositions[f.id] = flushedLength;
+			flushedLength += f.getLength();
+			f.release();
+			fragments.set(f.id, null);
+
+			first = f.next;
+			if (first != null) {
+				first.prev = null;
+			} else {
+				last = null;
+			}
+		}
+	}
+
+	private Fragment getFragment(int id) {
+		Fragment f = fragments.get(id);
+		if (f == null) {
+			throw new IllegalStateException("Fragment " + id + " has already been written out");
+		}
+		return f;
+	}
+
 	protected void finish(OutputStream out) throws IOException {
+		if (out instanceof FileOutputStream fos) {
+			// Unbuffered, so its channel can be written directly
+			finish(fos.getChannel());
+			return;
+		}
 		if (first == null) {
 			clean();
 			return;
@@ -392,6 +633,38 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 		clean();
 	}
 
+	/**
+	 * Writes all fragments in order to a channel.
+	 * <p>
+	 * Spilled data is copied with {@link FileChannel#transferTo}, so it does not
+	 * pass through the Java heap.
+	 * </p>
+	 * 
+	 * @param out the target channel.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected void finish(WritableByteChannel out) throws IOException {
+		if (first == null) {
+			clean();
+			return;
+		}
+
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine("Finishing output to channel. Total length: " + totalLength + ", Memory usage: "
+					+ currentMemoryUsage);
+		}
+
+		Fragment curr = first;
+		while (curr != null) {
+			for (Chunk chunk : curr.chunks) {
+				chunk.writeTo(out, fileChannel);
+			}
+			curr = curr.next;
+		}
+
+		clean();
+	}
+
 	// --- Internal Helpers ---
 
 	private void updateGlobalMemory(long delta) {
@@ -416,7 +689,7 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 		Fragment max = null;
 		long maxUsage = -1;
 		for (Fragment f : fragments) {
-			if (f.memoryUsage > maxUsage) {
+			if (f != null && f.memoryUsage > maxUsage) {
 				maxUsage = f.memoryUsage;
 				max = f;
 			}
@@ -424,6 +697,28 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 		return max;
 	}
 
+	private ByteBuffer allocateChunk() {
+		ByteBuffer buf = chunkPool.poll();
+		if (buf != null) {
+			return buf;
+		}
+		return backend == Backend.DIRECT ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+	}
+
+	private void writeMapped(ByteBuffer src) throws IOException {
+		while (src.hasRemaining()) {
+			if (mapped == null || !mapped.hasRemaining()) {
+				// Regions are contiguous; mapping beyond the end of the file extends it
+				mappedBase = mapped == null ? spillPosition : mappedBase + mapped.capacity();
+				mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, mappedBase, MAP_REGION_SIZE);
+			}
+			int len = Math.min(src.remaining(), mapped.remaining());
+			mapped.put(mapped.position(), src, src.position(), len);
+			mapped.position(mapped.position() + len);
+			src.position(src.position() + len);
+		}
+	}
+
 	private void ensureFileOpen() throws IOException {
 		if (fileChannel == null) {
 			tempFile = File.createTempFile("pdfg2d-io-fast-", ".tmp");
@@ -447,8 +742,15 @@ public abstract class AbstractTempFileOutput implements FragmentedOutput {
 			fileChannel = null;
 			raf = null;
 			tempFile = null;
+			mapped = null;
+			mappedBase = 0;
+			spillPosition = 0;
+			chunkPool.clear();
 			fragments.clear();
 			first = last = null;
+			flushedPositions = new long[0];
+			flushedLength = 0;
+			copyBuffer = null;
 			currentMemoryUsage = 0;
 			totalLength = 0;
 		}
@@ -0,0 +1,341 @@
+package net.zamasoft.pdfg2d.io.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import net.zamasoft.pdfg2d.io.SequentialOutput;
+
+/**
+ * Output that writes fragments directly at their final position in a seekable
+ * file.
+ * <p>
+ * A fragment is placed in the file as soon as the lengths of all fragments
+ * before it are known, that is, when they are finished or have been reserved
+ * with {@link #reserveFragment(int, int, byte)}. Data of placed fragments is
+ * written straight to the file, and reserved fragments are filled in later.
+ * Only fragments behind a fragment of unknown length are buffered as in
+ * {@link AbstractTempFileOutput}, and they are moved to the file once placed.
+ * This avoids writing most of the data twice when the output is assembled.
+ * </p>
+ * <p>
+ * Inserting a fragment before one that already has data in the file is
+ * supported, but moves the data after the insertion point back into buffers.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public class ChannelFragmentedOutput extends AbstractTempFileOutput implements SequentialOutput {
+	/** Target file channel. */
+	private final FileChannel channel;
+
+	/** Whether the channel was opened by this instance. */
+	private final boolean ownChannel;
+
+	/** Last placed fragment; all fragments before it have a known length. */
+	private ChannelFragment lastPlaced = null;
+
+	/** Position for sequential writes. */
+	private long sequentialPosition = 0;
+
+	/** Bytes written directly to the file. */
+	private long directBytes = 0;
+
+	/** Bytes moved from buffers to the file. */
+	private long bufferedBytes = 0;
+
+	private boolean closed = false;
+
+	private class ChannelFragment extends Fragment {
+		/** Position in the file, or -1 while buffered. */
+		long position = -1;
+
+		/** Bytes of data, whether buffered or in the file. */
+		long length = 0;
+
+		/** Reserved length, or -1. */
+		int capacity = -1;
+
+		byte pad;
+
+		ChannelFragment(final int id) {
+			super(id);
+		}
+
+		boolean isPlaced() {
+			return this.position != -1;
+		}
+
+		/** Whether the length in the file is fixed. */
+		boolean isFixed() {
+			return this.finished || this.capacity != -1;
+		}
+
+		/** Length in the file, including padding. */
+		long getExtent() {
+			return this.capacity != -1 ? this.capacity : this.length;
+		}
+	}
+
+	/**
+	 * Creates a new output writing to a channel, which is not closed by
+	 * {@link #close()}. Writing starts at position 0, and the channel is
+	 * truncated to the length of the output when closed.
+	 *
+	 * @param channel target channel, opened for reading and writing.
+	 * @param config  buffer configuration for fragments that cannot be placed
+	 *                yet.
+	 */
+	public ChannelFragmentedOutput(final FileChannel channel, final Config config) {
+		super(config);
+		this.channel = channel;
+		this.ownChannel = false;
+	}
+
+	/**
+	 * Creates a new output writing to a file.
+	 *
+	 * @param file   target file.
+	 * @param config buffer configuration for fragments that cannot be placed
+	 *               yet.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public ChannelFragmentedOutput(final File file, final Config config) throws IOException {
+		super(config);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+		this.ownChannel = true;
+	}
+
+	/**
+	 * Creates a new output writing to a file with default buffer settings.
+	 *
+	 * @param file target file.
+	 * @throws IOException if the file cannot be opened.
+	 * @see Config#DEFAULT
+	 */
+	public ChannelFragmentedOutput(final File file) throws IOException {
+		this(file, Config.DEFAULT);
+	}
+
+	@Override
+	protected Fragment newFragment(final int id) {
+		return new ChannelFragment(id);
+	}
+
+	private ChannelFragment get(final int id) {
+		return (ChannelFragment) this.fragments.get(id);
+	}
+
+	@Override
+	public void addFragment() throws IOException {
+		super.addFragment();
+		this.place();
+	}
+
+	@Override
+	public void insertFragmentBefore(final int anchorId) throws IOException {
+		final var anchor = this.get(anchorId);
+		if (anchor.isPlaced()) {
+			this.unplaceFrom(anchor);
+		}
+		super.insertFragmentBefore(anchorId);
+		this.place();
+	}
+
+	@Override
+	public void reserveFragment(final int id, final int capacity, final byte pad) throws IOException {
+		final var f = this.get(id);
+		if (f.length > 0 || f.finished) {
+			throw new IllegalStateException("Fragment " + id + " already has data");
+		}
+		f.capacity = capacity;
+		f.pad = pad;
+		this.place();
+	}
+
+	@Override
+	public void write(final int id, final byte[] b, final int off, final int len) throws IOException {
+		final var f = this.get(id);
+		if (f.capacity != -1 && f.length + len > f.capacity) {
+			throw new IOException("Fragment " + id + " exceeds its reserved " + f.capacity + " bytes");
+		}
+		if (f.isPlaced()) {
+			if (f.finished && f.capacity == -1) {
+				throw new IllegalStateException("Fragment " + id + " is already finished");
+			}
+			this.writeFully(ByteBuffer.wrap(b, off, len), f.position + f.length);
+			this.directBytes += len;
+		} else {
+			f.write(b, off, len);
+		}
+		f.length += len;
+		this.totalLength += len;
+	}
+
+	@Override
+	public void finishFragment(final int id) throws IOException {
+		final var f = this.get(id);
+		if (f.finished) {
+			return;
+		}
+		f.finished = true;
+		if (f.isPlaced()) {
+			this.padReserved(f);
+		}
+		this.place();
+	}
+
+	@Override
+	public PositionInfo getPositionInfo() {
+		final var positions = new long[this.fragments.size()];
+		long pos = 0;
+		for (var f = (ChannelFragment) this.first; f != null; f = (ChannelFragment) f.next) {
+			positions[f.getId()] = pos;
+			pos += f.getExtent();
+		}
+		return id -> positions[id];
+	}
+
+	/**
+	 * Writes data sequentially, when fragments are not used.
+	 *
+	 * @param b   byte array containing data.
+	 * @param off start offset in the array.
+	 * @param len number of bytes to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		this.writeFully(ByteBuffer.wrap(b, off, len), this.sequentialPosition);
+		this.sequentialPosition += len;
+		this.directBytes += len;
+	}
+
+	/**
+	 * Returns the number of bytes written directly at their final position.
+	 *
+	 * @return the number of bytes.
+	 */
+	public long getDirectBytes() {
+		return this.directBytes;
+	}
+
+	/**
+	 * Returns the number of bytes that were buffered before being placed.
+	 *
+	 * @return the number of bytes.
+	 */
+	public long getBufferedBytes() {
+		return this.bufferedBytes;
+	}
+
+	/**
+	 * Places every fragment whose predecessors all have a fixed length.
+	 */
+	private void place() throws IOException {
+		var f = this.lastPlaced == null ? (ChannelFragment) this.first : (ChannelFragment) this.lastPlaced.next;
+		while (f != null) {
+			final var prev = (ChannelFragment) f.prev;
+			if (prev != null && !prev.isFixed()) {
+				break;
+			}
+			f.position = prev == null ? 0 : prev.position + prev.getExtent();
+			if (f.length > 0) {
+				this.channel.position(f.position);
+				f.writeTo(this.channel);
+				f.release();
+				this.bufferedBytes += f.length;
+			}
+			if (f.finished) {
+				this.padReserved(f);
+			}
+			this.lastPlaced = f;
+			f = (ChannelFragment) f.next;
+		}
+	}
+
+	/**
+	 * Moves the data of a placed fragment and all after it back into buffers.
+	 */
+	private void unplaceFrom(final ChannelFragment from) throws IOException {
+		final var buffer = new byte[8192];
+		for (var f = from; f != null && f.isPlaced(); f = (ChannelFragment) f.next) {
+			var pos = f.position;
+			var remaining = f.length;
+			while (remaining > 0) {
+				final var bb = ByteBuffer.wrap(buffer, 0, (int) Math.min(remaining, buffer.length));
+				while (bb.hasRemaining()) {
+					if (this.channel.read(bb, pos + bb.position()) == -1) {
+						throw new IOException("Output file truncated at " + pos);
+					}
+				}
+				f.write(buffer, 0, bb.limit());
+				pos += bb.limit();
+				remaining -= bb.limit();
+			}
+			this.directBytes -= f.length;
+			f.position = -1;
+		}
+		this.lastPlaced = (ChannelFragment) from.prev;
+	}
+
+	private void padReserved(final ChannelFragment f) throws IOException {
+		if (f.capacity == -1 || f.length == f.capacity) {
+			return;
+		}
+		final var padding = new byte[(int) (f.capacity - f.length)];
+		Arrays.fill(padding, f.pad);
+		this.writeFully(ByteBuffer.wrap(padding), f.position + f.length);
+	}
+
+	private void writeFully(final ByteBuffer src, final long position) throws IOException {
+		var pos = position;
+		while (src.hasRemaining()) {
+			pos += this.channel.write(src, pos);
+		}
+	}
+
+	/**
+	 * Places the remaining fragments and truncates the file to the output length.
+	 * The data is not forced to the storage device; callers that need it to be
+	 * durable can force the channel themselves.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			long end = this.sequentialPosition;
+			if (this.first != null) {
+				for (var f = (ChannelFragment) this.first; f != null; f = (ChannelFragment) f.next) {
+					if (!f.finished) {
+						f.finished = true;
+						if (f.isPlaced()) {
+							this.padReserved(f);
+						}
+					}
+				}
+				this.place();
+				end = this.lastPlaced.position + this.lastPlaced.getExtent();
+			}
+			this.channel.truncate(end);
+		} finally {
+			try {
+				if (this.ownChannel) {
+					this.channel.close();
+				}
+			} finally {
+				super.close();
+			}
+		}
+	}
+}
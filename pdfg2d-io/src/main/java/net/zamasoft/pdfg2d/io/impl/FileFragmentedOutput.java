@@ -16,7 +16,8 @@ import net.zamasoft.pdfg2d.io.SequentialOutput;
  * <p>
  * When used in sequential mode, data is written directly to the target file.
  * When fragments are inserted out of order, data is buffered in memory or
- * a temporary file and assembled in the correct order when closed.
+ * a temporary file and assembled in the correct order when closed. Finished
+ * fragments at the start of the output are written to the file at once.
  * </p>
  * 
  * @author MIYABE Tatsuhiko
@@ -29,6 +30,9 @@ public class FileFragmentedOutput extends AbstractTempFileOutput implements Sequ
 	/** Direct output stream for sequential writes; null if using fragments. */
 	protected OutputStream out = null;
 
+	/** Stream for fragments written out before closing; null until needed. */
+	private FileOutputStream fragmentsOut = null;
+
 	/**
 	 * Creates a new file output with custom buffer settings.
 	 * 
@@ -71,6 +75,14 @@ public class FileFragmentedOutput extends AbstractTempFileOutput implements Sequ
 		this.out.write(b, off, len);
 	}
 
+	@Override
+	protected OutputStream getFlushOutput() throws IOException {
+		if (this.fragmentsOut == null) {
+			this.fragmentsOut = new FileOutputStream(this.file);
+		}
+		return this.fragmentsOut;
+	}
+
 	/**
 	 * Closes the output and writes all data to the file.
 	 * <p>
@@ -89,8 +101,9 @@ public class FileFragmentedOutput extends AbstractTempFileOutput implements Sequ
 				this.out = null;
 				return;
 			}
-			// Otherwise, assemble fragments and write to file
-			try (final var os = new FileOutputStream(this.file)) {
+			// Otherwise, assemble the remaining fragments and write to file
+			try (final var os = this.fragmentsOut != null ? this.fragmentsOut : new FileOutputStream(this.file)) {
+				this.fragmentsOut = null;
 				this.finish(os);
 			}
 		} finally {
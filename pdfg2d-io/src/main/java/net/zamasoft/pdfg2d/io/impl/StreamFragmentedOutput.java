@@ -15,7 +15,8 @@ import net.zamasoft.pdfg2d.io.SequentialOutput;
  * <p>
  * When used in sequential mode, data is written directly to the target stream.
  * When fragments are inserted out of order, data is buffered in memory or
- * a temporary file and assembled in the correct order when closed.
+ * a temporary file and assembled in the correct order when closed. Finished
+ * fragments at the start of the output are written to the stream at once.
  * </p>
  * 
  * @author MIYABE Tatsuhiko
@@ -63,6 +64,11 @@ public class StreamFragmentedOutput extends AbstractTempFileOutput implements Se
 		this.out.write(b, off, len);
 	}
 
+	@Override
+	protected OutputStream getFlushOutput() {
+		return this.out;
+	}
+
 	/**
 	 * Closes the output and writes all data to the stream.
 	 * <p>
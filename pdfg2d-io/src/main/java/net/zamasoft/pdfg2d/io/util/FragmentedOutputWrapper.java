@@ -42,6 +42,12 @@ public class FragmentedOutputWrapper implements FragmentedOutput {
 		this.builder.insertFragmentBefore(anchorId);
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public void reserveFragment(final int id, final int capacity, final byte pad) throws IOException {
+		this.builder.reserveFragment(id, capacity, pad);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void write(final int id, final byte[] b, final int off, final int len) throws IOException {
@@ -173,6 +173,18 @@ public class PositionTrackingOutput extends FragmentedOutputWrapper {
 		super.insertFragmentBefore(anchorId);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Not passed on, since padding by the wrapped output would not be reflected
+	 * in the tracked positions.
+	 * </p>
+	 */
+	@Override
+	public void reserveFragment(final int id, final int capacity, final byte pad) throws IOException {
+		// Ignored
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -374,10 +374,10 @@ public class BridgeGraphics2D extends Graphics2D implements Cloneable {
 	@Override
 	public void drawString(final AttributedCharacterIterator aci, final float x, final float y) {
 		this.gc.begin();
-		this.gc.transform(AffineTransform.getTranslateInstance(x, y));
 
 		final var lgh = new SimpleLayoutGlyphHandler();
 		lgh.setGC(this.gc);
+		lgh.setOrigin(x, y);
 		this.drawString(lgh, aci);
 
 		this.gc.end();
@@ -540,7 +540,7 @@ public class BridgeGraphics2D extends Graphics2D implements Cloneable {
 
 	@Override
 	public void drawLine(final int x1, final int y1, final int x2, final int y2) {
-		this.gc.fill(new Line2D.Float(x1, y1, x2, y2));
+		this.draw(new Line2D.Float(x1, y1, x2, y2));
 	}
 
 	@Override
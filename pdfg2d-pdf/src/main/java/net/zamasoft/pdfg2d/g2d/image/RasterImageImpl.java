@@ -92,6 +92,26 @@ public class RasterImageImpl implements RasterImage, ImageObserver {
 		}
 	}
 
+	/**
+	 * Images wrapping the same BufferedImage are equal, so that resources drawn
+	 * from them can be shared.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof RasterImageImpl other)) {
+			return false;
+		}
+		return this.image == other.image;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this.image);
+	}
+
 	public synchronized boolean imageUpdate(java.awt.Image img, int infoflags, int x, int y, int width, int height) {
 		if ((infoflags & (ERROR | ABORT)) != 0) {
 			this.width = this.height = 0;
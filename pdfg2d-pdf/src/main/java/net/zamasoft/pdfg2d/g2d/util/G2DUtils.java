@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 
@@ -382,6 +383,22 @@ public final class G2DUtils {
 	 * @throws IOException If an I/O error occurs
 	 */
 	public static BufferedImage loadImage(ImageReader reader, ImageInputStream imageIn) throws IOException {
+		return loadImage(reader, imageIn, null);
+	}
+
+	/**
+	 * Loads a BufferedImage from an ImageInputStream, with parameters for the
+	 * reader, such as the subsampling. The parameters are ignored when the image
+	 * is not decoded by ImageIO.
+	 * 
+	 * @param reader  ImageReader
+	 * @param imageIn ImageInputStream
+	 * @param param   Parameters for the reader, or null for the defaults
+	 * @return Loaded BufferedImage
+	 * @throws IOException If an I/O error occurs
+	 */
+	public static BufferedImage loadImage(ImageReader reader, ImageInputStream imageIn, ImageReadParam param)
+			throws IOException {
 		try {
 			String type = reader.getFormatName();
 			BufferedImage buffer = null;
@@ -417,7 +434,7 @@ public final class G2DUtils {
 					}
 
 					reader.setInput(imageIn);
-					buffer = reader.read(0);
+					buffer = reader.read(0, param);
 				} catch (Throwable e1) {
 					LOGGER.log(Level.FINE, "loadImage", e1);
 
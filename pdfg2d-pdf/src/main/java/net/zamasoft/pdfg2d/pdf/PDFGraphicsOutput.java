@@ -4,10 +4,14 @@ import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import net.zamasoft.pdfg2d.gc.GC;
+import net.zamasoft.pdfg2d.gc.GraphicsException;
 import net.zamasoft.pdfg2d.gc.paint.CMYKColor;
 import net.zamasoft.pdfg2d.gc.paint.Color;
 import net.zamasoft.pdfg2d.gc.paint.Color.Type;
 import net.zamasoft.pdfg2d.gc.paint.RGBColor;
+import net.zamasoft.pdfg2d.gc.text.Text;
+import net.zamasoft.pdfg2d.pdf.font.PDFFont;
 import net.zamasoft.pdfg2d.util.ColorUtils;
 
 /**
@@ -23,6 +27,9 @@ public abstract class PDFGraphicsOutput extends PDFOutput {
 
 	protected final PDFWriter pdfWriter;
 
+	/** Whether a text object (BT) is open. */
+	private boolean inText = false;
+
 	public PDFGraphicsOutput(final PDFWriter pdfWriter, final OutputStream out, final double width,
 			final double height) throws IOException {
 		super(out, pdfWriter.getParams().platformEncoding());
@@ -52,6 +59,55 @@ public abstract class PDFGraphicsOutput extends PDFOutput {
 
 	public abstract void useResource(String type, String name) throws IOException;
 
+	/**
+	 * Draws text with a font of the writer. The font writes the glyphs to this
+	 * output through the graphics context.
+	 * 
+	 * @param font the font
+	 * @param gc   the graphics context drawing to this output
+	 * @param text the text
+	 * @throws IOException       in case of I/O error
+	 * @throws GraphicsException in case of graphics error
+	 */
+	public void drawText(final PDFFont font, final GC gc, final Text text) throws IOException, GraphicsException {
+		font.drawTo(gc, text);
+	}
+
+	/**
+	 * Returns whether a text object is open.
+	 * 
+	 * @return true between BT and ET.
+	 */
+	public boolean isInText() {
+		return this.inText;
+	}
+
+	/**
+	 * Opens a text object (BT) unless one is already open.
+	 * 
+	 * @throws IOException in case of I/O error
+	 */
+	public void beginText() throws IOException {
+		if (!this.inText) {
+			this.writeOperator("BT");
+			this.inText = true;
+		}
+	}
+
+	/**
+	 * Closes the open text object (ET), if any. Operators other than those of
+	 * text, color and the graphics state parameters cannot be written before
+	 * this is called.
+	 * 
+	 * @throws IOException in case of I/O error
+	 */
+	public void endText() throws IOException {
+		if (this.inText) {
+			this.inText = false;
+			this.writeOperator("ET");
+		}
+	}
+
 	/**
 	 * Writes coordinates relative to the bottom-left origin of PDF.
 	 * 
@@ -188,4 +244,11 @@ public abstract class PDFGraphicsOutput extends PDFOutput {
 			default -> throw new IllegalStateException("Unsupported color type: " + processedColor.getColorType());
 		}
 	}
+
+	@Override
+	public void close() throws IOException {
+		// Text objects may be left open by PDFGC for the next run of text
+		this.endText();
+		super.close();
+	}
 }
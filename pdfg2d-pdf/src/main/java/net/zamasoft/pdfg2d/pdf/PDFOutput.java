@@ -186,6 +186,19 @@ public class PDFOutput extends FilterOutputStream {
 		this.buffFlush();
 	}
 
+	/**
+	 * Writes a long integer literal, such as a byte offset or length.
+	 * 
+	 * @param number the integer
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writeLong(final long number) throws IOException {
+		this.spaceBefore();
+		this.buffAllocate(20);
+		this.buffWriteLong(number);
+		this.buffFlush();
+	}
+
 	/**
 	 * Writes a real number literal.
 	 * 
@@ -329,6 +342,16 @@ public class PDFOutput extends FilterOutputStream {
 		return (long) (number * this.scale + (number >= 0 ? 0.5 : -0.5));
 	}
 
+	/**
+	 * Rounds a real number to the precision used for PDF output.
+	 * 
+	 * @param number the number
+	 * @return the number as it is written
+	 */
+	public double round(final double number) {
+		return this.toLong(number) / this.scale;
+	}
+
 	/**
 	 * Compares real numbers using the precision used for PDF output.
 	 * 
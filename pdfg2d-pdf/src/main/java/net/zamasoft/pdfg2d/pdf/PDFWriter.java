@@ -102,6 +102,19 @@ public interface PDFWriter extends Closeable {
 	 */
 	PDFGroupImage createGroupImage(double width, double height) throws IOException;
 
+	/**
+	 * Creates a Form XObject, which can be drawn any number of times by its name.
+	 * <p>
+	 * The returned PDFNamedGraphicsOutput must be closed after writing the form.
+	 * </p>
+	 * 
+	 * @param width  form width
+	 * @param height form height
+	 * @return the form output context; the name can be used for referencing
+	 * @throws IOException in case of I/O error
+	 */
+	PDFNamedGraphicsOutput createForm(double width, double height) throws IOException;
+
 	/**
 	 * Creates a tiling pattern.
 	 * <p>
@@ -141,6 +154,27 @@ public interface PDFWriter extends Closeable {
 	 */
 	PDFPageOutput nextPage(final double width, final double height) throws IOException;
 
+	/**
+	 * Renders pages on several threads. Each page is prepared and drawn on a
+	 * worker thread, and committed to this writer in page order, so the output
+	 * is the same whatever the number of threads.
+	 * 
+	 * @param <T>      Type of a prepared page.
+	 * @param count    Number of pages.
+	 * @param threads  Number of worker threads.
+	 * @param renderer The renderer of the pages.
+	 * @throws IOException If a page cannot be prepared or drawn.
+	 * @see PageRenderer
+	 */
+	<T> void renderPages(int count, int threads, PageRenderer<T> renderer) throws IOException;
+
+	/**
+	 * Returns the names of the resources shared across the document.
+	 * 
+	 * @return The resource cache.
+	 */
+	ResourceCache getResourceCache();
+
 	Object getAttribute(Object key);
 
 	void putAttribute(Object key, Object value);
@@ -0,0 +1,57 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import java.io.IOException;
+
+/**
+ * Renders the pages of a document on several threads.
+ * <p>
+ * Each page is prepared and drawn on a worker thread, independently of the
+ * others, to a writer that records the page. The recorded pages are then
+ * committed to the document on the calling thread in page order. Fonts,
+ * images and other resources shared by the pages get their names, object
+ * numbers and glyph ids when the pages are committed, so the output does not
+ * depend on the number of threads.
+ * </p>
+ * <p>
+ * A page that cannot be recorded is drawn again on the calling thread when
+ * its turn comes: one that loads an image not loaded yet, uses the attributes
+ * of the writer or adds a font face, one that draws a group image below PDF
+ * 1.4, and every page while the shape cache is enabled.
+ * </p>
+ * <p>
+ * The work that does not touch the writer, such as loading data, formatting
+ * and computing the layout of the contents, belongs in
+ * {@link #prepare(int)}. Compressing the drawn pages can be moved off the
+ * calling thread as well with
+ * {@link net.zamasoft.pdfg2d.pdf.params.PDFParams#withAsyncCompression}.
+ * </p>
+ *
+ * @param <T> the type of a prepared page
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public interface PageRenderer<T> {
+	/**
+	 * Prepares a page. This is called on a worker thread, concurrently with the
+	 * other pages, and must not use the writer.
+	 *
+	 * @param index the index of the page, from 0
+	 * @return the prepared page
+	 * @throws Exception if the page cannot be prepared
+	 */
+	T prepare(int index) throws Exception;
+
+	/**
+	 * Draws a prepared page, typically to a page from
+	 * {@link PDFWriter#nextPage(double, double)}. This is called on a worker
+	 * thread, concurrently with the other pages, and may be called once more
+	 * for the same page on the thread that renders the document, so it must
+	 * not change any state shared with the other pages.
+	 *
+	 * @param index the index of the page, from 0
+	 * @param page  the prepared page
+	 * @param pdf   the writer
+	 * @throws IOException in case of I/O error
+	 */
+	void draw(int index, T page, PDFWriter pdf) throws IOException;
+}
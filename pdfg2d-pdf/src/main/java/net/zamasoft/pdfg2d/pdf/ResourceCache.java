@@ -0,0 +1,160 @@
+package net.zamasoft.pdfg2d.pdf;
+
+import java.awt.geom.AffineTransform;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Document-wide cache of the names of resources that can be shared, such as
+ * graphics states, shadings and tiling patterns.
+ * <p>
+ * Keys are built from values rounded by {@link #quantize(double)} to the
+ * precision that they are written with, so that resources which would be
+ * written the same are shared. The least recently used entries are dropped
+ * once the capacity is reached; a resource that is needed again after that is
+ * simply written once more.
+ * </p>
+ * <p>
+ * The cache may be used by several threads.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public class ResourceCache {
+	/** Default maximum number of entries. */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	private final double scale;
+
+	private final Map<Object, String> names;
+
+	private long hits = 0, misses = 0;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param precision The number of decimal places that values are written with.
+	 * @param capacity  The maximum number of entries.
+	 */
+	public ResourceCache(final int precision, final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.scale = Math.pow(10, precision);
+		this.names = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Object, String> eldest) {
+				return this.size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the name of a resource, counting a hit or a miss.
+	 *
+	 * @param key The key of the resource.
+	 * @return The resource name, or null if it has not been written yet.
+	 */
+	public synchronized String get(final Object key) {
+		final var name = this.names.get(key);
+		if (name == null) {
+			++this.misses;
+		} else {
+			++this.hits;
+		}
+		return name;
+	}
+
+	/**
+	 * Registers the name of a resource.
+	 *
+	 * @param key  The key of the resource.
+	 * @param name The resource name.
+	 */
+	public synchronized void put(final Object key, final String name) {
+		this.names.put(key, name);
+	}
+
+	/**
+	 * Rounds a value to the precision of the output.
+	 *
+	 * @param value The value.
+	 * @return The rounded value.
+	 */
+	public double quantize(final double value) {
+		return Math.round(value * this.scale) / this.scale;
+	}
+
+	/**
+	 * Rounds values to the precision of the output.
+	 *
+	 * @param values The values, or null.
+	 * @return New rounded values, or null.
+	 */
+	public double[] quantize(final double[] values) {
+		if (values == null) {
+			return null;
+		}
+		final var rounded = new double[values.length];
+		for (var i = 0; i < values.length; ++i) {
+			rounded[i] = this.quantize(values[i]);
+		}
+		return rounded;
+	}
+
+	/**
+	 * Rounds a transform to the precision of the output, so that transforms
+	 * written the same are equal.
+	 *
+	 * @param at The transform, or null.
+	 * @return A new rounded transform, or null.
+	 */
+	public AffineTransform quantize(final AffineTransform at) {
+		if (at == null) {
+			return null;
+		}
+		final var matrix = new double[6];
+		at.getMatrix(matrix);
+		return new AffineTransform(this.quantize(matrix));
+	}
+
+	/**
+	 * Returns the number of lookups that found a resource.
+	 *
+	 * @return The number of hits.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a resource.
+	 *
+	 * @return The number of misses.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the ratio of lookups that found a resource.
+	 *
+	 * @return The hit rate from 0 to 1, or 0 before any lookup.
+	 */
+	public synchronized double getHitRate() {
+		final var total = this.hits + this.misses;
+		return total == 0 ? 0 : (double) this.hits / total;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 *
+	 * @return The number of entries.
+	 */
+	public synchronized int size() {
+		return this.names.size();
+	}
+}
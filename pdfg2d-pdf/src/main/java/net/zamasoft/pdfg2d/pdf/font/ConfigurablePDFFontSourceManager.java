@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.util.Collections;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,23 +37,36 @@ public class ConfigurablePDFFontSourceManager extends PDFFontSourceManager {
 
 	private final Source config;
 
-	private URI configURI = null;
+	private volatile URI configURI = null;
 
-	private SourceValidity configValidity = null;
+	private volatile SourceValidity configValidity = null;
 
-	private static FontSourceManager fsm = null;
+	private static final ReentrantLock DEFAULT_LOCK = new ReentrantLock();
 
-	public static final synchronized FontSourceManager getDefaultFontSourceManager() {
-		if (fsm == null) {
-			URL url = ConfigurablePDFFontSourceManager.class.getResource("builtin/fonts.xml");
-			try {
-				Source source = new URLSource(url);
-				fsm = new ConfigurablePDFFontSourceManager(source, null);
-			} catch (Exception e) {
-				throw new RuntimeException(e);
+	private static volatile FontSourceManager fsm = null;
+
+	public static final FontSourceManager getDefaultFontSourceManager() {
+		FontSourceManager fsm = ConfigurablePDFFontSourceManager.fsm;
+		if (fsm != null) {
+			return fsm;
+		}
+		DEFAULT_LOCK.lock();
+		try {
+			fsm = ConfigurablePDFFontSourceManager.fsm;
+			if (fsm == null) {
+				URL url = ConfigurablePDFFontSourceManager.class.getResource("builtin/fonts.xml");
+				try {
+					Source source = new URLSource(url);
+					fsm = new ConfigurablePDFFontSourceManager(source, null);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				ConfigurablePDFFontSourceManager.fsm = fsm;
 			}
+			return fsm;
+		} finally {
+			DEFAULT_LOCK.unlock();
 		}
-		return fsm;
 	}
 
 	public ConfigurablePDFFontSourceManager(Source config) {
@@ -65,7 +79,12 @@ public class ConfigurablePDFFontSourceManager extends PDFFontSourceManager {
 		this.poll();
 	}
 
-	protected synchronized void poll() {
+	/**
+	 * Rebuilds the font database if the configuration has changed. The check does
+	 * not lock; the rebuild is done by one thread, while the others keep using
+	 * the current database.
+	 */
+	protected void poll() {
 		try {
 			if (!this.config.exists()) {
 				Exception e = new FileNotFoundException(this.config.getURI().toString());
@@ -76,11 +95,33 @@ public class ConfigurablePDFFontSourceManager extends PDFFontSourceManager {
 			throw new RuntimeException(e);
 		}
 
-		if (this.configValidity != null && this.configValidity.getValid() == Validity.VALID
-				&& this.configURI.equals(this.config.getURI())) {
+		if (this.isUpToDate()) {
 			return;
 		}
+		if (!this.updateLock.tryLock()) {
+			if (this.configValidity != null) {
+				// Being rebuilt by another thread
+				return;
+			}
+			// Nothing to use until the first build is done
+			this.updateLock.lock();
+		}
+		try {
+			if (!this.isUpToDate()) {
+				this.rebuild();
+			}
+		} finally {
+			this.updateLock.unlock();
+		}
+	}
 
+	private boolean isUpToDate() {
+		final SourceValidity configValidity = this.configValidity;
+		return configValidity != null && configValidity.getValid() == Validity.VALID
+				&& this.configURI.equals(this.config.getURI());
+	}
+
+	private void rebuild() {
 		LOG.fine("Building font database from " + this.config.getURI() + "...");
 		SAXParserFactory parserFactory = SAXParserFactory.newInstance();
 		XMLReader parser;
@@ -97,9 +138,8 @@ public class ConfigurablePDFFontSourceManager extends PDFFontSourceManager {
 				parser.setContentHandler(handler);
 				parser.parse(new InputSource(in));
 			}
-
-			this.configURI = this.config.getURI();
-			this.configValidity = this.config.getValidity();
+			final URI configURI = this.config.getURI();
+			final SourceValidity configValidity = this.config.getValidity();
 
 			try {
 				Class<?> clazz = Class.forName("net.zamasoft.pdfg2d.font.emoji.EmojiFontSource");
@@ -111,11 +151,13 @@ public class ConfigurablePDFFontSourceManager extends PDFFontSourceManager {
 				// ignore
 			}
 
-			this.nameToFonts = MultimapUtils.unmodifiableMap(handler.nameToFonts);
-			this.genericToFamily = Collections.unmodifiableMap(handler.genericToFamily);
-			this.allFonts = handler.allFonts;
+			this.database = new FontDatabase(MultimapUtils.unmodifiableMap(handler.nameToFonts),
+					Collections.unmodifiableMap(handler.genericToFamily),
+					Collections.unmodifiableCollection(handler.allFonts));
 
-			this.fontListCache = null;
+			// Published last, once the database is in place
+			this.configURI = configURI;
+			this.configValidity = configValidity;
 
 			LOG.fine("Font database built successfully");
 		} catch (Exception e) {
@@ -124,7 +166,7 @@ public class ConfigurablePDFFontSourceManager extends PDFFontSourceManager {
 		}
 	}
 
-	public synchronized FontSource[] lookup(FontStyle fontStyle) {
+	public FontSource[] lookup(FontStyle fontStyle) {
 		this.poll();
 		return super.lookup(fontStyle);
 	}
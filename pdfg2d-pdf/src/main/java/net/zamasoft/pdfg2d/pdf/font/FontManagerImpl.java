@@ -36,6 +36,9 @@ public class FontManagerImpl implements FontManager, Closeable {
 
 	protected PDFFontSourceManager localdb = null;
 
+	/** Number of font faces added. */
+	protected int fontFaceCount = 0;
+
 	protected final FontStore fontStore;
 
 	protected final Map<FontStyle, FontListMetrics> fontListMetricsCache = new HashMap<FontStyle, FontListMetrics>();
@@ -50,6 +53,19 @@ public class FontManagerImpl implements FontManager, Closeable {
 		this(fontdb, new DefaultFontStore());
 	}
 
+	/**
+	 * Creates a font manager finding the same fonts as another one, including the
+	 * font faces added to it so far, but getting them from another store.
+	 * 
+	 * @param fontManager the font manager to find the fonts of
+	 * @param fontStore   the store of the fonts
+	 */
+	public FontManagerImpl(FontManagerImpl fontManager, FontStore fontStore) {
+		this.globaldb = fontManager.globaldb;
+		this.localdb = fontManager.localdb;
+		this.fontStore = fontStore;
+	}
+
 	public void close() {
 		if (this.localdb != null) {
 			this.localdb.close();
@@ -61,6 +77,17 @@ public class FontManagerImpl implements FontManager, Closeable {
 			this.localdb = new PDFFontSourceManager(true);
 		}
 		this.localdb.addFontFace(face);
+		++this.fontFaceCount;
+	}
+
+	/**
+	 * Returns the number of font faces added, which changes whenever the fonts
+	 * found for a style may change.
+	 * 
+	 * @return the number of font faces
+	 */
+	public int getFontFaceCount() {
+		return this.fontFaceCount;
 	}
 
 	public FontListMetrics getFontListMetrics(FontStyle fontStyle) {
@@ -27,4 +27,18 @@ public interface PDFFont extends Font, Serializable {
 	 * @throws IOException if an I/O error occurs
 	 */
 	public void writeTo(PDFFragmentOutput out, XRef xref) throws IOException;
+
+	/**
+	 * Uses the glyphs used through another font of the same source, in the order
+	 * they were used, as if they had been used through this font. A page drawn
+	 * apart from the document has fonts of its own, which are taken over by those
+	 * of the document this way.
+	 * 
+	 * @param font a font of the same source
+	 * @return the glyph IDs of this font indexed by those of the other font, or
+	 *         null if they are the same
+	 */
+	public default int[] useGlyphs(PDFFont font) {
+		return null;
+	}
 }
@@ -10,13 +10,14 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
-import org.apache.commons.collections.map.LRUMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.zamasoft.pdfg2d.font.FontSource;
 import net.zamasoft.pdfg2d.font.FontSourceManager;
@@ -38,19 +39,45 @@ import net.zamasoft.pdfg2d.pdf.font.util.MultimapUtils;
 import net.zamasoft.pdfg2d.util.NumberUtils;
 
 /**
+ * Font source manager shared by the documents being generated.
+ * <p>
+ * Lookups do not lock: the font database is replaced as a whole, copy on
+ * write, when fonts are added, and the fonts found for a style are cached in a
+ * concurrent map which is part of the database.
+ * </p>
+ *
  * @author MIYABE Tatsuhiko
  * @since 1.0
  */
 public class PDFFontSourceManager implements FontSourceManager, Closeable {
-	protected Map<String, Object> nameToFonts = new HashMap<String, Object>();
+	/** Number of font styles of which the fonts found are cached. */
+	private static final int FONT_LIST_CACHE_SIZE = 100;
+
+	/**
+	 * Font database. It is never modified once published: an update builds a new
+	 * one, so that a lookup sees one consistent state by reading it once.
+	 *
+	 * @param nameToFonts     fonts by normalized family name
+	 * @param genericToFamily families by generic family name
+	 * @param allFonts        all fonts
+	 * @param fontListCache   fonts found for each style, which belong to this
+	 *                        database and so never hold fonts of an older one
+	 */
+	protected record FontDatabase(Map<String, Object> nameToFonts, Map<String, FontFamilyList> genericToFamily,
+			Collection<FontSource> allFonts, Map<FontStyle, FontSource[]> fontListCache) {
+		public FontDatabase(final Map<String, Object> nameToFonts, final Map<String, FontFamilyList> genericToFamily,
+				final Collection<FontSource> allFonts) {
+			this(nameToFonts, genericToFamily, allFonts, new ConcurrentHashMap<>());
+		}
+	}
 
-	protected Map<String, FontFamilyList> genericToFamily = new HashMap<String, FontFamilyList>();
+	protected volatile FontDatabase database = new FontDatabase(Collections.emptyMap(), Collections.emptyMap(),
+			Collections.emptyList());
 
 	protected Map<URI, File> uriToFile = new HashMap<URI, File>();
 
-	protected Collection<FontSource> allFonts = new ArrayList<FontSource>();
-
-	transient protected Map<FontStyle, FontSource[]> fontListCache = null;
+	/** Serializes the updates of the database, which read font files. */
+	protected final ReentrantLock updateLock = new ReentrantLock();
 
 	protected final boolean strictMatchName;
 
@@ -63,13 +90,33 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 	}
 
 	public void close() {
-		for (Iterator<File> i = this.uriToFile.values().iterator(); i.hasNext();) {
-			File file = i.next();
-			file.delete();
+		this.updateLock.lock();
+		try {
+			for (Iterator<File> i = this.uriToFile.values().iterator(); i.hasNext();) {
+				File file = i.next();
+				file.delete();
+			}
+		} finally {
+			this.updateLock.unlock();
 		}
 	}
 
-	public synchronized void addFontFace(FontFace face) throws IOException {
+	public void addFontFace(FontFace face) throws IOException {
+		this.updateLock.lock();
+		try {
+			this.addFontFaceLocked(face);
+		} finally {
+			this.updateLock.unlock();
+		}
+	}
+
+	private void addFontFaceLocked(FontFace face) throws IOException {
+		final FontDatabase database = this.database;
+		final Map<String, Object> nameToFonts = new HashMap<String, Object>(database.nameToFonts());
+		final Map<String, FontFamilyList> genericToFamily = new HashMap<String, FontFamilyList>(
+				database.genericToFamily());
+		final Collection<FontSource> allFonts = new ArrayList<FontSource>(database.allFonts());
+
 		final List<FontSource> list = new ArrayList<FontSource>();
 		if (face.local != null) {
 			list.add(FontLoader.readSystemFont(face, FontLoader.Type.EMBEDDED, face.local, null));
@@ -102,7 +149,7 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 				list.set(i, new PdfFontSourceWrapper(source, face.unicodeRange));
 			}
 		}
-		this.allFonts.addAll(list);
+		allFonts.addAll(list);
 
 		final List<String> m = new ArrayList<String>();
 		if (face.fontFamily != null) {
@@ -111,9 +158,9 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 				String name = family.getName();
 				if (family.isGenericFamily()) {
 					// Override generic font name
-					final FontFamilyList generics = this.genericToFamily.get(name);
+					final FontFamilyList generics = genericToFamily.get(name);
 					if (generics == null) {
-						this.genericToFamily.put(name, new FontFamilyList(new FontFamily(name)));
+						genericToFamily.put(name, new FontFamilyList(new FontFamily(name)));
 					} else {
 						boolean found = false;
 						for (int j = 0; j < generics.getLength(); ++j) {
@@ -128,7 +175,7 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 								families[j] = generics.get(j);
 							}
 							families[generics.getLength()] = new FontFamily(name);
-							this.genericToFamily.put(name, new FontFamilyList(families));
+							genericToFamily.put(name, new FontFamilyList(families));
 						}
 					}
 				}
@@ -138,7 +185,7 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 				}
 				for (int j = 0; j < list.size(); ++j) {
 					FontSource source = list.get(j);
-					MultimapUtils.putDirect(this.nameToFonts, name, source);
+					MultimapUtils.putDirect(nameToFonts, name, source);
 				}
 				m.add(name);
 			}
@@ -165,33 +212,36 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 		// MultimapUtils.putDirect(this.nameToFonts, name, source);
 		// m.add(name);
 		// }
+
+		this.database = new FontDatabase(nameToFonts, genericToFamily, allFonts);
 	}
 
-	@SuppressWarnings("unchecked")
-	public synchronized FontSource[] lookup(final FontStyle fontStyle) {
+	public FontSource[] lookup(final FontStyle fontStyle) {
+		final FontDatabase database = this.database;
 		if (fontStyle == null) {
-			return this.allFonts.toArray(new FontSource[this.allFonts.size()]);
+			final Collection<FontSource> allFonts = database.allFonts();
+			return allFonts.toArray(new FontSource[allFonts.size()]);
 		}
 
-		FontSource[] fonts;
-		if (this.fontListCache != null) {
-			fonts = this.fontListCache.get(fontStyle);
-			if (fonts != null) {
-				return fonts;
-			}
+		final Map<FontStyle, FontSource[]> cache = database.fontListCache();
+		FontSource[] fonts = cache.get(fontStyle);
+		if (fonts != null) {
+			return fonts;
 		}
 
 		final List<FontSource> fontList = new ArrayList<FontSource>();
-		this.lookup(fontStyle, fontStyle.getFamily(), fontList, false);
+		this.lookup(database, fontStyle, fontStyle.getFamily(), fontList, false);
 		fonts = fontList.toArray(new FontSource[fontList.size()]);
-		if (this.fontListCache == null) {
-			this.fontListCache = new LRUMap();
+		if (cache.size() >= FONT_LIST_CACHE_SIZE) {
+			// Cheaper than keeping the access order, and styles are few in practice
+			cache.clear();
 		}
-		this.fontListCache.put(fontStyle, fonts);
+		cache.put(fontStyle, fonts);
 		return fonts;
 	}
 
-	protected void lookup(FontStyle fontStyle, FontFamilyList family, List<FontSource> fontList, boolean recurse) {
+	protected void lookup(FontDatabase database, FontStyle fontStyle, FontFamilyList family,
+			List<FontSource> fontList, boolean recurse) {
 		for (int i = 0; i < family.getLength(); ++i) {
 			FontSource[] fonts;
 			FontFamily entry = family.get(i);
@@ -202,14 +252,14 @@ public class PDFFontSourceManager implements FontSourceManager, Closeable {
 				if (recurse) {
 					throw new IllegalStateException("Generic font defined by another generic font");
 				}
-				FontFamilyList gfamily = this.genericToFamily.get(name);
+				FontFamilyList gfamily = database.genericToFamily().get(name);
 				if (gfamily != null) {
-					this.lookup(fontStyle, gfamily, fontList, true);
+					this.lookup(database, fontStyle, gfamily, fontList, true);
 				}
 				continue;
 			} else {
 				name = FontUtils.normalizeName(name);
-				fonts = MultimapUtils.get(this.nameToFonts, name);
+				fonts = MultimapUtils.get(database.nameToFonts(), name);
 				if (fonts == null) {
 					continue;
 				}
@@ -15,6 +15,7 @@ import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
 import net.zamasoft.pdfg2d.pdf.XRef;
 import net.zamasoft.pdfg2d.pdf.font.PDFEmbeddedFont;
+import net.zamasoft.pdfg2d.pdf.font.PDFFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDUtils;
 import net.zamasoft.pdfg2d.pdf.font.util.PDFFontUtils;
 import net.zamasoft.pdfg2d.pdf.gc.PDFGC;
@@ -63,6 +64,10 @@ class OpenTypeEmbeddedCIDFont extends OpenTypeFont implements PDFEmbeddedFont {
 		if (this.vSubst != null) {
 			fgid = this.vSubst.substitute(fgid);
 		}
+		return this.addSubstitutedGID(c, fgid);
+	}
+
+	private int addSubstitutedGID(int c, int fgid) {
 		int gid = this.fgidToGid.get(fgid);
 		if (gid == -1) {
 			gid = this.glyphCount++;
@@ -75,6 +80,15 @@ class OpenTypeEmbeddedCIDFont extends OpenTypeFont implements PDFEmbeddedFont {
 		return gid;
 	}
 
+	public int[] useGlyphs(PDFFont font) {
+		OpenTypeEmbeddedCIDFont other = (OpenTypeEmbeddedCIDFont) font;
+		int[] gids = new int[other.glyphCount];
+		for (int gid = 1; gid < other.glyphCount; ++gid) {
+			gids[gid] = this.addSubstitutedGID(other.gidToCid.get(gid), other.gidToFgid.get(gid));
+		}
+		return gids;
+	}
+
 	public int getLigature(int gid, int cid) {
 		if (gid == -1) {
 			return -1;
@@ -16,6 +16,7 @@ import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
 import net.zamasoft.pdfg2d.pdf.XRef;
 import net.zamasoft.pdfg2d.pdf.font.PDFEmbeddedFont;
+import net.zamasoft.pdfg2d.pdf.font.PDFFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDUtils;
 import net.zamasoft.pdfg2d.pdf.font.util.PDFFontUtils;
@@ -68,6 +69,15 @@ class SystemEmbeddedCIDFont extends CIDFont implements PDFEmbeddedFont, ShapedFo
 		return gid;
 	}
 
+	public int[] useGlyphs(PDFFont font) {
+		SystemEmbeddedCIDFont other = (SystemEmbeddedCIDFont) font;
+		int[] gids = new int[other.shapes.size()];
+		for (int gid = 1; gid < gids.length; ++gid) {
+			gids[gid] = this.toGID(other.unicodes.get(gid));
+		}
+		return gids;
+	}
+
 	public short getAdvance(int gid) {
 		return this.advances.get(gid);
 	}
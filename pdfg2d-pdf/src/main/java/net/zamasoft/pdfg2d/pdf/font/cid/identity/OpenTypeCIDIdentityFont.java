@@ -105,6 +105,23 @@ class OpenTypeCIDIdentityFont extends OpenTypeFont implements PDFFont {
 		}
 	}
 
+	public int[] useGlyphs(PDFFont font) {
+		// Glyph IDs are those of the font file, and only the glyphs drawn are recorded
+		OpenTypeCIDIdentityFont other = (OpenTypeCIDIdentityFont) font;
+		for (int gid = 0; gid < other.widths.size(); ++gid) {
+			short width = other.widths.get(gid);
+			if (width == Short.MIN_VALUE) {
+				continue;
+			}
+			this.widths.set(gid, width);
+			if (this.heights != null) {
+				this.heights.set(gid, other.heights.get(gid));
+			}
+			this.unicodes.set(gid, other.unicodes.get(gid));
+		}
+		return null;
+	}
+
 	public void writeTo(PDFFragmentOutput out, XRef xref) throws IOException {
 		OpenTypeCIDIdentityFontSource source = (OpenTypeCIDIdentityFontSource) this.getFontSource();
 		short[] w = this.widths.toArray();
@@ -8,6 +8,7 @@ import net.zamasoft.pdfg2d.gc.text.Text;
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
 import net.zamasoft.pdfg2d.pdf.XRef;
+import net.zamasoft.pdfg2d.pdf.font.PDFFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDUtils;
 import net.zamasoft.pdfg2d.pdf.font.util.PDFFontUtils;
@@ -60,6 +61,20 @@ class SystemCIDIdentityFont extends CIDFont {
 		}
 	}
 
+	public int[] useGlyphs(PDFFont font) {
+		// Glyph IDs are those of the system font, and only the glyphs drawn are recorded
+		SystemCIDIdentityFont other = (SystemCIDIdentityFont) font;
+		for (int gid = 0; gid < other.advances.size(); ++gid) {
+			short advance = other.advances.get(gid);
+			if (advance == Short.MIN_VALUE) {
+				continue;
+			}
+			this.advances.set(gid, advance);
+			this.unicodes.set(gid, other.unicodes.get(gid));
+		}
+		return null;
+	}
+
 	public void writeTo(PDFFragmentOutput out, XRef xref) throws IOException {
 		SystemCIDIdentityFontSource source = (SystemCIDIdentityFontSource) this.source;
 		CIDUtils.writeIdentityFont(out, xref, source, this.fontRef, this.advances.toArray(), null,
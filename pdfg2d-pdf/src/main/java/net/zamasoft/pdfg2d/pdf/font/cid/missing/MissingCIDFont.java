@@ -21,6 +21,7 @@ import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
 import net.zamasoft.pdfg2d.pdf.XRef;
 import net.zamasoft.pdfg2d.pdf.font.PDFEmbeddedFont;
+import net.zamasoft.pdfg2d.pdf.font.PDFFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDFont;
 import net.zamasoft.pdfg2d.pdf.font.cid.CIDUtils;
 import net.zamasoft.pdfg2d.pdf.font.util.PDFFontUtils;
@@ -74,6 +75,15 @@ class MissingCIDFont extends CIDFont implements PDFEmbeddedFont, ShapedFont {
 		return gid;
 	}
 
+	public int[] useGlyphs(PDFFont font) {
+		MissingCIDFont other = (MissingCIDFont) font;
+		int[] gids = new int[other.shapes.size()];
+		for (int gid = 0; gid < gids.length; ++gid) {
+			gids[gid] = this.toGID(other.unicodes.get(gid));
+		}
+		return gids;
+	}
+
 	public short getAdvance(int gid) {
 		int c = this.unicodes.get(gid);
 		return (short) (c <= 0xFFFF ? 1000 : 1400);
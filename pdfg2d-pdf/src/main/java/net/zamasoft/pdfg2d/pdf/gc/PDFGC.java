@@ -2,15 +2,15 @@ package net.zamasoft.pdfg2d.pdf.gc;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,6 +40,7 @@ import net.zamasoft.pdfg2d.gc.text.Text;
 import net.zamasoft.pdfg2d.pdf.PDFGraphicsOutput;
 import net.zamasoft.pdfg2d.pdf.PDFOutput;
 import net.zamasoft.pdfg2d.pdf.PDFWriter;
+import net.zamasoft.pdfg2d.pdf.ResourceCache;
 import net.zamasoft.pdfg2d.pdf.font.PDFFont;
 import net.zamasoft.pdfg2d.pdf.font.PDFFontSource;
 import net.zamasoft.pdfg2d.pdf.font.PDFFontSource.Type;
@@ -154,6 +155,9 @@ public class PDFGC implements GC, Closeable {
 	private static final double ONE_THIRD = 1.0 / 3.0;
 	private static final double TWO_THIRD = 2.0 / 3.0;
 
+	/** Distance of the control points of a quarter circle, as a fraction of its radius. */
+	private static final double KAPPA = 0.5522847498307936;
+
 	private record ExtGStateKey(float strokeAlpha, float fillAlpha, byte strokeOverprint, byte fillOverprint) {
 	}
 
@@ -228,7 +232,8 @@ public class PDFGC implements GC, Closeable {
 			float fillAlpha,
 			byte strokeOverprint,
 			byte fillOverprint,
-			AffineTransform actualTransform) {
+			AffineTransform actualTransform,
+			Rectangle2D visible) {
 
 		GraphicsState(final PDFGC gc) {
 			this(
@@ -244,7 +249,8 @@ public class PDFGC implements GC, Closeable {
 					gc.fillAlpha,
 					gc.strokeOverprint,
 					gc.fillOverprint,
-					gc.actualTransform != null ? new AffineTransform(gc.actualTransform) : null);
+					gc.actualTransform != null ? new AffineTransform(gc.actualTransform) : null,
+					gc.visible);
 		}
 
 		/**
@@ -265,20 +271,21 @@ public class PDFGC implements GC, Closeable {
 			gc.strokeOverprint = this.strokeOverprint;
 			gc.fillOverprint = this.fillOverprint;
 			gc.actualTransform = this.actualTransform;
+			gc.visible = this.visible;
 		}
 
 		GraphicsState withXState(final XGraphicsState xState) {
 			return new GraphicsState(
 					xState, lineWidth, lineCap, lineJoin, linePattern, strokePaint, fillPaint,
 					textMode, strokeAlpha, fillAlpha, strokeOverprint, fillOverprint,
-					actualTransform);
+					actualTransform, visible);
 		}
 
 		GraphicsState withoutXState() {
 			return new GraphicsState(
 					null, lineWidth, lineCap, lineJoin, linePattern, strokePaint, fillPaint,
 					textMode, strokeAlpha, fillAlpha, strokeOverprint, fillOverprint,
-					actualTransform);
+					actualTransform, visible);
 		}
 	}
 
@@ -297,6 +304,8 @@ public class PDFGC implements GC, Closeable {
 			byte fillOverprint,
 			byte strokeOverprint,
 			double letterSpacing,
+			String fontName,
+			double fontSize,
 			TextMode textMode) {
 
 		XGraphicsState(final PDFGC gc) {
@@ -312,6 +321,8 @@ public class PDFGC implements GC, Closeable {
 					gc.xfillOverprint,
 					gc.xstrokeOverprint,
 					gc.xletterSpacing,
+					gc.xfontName,
+					gc.xfontSize,
 					gc.xtextMode);
 		}
 
@@ -328,6 +339,8 @@ public class PDFGC implements GC, Closeable {
 			gc.xstrokePaint = this.strokePaint;
 			gc.xfillPaint = this.fillPaint;
 			gc.xletterSpacing = this.letterSpacing;
+			gc.xfontName = this.fontName;
+			gc.xfontSize = this.fontSize;
 			gc.xtextMode = this.textMode;
 			gc.xfillAlpha = this.fillAlpha;
 			gc.xstrokeAlpha = this.strokeAlpha;
@@ -344,6 +357,18 @@ public class PDFGC implements GC, Closeable {
 
 	private Shape clip = null;
 
+	/**
+	 * Bounds of the area that can be painted, clipped by the output and the
+	 * clips so far, in output coordinates. Never modified, but replaced.
+	 */
+	private Rectangle2D visible;
+
+	/** Corners of the bounds being culled. */
+	private final double[] corners = new double[8];
+
+	/** Number of primitives not written since they could not be seen. */
+	private long culled = 0;
+
 	/** Line cap style. */
 	private LineCap lineCap = LineCap.SQUARE;
 
@@ -382,6 +407,18 @@ public class PDFGC implements GC, Closeable {
 
 	private double xletterSpacing = 0;
 
+	/** Current PDF font, or null if not known. */
+	private String xfontName = null;
+
+	/** Current PDF font size. */
+	private double xfontSize = 0;
+
+	/** Start of the line of the open text object, as written. */
+	private double textX, textY;
+
+	/** Whether the text matrix of the open text object has no skew. */
+	private boolean textPlain = false;
+
 	/** Text rendering mode. */
 	private TextMode textMode = TextMode.FILL;
 
@@ -415,36 +452,44 @@ public class PDFGC implements GC, Closeable {
 	private record PatternKey(double pageWidth, double pageHeight, Image image, AffineTransform at) {
 	}
 
-	private final Map<Object, String> resourceCache;
+	/** Form XObject of the cell of a tiling pattern, shared by all its matrices. */
+	private record PatternCellKey(Image image) {
+	}
+
+	/** Names of the resources shared across the document. */
+	private final ResourceCache resourceCache;
+
+	/** Paths shared as forms, or null if they are not. */
+	private final ShapeCache shapeCache;
 
 	private final double[] cord = new double[6];
 
+	/** Distance within which paths are simplified, or 0 to write them as they are. */
+	private final double pathTolerance;
+
+	/** Points of a run of straight segments being simplified, reused by every path. */
+	private double[] run = null;
+
+	/** Points kept by the simplification. */
+	private boolean[] keep = null;
+
+	/** Stack of the ranges of points yet to be simplified. */
+	private int[] ranges = null;
+
 	private int qDepth = 0;
 
 	private final PDFParams.Version pdfVersion;
 
-	@SuppressWarnings("unchecked")
-	private PDFGC(final PDFGraphicsOutput out, final Map<Object, String> resourceCache) {
+	public PDFGC(final PDFGraphicsOutput out) {
 		this.out = out;
-		if (resourceCache == null) {
-			final var writer = out.getPdfWriter();
-			var cache = (Map<Object, String>) writer.getAttribute("sfResCache");
-			if (cache == null) {
-				cache = new HashMap<>();
-				writer.putAttribute("sfResCache", cache);
-			}
-			this.resourceCache = cache;
-		} else {
-			this.resourceCache = resourceCache;
-		}
+		this.resourceCache = out.getPdfWriter().getResourceCache();
+		this.shapeCache = ShapeCache.getInstance(out.getPdfWriter());
+		this.pathTolerance = out.getPdfWriter().getParams().pathTolerance();
 		this.pdfVersion = this.out.getPdfWriter().getParams().version();
+		this.visible = new Rectangle2D.Double(0, 0, out.getWidth(), out.getHeight());
 		this.stack.add(new GraphicsState(this));
 	}
 
-	public PDFGC(final PDFGraphicsOutput out) {
-		this(out, null);
-	}
-
 	public FontManager getFontManager() {
 		return this.getPdfWriter().getFontManager();
 	}
@@ -703,6 +748,111 @@ public class PDFGC implements GC, Closeable {
 			throw new GraphicsException(e);
 		}
 		this.clip = clip;
+		if (clip != null) {
+			// Rectangle2D.intersect would turn an empty intersection around
+			final var v = this.visible;
+			final var b = this.toOutput(clip.getBounds2D(), 0);
+			final var minX = Math.max(v.getMinX(), b.getMinX());
+			final var minY = Math.max(v.getMinY(), b.getMinY());
+			this.visible = new Rectangle2D.Double(minX, minY, Math.min(v.getMaxX(), b.getMaxX()) - minX,
+					Math.min(v.getMaxY(), b.getMaxY()) - minY);
+		}
+	}
+
+	/**
+	 * Returns the number of shapes, images and texts that were not written
+	 * because they were out of the output or the clip.
+	 *
+	 * @return The number of culled primitives.
+	 */
+	public long getCulledCount() {
+		return this.culled;
+	}
+
+	/**
+	 * Transforms bounds to output coordinates.
+	 *
+	 * @param bounds The bounds in user space.
+	 * @param outset The distance to extend the bounds by in user space.
+	 * @return The bounds of the transformed corners.
+	 */
+	private Rectangle2D toOutput(final Rectangle2D bounds, final double outset) {
+		final var c = this.corners;
+		c[0] = c[6] = bounds.getMinX() - outset;
+		c[1] = c[3] = bounds.getMinY() - outset;
+		c[2] = c[4] = bounds.getMaxX() + outset;
+		c[5] = c[7] = bounds.getMaxY() + outset;
+		if (this.actualTransform != null) {
+			this.actualTransform.transform(c, 0, c, 0, 4);
+		}
+		final var minX = Math.min(Math.min(c[0], c[2]), Math.min(c[4], c[6]));
+		final var minY = Math.min(Math.min(c[1], c[3]), Math.min(c[5], c[7]));
+		final var maxX = Math.max(Math.max(c[0], c[2]), Math.max(c[4], c[6]));
+		final var maxY = Math.max(Math.max(c[1], c[3]), Math.max(c[5], c[7]));
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * Checks whether anything within the bounds can be seen, and counts it if
+	 * not.
+	 *
+	 * @param bounds The bounds in user space.
+	 * @param outset The distance to extend the bounds by in user space.
+	 * @return true if nothing within the bounds can be seen.
+	 */
+	private boolean cull(final Rectangle2D bounds, final double outset) {
+		final var visible = this.visible;
+		final var b = this.toOutput(bounds, outset);
+		// One unit of slack for hairlines and rounding
+		if (visible.isEmpty() || b.getMaxX() + 1 < visible.getMinX() || b.getMinX() - 1 > visible.getMaxX()
+				|| b.getMaxY() + 1 < visible.getMinY() || b.getMinY() - 1 > visible.getMaxY()) {
+			++this.culled;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a text can be seen, and counts it if not.
+	 *
+	 * @param text The text.
+	 * @param x    The x coordinate of the origin.
+	 * @param y    The y coordinate of the origin.
+	 * @return true if the text cannot be seen.
+	 */
+	private boolean cullText(final Text text, final double x, final double y) {
+		final var fm = text.getFontMetrics();
+		final var glyphCount = text.getGlyphCount();
+		final var glyphIds = text.getGlyphIds();
+		final var spacing = Math.abs(text.getLetterSpacing());
+		var length = 0.0;
+		for (var i = 0; i < glyphCount; ++i) {
+			length += Math.max(Math.abs(fm.getAdvance(glyphIds[i])), Math.abs(fm.getWidth(glyphIds[i]))) + spacing;
+		}
+		final var xadvances = text.getXAdvances(false);
+		if (xadvances != null) {
+			for (var i = 0; i < glyphCount; ++i) {
+				length += Math.abs(xadvances[i]);
+			}
+		}
+		// Glyphs, and simulated bold and italic, may reach well out of the em box
+		final var margin = text.getFontStyle().getSize() * 2;
+		final var bounds = switch (text.getFontStyle().getDirection()) {
+			case LTR -> new Rectangle2D.Double(x - margin, y - margin, length + margin * 2, margin * 2);
+			case TB -> new Rectangle2D.Double(x - margin, y - margin, margin * 2, length + margin * 2);
+			default -> new Rectangle2D.Double(x - length - margin, y - margin, (length + margin) * 2, margin * 2);
+		};
+		return this.cull(bounds, this.textMode == TextMode.FILL ? 0 : this.strokeOutset());
+	}
+
+	/**
+	 * Returns how far a stroke may reach out of the path.
+	 *
+	 * @return The distance in user space.
+	 */
+	private double strokeOutset() {
+		// A miter join reaches 5 line widths out at the default miter limit of 10
+		return this.lineWidth * 5;
 	}
 
 	@Override
@@ -710,8 +860,12 @@ public class PDFGC implements GC, Closeable {
 		if (DEBUG) {
 			LOG.fine("fill: " + shape.getBounds2D());
 		}
+		if (this.cull(shape.getBounds2D(), 0)) {
+			return;
+		}
 		try {
 			this.applyStates();
+			this.out.endText();
 			final int winding;
 			if (shape instanceof Rectangle2D r) {
 				if (this.out.equals(r.getWidth(), 0.0) || this.out.equals(r.getHeight(), 0.0)) {
@@ -719,6 +873,14 @@ public class PDFGC implements GC, Closeable {
 				}
 				winding = PathIterator.WIND_NON_ZERO;
 				this.plotRect(r);
+			} else if (shape instanceof Line2D) {
+				// A line has nothing inside
+				return;
+			} else if (shape instanceof RoundRectangle2D r) {
+				winding = PathIterator.WIND_NON_ZERO;
+				this.plotRoundRect(r);
+			} else if (this.drawShared(shape, true, false)) {
+				return;
 			} else {
 				final var i = shape.getPathIterator(null);
 				winding = i.getWindingRule();
@@ -741,12 +903,23 @@ public class PDFGC implements GC, Closeable {
 		if (DEBUG) {
 			LOG.fine("draw: " + shape.getBounds2D());
 		}
+		if (this.cull(shape.getBounds2D(), this.strokeOutset())) {
+			return;
+		}
 		try {
 			this.applyStates();
+			this.out.endText();
 			final boolean close;
 			if (shape instanceof Rectangle2D r) {
 				close = false;
 				this.plotRect(r);
+			} else if (shape instanceof Line2D l) {
+				close = false;
+				this.plotLine(l);
+			} else if (shape instanceof RoundRectangle2D r) {
+				close = this.plotRoundRect(r);
+			} else if (this.drawShared(shape, false, true)) {
+				return;
 			} else {
 				final var i = shape.getPathIterator(null);
 				close = this.plot(i);
@@ -763,14 +936,27 @@ public class PDFGC implements GC, Closeable {
 		if (DEBUG) {
 			LOG.fine("fillDraw: " + shape.getBounds2D());
 		}
+		if (this.cull(shape.getBounds2D(), this.strokeOutset())) {
+			return;
+		}
 		try {
 			this.applyStates();
+			this.out.endText();
 			final int winding;
 			final boolean close;
 			if (shape instanceof Rectangle2D r) {
 				winding = PathIterator.WIND_NON_ZERO;
 				close = false;
 				this.plotRect(r);
+			} else if (shape instanceof Line2D l) {
+				winding = PathIterator.WIND_NON_ZERO;
+				close = false;
+				this.plotLine(l);
+			} else if (shape instanceof RoundRectangle2D r) {
+				winding = PathIterator.WIND_NON_ZERO;
+				close = this.plotRoundRect(r);
+			} else if (this.drawShared(shape, true, true)) {
+				return;
 			} else {
 				final var i = shape.getPathIterator(null);
 				winding = i.getWindingRule();
@@ -788,6 +974,77 @@ public class PDFGC implements GC, Closeable {
 		}
 	}
 
+	/**
+	 * Draws a path by referring to a form, if it is drawn often enough to be
+	 * shared.
+	 * <p>
+	 * The form only holds the path and the painting operator, and the colors
+	 * and the stroke come from the graphics state it is drawn in. Patterns and
+	 * shadings are left alone, since they would be mapped to the space of the
+	 * form.
+	 * </p>
+	 *
+	 * @param shape  The shape.
+	 * @param fill   Whether the shape is filled.
+	 * @param stroke Whether the shape is stroked.
+	 * @return true if the shape has been drawn, false if it has to be plotted.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private boolean drawShared(final Shape shape, final boolean fill, final boolean stroke) throws IOException {
+		final var cache = this.shapeCache;
+		if (cache == null || (fill && !isColor(this.fillPaint)) || (stroke && !isColor(this.strokePaint))) {
+			return false;
+		}
+		final var path = ShapeCache.Path.of(shape.getPathIterator(null), this.out.getPrecision());
+		if (path == null) {
+			return false;
+		}
+		final var even = path.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+		final String operator;
+		if (fill && stroke) {
+			operator = path.isClosed() ? (even ? "b*" : "b") : (even ? "B*" : "B");
+		} else if (fill) {
+			operator = even ? "f*" : "f";
+		} else {
+			operator = path.isClosed() ? "s" : "S";
+		}
+		final var key = new ShapeCache.Key(path, operator, stroke ? this.lineWidth : 0);
+
+		// The form reaches as far out as the culling bounds, with a point to spare
+		final var margin = (stroke ? this.strokeOutset() : 0) + 1;
+		final var height = path.getHeight() + margin * 2;
+		var name = cache.find(key);
+		if (name == null) {
+			if (!cache.offer(key)) {
+				return false;
+			}
+			try (final var fout = this.getPdfWriter().createForm(path.getWidth() + margin * 2, height)) {
+				new PDFGC(fout).plot(path.iterator(margin, margin));
+				fout.writeOperator(operator);
+				name = fout.getName();
+			}
+			cache.put(key, name);
+		}
+
+		final var out = this.out;
+		this.q();
+		out.writeReal(1);
+		out.writeReal(0);
+		out.writeReal(0);
+		out.writeReal(1);
+		out.writePosition(path.getX() - margin, path.getY() - margin + height);
+		out.writeOperator("cm");
+		out.useResource("XObject", name);
+		out.writeName(name);
+		out.writeOperator("Do");
+		this.Q();
+		return true;
+	}
+
+	private static boolean isColor(final Paint paint) {
+		return paint != null && paint.getPaintType() == Paint.Type.COLOR;
+	}
+
 	@Override
 	public void drawImage(final Image image) throws GraphicsException {
 		if (DEBUG) {
@@ -802,6 +1059,9 @@ public class PDFGC implements GC, Closeable {
 	}
 
 	public void drawPDFImage(final String name, final double width, final double height) throws GraphicsException {
+		if (this.cull(new Rectangle2D.Double(0, 0, width, height), 0)) {
+			return;
+		}
 		try {
 			this.applyStates();
 			this.begin();
@@ -832,6 +1092,9 @@ public class PDFGC implements GC, Closeable {
 		if (text.getGlyphCount() <= 0) {
 			return;
 		}
+		if (this.cullText(text, x, y)) {
+			return;
+		}
 
 		final var font = ((FontMetricsImpl) text.getFontMetrics()).getFont();
 		final var fpl = text.getFontStyle().getPolicy();
@@ -965,8 +1228,12 @@ public class PDFGC implements GC, Closeable {
 				default -> throw new IllegalStateException("Unexpected direction: " + direction);
 			}
 
-			// Begin text
-			this.out.writeOperator("BT");
+			// Begin text, or go on with the text object left open by the previous run
+			final var out = this.out;
+			final var open = out.isInText();
+			out.beginText();
+			final var tx = out.round(drawX);
+			final var ty = out.round(out.getHeight() - drawY);
 
 			// Italic
 			final var style = fontStyle.getStyle();
@@ -974,32 +1241,57 @@ public class PDFGC implements GC, Closeable {
 				// Simulate italic manually
 				if (verticalFont) {
 					// Vertical italic
-					this.out.writeReal(1);
-					this.out.writeReal(-0.25);
-					this.out.writeReal(0);
-					this.out.writeReal(1);
-					this.out.writePosition(drawX, drawY);
-					this.out.writeOperator("Tm");
+					out.writeReal(1);
+					out.writeReal(-0.25);
+					out.writeReal(0);
+					out.writeReal(1);
+					out.writePosition(drawX, drawY);
+					out.writeOperator("Tm");
 				} else {
 					// Horizontal italic
-					this.out.writeReal(1);
-					this.out.writeReal(0);
-					this.out.writeReal(0.25);
-					this.out.writeReal(1);
-					this.out.writePosition(drawX, drawY);
-					this.out.writeOperator("Tm");
+					out.writeReal(1);
+					out.writeReal(0);
+					out.writeReal(0.25);
+					out.writeReal(1);
+					out.writePosition(drawX, drawY);
+					out.writeOperator("Tm");
 				}
+				this.textPlain = false;
+			} else if (open && this.textPlain) {
+				// Relative to the start of the previous run; both are rounded, so errors do not add up
+				out.writeReal(tx - this.textX);
+				out.writeReal(ty - this.textY);
+				out.writeOperator("Td");
 			} else {
-				this.out.writePosition(drawX, drawY);
-				this.out.writeOperator("Td");
+				if (open) {
+					// Td would keep the skew of the previous run
+					out.writeReal(1);
+					out.writeReal(0);
+					out.writeReal(0);
+					out.writeReal(1);
+					out.writePosition(drawX, drawY);
+					out.writeOperator("Tm");
+				} else {
+					out.writePosition(drawX, drawY);
+					out.writeOperator("Td");
+				}
+				this.textPlain = true;
 			}
+			this.textX = tx;
+			this.textY = ty;
 
-			// Font name and size
+			// Font name and size, which stay in effect across text objects
 			String name = ((PDFFont) font).getName();
-			this.out.useResource("Font", name);
-			this.out.writeName(name);
-			this.out.writeReal(size);
-			this.out.writeOperator("Tf");
+			if (!name.equals(this.xfontName) || !out.equals(size, this.xfontSize)) {
+				out.useResource("Font", name);
+				out.writeName(name);
+				out.writeReal(size);
+				out.writeOperator("Tf");
+				if (!localContext) {
+					this.xfontName = name;
+					this.xfontSize = size;
+				}
+			}
 
 			// Letter spacing
 			double letterSpacing = text.getLetterSpacing();
@@ -1016,10 +1308,12 @@ public class PDFGC implements GC, Closeable {
 			}
 
 			// Draw
-			font.drawTo(this, text);
+			out.drawText((PDFFont) font, this, text);
 
-			// End text
-			this.out.writeOperator("ET");
+			// The text object is left open for the next run, unless the state around it is restored
+			if (localContext) {
+				out.endText();
+			}
 
 			if (enlargement > 0 && this.fillPaint.getPaintType() == Paint.Type.COLOR && this.fillAlpha == 1) {
 				// End bold simulation
@@ -1076,6 +1370,7 @@ public class PDFGC implements GC, Closeable {
 	 */
 	protected void applyTransform() throws IOException {
 		if (this.transform != null) {
+			this.out.endText();
 			this.gsave();
 			this.out.writeTransform(this.transform);
 			this.out.writeOperator("cm");
@@ -1090,6 +1385,7 @@ public class PDFGC implements GC, Closeable {
 	 */
 	protected void applyClip() throws IOException {
 		if (this.clip != null) {
+			this.out.endText();
 			this.gsave();
 			final int winding;
 			if (this.clip instanceof Rectangle2D r) {
@@ -1113,6 +1409,17 @@ public class PDFGC implements GC, Closeable {
 		}
 	}
 
+	/**
+	 * Rounds a transform to the precision of the output, so that transforms
+	 * written the same are equal.
+	 *
+	 * @param at The transform, or null.
+	 * @return The rounded transform, or null.
+	 */
+	private AffineTransform quantize(final AffineTransform at) {
+		return this.resourceCache.quantize(at);
+	}
+
 	/**
 	 * Retrieves the PDF resource name for the given paint.
 	 *
@@ -1133,17 +1440,32 @@ public class PDFGC implements GC, Closeable {
 				}
 
 				final var pout = this.out;
+				final var pdfWriter = pout.getPdfWriter();
+				at = this.quantize(at);
 				final var key = new PatternKey(pout.getWidth(), pout.getHeight(), image, at);
 
 				var name = this.resourceCache.get(key);
 				if (name == null) {
 					final var width = image.getWidth();
 					final var height = image.getHeight();
-					try (final var tout = pout.getPdfWriter().createTilingPattern(width, height, pout.getHeight(),
-							at)) {
-						final var pgc = new PDFGC(tout, this.resourceCache);
-						image.drawTo(pgc);
-						name = tout.getName();
+					try {
+						// The cell is drawn once, and each matrix gets a pattern that only refers to it
+						final var cellKey = new PatternCellKey(image);
+						var cell = this.resourceCache.get(cellKey);
+						if (cell == null) {
+							try (final var fout = pdfWriter.createForm(width, height)) {
+								final var fgc = new PDFGC(fout);
+								image.drawTo(fgc);
+								cell = fout.getName();
+							}
+							this.resourceCache.put(cellKey, cell);
+						}
+						try (final var tout = pdfWriter.createTilingPattern(width, height, pout.getHeight(), at)) {
+							tout.useResource("XObject", cell);
+							tout.writeName(cell);
+							tout.writeOperator("Do");
+							name = tout.getName();
+						}
 					} catch (IOException e) {
 						throw new GraphicsException(e);
 					}
@@ -1166,7 +1488,13 @@ public class PDFGC implements GC, Closeable {
 				}
 
 				final var pout = this.out;
-				final var key = new ShadingKey(pout.getHeight(), at, gradient);
+				at = this.quantize(at);
+				final var cache = this.resourceCache;
+				// The transform of the gradient is already in the matrix
+				final var key = new ShadingKey(pout.getHeight(), at,
+						new LinearGradient(cache.quantize(gradient.x1()), cache.quantize(gradient.y1()),
+								cache.quantize(gradient.x2()), cache.quantize(gradient.y2()),
+								cache.quantize(gradient.fractions()), gradient.colors(), gradient.transform()));
 				var name = this.resourceCache.get(key);
 				if (name != null) {
 					yield name;
@@ -1210,7 +1538,12 @@ public class PDFGC implements GC, Closeable {
 				}
 
 				final var pout = this.out;
-				final var key = new ShadingKey(pout.getHeight(), at, gp);
+				at = this.quantize(at);
+				final var cache = this.resourceCache;
+				final var key = new ShadingKey(pout.getHeight(), at,
+						new RadialGradient(cache.quantize(gp.cx()), cache.quantize(gp.cy()),
+								cache.quantize(radius), cache.quantize(gp.fx()), cache.quantize(gp.fy()),
+								cache.quantize(gp.fractions()), gp.colors(), gp.transform()));
 				var name = this.resourceCache.get(key);
 				if (name != null) {
 					yield name;
@@ -1569,15 +1902,10 @@ public class PDFGC implements GC, Closeable {
 			this.xfillAlpha = this.fillAlpha;
 			this.xstrokeOverprint = this.strokeOverprint;
 			this.xfillOverprint = this.fillOverprint;
-			@SuppressWarnings("unchecked")
-			var gsCache = (Map<ExtGStateKey, String>) this.out.getPdfWriter().getAttribute("sfGsCache");
-			if (gsCache == null) {
-				gsCache = new HashMap<>();
-				this.out.getPdfWriter().putAttribute("sfGsCache", gsCache);
-			}
+			final var gsCache = this.resourceCache;
 			final var key = new ExtGStateKey(
-					supportAlpha ? this.strokeAlpha : 1.0f,
-					supportAlpha ? this.fillAlpha : 1.0f,
+					supportAlpha ? (float) gsCache.quantize(this.strokeAlpha) : 1.0f,
+					supportAlpha ? (float) gsCache.quantize(this.fillAlpha) : 1.0f,
 					this.strokeOverprint,
 					this.fillOverprint);
 			var name = gsCache.get(key);
@@ -1662,6 +1990,7 @@ public class PDFGC implements GC, Closeable {
 				throw new IllegalStateException("PDF/A-1 cannot nest graphic states more than 28 levels.");
 			}
 		}
+		this.out.endText();
 		this.out.writeOperator("q");
 	}
 
@@ -1672,6 +2001,7 @@ public class PDFGC implements GC, Closeable {
 	 */
 	private void Q() throws IOException {
 		--this.qDepth;
+		this.out.endText();
 		this.out.writeOperator("Q");
 	}
 
@@ -1686,6 +2016,90 @@ public class PDFGC implements GC, Closeable {
 		this.out.writeOperator("re");
 	}
 
+	/**
+	 * Plots a straight line in the PDF.
+	 *
+	 * @param l The line to plot.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected void plotLine(final Line2D l) throws IOException {
+		final var out = this.out;
+		out.writePosition(l.getX1(), l.getY1());
+		out.writeOperator("m");
+		out.writePosition(l.getX2(), l.getY2());
+		out.writeOperator("l");
+	}
+
+	/**
+	 * Plots a rounded rectangle in the PDF.
+	 * <p>
+	 * The corners are quarter ellipses of four curves, starting from the same
+	 * point and going the same way as the path iterator of
+	 * {@link RoundRectangle2D}, so that dashes fall in the same places.
+	 * </p>
+	 *
+	 * @param r The rounded rectangle to plot.
+	 * @return true if the path is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected boolean plotRoundRect(final RoundRectangle2D r) throws IOException {
+		final var w = r.getWidth();
+		final var h = r.getHeight();
+		if (w < 0 || h < 0) {
+			// Nothing is drawn, the way the path iterator has it
+			return this.plot(r.getPathIterator(null));
+		}
+		final var rx = Math.min(w, Math.abs(r.getArcWidth())) / 2;
+		final var ry = Math.min(h, Math.abs(r.getArcHeight())) / 2;
+		if (rx == 0 || ry == 0) {
+			this.plotRect(r.getBounds2D());
+			return false;
+		}
+		final var out = this.out;
+		final var x1 = r.getX();
+		final var y1 = r.getY();
+		final var x2 = x1 + w;
+		final var y2 = y1 + h;
+		final var kx = rx * KAPPA;
+		final var ky = ry * KAPPA;
+
+		out.writePosition(x1, y1 + ry);
+		out.writeOperator("m");
+		if (!out.equals(ry * 2, h)) {
+			out.writePosition(x1, y2 - ry);
+			out.writeOperator("l");
+		}
+		out.writePosition(x1, y2 - ry + ky);
+		out.writePosition(x1 + rx - kx, y2);
+		out.writePosition(x1 + rx, y2);
+		out.writeOperator("c");
+		if (!out.equals(rx * 2, w)) {
+			out.writePosition(x2 - rx, y2);
+			out.writeOperator("l");
+		}
+		out.writePosition(x2 - rx + kx, y2);
+		out.writePosition(x2, y2 - ry + ky);
+		out.writePosition(x2, y2 - ry);
+		out.writeOperator("c");
+		if (!out.equals(ry * 2, h)) {
+			out.writePosition(x2, y1 + ry);
+			out.writeOperator("l");
+		}
+		out.writePosition(x2, y1 + ry - ky);
+		out.writePosition(x2 - rx + kx, y1);
+		out.writePosition(x2 - rx, y1);
+		out.writeOperator("c");
+		if (!out.equals(rx * 2, w)) {
+			out.writePosition(x1 + rx, y1);
+			out.writeOperator("l");
+		}
+		out.writePosition(x1 + rx - kx, y1);
+		out.writePosition(x1, y1 + ry - ky);
+		out.writePosition(x1, y1 + ry);
+		out.writeOperator("c");
+		return true;
+	}
+
 	/**
 	 * Plots a path in the PDF.
 	 *
@@ -1694,6 +2108,9 @@ public class PDFGC implements GC, Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	protected boolean plot(final PathIterator i) throws IOException {
+		if (this.pathTolerance > 0) {
+			return this.plotSimplified(i);
+		}
 		final var out = this.out;
 		final var c = this.cord;
 
@@ -1769,6 +2186,221 @@ public class PDFGC implements GC, Closeable {
 		return false;
 	}
 
+	/**
+	 * Plots a path in the PDF, simplifying it within the path tolerance.
+	 * <p>
+	 * Runs of straight segments are reduced by the Ramer-Douglas-Peucker
+	 * algorithm, and curves whose control points are within half of the
+	 * tolerance from their chord join the runs as straight segments, so that
+	 * no point of the path moves further than the tolerance. The buffers are
+	 * kept for the next path.
+	 * </p>
+	 *
+	 * @param i The path iterator.
+	 * @return true if the path is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private boolean plotSimplified(final PathIterator i) throws IOException {
+		final var out = this.out;
+		final var c = this.cord;
+		// Finer differences cannot be written anyway
+		final var tolerance = Math.max(this.pathTolerance, 0.5 / Math.pow(10, out.getPrecision()));
+		final var flatness = tolerance / 2;
+		if (this.run == null) {
+			this.run = new double[128];
+			this.keep = new boolean[64];
+			this.ranges = new int[128];
+		}
+
+		// The current point, the start of the subpath and the length of the run
+		var x = 0.0;
+		var y = 0.0;
+		var mx = 0.0;
+		var my = 0.0;
+		var length = 0;
+
+		while (!i.isDone()) {
+			final var type = i.currentSegment(c);
+			switch (type) {
+				case PathIterator.SEG_MOVETO -> {
+					this.flushRun(length, tolerance);
+					length = 0;
+					mx = x = c[0];
+					my = y = c[1];
+					out.writePosition(x, y);
+					out.writeOperator("m");
+				}
+				case PathIterator.SEG_LINETO -> {
+					length = this.addToRun(length, x, y, c[0], c[1]);
+					x = c[0];
+					y = c[1];
+				}
+				case PathIterator.SEG_QUADTO -> {
+					if (distance(c[0], c[1], x, y, c[2], c[3]) <= flatness) {
+						length = this.addToRun(length, x, y, c[2], c[3]);
+					} else {
+						this.flushRun(length, tolerance);
+						length = 0;
+						out.writePosition(x * ONE_THIRD + c[0] * TWO_THIRD, y * ONE_THIRD + c[1] * TWO_THIRD);
+						out.writePosition(c[2] * ONE_THIRD + c[0] * TWO_THIRD, c[3] * ONE_THIRD + c[1] * TWO_THIRD);
+						out.writePosition(c[2], c[3]);
+						out.writeOperator("c");
+					}
+					x = c[2];
+					y = c[3];
+				}
+				case PathIterator.SEG_CUBICTO -> {
+					if (distance(c[0], c[1], x, y, c[4], c[5]) <= flatness
+							&& distance(c[2], c[3], x, y, c[4], c[5]) <= flatness) {
+						length = this.addToRun(length, x, y, c[4], c[5]);
+					} else {
+						this.flushRun(length, tolerance);
+						length = 0;
+						out.writePosition(c[0], c[1]);
+						out.writePosition(c[2], c[3]);
+						out.writePosition(c[4], c[5]);
+						out.writeOperator("c");
+					}
+					x = c[4];
+					y = c[5];
+				}
+				case PathIterator.SEG_CLOSE -> {
+					this.flushRun(length, tolerance);
+					length = 0;
+					i.next();
+					if (i.isDone()) {
+						return true;
+					}
+					out.writeOperator("h");
+					x = mx;
+					y = my;
+					continue;
+				}
+				default -> throw new IllegalStateException("Unknown segment type: " + type);
+			}
+			i.next();
+		}
+		this.flushRun(length, tolerance);
+		return false;
+	}
+
+	/**
+	 * Adds a point to the run of straight segments.
+	 *
+	 * @param length The number of points in the run.
+	 * @param x0     The x coordinate of the current point, which starts the run.
+	 * @param y0     The y coordinate of the current point, which starts the run.
+	 * @param x      The x coordinate of the point.
+	 * @param y      The y coordinate of the point.
+	 * @return The new number of points.
+	 */
+	private int addToRun(int length, final double x0, final double y0, final double x, final double y) {
+		var run = this.run;
+		if (length == 0) {
+			run[0] = x0;
+			run[1] = y0;
+			length = 1;
+		}
+		if (length * 2 + 2 > run.length) {
+			this.run = run = Arrays.copyOf(run, run.length * 2);
+		}
+		run[length * 2] = x;
+		run[length * 2 + 1] = y;
+		return length + 1;
+	}
+
+	/**
+	 * Writes the run of straight segments, leaving out the points that are
+	 * within the tolerance from the simplified line. The first point has
+	 * already been written.
+	 *
+	 * @param length    The number of points in the run.
+	 * @param tolerance The distance within which points are left out.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void flushRun(final int length, final double tolerance) throws IOException {
+		if (length < 2) {
+			return;
+		}
+		final var out = this.out;
+		final var run = this.run;
+		final var last = length - 1;
+		if (this.keep.length < length) {
+			this.keep = new boolean[Math.max(length, this.keep.length * 2)];
+			this.ranges = new int[this.keep.length * 2];
+		}
+		final var keep = this.keep;
+		final var ranges = this.ranges;
+		Arrays.fill(keep, 0, length, false);
+		keep[0] = keep[last] = true;
+
+		// Ramer-Douglas-Peucker without recursion; a range is pushed only after
+		// a point has been kept, so the stack never holds more than the points
+		var top = 0;
+		ranges[top++] = 0;
+		ranges[top++] = last;
+		while (top > 0) {
+			final var b = ranges[--top];
+			final var a = ranges[--top];
+			var max = tolerance;
+			var k = -1;
+			for (var j = a + 1; j < b; ++j) {
+				final var d = distance(run[j * 2], run[j * 2 + 1], run[a * 2], run[a * 2 + 1], run[b * 2],
+						run[b * 2 + 1]);
+				if (d > max) {
+					max = d;
+					k = j;
+				}
+			}
+			if (k != -1) {
+				keep[k] = true;
+				ranges[top++] = a;
+				ranges[top++] = k;
+				ranges[top++] = k;
+				ranges[top++] = b;
+			}
+		}
+
+		var px = run[0];
+		var py = run[1];
+		for (var j = 1; j <= last; ++j) {
+			if (!keep[j]) {
+				continue;
+			}
+			final var x = run[j * 2];
+			final var y = run[j * 2 + 1];
+			if (!out.equals(x, px) || !out.equals(y, py)) {
+				out.writePosition(x, y);
+				out.writeOperator("l");
+				px = x;
+				py = y;
+			}
+		}
+	}
+
+	/**
+	 * Returns the distance from a point to a line segment.
+	 *
+	 * @param x  The x coordinate of the point.
+	 * @param y  The y coordinate of the point.
+	 * @param x1 The x coordinate of the start of the segment.
+	 * @param y1 The y coordinate of the start of the segment.
+	 * @param x2 The x coordinate of the end of the segment.
+	 * @param y2 The y coordinate of the end of the segment.
+	 * @return The distance.
+	 */
+	private static double distance(final double x, final double y, final double x1, final double y1,
+			final double x2, final double y2) {
+		final var dx = x2 - x1;
+		final var dy = y2 - y1;
+		final var len = dx * dx + dy * dy;
+		var t = len == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / len;
+		t = Math.max(0, Math.min(1, t));
+		final var ex = x - x1 - t * dx;
+		final var ey = y - y1 - t * dy;
+		return Math.sqrt(ex * ex + ey * ey);
+	}
+
 	public void close() throws IOException {
 		this.out.close();
 	}
@@ -0,0 +1,326 @@
+package net.zamasoft.pdfg2d.pdf.gc;
+
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.zamasoft.pdfg2d.pdf.PDFWriter;
+
+/**
+ * Document-wide cache of paths that are drawn again and again.
+ * <p>
+ * Paths are compared by their segments relative to the top-left corner of
+ * their bounds, so a symbol drawn at many places is the same path. Sightings
+ * of candidate paths are counted in a bounded LRU map; once a path has been
+ * seen as many times as the threshold of
+ * {@link net.zamasoft.pdfg2d.pdf.params.PDFParams#shapeCacheThreshold()}, it
+ * is written once as a form XObject and drawn by reference from then on.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public final class ShapeCache {
+	private static final String ATTRIBUTE = "sfShapeCache";
+
+	/** Maximum number of candidate paths whose sightings are counted. */
+	private static final int MAX_CANDIDATES = 4096;
+
+	/** Shorter paths are cheaper to write out than to refer to. */
+	private static final int MIN_SEGMENTS = 4;
+
+	/**
+	 * Segments of a path relative to the top-left corner of its bounds.
+	 * Only the segments and the winding rule take part in the comparison.
+	 */
+	static final class Path {
+		private final int winding;
+		private final byte[] types;
+		private final double[] coords;
+		private final int hash;
+		private final double x, y, width, height;
+
+		private Path(final int winding, final byte[] types, final double[] coords, final double x, final double y,
+				final double width, final double height) {
+			this.winding = winding;
+			this.types = types;
+			this.coords = coords;
+			this.hash = (Arrays.hashCode(types) * 31 + Arrays.hashCode(coords)) * 31 + winding;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Collects the segments of a path.
+		 *
+		 * @param i         The path iterator.
+		 * @param precision The number of decimal places of the output.
+		 * @return The path, or null if it is too short to be worth sharing.
+		 */
+		static Path of(final PathIterator i, final int precision) {
+			final var winding = i.getWindingRule();
+			var types = new byte[16];
+			var coords = new double[32];
+			var segments = 0;
+			var length = 0;
+			var minX = Double.POSITIVE_INFINITY;
+			var minY = Double.POSITIVE_INFINITY;
+			final var c = new double[6];
+			for (; !i.isDone(); i.next()) {
+				final var type = i.currentSegment(c);
+				final var n = count(type);
+				if (segments == types.length) {
+					types = Arrays.copyOf(types, segments * 2);
+				}
+				types[segments++] = (byte) type;
+				if (length + n > coords.length) {
+					coords = Arrays.copyOf(coords, coords.length * 2);
+				}
+				for (var j = 0; j < n; j += 2) {
+					minX = Math.min(minX, c[j]);
+					minY = Math.min(minY, c[j + 1]);
+				}
+				System.arraycopy(c, 0, coords, length, n);
+				length += n;
+			}
+			if (segments < MIN_SEGMENTS || length == 0) {
+				return null;
+			}
+			types = Arrays.copyOf(types, segments);
+			coords = Arrays.copyOf(coords, length);
+
+			// Rounded as they are written, so that paths written the same are equal
+			final var scale = Math.pow(10, precision);
+			var width = 0.0;
+			var height = 0.0;
+			for (var j = 0; j < length; j += 2) {
+				coords[j] = Math.round((coords[j] - minX) * scale) / scale;
+				coords[j + 1] = Math.round((coords[j + 1] - minY) * scale) / scale;
+				width = Math.max(width, coords[j]);
+				height = Math.max(height, coords[j + 1]);
+			}
+			return new Path(winding, types, coords, minX, minY, width, height);
+		}
+
+		/**
+		 * Returns whether the path ends with a close segment.
+		 *
+		 * @return true if the path is closed.
+		 */
+		boolean isClosed() {
+			return this.types[this.types.length - 1] == PathIterator.SEG_CLOSE;
+		}
+
+		int getWindingRule() {
+			return this.winding;
+		}
+
+		double getX() {
+			return this.x;
+		}
+
+		double getY() {
+			return this.y;
+		}
+
+		double getWidth() {
+			return this.width;
+		}
+
+		double getHeight() {
+			return this.height;
+		}
+
+		/**
+		 * Iterates the segments moved by the given offset.
+		 *
+		 * @param dx The horizontal offset.
+		 * @param dy The vertical offset.
+		 * @return The path iterator.
+		 */
+		PathIterator iterator(final double dx, final double dy) {
+			return new PathIterator() {
+				private int segment = 0, offset = 0;
+
+				@Override
+				public int getWindingRule() {
+					return Path.this.winding;
+				}
+
+				@Override
+				public boolean isDone() {
+					return this.segment >= Path.this.types.length;
+				}
+
+				@Override
+				public void next() {
+					this.offset += count(Path.this.types[this.segment++]);
+				}
+
+				@Override
+				public int currentSegment(final float[] coords) {
+					final var type = Path.this.types[this.segment];
+					for (var j = 0; j < count(type); j += 2) {
+						coords[j] = (float) (Path.this.coords[this.offset + j] + dx);
+						coords[j + 1] = (float) (Path.this.coords[this.offset + j + 1] + dy);
+					}
+					return type;
+				}
+
+				@Override
+				public int currentSegment(final double[] coords) {
+					final var type = Path.this.types[this.segment];
+					for (var j = 0; j < count(type); j += 2) {
+						coords[j] = Path.this.coords[this.offset + j] + dx;
+						coords[j + 1] = Path.this.coords[this.offset + j + 1] + dy;
+					}
+					return type;
+				}
+			};
+		}
+
+		private static int count(final int type) {
+			return switch (type) {
+				case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 2;
+				case PathIterator.SEG_QUADTO -> 4;
+				case PathIterator.SEG_CUBICTO -> 6;
+				case PathIterator.SEG_CLOSE -> 0;
+				default -> throw new IllegalStateException("Unknown segment type: " + type);
+			};
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			return o instanceof Path p && this.hash == p.hash && this.winding == p.winding
+					&& Arrays.equals(this.types, p.types) && Arrays.equals(this.coords, p.coords);
+		}
+	}
+
+	/**
+	 * A path together with the way it is painted.
+	 *
+	 * @param path      The path.
+	 * @param operator  The painting operator.
+	 * @param lineWidth The line width for stroking operators, otherwise 0.
+	 */
+	record Key(Path path, String operator, double lineWidth) {
+	}
+
+	private final int threshold;
+
+	private final Map<Key, Integer> candidates = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, Integer> eldest) {
+			return this.size() > MAX_CANDIDATES;
+		}
+	};
+
+	private final Map<Key, String> forms = new HashMap<>();
+
+	private long hits = 0, misses = 0;
+
+	private ShapeCache(final int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Returns the cache of the document.
+	 *
+	 * @param writer The PDF writer.
+	 * @return The cache, or null if shapes are not cached.
+	 */
+	public static ShapeCache getInstance(final PDFWriter writer) {
+		final var threshold = writer.getParams().shapeCacheThreshold();
+		if (threshold <= 0) {
+			return null;
+		}
+		var cache = (ShapeCache) writer.getAttribute(ATTRIBUTE);
+		if (cache == null) {
+			cache = new ShapeCache(threshold);
+			writer.putAttribute(ATTRIBUTE, cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the form of a path that is already shared.
+	 *
+	 * @param key The path and its painting.
+	 * @return The form XObject name, or null.
+	 */
+	String find(final Key key) {
+		final var name = this.forms.get(key);
+		if (name != null) {
+			++this.hits;
+		}
+		return name;
+	}
+
+	/**
+	 * Counts a sighting of a path that is not shared yet.
+	 *
+	 * @param key The path and its painting.
+	 * @return true if the path should be shared from now on.
+	 */
+	boolean offer(final Key key) {
+		++this.misses;
+		final var count = this.candidates.merge(key, 1, Integer::sum);
+		if (count < this.threshold) {
+			return false;
+		}
+		this.candidates.remove(key);
+		return true;
+	}
+
+	/**
+	 * Registers the form that a path is shared by.
+	 *
+	 * @param key  The path and its painting.
+	 * @param name The form XObject name.
+	 */
+	void put(final Key key, final String name) {
+		this.forms.put(key, name);
+	}
+
+	/**
+	 * Returns the number of paths drawn by referring to a form.
+	 *
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of paths written out in full, including those written
+	 * into a new form.
+	 *
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of forms that paths are shared by.
+	 *
+	 * @return The number of forms.
+	 */
+	public int getFormCount() {
+		return this.forms.size();
+	}
+}
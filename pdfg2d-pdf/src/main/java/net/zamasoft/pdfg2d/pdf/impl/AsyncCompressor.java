@@ -0,0 +1,208 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.zamasoft.pdfg2d.pdf.ObjectRef;
+import net.zamasoft.pdfg2d.pdf.params.AsyncCompression;
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels.StreamClass;
+import net.zamasoft.pdfg2d.pdf.util.codec.ASCII85OutputStream;
+import net.zamasoft.pdfg2d.pdf.util.io.DeflaterPool;
+
+/**
+ * Compresses finished streams on worker threads.
+ * <p>
+ * The body and /Length of each stream are separate fragments, so the caller
+ * can continue writing after the stream while it is compressed. Results are
+ * written back on the calling thread in submission order, which keeps the
+ * output identical to synchronous compression. Encryption is applied when the
+ * result is written back, since encryptors are not thread-safe.
+ * </p>
+ * 
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class AsyncCompressor {
+	private final PDFWriterImpl pdfWriter;
+
+	private final DeflaterPool deflaters;
+
+	private final ExecutorService executor;
+
+	private final long maxMemory;
+
+	/** Pending streams in submission order. */
+	private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+
+	/** Uncompressed bytes held by pending streams. */
+	private long memory = 0;
+
+	private record Job(Future<ByteArrayOutputStream> result, int size, PDFFragmentOutputImpl bodyFlow,
+			PDFFragmentOutputImpl lengthFlow, ObjectRef ref) {
+	}
+
+	/**
+	 * Exposes the internal buffer to avoid copying stream data.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+		byte[] array() {
+			return this.buf;
+		}
+	}
+
+	AsyncCompressor(final PDFWriterImpl pdfWriter, final AsyncCompression settings) {
+		this.pdfWriter = pdfWriter;
+		this.deflaters = pdfWriter.deflaters;
+		this.maxMemory = settings.maxMemory();
+		this.executor = Executors.newFixedThreadPool(settings.threads(), r -> {
+			final var thread = new Thread(r, "pdfg2d-compressor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns a stream collecting the data of a stream body. When closed, the data
+	 * is compressed in the background, unless it grew too large to hold, in which
+	 * case it has already been compressed into the body fragment.
+	 * 
+	 * @param flow        the flow containing the stream, notified on close
+	 * @param bodyFlow    fragment for the encoded stream data
+	 * @param lengthFlow  fragment for the /Length value
+	 * @param ascii85     whether to apply ASCII85 after Flate
+	 * @param streamClass the class of stream
+	 * @return the stream to write uncompressed data to
+	 */
+	OutputStream open(final PDFFragmentOutputImpl flow, final PDFFragmentOutputImpl bodyFlow,
+			final PDFFragmentOutputImpl lengthFlow, final boolean ascii85, final StreamClass streamClass) {
+		final var ref = flow.getCurrentRef();
+		return new OutputStream() {
+			private Buffer buffer = new Buffer();
+
+			/** Synchronous encoder, once the data is too large to buffer. */
+			private OutputStream encoder = null;
+
+			private boolean closed = false;
+
+			@Override
+			public void write(final int b) throws IOException {
+				if (this.encoder != null) {
+					this.encoder.write(b);
+					return;
+				}
+				this.buffer.write(b);
+				this.checkSize();
+			}
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				if (this.encoder != null) {
+					this.encoder.write(b, off, len);
+					return;
+				}
+				this.buffer.write(b, off, len);
+				this.checkSize();
+			}
+
+			private void checkSize() throws IOException {
+				if (this.buffer.size() <= AsyncCompressor.this.maxMemory / 2) {
+					return;
+				}
+				this.encoder = AsyncCompressor.this.encoder(AsyncCompressor.this.encrypt(bodyFlow, ref), ascii85,
+						streamClass);
+				this.encoder.write(this.buffer.array(), 0, this.buffer.size());
+				this.buffer = null;
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (this.closed) {
+					return;
+				}
+				this.closed = true;
+				if (this.encoder != null) {
+					this.encoder.close();
+					lengthFlow.writeLong(bodyFlow.getLength());
+					lengthFlow.close();
+				} else {
+					AsyncCompressor.this.submit(this.buffer, bodyFlow, lengthFlow, ref, ascii85, streamClass);
+					this.buffer = null;
+				}
+				flow.endDetachedStream();
+			}
+		};
+	}
+
+	private OutputStream encrypt(final OutputStream out, final ObjectRef ref) throws IOException {
+		final var encryption = this.pdfWriter.encryption;
+		return encryption == null ? out : encryption.getEncryptor(ref).getOutputStream(out);
+	}
+
+	private OutputStream encoder(final OutputStream out, final boolean ascii85, final StreamClass streamClass) {
+		return this.deflaters.open(ascii85 ? new ASCII85OutputStream(out) : out, streamClass);
+	}
+
+	private void submit(final Buffer data, final PDFFragmentOutputImpl bodyFlow,
+			final PDFFragmentOutputImpl lengthFlow, final ObjectRef ref, final boolean ascii85,
+			final StreamClass streamClass) throws IOException {
+		final var size = data.size();
+		final var result = this.executor.submit(() -> {
+			final var encoded = new ByteArrayOutputStream(Math.max(64, size / 4));
+			try (final var out = this.encoder(encoded, ascii85, streamClass)) {
+				out.write(data.array(), 0, size);
+			}
+			return encoded;
+		});
+		this.jobs.add(new Job(result, size, bodyFlow, lengthFlow, ref));
+		this.memory += size;
+
+		// Write back what is already done, and wait while too much is pending
+		while (!this.jobs.isEmpty() && (this.memory > this.maxMemory || this.jobs.peek().result().isDone())) {
+			this.complete(this.jobs.poll());
+		}
+	}
+
+	private void complete(final Job job) throws IOException {
+		final ByteArrayOutputStream encoded;
+		try {
+			encoded = job.result().get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		this.memory -= job.size();
+		final var bodyFlow = job.bodyFlow();
+		try (final var out = this.encrypt(bodyFlow, job.ref())) {
+			encoded.writeTo(out);
+		}
+		job.lengthFlow().writeLong(bodyFlow.getLength());
+		job.lengthFlow().close();
+	}
+
+	/**
+	 * Writes back all pending streams.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void flush() throws IOException {
+		while (!this.jobs.isEmpty()) {
+			this.complete(this.jobs.poll());
+		}
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	void shutdown() {
+		this.executor.shutdownNow();
+	}
+}
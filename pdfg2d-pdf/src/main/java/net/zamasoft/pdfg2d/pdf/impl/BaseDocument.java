@@ -0,0 +1,850 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import net.zamasoft.pdfg2d.pdf.ObjectRef;
+import net.zamasoft.pdfg2d.pdf.PDFOutput;
+
+/**
+ * An existing PDF file extended by an incremental update.
+ * <p>
+ * The file is mapped into memory and never modified. Only the
+ * cross-reference sections and the few objects an update refers to (the
+ * catalog, the page tree, the name trees and the pages being edited) are
+ * parsed, so opening a
+ * large document costs little more than reading its cross-reference data.
+ * </p>
+ * <p>
+ * The parser covers what this library writes: cross-reference tables and
+ * streams, object streams, linearized files and earlier incremental updates.
+ * Encrypted documents and streams with predictors are not supported.
+ * </p>
+ * <p>
+ * Values are kept as the bytes of the file, so that entries an update does
+ * not change are copied as they are.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public class BaseDocument implements Closeable {
+	/** Bytes searched for the last startxref keyword. */
+	private static final int TAIL_LENGTH = 1024;
+
+	private final FileChannel channel;
+
+	/** The whole file, or null if it is too large for a single mapping. */
+	private final ByteBuffer data;
+
+	private final long length;
+
+	/** Position of the last cross-reference section. */
+	private final long startxref;
+
+	/**
+	 * Cross-reference entries by object number: type (0 free, 1 in file, 2 in
+	 * object stream), offset or object stream number, generation or index.
+	 */
+	private final Map<Integer, long[]> entries = new HashMap<>();
+
+	/** Trailer of the last cross-reference section. */
+	private final Map<String, byte[]> trailer;
+
+	/** Value of /Size of the trailer. */
+	private final int size;
+
+	/** Decoded object streams by object number. */
+	private final Map<Integer, ObjectStream> objectStreams = new HashMap<>();
+
+	private final ObjectRef rootRef, pagesRef;
+
+	private final Map<String, byte[]> catalog, pagesRoot;
+
+	/**
+	 * Page of the base document.
+	 *
+	 * @param ref        Reference of the page object.
+	 * @param dictionary Entries of the page object.
+	 * @param resources  Resources of the page, which may be inherited, or null.
+	 * @param mediaBox   Media box of the page, which may be inherited.
+	 */
+	record Page(ObjectRef ref, Map<String, byte[]> dictionary, byte[] resources, Rectangle2D mediaBox) {
+	}
+
+	/**
+	 * Decoded object stream.
+	 */
+	private record ObjectStream(ByteBuffer data, int[] offsets) {
+	}
+
+	/**
+	 * Maps a PDF file and reads its cross-reference data.
+	 *
+	 * @param file PDF file.
+	 * @return The document.
+	 * @throws IOException If the file cannot be read or is not a supported PDF.
+	 */
+	public static BaseDocument open(final File file) throws IOException {
+		final var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			return new BaseDocument(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private BaseDocument(final FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.length = channel.size();
+		this.data = this.length <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, this.length)
+				: null;
+
+		// startxref
+		final var tailStart = Math.max(0, this.length - TAIL_LENGTH);
+		final var tail = StandardCharsets.ISO_8859_1.decode(this.map(tailStart)).toString();
+		final var keyword = tail.lastIndexOf("startxref");
+		if (keyword == -1) {
+			throw new IOException("No startxref found.");
+		}
+		final var lexer = new Lexer(this.map(tailStart + keyword + 9));
+		this.startxref = lexer.readLong();
+
+		// Cross-reference sections, from the last one
+		Map<String, byte[]> trailer = null;
+		final var visited = new HashSet<Long>();
+		for (var offset = this.startxref; offset != -1;) {
+			if (!visited.add(offset) || offset < 0 || offset >= this.length) {
+				throw new IOException("Broken cross-reference chain at " + offset);
+			}
+			final var section = this.readXref(offset);
+			if (trailer == null) {
+				trailer = section;
+			}
+			final var prev = section.get("Prev");
+			offset = prev == null ? -1 : toLong(prev);
+		}
+		this.trailer = trailer;
+		if (this.trailer.containsKey("Encrypt")) {
+			throw new IOException("Encrypted documents cannot be updated.");
+		}
+
+		this.size = (int) toLong(this.trailer.get("Size"));
+		this.rootRef = toRef(this.trailer.get("Root"));
+		this.catalog = this.getDictionary(this.rootRef);
+		this.pagesRef = toRef(this.catalog.get("Pages"));
+		this.pagesRoot = this.getDictionary(this.pagesRef);
+	}
+
+	/**
+	 * Returns the file from the given position on. Positions of the returned
+	 * buffer are relative to it.
+	 */
+	private ByteBuffer map(final long offset) throws IOException {
+		if (this.data != null) {
+			return this.data.slice((int) offset, (int) (this.length - offset));
+		}
+		return this.channel.map(FileChannel.MapMode.READ_ONLY, offset,
+				Math.min(this.length - offset, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Reads a cross-reference table or stream and returns its trailer. Entries
+	 * already known from a later section are kept.
+	 */
+	private Map<String, byte[]> readXref(final long offset) throws IOException {
+		final var lexer = new Lexer(this.map(offset));
+		if (!lexer.startsWith("xref")) {
+			return this.readXrefStream(lexer);
+		}
+		lexer.readToken();
+		for (;;) {
+			final var token = lexer.readToken();
+			if (token.equals("trailer")) {
+				return lexer.readDictionary();
+			}
+			final var first = parseLong(token);
+			final var count = lexer.readLong();
+			for (var i = 0; i < count; ++i) {
+				final var position = lexer.readLong();
+				final var generation = lexer.readLong();
+				final var type = lexer.readToken().equals("n") ? 1 : 0;
+				this.entries.putIfAbsent((int) (first + i), new long[] { type, position, generation });
+			}
+		}
+	}
+
+	private Map<String, byte[]> readXrefStream(final Lexer lexer) throws IOException {
+		lexer.readObjectHeader();
+		final var dict = lexer.readDictionary();
+		if (!"/XRef".equals(toString(dict.get("Type")))) {
+			throw new IOException("No cross-reference section found.");
+		}
+		final var widths = toArray(dict.get("W"));
+		final var w = new int[3];
+		for (var i = 0; i < 3; ++i) {
+			w[i] = (int) toLong(widths.get(i));
+		}
+		final var entryData = ByteBuffer.wrap(this.readStream(lexer, dict));
+
+		final var index = dict.containsKey("Index") ? toArray(dict.get("Index"))
+				: List.of("0".getBytes(StandardCharsets.ISO_8859_1), dict.get("Size"));
+		for (var i = 0; i + 1 < index.size(); i += 2) {
+			final var first = (int) toLong(index.get(i));
+			final var count = (int) toLong(index.get(i + 1));
+			for (var j = 0; j < count; ++j) {
+				// A missing type field means an object in the file
+				final var type = w[0] == 0 ? 1 : readField(entryData, w[0]);
+				final var field2 = readField(entryData, w[1]);
+				final var field3 = readField(entryData, w[2]);
+				this.entries.putIfAbsent(first + j, new long[] { type, field2, field3 });
+			}
+		}
+		return dict;
+	}
+
+	private static long readField(final ByteBuffer buff, final int width) {
+		var value = 0L;
+		for (var i = 0; i < width; ++i) {
+			value = (value << 8) | (buff.get() & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads the data of a stream whose dictionary has just been read, with the
+	 * FlateDecode filter removed.
+	 */
+	private byte[] readStream(final Lexer lexer, final Map<String, byte[]> dict) throws IOException {
+		if (!lexer.readToken().equals("stream")) {
+			throw new IOException("Stream expected.");
+		}
+		// The keyword is followed by CRLF or LF
+		lexer.skipLineBreak();
+		final var length = (int) toLong(this.resolve(dict.get("Length")));
+		final var raw = new byte[length];
+		lexer.buff.get(lexer.pos, raw);
+
+		final var filter = dict.get("Filter");
+		if (filter == null) {
+			return raw;
+		}
+		if (!toString(filter).matches("\\[?\\s*/FlateDecode\\s*\\]?") || dict.containsKey("DecodeParms")) {
+			throw new IOException("Unsupported stream filter: " + toString(filter));
+		}
+		final var inflater = new Inflater();
+		try {
+			inflater.setInput(raw);
+			final var out = new ByteArrayOutputStream(length * 4);
+			final var buff = new byte[PDFWriterImpl.BUFFER_SIZE];
+			while (!inflater.finished()) {
+				final var len = inflater.inflate(buff);
+				if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				out.write(buff, 0, len);
+			}
+			return out.toByteArray();
+		} catch (final DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns the value of an object, or its dictionary if it is a stream.
+	 *
+	 * @param ref Object reference.
+	 * @return The bytes of the value.
+	 * @throws IOException If the object cannot be read.
+	 */
+	byte[] getObject(final ObjectRef ref) throws IOException {
+		final var entry = this.entries.get(ref.objectNumber());
+		if (entry == null || entry[0] == 0) {
+			// A reference to a missing object is a reference to null
+			return "null".getBytes(StandardCharsets.ISO_8859_1);
+		}
+		if (entry[0] == 2) {
+			final var stream = this.getObjectStream((int) entry[1]);
+			return new Lexer(stream.data.slice(stream.offsets[(int) entry[2]],
+					stream.data.limit() - stream.offsets[(int) entry[2]])).readValue();
+		}
+		final var lexer = new Lexer(this.map(entry[1]));
+		lexer.readObjectHeader();
+		return lexer.readValue();
+	}
+
+	private ObjectStream getObjectStream(final int objectNumber) throws IOException {
+		var stream = this.objectStreams.get(objectNumber);
+		if (stream == null) {
+			final var entry = this.entries.get(objectNumber);
+			if (entry == null || entry[0] != 1) {
+				throw new IOException("Object stream " + objectNumber + " not found.");
+			}
+			final var lexer = new Lexer(this.map(entry[1]));
+			lexer.readObjectHeader();
+			final var dict = lexer.readDictionary();
+			final var data = ByteBuffer.wrap(this.readStream(lexer, dict));
+			final var n = (int) toLong(dict.get("N"));
+			final var first = (int) toLong(dict.get("First"));
+
+			// Pairs of object number and offset
+			final var header = new Lexer(data);
+			final var offsets = new int[n];
+			for (var i = 0; i < n; ++i) {
+				header.readLong();
+				offsets[i] = first + (int) header.readLong();
+			}
+			stream = new ObjectStream(data, offsets);
+			this.objectStreams.put(objectNumber, stream);
+		}
+		return stream;
+	}
+
+	/**
+	 * Returns the object a value refers to, or the value itself if it is not a
+	 * reference.
+	 *
+	 * @param value Bytes of a value.
+	 * @return Bytes of the resolved value.
+	 * @throws IOException If the object cannot be read.
+	 */
+	byte[] resolve(final byte[] value) throws IOException {
+		if (value == null || !isRef(value)) {
+			return value;
+		}
+		return this.getObject(toRef(value));
+	}
+
+	/**
+	 * Returns the entries of a dictionary object.
+	 *
+	 * @param ref Object reference.
+	 * @return Entries in the order of the file.
+	 * @throws IOException If the object is not a dictionary.
+	 */
+	Map<String, byte[]> getDictionary(final ObjectRef ref) throws IOException {
+		return toDictionary(this.getObject(ref));
+	}
+
+	/**
+	 * Returns the page at the given index, with the resources and the media box
+	 * inherited from the page tree.
+	 *
+	 * @param index Index of the page, from 0.
+	 * @return The page.
+	 * @throws IOException If the page tree cannot be read.
+	 */
+	Page getPage(int index) throws IOException {
+		if (index < 0 || index >= this.getPageCount()) {
+			throw new IndexOutOfBoundsException("Page " + index + " of " + this.getPageCount());
+		}
+		var node = this.pagesRoot;
+		var resources = node.get("Resources");
+		var mediaBox = node.get("MediaBox");
+		for (;;) {
+			Map<String, byte[]> next = null;
+			for (final var kid : toArray(this.resolve(node.get("Kids")))) {
+				final var kidRef = toRef(kid);
+				final var dict = this.getDictionary(kidRef);
+				if (!"/Pages".equals(toString(dict.get("Type")))) {
+					if (index == 0) {
+						final var pageResources = dict.getOrDefault("Resources", resources);
+						final var pageMediaBox = dict.getOrDefault("MediaBox", mediaBox);
+						return new Page(kidRef, dict, pageResources, toRectangle(this.resolve(pageMediaBox)));
+					}
+					--index;
+					continue;
+				}
+				final var count = (int) toLong(this.resolve(dict.get("Count")));
+				if (index < count) {
+					next = dict;
+					break;
+				}
+				index -= count;
+			}
+			if (next == null) {
+				throw new IOException("Page tree is broken.");
+			}
+			node = next;
+			resources = node.getOrDefault("Resources", resources);
+			mediaBox = node.getOrDefault("MediaBox", mediaBox);
+		}
+	}
+
+	/**
+	 * Reads the entries of a name tree, from the root node down to the leaves.
+	 *
+	 * @param node    Bytes of a node, which may be a reference.
+	 * @param entries Receives the values by name.
+	 * @throws IOException If the tree cannot be read.
+	 */
+	void readNameTree(final byte[] node, final Map<String, byte[]> entries) throws IOException {
+		final var dict = toDictionary(this.resolve(node));
+		final var names = dict.get("Names");
+		if (names != null) {
+			final var elements = toArray(this.resolve(names));
+			for (var i = 0; i + 1 < elements.size(); i += 2) {
+				entries.put(toText(elements.get(i)), elements.get(i + 1));
+			}
+		}
+		final var kids = dict.get("Kids");
+		if (kids != null) {
+			for (final var kid : toArray(this.resolve(kids))) {
+				this.readNameTree(kid, entries);
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the file.
+	 *
+	 * @return Number of bytes, where an update starts.
+	 */
+	public long getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the number of pages.
+	 *
+	 * @return Value of /Count of the page tree root.
+	 * @throws IOException If the page tree cannot be read.
+	 */
+	public int getPageCount() throws IOException {
+		return (int) toLong(this.resolve(this.pagesRoot.get("Count")));
+	}
+
+	/**
+	 * Returns whether the file ends with a line break, after which an update
+	 * can start directly.
+	 */
+	boolean endsWithLineBreak() throws IOException {
+		if (this.length == 0) {
+			return false;
+		}
+		final var last = this.map(this.length - 1).get(0);
+		return last == '\n' || last == '\r';
+	}
+
+	long getStartxref() {
+		return this.startxref;
+	}
+
+	int getSize() {
+		return this.size;
+	}
+
+	ObjectRef getRootRef() {
+		return this.rootRef;
+	}
+
+	Map<String, byte[]> getCatalog() {
+		return this.catalog;
+	}
+
+	ObjectRef getPagesRef() {
+		return this.pagesRef;
+	}
+
+	Map<String, byte[]> getPagesRoot() {
+		return this.pagesRoot;
+	}
+
+	ObjectRef getInfoRef() {
+		final var info = this.trailer.get("Info");
+		return info == null ? null : toRef(info);
+	}
+
+	/**
+	 * Returns the first element of the file ID, which stays the same through
+	 * updates.
+	 *
+	 * @return The permanent ID, or null if the document has none.
+	 * @throws IOException If the ID is malformed.
+	 */
+	byte[] getPermanentId() throws IOException {
+		final var id = this.trailer.get("ID");
+		return id == null ? null : toBytes(toArray(this.resolve(id)).get(0));
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Writes bytes of a value read from this document.
+	 *
+	 * @param out   Output target.
+	 * @param value Bytes of the value.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static void writeValue(final PDFOutput out, final byte[] value) throws IOException {
+		out.spaceBefore();
+		out.write(value);
+	}
+
+	static boolean isRef(final byte[] value) {
+		return value.length > 0 && value[value.length - 1] == 'R';
+	}
+
+	static ObjectRef toRef(final byte[] value) {
+		final var lexer = new Lexer(ByteBuffer.wrap(value));
+		try {
+			final var objectNumber = (int) lexer.readLong();
+			final var generationNumber = (int) lexer.readLong();
+			return new ObjectRefImpl(objectNumber, generationNumber);
+		} catch (final IOException e) {
+			throw new IllegalArgumentException("Not a reference: " + toString(value), e);
+		}
+	}
+
+	static long toLong(final byte[] value) throws IOException {
+		return parseLong(toString(value).trim());
+	}
+
+	static String toString(final byte[] value) {
+		return value == null ? null : new String(value, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Returns the bytes of the elements of an array.
+	 */
+	static List<byte[]> toArray(final byte[] value) throws IOException {
+		final var lexer = new Lexer(ByteBuffer.wrap(value));
+		lexer.expect('[');
+		final var elements = new ArrayList<byte[]>();
+		while (!lexer.startsWith("]")) {
+			elements.add(lexer.readValue());
+		}
+		return elements;
+	}
+
+	static Map<String, byte[]> toDictionary(final byte[] value) throws IOException {
+		return new Lexer(ByteBuffer.wrap(value)).readDictionary();
+	}
+
+	/**
+	 * Returns the contents of a literal or hexadecimal string.
+	 */
+	static byte[] toBytes(final byte[] value) throws IOException {
+		final var out = new ByteArrayOutputStream();
+		if (value[0] == '<') {
+			var digits = 0;
+			var b = 0;
+			for (var i = 1; i < value.length && value[i] != '>'; ++i) {
+				final var digit = Character.digit(value[i], 16);
+				if (digit == -1) {
+					continue;
+				}
+				b = (b << 4) | digit;
+				if (++digits % 2 == 0) {
+					out.write(b);
+					b = 0;
+				}
+			}
+			if (digits % 2 != 0) {
+				out.write(b << 4);
+			}
+			return out.toByteArray();
+		}
+		if (value[0] != '(') {
+			throw new IOException("Not a string: " + toString(value));
+		}
+		for (var i = 1; i < value.length - 1; ++i) {
+			var c = value[i] & 0xFF;
+			if (c == '\\') {
+				c = value[++i] & 0xFF;
+				switch (c) {
+					case 'n' -> c = '\n';
+					case 'r' -> c = '\r';
+					case 't' -> c = '\t';
+					case 'b' -> c = '\b';
+					case 'f' -> c = '\f';
+					case '\r', '\n' -> {
+						// Line continuation
+						if (c == '\r' && value[i + 1] == '\n') {
+							++i;
+						}
+						continue;
+					}
+					default -> {
+						if (c >= '0' && c <= '7') {
+							var octal = c - '0';
+							for (var j = 0; j < 2 && value[i + 1] >= '0' && value[i + 1] <= '7'; ++j) {
+								octal = octal * 8 + (value[++i] - '0');
+							}
+							c = octal & 0xFF;
+						}
+					}
+				}
+			}
+			out.write(c);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns a text string, which is UTF-16 if it starts with a byte order mark.
+	 */
+	static String toText(final byte[] value) throws IOException {
+		final var bytes = toBytes(value);
+		if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+			return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16BE);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	private static Rectangle2D toRectangle(final byte[] value) throws IOException {
+		if (value == null) {
+			throw new IOException("Page has no media box.");
+		}
+		final var numbers = toArray(value);
+		final var x1 = Double.parseDouble(toString(numbers.get(0)));
+		final var y1 = Double.parseDouble(toString(numbers.get(1)));
+		final var x2 = Double.parseDouble(toString(numbers.get(2)));
+		final var y2 = Double.parseDouble(toString(numbers.get(3)));
+		return new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+	}
+
+	private static long parseLong(final String token) throws IOException {
+		try {
+			return Long.parseLong(token);
+		} catch (final NumberFormatException e) {
+			throw new IOException("Number expected: " + token);
+		}
+	}
+
+	/**
+	 * Splits PDF syntax into tokens and values.
+	 */
+	private static class Lexer {
+		final ByteBuffer buff;
+
+		int pos = 0;
+
+		Lexer(final ByteBuffer buff) {
+			this.buff = buff;
+		}
+
+		private static boolean isSpace(final int c) {
+			return c == 0 || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == ' ';
+		}
+
+		private static boolean isDelimiter(final int c) {
+			return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']' || c == '{' || c == '}'
+					|| c == '/' || c == '%';
+		}
+
+		private int peek() {
+			return this.pos < this.buff.limit() ? this.buff.get(this.pos) & 0xFF : -1;
+		}
+
+		void skipSpace() {
+			for (var c = this.peek(); c != -1; c = this.peek()) {
+				if (c == '%') {
+					while (c != -1 && c != '\r' && c != '\n') {
+						++this.pos;
+						c = this.peek();
+					}
+				} else if (isSpace(c)) {
+					++this.pos;
+				} else {
+					return;
+				}
+			}
+		}
+
+		void skipLineBreak() {
+			if (this.peek() == '\r') {
+				++this.pos;
+			}
+			if (this.peek() == '\n') {
+				++this.pos;
+			}
+		}
+
+		boolean startsWith(final String s) {
+			this.skipSpace();
+			for (var i = 0; i < s.length(); ++i) {
+				if (this.pos + i >= this.buff.limit() || this.buff.get(this.pos + i) != s.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void expect(final char c) throws IOException {
+			this.skipSpace();
+			if (this.peek() != c) {
+				throw new IOException("'" + c + "' expected.");
+			}
+			++this.pos;
+		}
+
+		/**
+		 * Reads a number or a keyword.
+		 */
+		String readToken() throws IOException {
+			this.skipSpace();
+			final var start = this.pos;
+			for (var c = this.peek(); c != -1 && !isSpace(c) && !isDelimiter(c); c = this.peek()) {
+				++this.pos;
+			}
+			if (start == this.pos) {
+				throw new IOException(this.peek() == -1 ? "Unexpected end of data." : "Token expected.");
+			}
+			return this.substring(start);
+		}
+
+		long readLong() throws IOException {
+			return parseLong(this.readToken());
+		}
+
+		/**
+		 * Reads "n g obj".
+		 */
+		void readObjectHeader() throws IOException {
+			this.readLong();
+			this.readLong();
+			if (!this.readToken().equals("obj")) {
+				throw new IOException("Object expected.");
+			}
+		}
+
+		/**
+		 * Reads a name and returns it without the slash and escapes.
+		 */
+		String readName() throws IOException {
+			this.expect('/');
+			final var name = new ByteArrayOutputStream();
+			for (var c = this.peek(); c != -1 && !isSpace(c) && !isDelimiter(c); c = this.peek()) {
+				++this.pos;
+				if (c == '#' && this.pos + 1 < this.buff.limit()) {
+					c = Integer.parseInt(this.substring(this.pos, this.pos + 2), 16);
+					this.pos += 2;
+				}
+				name.write(c);
+			}
+			return name.toString(StandardCharsets.UTF_8);
+		}
+
+		Map<String, byte[]> readDictionary() throws IOException {
+			if (!this.startsWith("<<")) {
+				throw new IOException("Dictionary expected.");
+			}
+			this.pos += 2;
+			final var dict = new LinkedHashMap<String, byte[]>();
+			while (!this.startsWith(">>")) {
+				final var key = this.readName();
+				dict.put(key, this.readValue());
+			}
+			this.pos += 2;
+			return dict;
+		}
+
+		/**
+		 * Returns the bytes of the next value.
+		 */
+		byte[] readValue() throws IOException {
+			this.skipSpace();
+			final var start = this.pos;
+			this.skipValue();
+			final var value = new byte[this.pos - start];
+			this.buff.get(start, value);
+			return value;
+		}
+
+		private void skipValue() throws IOException {
+			this.skipSpace();
+			switch (this.peek()) {
+				case '<' -> {
+					if (this.startsWith("<<")) {
+						this.pos += 2;
+						while (!this.startsWith(">>")) {
+							this.readName();
+							this.skipValue();
+						}
+						this.pos += 2;
+					} else {
+						while (this.peek() != '>') {
+							if (this.peek() == -1) {
+								throw new IOException("Unexpected end of data.");
+							}
+							++this.pos;
+						}
+						++this.pos;
+					}
+				}
+				case '[' -> {
+					++this.pos;
+					while (!this.startsWith("]")) {
+						this.skipValue();
+					}
+					++this.pos;
+				}
+				case '(' -> {
+					var depth = 0;
+					do {
+						final var c = this.peek();
+						if (c == -1) {
+							throw new IOException("Unexpected end of data.");
+						}
+						++this.pos;
+						if (c == '\\') {
+							++this.pos;
+						} else if (c == '(') {
+							++depth;
+						} else if (c == ')') {
+							--depth;
+						}
+					} while (depth > 0);
+				}
+				case '/' -> this.readName();
+				default -> {
+					final var token = this.readToken();
+					if (token.chars().allMatch(Character::isDigit)) {
+						// An object reference is "n g R"
+						final var mark = this.pos;
+						try {
+							if (this.readToken().chars().allMatch(Character::isDigit) && this.readToken().equals("R")) {
+								return;
+							}
+						} catch (final IOException e) {
+							// Not a reference
+						}
+						this.pos = mark;
+					}
+				}
+			}
+		}
+
+		private String substring(final int start) {
+			return this.substring(start, this.pos);
+		}
+
+		private String substring(final int start, final int end) {
+			final var bytes = new byte[end - start];
+			this.buff.get(start, bytes);
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
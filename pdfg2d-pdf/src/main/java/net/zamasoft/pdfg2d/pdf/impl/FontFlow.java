@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import net.zamasoft.pdfg2d.font.Font;
 import net.zamasoft.pdfg2d.font.FontSource;
@@ -25,14 +26,17 @@ class FontFlow {
 
 	private final Map<String, ObjectRef> nameToResourceRef;
 
-	private final PDFFragmentOutputImpl objectsFlow;
+	private final Supplier<PDFFragmentOutputImpl> objectsFlow;
 
 	/** Mapping from FontSource to PDFFont. */
 	private final Map<FontSource, Font> fonts = new HashMap<>();
 	private final List<PDFFont> fontList = new ArrayList<>();
 
-	public FontFlow(final Map<String, ObjectRef> nameToResourceRef, final PDFFragmentOutputImpl objectsFlow,
-			final XRefImpl xref) throws IOException {
+	/** Flows of the fonts, chosen when each is first used. */
+	private final List<PDFFragmentOutputImpl> flowList = new ArrayList<>();
+
+	public FontFlow(final Map<String, ObjectRef> nameToResourceRef,
+			final Supplier<PDFFragmentOutputImpl> objectsFlow, final XRefImpl xref) throws IOException {
 		this.xref = xref;
 		this.nameToResourceRef = nameToResourceRef;
 		this.objectsFlow = objectsFlow;
@@ -51,6 +55,7 @@ class FontFlow {
 
 			font = pdfSource.createFont(name, fontRef);
 			this.fontList.add((PDFFont) font);
+			this.flowList.add(this.objectsFlow.get());
 		} else {
 			font = source.createFont();
 		}
@@ -60,8 +65,8 @@ class FontFlow {
 	}
 
 	public void close() throws IOException {
-		for (final PDFFont font : this.fontList) {
-			font.writeTo(this.objectsFlow, this.xref);
+		for (int i = 0; i < this.fontList.size(); ++i) {
+			this.fontList.get(i).writeTo(this.flowList.get(i), this.xref);
 		}
 	}
 }
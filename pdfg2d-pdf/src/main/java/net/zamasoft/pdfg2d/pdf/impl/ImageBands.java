@@ -0,0 +1,147 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reads an image which is too large to be held in memory, in bands of rows.
+ * <p>
+ * Each band is read from the image reader as a source region, and its samples
+ * are written with {@link RasterEncoder} before the next band is read, so that
+ * memory use is bounded by the size of a band. Most readers decode the image
+ * from its start for each band; the bands of tiled images are aligned to the
+ * tiles.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class ImageBands {
+	private final ImageReader reader;
+
+	private final ImageTypeSpecifier type;
+
+	private final int width, height, bandHeight;
+
+	private final boolean gray;
+
+	/** The first band, read in advance to check that the image is readable. */
+	private BufferedImage first;
+
+	private ColorModel colorModel;
+
+	private ImageBands(final ImageReader reader, final ImageTypeSpecifier type, final int width, final int height,
+			final int bandHeight, final boolean gray) {
+		this.reader = reader;
+		this.type = type;
+		this.width = width;
+		this.height = height;
+		this.bandHeight = bandHeight;
+		this.gray = gray;
+	}
+
+	/**
+	 * Returns the bands of an image, if it is larger than the memory for a band.
+	 *
+	 * @param reader    the reader of the image
+	 * @param in        the image, at its start
+	 * @param maxMemory the bytes of decoded pixels of a band
+	 * @param gray      whether to convert the colors to gray
+	 * @return the bands, or null if the image is to be read whole
+	 * @throws IOException if the image can not be read
+	 */
+	static ImageBands create(final ImageReader reader, final ImageInputStream in, final long maxMemory,
+			final boolean gray) throws IOException {
+		if (maxMemory <= 0) {
+			return null;
+		}
+		// Readers expect the stream where they left it
+		reader.setInput(in);
+		final var types = reader.getImageTypes(0);
+		if (types == null || !types.hasNext()) {
+			return null;
+		}
+		final var type = types.next();
+		final int width = reader.getWidth(0);
+		final int height = reader.getHeight(0);
+		final long rowBytes = (long) width * ((type.getColorModel().getPixelSize() + 7) / 8);
+		if (rowBytes * height <= maxMemory) {
+			return null;
+		}
+		int bandHeight = (int) Math.max(1, Math.min(height, maxMemory / rowBytes));
+		if (reader.isImageTiled(0)) {
+			// Whole rows of tiles, so that no tile is decoded twice
+			final int tileHeight = reader.getTileHeight(0);
+			if (tileHeight > 0 && bandHeight > tileHeight) {
+				bandHeight -= bandHeight % tileHeight;
+			}
+		}
+		final var bands = new ImageBands(reader, type, width, height, bandHeight, gray);
+		bands.first = bands.read(0);
+		bands.colorModel = bands.first.getColorModel();
+		return bands;
+	}
+
+	ColorModel getColorModel() {
+		return this.colorModel;
+	}
+
+	private int count() {
+		return (this.height + this.bandHeight - 1) / this.bandHeight;
+	}
+
+	private BufferedImage read(final int band) throws IOException {
+		final var param = this.reader.getDefaultReadParam();
+		param.setDestinationType(this.type);
+		final int y = band * this.bandHeight;
+		param.setSourceRegion(new Rectangle(0, y, this.width, Math.min(this.bandHeight, this.height - y)));
+		return this.reader.read(0, param);
+	}
+
+	/**
+	 * Writes the color samples of all bands.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	void writeColors(final OutputStream out) throws IOException {
+		for (var i = 0; i < this.count(); ++i) {
+			final var band = i == 0 && this.first != null ? this.first : this.read(i);
+			this.first = null;
+			try {
+				if (this.gray && band.getType() != BufferedImage.TYPE_BYTE_GRAY
+						&& band.getType() != BufferedImage.TYPE_USHORT_GRAY) {
+					RasterEncoder.toGray(band);
+				}
+				new RasterEncoder(band).writeColors(out);
+			} finally {
+				band.flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes the alpha samples of all bands, reading the image again.
+	 *
+	 * @param out  the stream to write to
+	 * @param soft whether to write a soft mask
+	 * @throws IOException if an I/O error occurs
+	 */
+	void writeAlpha(final OutputStream out, final boolean soft) throws IOException {
+		for (var i = 0; i < this.count(); ++i) {
+			final var band = this.read(i);
+			try {
+				new RasterEncoder(band).writeAlpha(out, soft);
+			} finally {
+				band.flush();
+			}
+		}
+	}
+}
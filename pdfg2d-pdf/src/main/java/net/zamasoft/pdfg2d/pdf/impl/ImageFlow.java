@@ -4,20 +4,26 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.IndexColorModel;
-import java.awt.image.Raster;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.DeflaterOutputStream;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.ImageWriteParam;
@@ -41,18 +47,22 @@ import net.zamasoft.pdfg2d.gc.image.util.TransformedImage;
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
 import net.zamasoft.pdfg2d.pdf.gc.PDFImage;
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels.StreamClass;
 import net.zamasoft.pdfg2d.pdf.params.PDFParams;
 import net.zamasoft.pdfg2d.pdf.util.codec.ASCII85OutputStream;
 import net.zamasoft.pdfg2d.pdf.util.codec.ASCIIHexOutputStream;
-import net.zamasoft.pdfg2d.pdf.util.io.FastBufferedOutputStream;
 import net.zamasoft.pdfg2d.resolver.Source;
-import net.zamasoft.pdfg2d.util.ColorUtils;
 
 /**
  * Handles the loading, scaling, and serialization of image resources into PDF
  * XObjects.
  * Supports various formats (JPEG, PNG, etc.), color mode conversions, and EXIF
  * orientation.
+ * <p>
+ * Images are also shared by their contents: the bytes of loaded images, and
+ * the pixels of buffered images, are digested, so that an image which comes
+ * from another URI, or is rasterized again for each page, is written once.
+ * </p>
  * 
  * @author MIYABE Tatsuhiko
  * @since 1.0
@@ -62,17 +72,33 @@ class ImageFlow {
 
 	private final Map<String, ObjectRef> nameToResourceRef;
 
-	private final PDFFragmentOutputImpl objectsFlow;
+	private final Supplier<PDFFragmentOutputImpl> objectsFlow;
 
 	private final XRefImpl xref;
 
 	private final PDFParams params;
 
-	/** Mapping from image URI (String) to image (PDFImage). */
-	private final Map<URI, Image> images = new HashMap<>();
+	/**
+	 * Mapping from image URI (String) to image (PDFImage). Pages drawn on other
+	 * threads look images up, so both mappings may be read concurrently.
+	 */
+	private final Map<URI, Image> images = new ConcurrentHashMap<>();
 
 	/** Mapping from BufferedImage instance to image (PDFImage). */
-	private final Map<BufferedImage, Image> bufferedImages = new IdentityHashMap<>();
+	private final Map<BufferedImage, Image> bufferedImages = Collections.synchronizedMap(new IdentityHashMap<>());
+
+	/** Maximum number of image contents remembered. */
+	private static final int CONTENT_CACHE_SIZE = 1024;
+
+	/** Mapping from the digest of image contents to image, least recently used first. */
+	private final Map<String, Image> contents = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Image> eldest) {
+			return this.size() > CONTENT_CACHE_SIZE;
+		}
+	};
 
 	private int imageNumber = 0;
 
@@ -80,14 +106,35 @@ class ImageFlow {
 	private static final short DEVICE_RGB = 2;
 	private static final short DEVICE_CMYK = 3;
 
-	public ImageFlow(final Map<String, ObjectRef> nameToResourceRef, final PDFFragmentOutputImpl objectsFlow,
-			final XRefImpl xref, final PDFParams params) throws IOException {
+	public ImageFlow(final Map<String, ObjectRef> nameToResourceRef,
+			final Supplier<PDFFragmentOutputImpl> objectsFlow, final XRefImpl xref, final PDFParams params)
+			throws IOException {
 		this.xref = xref;
 		this.nameToResourceRef = nameToResourceRef;
 		this.objectsFlow = objectsFlow;
 		this.params = params;
 	}
 
+	/**
+	 * Returns an image already loaded from a source, without loading it.
+	 * 
+	 * @param source The source of the image.
+	 * @return The image, or null if it has not been loaded.
+	 */
+	public Image findImage(final Source source) {
+		return this.images.get(source.getURI());
+	}
+
+	/**
+	 * Returns an image already added, without adding it.
+	 * 
+	 * @param image The buffered image.
+	 * @return The image, or null if it has not been added.
+	 */
+	public Image findImage(final BufferedImage image) {
+		return this.bufferedImages.get(image);
+	}
+
 	public Image loadImage(final Source source) throws IOException {
 		final var uri = source.getURI();
 		var pdfImage = this.images.get(uri);
@@ -108,7 +155,13 @@ class ImageFlow {
 		};
 
 		try {
-			pdfImage = this.addImage(in, null);
+			// The image written depends only on the bytes, whatever the format
+			final var digest = digest(in);
+			pdfImage = this.contents.get(digest);
+			if (pdfImage == null) {
+				pdfImage = this.addImage(in, null);
+				this.contents.put(digest, pdfImage);
+			}
 			this.images.put(uri, pdfImage);
 			return pdfImage;
 		} finally {
@@ -117,16 +170,64 @@ class ImageFlow {
 	}
 
 	public Image addImage(final BufferedImage image) throws IOException {
-		final var pdfImage = this.bufferedImages.get(image);
+		var pdfImage = this.bufferedImages.get(image);
 		if (pdfImage != null) {
 			return pdfImage;
 		}
-		final var res = this.addImage(null, image);
-		this.bufferedImages.put(image, res);
-		return res;
+		final var digest = digest(image);
+		pdfImage = this.contents.get(digest);
+		if (pdfImage == null) {
+			pdfImage = this.addImage(null, image);
+			this.contents.put(digest, pdfImage);
+		}
+		this.bufferedImages.put(image, pdfImage);
+		return pdfImage;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Digests the bytes of an image file, and rewinds it.
+	 */
+	private static String digest(final ImageInputStream in) throws IOException {
+		final var md = sha256();
+		final var buff = new byte[8192];
+		for (int len = in.read(buff); len != -1; len = in.read(buff)) {
+			md.update(buff, 0, len);
+		}
+		in.seek(0);
+		return "S" + HexFormat.of().formatHex(md.digest());
+	}
+
+	/**
+	 * Digests what the image written from a buffered image depends on: its type
+	 * and layout, and its pixels in sRGB, read row by row.
+	 */
+	private static String digest(final BufferedImage image) {
+		final var md = sha256();
+		final var width = image.getWidth();
+		final var height = image.getHeight();
+		final var cm = image.getColorModel();
+		md.update(ByteBuffer.allocate(20).putInt(width).putInt(height).putInt(image.getType())
+				.putInt(cm.getNumComponents()).putInt(cm.hasAlpha() ? 1 : 0).array());
+		final var row = new int[width];
+		final var bytes = ByteBuffer.allocate(width * 4);
+		for (var y = 0; y < height; ++y) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			bytes.asIntBuffer().put(row);
+			md.update(bytes.array());
+		}
+		return "R" + HexFormat.of().formatHex(md.digest());
 	}
 
 	private Image addImage(final ImageInputStream imageIn, final BufferedImage originalImage) throws IOException {
+		final var objectsFlow = this.objectsFlow.get();
 		var image = originalImage;
 		int orientation = 1;
 		ImageReader ir = null;
@@ -167,6 +268,7 @@ class ImageFlow {
 		int width, height;
 		final var name = "I" + this.imageNumber;
 		PDFImage pdfImage = null;
+		ImageBands bands = null;
 		try {
 
 			final PDFParams.ColorMode colorMode = this.params.colorMode();
@@ -252,62 +354,64 @@ class ImageFlow {
 			final double orgWidth = width;
 			final double orgHeight = height;
 			if (resize || imageType == PDFParams.ImageCompression.FLATE) {
+				final int[] size = resize ? ImageScaler.fit(width, height, maxWidth, maxHeight) : null;
 				// Re-load image if we only had the reader
 				if (ir != null) {
 					imageIn.seek(0);
-					image = G2DUtils.loadImage(ir, imageIn);
+					if (!resize && imageCompression == PDFParams.ImageCompression.FLATE) {
+						// Images too large for memory are written band by band
+						try {
+							bands = ImageBands.create(ir, imageIn, this.params.imageBandMemory(),
+									colorMode == PDFParams.ColorMode.GRAY);
+						} catch (final IOException | RuntimeException e) {
+							LOG.log(Level.FINE, "The image can not be read in bands", e);
+						}
+						imageIn.seek(0);
+					}
+					if (bands == null) {
+						ImageReadParam param = null;
+						if (resize && ir.getFormatName().equalsIgnoreCase("jpeg")) {
+							// Decode large photos at a fraction of their size
+							final int factor = ImageScaler.subsampling(width, height, size[0], size[1]);
+							if (factor > 1) {
+								param = ir.getDefaultReadParam();
+								param.setSourceSubsampling(factor, factor, 0, 0);
+							}
+						}
+						image = G2DUtils.loadImage(ir, imageIn, param);
+					}
 				}
 				if (resize) {
 					final var type = image.getType();
-					if (maxWidth > 0 && width > maxWidth)
-						width = maxWidth;
-					if (maxHeight > 0 && height > maxHeight)
-						height = maxHeight;
-
-					final var scaled = image.getScaledInstance(width, height, java.awt.Image.SCALE_SMOOTH);
-					try {
-						image.flush();
-						image = switch (type) {
-							case BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_BYTE_INDEXED ->
-								new BufferedImage(width, height, type, (IndexColorModel) image.getColorModel());
-							case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
-									BufferedImage.TYPE_4BYTE_ABGR_PRE, BufferedImage.TYPE_INT_ARGB,
-									BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_BGR,
-									BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_USHORT_555_RGB,
-									BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_BYTE_GRAY,
-									BufferedImage.TYPE_USHORT_GRAY ->
-								new BufferedImage(width, height, type);
-							default ->
-								new BufferedImage(width, height,
-										image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
-												: BufferedImage.TYPE_INT_RGB);
-						};
-						final var g2d = image.createGraphics();
-						g2d.drawImage(scaled, 0, 0, null);
-						g2d.dispose();
-					} finally {
-						scaled.flush();
-					}
+					width = size[0];
+					height = size[1];
+
+					final var scaled = switch (type) {
+						case BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_BYTE_INDEXED ->
+							new BufferedImage(width, height, type, (IndexColorModel) image.getColorModel());
+						case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+								BufferedImage.TYPE_4BYTE_ABGR_PRE, BufferedImage.TYPE_INT_ARGB,
+								BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_BGR,
+								BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_USHORT_555_RGB,
+								BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_BYTE_GRAY,
+								BufferedImage.TYPE_USHORT_GRAY ->
+							new BufferedImage(width, height, type);
+						default ->
+							new BufferedImage(width, height,
+									image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+											: BufferedImage.TYPE_INT_RGB);
+					};
+					ImageScaler.scale(image, scaled);
+					image.flush();
+					image = scaled;
 					imageType = PDFParams.ImageCompression.FLATE;
 				}
 
 				// Apply grayscale filter if requested
-				if (colorMode == PDFParams.ColorMode.GRAY && image.getType() != BufferedImage.TYPE_BYTE_GRAY
+				if (bands == null && colorMode == PDFParams.ColorMode.GRAY
+						&& image.getType() != BufferedImage.TYPE_BYTE_GRAY
 						&& image.getType() != BufferedImage.TYPE_USHORT_GRAY) {
-					final var raster = image.getRaster();
-					final var cm = image.getColorModel();
-					final var pixel = raster.getDataElements(0, 0, null);
-					for (var y = 0; y < height; ++y) {
-						for (var x = 0; x < width; ++x) {
-							raster.getDataElements(x, y, pixel);
-							final var r = cm.getRed(pixel) / 255.0f;
-							final var g = cm.getGreen(pixel) / 255.0f;
-							final var b = cm.getBlue(pixel) / 255.0f;
-							final var gr = ColorUtils.toGray(r, g, b);
-							final var octet = (int) (gr * 255.0f);
-							image.setRGB(x, y, (cm.getAlpha(pixel) << 24) | (octet << 16) | (octet << 8) | octet);
-						}
-					}
+					RasterEncoder.toGray(image);
 				}
 			}
 			pdfImage = new PDFImage(name, orgWidth, orgHeight);
@@ -315,35 +419,35 @@ class ImageFlow {
 				final var imageRef = this.xref.nextObjectRef();
 				this.nameToResourceRef.put(name, imageRef);
 
-				this.objectsFlow.startObject(imageRef);
-				this.objectsFlow.startHash();
+				objectsFlow.startObject(imageRef);
+				objectsFlow.startHash();
 
-				this.objectsFlow.writeName("Type");
-				this.objectsFlow.writeName("XObject");
-				this.objectsFlow.breakBefore();
+				objectsFlow.writeName("Type");
+				objectsFlow.writeName("XObject");
+				objectsFlow.breakBefore();
 
-				this.objectsFlow.writeName("Subtype");
-				this.objectsFlow.writeName("Image");
-				this.objectsFlow.breakBefore();
+				objectsFlow.writeName("Subtype");
+				objectsFlow.writeName("Image");
+				objectsFlow.breakBefore();
 
-				this.objectsFlow.writeName("Name");
-				this.objectsFlow.writeName(name);
-				this.objectsFlow.breakBefore();
+				objectsFlow.writeName("Name");
+				objectsFlow.writeName(name);
+				objectsFlow.breakBefore();
 
-				this.objectsFlow.writeName("Width");
-				this.objectsFlow.writeInt(width);
-				this.objectsFlow.breakBefore();
+				objectsFlow.writeName("Width");
+				objectsFlow.writeInt(width);
+				objectsFlow.breakBefore();
 
-				this.objectsFlow.writeName("Height");
-				this.objectsFlow.writeInt(height);
-				this.objectsFlow.breakBefore();
+				objectsFlow.writeName("Height");
+				objectsFlow.writeInt(height);
+				objectsFlow.breakBefore();
 
 				if (imageType != PDFParams.ImageCompression.FLATE) {
 					// Output raw image data
 					try {
-						this.objectsFlow.writeName("BitsPerComponent");
-						this.objectsFlow.writeInt(8);
-						this.objectsFlow.breakBefore();
+						objectsFlow.writeName("BitsPerComponent");
+						objectsFlow.writeInt(8);
+						objectsFlow.breakBefore();
 
 						final short deviceColor;
 						if (iccErrorHuck && iccGray) {
@@ -367,61 +471,61 @@ class ImageFlow {
 							}
 						}
 
-						this.objectsFlow.writeName("ColorSpace");
+						objectsFlow.writeName("ColorSpace");
 						switch (deviceColor) {
 							case DEVICE_GRAY:
-								this.objectsFlow.writeName("DeviceGray");
+								objectsFlow.writeName("DeviceGray");
 								break;
 							case DEVICE_CMYK:
-								this.objectsFlow.writeName("DeviceCMYK");
+								objectsFlow.writeName("DeviceCMYK");
 								break;
 							default:
-								this.objectsFlow.writeName("DeviceRGB");
+								objectsFlow.writeName("DeviceRGB");
 								break;
 						}
-						this.objectsFlow.breakBefore();
+						objectsFlow.breakBefore();
 
 						if (deviceColor == DEVICE_CMYK) {
-							this.objectsFlow.writeName("Decode");
-							this.objectsFlow.startArray();
-							this.objectsFlow.writeInt(1);
-							this.objectsFlow.writeInt(0);
-							this.objectsFlow.writeInt(1);
-							this.objectsFlow.writeInt(0);
-							this.objectsFlow.writeInt(1);
-							this.objectsFlow.writeInt(0);
-							this.objectsFlow.writeInt(1);
-							this.objectsFlow.writeInt(0);
-							this.objectsFlow.endArray();
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeName("Decode");
+							objectsFlow.startArray();
+							objectsFlow.writeInt(1);
+							objectsFlow.writeInt(0);
+							objectsFlow.writeInt(1);
+							objectsFlow.writeInt(0);
+							objectsFlow.writeInt(1);
+							objectsFlow.writeInt(0);
+							objectsFlow.writeInt(1);
+							objectsFlow.writeInt(0);
+							objectsFlow.endArray();
+							objectsFlow.breakBefore();
 						}
 
-						this.objectsFlow.writeName("Filter");
-						this.objectsFlow.startArray();
+						objectsFlow.writeName("Filter");
+						objectsFlow.startArray();
 						switch (streamCompression) {
 							case ASCII:
-								this.objectsFlow.writeName("ASCII85Decode");
+								objectsFlow.writeName("ASCII85Decode");
 								break;
 							case NONE:
-								this.objectsFlow.writeName("ASCIIHexDecode");
+								objectsFlow.writeName("ASCIIHexDecode");
 								break;
 							default:
 								// ignore
 						}
 						switch (imageType) {
 							case JPEG:
-								this.objectsFlow.writeName("DCTDecode");
+								objectsFlow.writeName("DCTDecode");
 								break;
 							case JPEG2000:
-								this.objectsFlow.writeName("JPXDecode");
+								objectsFlow.writeName("JPXDecode");
 								break;
 							default:
 								throw new IllegalStateException();
 						}
-						this.objectsFlow.endArray();
-						this.objectsFlow.breakBefore();
+						objectsFlow.endArray();
+						objectsFlow.breakBefore();
 
-						OutputStream out = this.objectsFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW);
+						OutputStream out = objectsFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW);
 						try {
 							switch (streamCompression) {
 								case ASCII:
@@ -434,7 +538,7 @@ class ImageFlow {
 									// ignore
 							}
 							imageIn.seek(0);
-							final byte[] buff = this.objectsFlow.getBuff();
+							final byte[] buff = objectsFlow.getBuff();
 							for (int len = imageIn.read(buff); len != -1; len = imageIn.read(buff)) {
 								out.write(buff, 0, len);
 							}
@@ -442,14 +546,14 @@ class ImageFlow {
 							out.close();
 						}
 					} finally {
-						this.objectsFlow.endObject();
+						objectsFlow.endObject();
 					}
 				} else {
 					// Recompress
 					ObjectRef imageMaskRef;
 					ColorModel cm;
 					try {
-						cm = image.getColorModel();
+						cm = bands != null ? bands.getColorModel() : image.getColorModel();
 
 						if ((width + height) > this.params.imageCompressionLossless()) {
 							imageType = imageCompression;
@@ -489,41 +593,41 @@ class ImageFlow {
 							// Transparent GIF/PNG
 							imageMaskRef = this.xref.nextObjectRef();
 							if (softMaskSupport) {
-								this.objectsFlow.writeName("SMask");
+								objectsFlow.writeName("SMask");
 							} else {
-								this.objectsFlow.writeName("Mask");
+								objectsFlow.writeName("Mask");
 							}
-							this.objectsFlow.writeObjectRef(imageMaskRef);
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeObjectRef(imageMaskRef);
+							objectsFlow.breakBefore();
 						} else {
 							// No mask
 							imageMaskRef = null;
 						}
 
-						this.objectsFlow.writeName("BitsPerComponent");
-						this.objectsFlow.writeInt(8);
-						this.objectsFlow.breakBefore();
+						objectsFlow.writeName("BitsPerComponent");
+						objectsFlow.writeInt(8);
+						objectsFlow.breakBefore();
 
 						final boolean deviceGray = (cm.getNumComponents() == 1);
-						this.objectsFlow.writeName("ColorSpace");
-						this.objectsFlow.writeName(deviceGray ? "DeviceGray" : "DeviceRGB");
-						this.objectsFlow.breakBefore();
+						objectsFlow.writeName("ColorSpace");
+						objectsFlow.writeName(deviceGray ? "DeviceGray" : "DeviceRGB");
+						objectsFlow.breakBefore();
 
-						this.objectsFlow.writeName("Filter");
-						this.objectsFlow.startArray();
+						objectsFlow.writeName("Filter");
+						objectsFlow.startArray();
 						switch (streamCompression) {
 							case ASCII:
-								this.objectsFlow.writeName("ASCII85Decode");
+								objectsFlow.writeName("ASCII85Decode");
 								if (imageType == PDFParams.ImageCompression.FLATE) {
-									this.objectsFlow.writeName("FlateDecode");
+									objectsFlow.writeName("FlateDecode");
 								}
 								break;
 							case NONE:
-								this.objectsFlow.writeName("ASCIIHexDecode");
+								objectsFlow.writeName("ASCIIHexDecode");
 								break;
 							default:
 								if (imageType == PDFParams.ImageCompression.FLATE) {
-									this.objectsFlow.writeName("FlateDecode");
+									objectsFlow.writeName("FlateDecode");
 								}
 								break;
 						}
@@ -531,33 +635,34 @@ class ImageFlow {
 							case FLATE:
 								break;
 							case JPEG:
-								this.objectsFlow.writeName("DCTDecode");
+								objectsFlow.writeName("DCTDecode");
 								break;
 							case JPEG2000:
-								this.objectsFlow.writeName("JPXDecode");
+								objectsFlow.writeName("JPXDecode");
 								break;
 							default:
 								throw new IllegalStateException();
 						}
-						this.objectsFlow.endArray();
-						this.objectsFlow.breakBefore();
-
-						OutputStream out = this.objectsFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW);
-						switch (streamCompression) {
-							case ASCII:
-								out = new ASCII85OutputStream(out);
-								if (imageType == PDFParams.ImageCompression.FLATE) {
-									out = new DeflaterOutputStream(out);
-								}
-								break;
-							case NONE:
-								out = new ASCIIHexOutputStream(out);
-								break;
-							default:
-								if (imageType == PDFParams.ImageCompression.FLATE) {
-									out = new DeflaterOutputStream(out);
-								}
-								break;
+						objectsFlow.endArray();
+						objectsFlow.breakBefore();
+
+						OutputStream out;
+						if (imageType == PDFParams.ImageCompression.FLATE
+								&& streamCompression != PDFParams.Compression.NONE) {
+							out = objectsFlow.startDeflatedStream(streamCompression == PDFParams.Compression.ASCII,
+									StreamClass.IMAGE);
+						} else {
+							out = objectsFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW);
+							switch (streamCompression) {
+								case ASCII:
+									out = new ASCII85OutputStream(out);
+									break;
+								case NONE:
+									out = new ASCIIHexOutputStream(out);
+									break;
+								default:
+									break;
+							}
 						}
 						switch (imageType) {
 							case JPEG, JPEG2000 -> {
@@ -589,135 +694,90 @@ class ImageFlow {
 								}
 							}
 							case FLATE -> {
-								final var raster = image.getRaster();
-								final var fastOut = new FastBufferedOutputStream(out, this.objectsFlow.getBuff());
-								final var pixel = raster.getDataElements(0, 0, null);
-								if (deviceGray) {
-									for (var y = 0; y < height; ++y) {
-										for (var x = 0; x < width; ++x) {
-											fastOut.write(cm.getGreen(raster.getDataElements(x, y, pixel)));
-										}
-									}
+								if (bands != null) {
+									bands.writeColors(out);
 								} else {
-									for (var y = 0; y < height; ++y) {
-										for (var x = 0; x < width; ++x) {
-											raster.getDataElements(x, y, pixel);
-											fastOut.write(cm.getRed(pixel));
-											fastOut.write(cm.getGreen(pixel));
-											fastOut.write(cm.getBlue(pixel));
-										}
-									}
+									new RasterEncoder(image).writeColors(out);
 								}
-								fastOut.flush();
 							}
 							default -> throw new IllegalStateException();
 						}
 						out.close();
 					} finally {
-						this.objectsFlow.endObject();
+						objectsFlow.endObject();
 					}
 
 					if (imageMaskRef != null) {
 						// Mask
-						this.objectsFlow.startObject(imageMaskRef);
+						objectsFlow.startObject(imageMaskRef);
 						try {
-							this.objectsFlow.startHash();
+							objectsFlow.startHash();
 
-							this.objectsFlow.writeName("Type");
-							this.objectsFlow.writeName("XObject");
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeName("Type");
+							objectsFlow.writeName("XObject");
+							objectsFlow.breakBefore();
 
-							this.objectsFlow.writeName("Subtype");
-							this.objectsFlow.writeName("Image");
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeName("Subtype");
+							objectsFlow.writeName("Image");
+							objectsFlow.breakBefore();
 
 							if (!softMaskSupport) {
-								this.objectsFlow.writeName("ImageMask");
-								this.objectsFlow.writeBoolean(true);
-								this.objectsFlow.breakBefore();
+								objectsFlow.writeName("ImageMask");
+								objectsFlow.writeBoolean(true);
+								objectsFlow.breakBefore();
 							}
 
-							this.objectsFlow.writeName("Width");
-							this.objectsFlow.writeInt(width);
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeName("Width");
+							objectsFlow.writeInt(width);
+							objectsFlow.breakBefore();
 
-							this.objectsFlow.writeName("Height");
-							this.objectsFlow.writeInt(height);
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeName("Height");
+							objectsFlow.writeInt(height);
+							objectsFlow.breakBefore();
 
 							if (softMaskSupport) {
-								this.objectsFlow.writeName("ColorSpace");
-								this.objectsFlow.writeName("DeviceGray");
-								this.objectsFlow.breakBefore();
+								objectsFlow.writeName("ColorSpace");
+								objectsFlow.writeName("DeviceGray");
+								objectsFlow.breakBefore();
 							}
 
-							this.objectsFlow.writeName("BitsPerComponent");
-							this.objectsFlow.writeInt(softMaskSupport ? 8 : 1);
-							this.objectsFlow.breakBefore();
+							objectsFlow.writeName("BitsPerComponent");
+							objectsFlow.writeInt(softMaskSupport ? 8 : 1);
+							objectsFlow.breakBefore();
 
-							this.objectsFlow.writeName("Filter");
-							this.objectsFlow.startArray();
+							objectsFlow.writeName("Filter");
+							objectsFlow.startArray();
 							switch (streamCompression) {
 								case ASCII:
-									this.objectsFlow.writeName("ASCII85Decode");
-									this.objectsFlow.writeName("FlateDecode");
+									objectsFlow.writeName("ASCII85Decode");
+									objectsFlow.writeName("FlateDecode");
 									break;
 								case NONE:
-									this.objectsFlow.writeName("ASCIIHexDecode");
+									objectsFlow.writeName("ASCIIHexDecode");
 									break;
 								default:
-									this.objectsFlow.writeName("FlateDecode");
+									objectsFlow.writeName("FlateDecode");
 									break;
 							}
-							this.objectsFlow.endArray();
-							this.objectsFlow.breakBefore();
+							objectsFlow.endArray();
+							objectsFlow.breakBefore();
 
-							OutputStream out = this.objectsFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW);
-							switch (streamCompression) {
-								case ASCII:
-									out = new DeflaterOutputStream(new ASCII85OutputStream(out));
-									break;
-								case NONE:
-									out = new ASCIIHexOutputStream(out);
-									break;
-								default:
-									out = new DeflaterOutputStream(out);
-									break;
+							OutputStream out;
+							if (streamCompression == PDFParams.Compression.NONE) {
+								out = new ASCIIHexOutputStream(
+										objectsFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW));
+							} else {
+								out = objectsFlow.startDeflatedStream(
+										streamCompression == PDFParams.Compression.ASCII, StreamClass.IMAGE);
 							}
-							out = new FastBufferedOutputStream(out, this.objectsFlow.getBuff());
-
-							final Raster raster = image.getRaster();
-							Object pixel = raster.getDataElements(0, 0, null);
-							if (softMaskSupport) {
-								for (int y = 0; y < height; ++y) {
-									for (int x = 0; x < width; ++x) {
-										pixel = raster.getDataElements(x, y, pixel);
-										out.write(cm.getAlpha(pixel) & 0xFF);
-									}
-								}
+							if (bands != null) {
+								bands.writeAlpha(out, softMaskSupport);
 							} else {
-								int b = 0;
-								for (int y = 0; y < height; ++y) {
-									for (int x = 0; x < width; ++x) {
-										pixel = raster.getDataElements(x, y, pixel);
-										int off = 7 - (x % 8);
-										if ((cm.getAlpha(pixel) & 0xFF) <= 0x7F) {
-											b |= 1 << off;
-										}
-										if (off == 0) {
-											out.write(b);
-											b = 0;
-										}
-									}
-									if (width % 8 != 0) {
-										out.write(b);
-										b = 0;
-									}
-								}
+								new RasterEncoder(image).writeAlpha(out, softMaskSupport);
 							}
 							out.close();
 						} finally {
-							this.objectsFlow.endObject();
+							objectsFlow.endObject();
 						}
 					}
 				}
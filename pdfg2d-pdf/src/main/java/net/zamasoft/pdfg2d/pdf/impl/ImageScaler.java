@@ -0,0 +1,342 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Scales images down for output at a lower resolution.
+ * <p>
+ * The image is halved with a box filter while it is at least twice as large as
+ * the target, and the rest is resampled with a Lanczos filter. Pixels are
+ * premultiplied ARGB in int arrays, and rows are processed in bands on the
+ * common fork/join pool when the image is large. The source is read a row at a
+ * time, in bulk for the common image types, so that no copy of it at full size
+ * is made.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class ImageScaler {
+	/** Radius of the Lanczos filter, in source pixels at scale 1. */
+	private static final int LOBES = 3;
+
+	/** Bits of the fixed point filter weights. */
+	private static final int WEIGHT_BITS = 14;
+
+	/** Rows processed by a task. */
+	private static final int BAND_HEIGHT = 32;
+
+	/** Pixels below which rows are processed on the calling thread. */
+	private static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	/** Rows of pixels, premultiplied. */
+	private interface Rows {
+		void read(int y, int[] row);
+	}
+
+	private ImageScaler() {
+		// unused
+	}
+
+	/**
+	 * Returns the size of an image fitted within the bounds, keeping the aspect
+	 * ratio.
+	 *
+	 * @param width     the width of the image
+	 * @param height    the height of the image
+	 * @param maxWidth  the maximum width, or 0 for no bound
+	 * @param maxHeight the maximum height, or 0 for no bound
+	 * @return the width and height
+	 */
+	static int[] fit(final int width, final int height, final int maxWidth, final int maxHeight) {
+		double scale = 1;
+		if (maxWidth > 0 && width > maxWidth) {
+			scale = (double) maxWidth / width;
+		}
+		if (maxHeight > 0 && height > maxHeight) {
+			scale = Math.min(scale, (double) maxHeight / height);
+		}
+		return new int[] { Math.max(1, Math.min(maxWidth > 0 ? maxWidth : width, (int) Math.round(width * scale))),
+				Math.max(1, Math.min(maxHeight > 0 ? maxHeight : height, (int) Math.round(height * scale))) };
+	}
+
+	/**
+	 * Returns the power of two by which an image may be subsampled while it is
+	 * decoded. The image is left at least twice as large as the target, so that
+	 * it still goes through the box filter, which limits the aliasing of the
+	 * samples skipped by the decoder.
+	 *
+	 * @param width     the width of the image
+	 * @param height    the height of the image
+	 * @param dstWidth  the width of the target
+	 * @param dstHeight the height of the target
+	 * @return the subsampling factor, 1 for none
+	 */
+	static int subsampling(final int width, final int height, final int dstWidth, final int dstHeight) {
+		int factor = 1;
+		while (width / (factor * 4) >= dstWidth && height / (factor * 4) >= dstHeight) {
+			factor *= 2;
+		}
+		return factor;
+	}
+
+	/**
+	 * Scales an image down into another, whose size is not larger.
+	 *
+	 * @param src the image to scale
+	 * @param dst the image to draw into
+	 */
+	static void scale(final BufferedImage src, final BufferedImage dst) {
+		final boolean alpha = src.getColorModel().hasAlpha();
+		final int dw = dst.getWidth(), dh = dst.getHeight();
+		int sw = src.getWidth(), sh = src.getHeight();
+		final var reader = new RasterEncoder(src);
+		boolean parallel = reader.isConcurrent();
+		Rows rows = (y, row) -> {
+			reader.getRGB(y, row);
+			if (alpha) {
+				premultiply(row);
+			}
+		};
+
+		// Box filter while the image is twice as large as the target, which
+		// averages every source pixel and is cheaper than a wide kernel
+		while (sw >= dw * 2 || sh >= dh * 2) {
+			final boolean hx = sw >= dw * 2, hy = sh >= dh * 2;
+			final int hw = hx ? sw / 2 : sw, hh = hy ? sh / 2 : sh;
+			rows = halve(rows, parallel, sw, hw, hh, hx, hy);
+			parallel = true;
+			sw = hw;
+			sh = hh;
+		}
+
+		final int[] pixels = resample(rows, parallel, sw, sh, dw, dh);
+		if (alpha) {
+			unpremultiply(pixels);
+		}
+		switch (dst.getType()) {
+			case BufferedImage.TYPE_INT_ARGB -> dst.getRaster().setDataElements(0, 0, dw, dh, pixels);
+			case BufferedImage.TYPE_INT_RGB -> {
+				for (var i = 0; i < pixels.length; ++i) {
+					pixels[i] &= 0xFFFFFF;
+				}
+				dst.getRaster().setDataElements(0, 0, dw, dh, pixels);
+			}
+			default -> dst.setRGB(0, 0, dw, dh, pixels, 0, dw);
+		}
+	}
+
+	private static Rows halve(final Rows rows, final boolean parallel, final int sw, final int hw, final int hh,
+			final boolean hx, final boolean hy) {
+		final int[] pixels = new int[hw * hh];
+		bands(hh, hw, parallel, (from, to) -> {
+			final int[] row0 = new int[sw];
+			final int[] row1 = hy ? new int[sw] : row0;
+			for (var y = from; y < to; ++y) {
+				rows.read(hy ? y * 2 : y, row0);
+				if (hy) {
+					rows.read(y * 2 + 1, row1);
+				}
+				final int off = y * hw;
+				for (var x = 0; x < hw; ++x) {
+					final int x0 = hx ? x * 2 : x;
+					final int x1 = hx ? x0 + 1 : x0;
+					pixels[off + x] = average(row0[x0], row0[x1], row1[x0], row1[x1]);
+				}
+			}
+		});
+		return (y, row) -> System.arraycopy(pixels, y * hw, row, 0, hw);
+	}
+
+	private static int average(final int p0, final int p1, final int p2, final int p3) {
+		int result = 0;
+		for (var shift = 0; shift < 32; shift += 8) {
+			final int sum = ((p0 >>> shift) & 0xFF) + ((p1 >>> shift) & 0xFF) + ((p2 >>> shift) & 0xFF)
+					+ ((p3 >>> shift) & 0xFF);
+			result |= ((sum + 2) >> 2) << shift;
+		}
+		return result;
+	}
+
+	/** Filter weights for each target pixel along one axis. */
+	private record Filter(int[] start, int[][] weights) {
+		static Filter create(final int srcSize, final int dstSize) {
+			final double scale = (double) srcSize / dstSize;
+			final double radius = LOBES * scale;
+			final int[] start = new int[dstSize];
+			final int[][] weights = new int[dstSize][];
+			for (var i = 0; i < dstSize; ++i) {
+				final double center = (i + 0.5) * scale - 0.5;
+				final int first = (int) Math.ceil(center - radius);
+				final int last = (int) Math.floor(center + radius);
+				final double[] w = new double[last - first + 1];
+				double sum = 0;
+				for (var j = 0; j < w.length; ++j) {
+					w[j] = lanczos((first + j - center) / scale);
+					sum += w[j];
+				}
+				// Taps beyond the edges fall on the edge pixels
+				final int lo = Math.max(0, first), hi = Math.min(srcSize - 1, last);
+				final int[] iw = new int[hi - lo + 1];
+				for (var j = 0; j < w.length; ++j) {
+					final int k = Math.min(hi, Math.max(lo, first + j)) - lo;
+					iw[k] += (int) Math.round(w[j] / sum * (1 << WEIGHT_BITS));
+				}
+				start[i] = lo;
+				weights[i] = iw;
+			}
+			return new Filter(start, weights);
+		}
+	}
+
+	private static double lanczos(final double x) {
+		if (x == 0) {
+			return 1;
+		}
+		if (x <= -LOBES || x >= LOBES) {
+			return 0;
+		}
+		final double px = Math.PI * x;
+		return LOBES * Math.sin(px) * Math.sin(px / LOBES) / (px * px);
+	}
+
+	private static int[] resample(final Rows rows, final boolean parallel, final int sw, final int sh, final int dw,
+			final int dh) {
+		final int[] dst = new int[dw * dh];
+		if (sw == dw && sh == dh) {
+			final int[] row = new int[sw];
+			for (var y = 0; y < sh; ++y) {
+				rows.read(y, row);
+				System.arraycopy(row, 0, dst, y * dw, dw);
+			}
+			return dst;
+		}
+
+		// Horizontally into rows of the target width
+		final var fx = Filter.create(sw, dw);
+		final int[] tmp = new int[dw * sh];
+		bands(sh, sw, parallel, (from, to) -> {
+			final int[] row = new int[sw];
+			final int[] acc = new int[4];
+			for (var y = from; y < to; ++y) {
+				rows.read(y, row);
+				final int off = y * dw;
+				for (var x = 0; x < dw; ++x) {
+					final int[] w = fx.weights()[x];
+					int s = fx.start()[x];
+					acc[0] = acc[1] = acc[2] = acc[3] = 0;
+					for (var k = 0; k < w.length; ++k, ++s) {
+						accumulate(acc, row[s], w[k]);
+					}
+					tmp[off + x] = pack(acc);
+				}
+			}
+		});
+
+		// Then vertically, a row of the target at a time
+		final var fy = Filter.create(sh, dh);
+		bands(dh, dw, true, (from, to) -> {
+			final int[] acc = new int[dw * 4];
+			for (var y = from; y < to; ++y) {
+				final int[] w = fy.weights()[y];
+				Arrays.fill(acc, 0);
+				for (int k = 0, s = fy.start()[y]; k < w.length; ++k, ++s) {
+					final int off = s * dw;
+					for (var x = 0; x < dw; ++x) {
+						final int p = tmp[off + x];
+						final int i = x * 4;
+						acc[i] += ((p >>> 24) & 0xFF) * w[k];
+						acc[i + 1] += ((p >> 16) & 0xFF) * w[k];
+						acc[i + 2] += ((p >> 8) & 0xFF) * w[k];
+						acc[i + 3] += (p & 0xFF) * w[k];
+					}
+				}
+				final int off = y * dw;
+				final int[] pixel = new int[4];
+				for (var x = 0; x < dw; ++x) {
+					System.arraycopy(acc, x * 4, pixel, 0, 4);
+					dst[off + x] = pack(pixel);
+				}
+			}
+		});
+		return dst;
+	}
+
+	private static void accumulate(final int[] acc, final int p, final int w) {
+		acc[0] += ((p >>> 24) & 0xFF) * w;
+		acc[1] += ((p >> 16) & 0xFF) * w;
+		acc[2] += ((p >> 8) & 0xFF) * w;
+		acc[3] += (p & 0xFF) * w;
+	}
+
+	/**
+	 * Rounds the weighted sums to a premultiplied pixel, clamping the overshoot
+	 * of the negative lobes.
+	 */
+	private static int pack(final int[] acc) {
+		final int round = 1 << (WEIGHT_BITS - 1);
+		final int a = clamp((acc[0] + round) >> WEIGHT_BITS, 255);
+		final int r = clamp((acc[1] + round) >> WEIGHT_BITS, a);
+		final int g = clamp((acc[2] + round) >> WEIGHT_BITS, a);
+		final int b = clamp((acc[3] + round) >> WEIGHT_BITS, a);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	private static int clamp(final int v, final int max) {
+		return v < 0 ? 0 : v > max ? max : v;
+	}
+
+	private static void premultiply(final int[] row) {
+		for (var i = 0; i < row.length; ++i) {
+			final int p = row[i];
+			final int a = p >>> 24;
+			if (a == 255) {
+				continue;
+			}
+			row[i] = (a << 24) | (mul((p >> 16) & 0xFF, a) << 16) | (mul((p >> 8) & 0xFF, a) << 8) | mul(p & 0xFF, a);
+		}
+	}
+
+	private static int mul(final int c, final int a) {
+		return (c * a + 127) / 255;
+	}
+
+	private static void unpremultiply(final int[] pixels) {
+		for (var i = 0; i < pixels.length; ++i) {
+			final int p = pixels[i];
+			final int a = p >>> 24;
+			if (a == 255) {
+				continue;
+			}
+			if (a == 0) {
+				pixels[i] = 0;
+				continue;
+			}
+			pixels[i] = (a << 24) | (div((p >> 16) & 0xFF, a) << 16) | (div((p >> 8) & 0xFF, a) << 8)
+					| div(p & 0xFF, a);
+		}
+	}
+
+	private static int div(final int c, final int a) {
+		return Math.min(255, (c * 255 + a / 2) / a);
+	}
+
+	/** Processes rows from (inclusive) to (exclusive). */
+	private interface Band {
+		void process(int from, int to);
+	}
+
+	/**
+	 * Processes rows in bands, in parallel if allowed and there are many pixels.
+	 */
+	private static void bands(final int height, final int width, final boolean parallel, final Band band) {
+		if (!parallel || (long) height * width < PARALLEL_THRESHOLD) {
+			band.process(0, height);
+			return;
+		}
+		IntStream.range(0, (height + BAND_HEIGHT - 1) / BAND_HEIGHT).parallel()
+				.forEach(i -> band.process(i * BAND_HEIGHT, Math.min(height, (i + 1) * BAND_HEIGHT)));
+	}
+}
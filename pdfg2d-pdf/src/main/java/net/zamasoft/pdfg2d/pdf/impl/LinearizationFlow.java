@@ -0,0 +1,632 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import net.zamasoft.pdfg2d.io.FragmentedOutput.PositionInfo;
+import net.zamasoft.pdfg2d.pdf.ObjectRef;
+import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
+import net.zamasoft.pdfg2d.pdf.PDFOutput;
+
+/**
+ * Lays out a linearized ("Fast Web View") file.
+ * <p>
+ * The parts are ordered as in Annex F of ISO 32000-1: the header, the
+ * linearization dictionary with the first-page cross-reference table, the
+ * catalog and the other document-level objects of the main flow, the primary
+ * hint stream, the first page with the objects it uses, the other pages in
+ * order, the objects shared by pages, and the main cross-reference table.
+ * Fragments for the parts are forked while the document is built, and the
+ * parts depending on final positions are filled in when the document is
+ * closed.
+ * </p>
+ * <p>
+ * The hint tables give offsets as if the hint stream were absent, so they are
+ * written before the positions after them are known. Numbers in the
+ * linearization dictionary and the first-page trailer have a fixed width, so
+ * the length of the first part does not depend on them.
+ * </p>
+ * <p>
+ * Objects are placed by when they are written: fonts by when they are first
+ * used, and images, forms and the like by when they are created. Those of the
+ * first page go to the first-page section, the others after the last page.
+ * Every object of these two sections is a group of its own in the shared
+ * object hint table, and each page refers to the groups of the resources it
+ * names.
+ * </p>
+ * <p>
+ * Objects are renumbered in file order when the document is closed, as the
+ * hint tables identify objects by consecutive numbers: those from the second
+ * page on, including the shared objects, are numbered from 1, and the
+ * first-page section takes the numbers after them, making up the single
+ * subsection of the first-page table. Until then, every object number is
+ * written to a fragment of its own, to be filled in by the renumbering.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class LinearizationFlow {
+	/** Width of numbers that are filled in after the length of the part is fixed. */
+	private static final int FIXED_DIGITS = 10;
+
+	private final PDFWriterImpl pdfWriter;
+
+	/** Linearization dictionary and first-page cross-reference table. */
+	private final PDFFragmentOutputImpl headFlow;
+
+	/** Primary hint stream. */
+	private PDFFragmentOutputImpl hintFlow = null;
+
+	/** First fragment of the pages, following the hint stream. */
+	private int pagesId = -1;
+
+	/** First fragment of the shared objects, following the last page. */
+	private int objectsId = -1;
+
+	/** Shared objects, following the last page. */
+	private PDFFragmentOutputImpl objectsFlow = null;
+
+	/** Objects written for the first page, before the second page. */
+	private PDFFragmentOutputImpl firstPageFlow = null;
+
+	/** Page objects, in page order. */
+	private final List<ObjectRef> pageRefs = new ArrayList<>();
+
+	/** Content streams of pages, in page order. */
+	private final List<ObjectRef> contentsRefs = new ArrayList<>();
+
+	/** Object numbers of the resources used by pages, in page order. */
+	private final List<BitSet> pageResources = new ArrayList<>();
+
+	/** Values of the linearization dictionary and the first-page trailer. */
+	private long fileLength = 0, hintOffset = 0, hintLength = 0, firstPageEnd = 0, mainXrefPosition = 0,
+			mainXrefEntries = 0;
+
+	/** Offset of the first-page cross-reference table within the first part. */
+	private int headXrefOffset = 0;
+
+	/** Fragments waiting for object numbers, and the objects they refer to. */
+	private final List<PDFFragmentOutputImpl> numberFlows = new ArrayList<>();
+
+	private final List<ObjectRef> numberRefs = new ArrayList<>();
+
+	/** New object numbers by those given out, or null until renumbered. */
+	private int[] renumbered = null;
+
+	/** Objects by their new numbers. */
+	private ObjectRefImpl[] objects = null;
+
+	/** New number of the first object of the first-page section. */
+	private int firstPageNumber = 0;
+
+	LinearizationFlow(final PDFWriterImpl pdfWriter) throws IOException {
+		this.pdfWriter = pdfWriter;
+		this.headFlow = pdfWriter.mainFlow.forkFragment();
+	}
+
+	/**
+	 * Forks the hint stream and the flow for pages after the document-level
+	 * objects written so far.
+	 *
+	 * @return The flow for pages.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	PDFFragmentOutputImpl startPages() throws IOException {
+		final var mainFlow = this.pdfWriter.mainFlow;
+		this.hintFlow = mainFlow.forkFragment();
+		final var pagesFlow = mainFlow.forkFragment();
+		this.pagesId = pagesFlow.getId();
+		return pagesFlow;
+	}
+
+	/**
+	 * Forks the flow for objects shared by pages, which follows the last page.
+	 *
+	 * @return The flow for shared objects.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	PDFFragmentOutputImpl startObjects() throws IOException {
+		this.objectsFlow = this.pdfWriter.mainFlow.forkFragment();
+		this.objectsId = this.objectsFlow.getId();
+		return this.objectsFlow;
+	}
+
+	/**
+	 * Returns the flow for objects written now: the first-page section until the
+	 * second page is started, and the shared objects after it.
+	 */
+	PDFFragmentOutputImpl getObjectsFlow() {
+		return this.pageRefs.size() == 1 ? this.firstPageFlow : this.objectsFlow;
+	}
+
+	void addPage(final PDFPageOutputImpl page) throws IOException {
+		this.pageRefs.add(page.getPageRef());
+		this.contentsRefs.add(page.getContentsRef());
+		this.pageResources.add(page.getResourceObjects());
+		if (this.pageRefs.size() == 1) {
+			// After the dictionary and the contents of the page
+			this.firstPageFlow = this.pdfWriter.bodyFlow.forkFragment();
+		}
+	}
+
+	/**
+	 * Writes the number of an object to the given flow, or a fragment to hold
+	 * it until the objects are renumbered.
+	 *
+	 * @param out Output target.
+	 * @param ref Reference as given out.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeObjectNumber(final PDFFragmentOutputImpl out, final ObjectRef ref) throws IOException {
+		if (this.renumbered != null) {
+			out.writeInt(this.renumbered[ref.objectNumber()]);
+			return;
+		}
+		out.spaceBefore();
+		this.numberFlows.add(out.forkFragment());
+		this.numberRefs.add(ref);
+	}
+
+	/**
+	 * Writes the linearization dictionary, the first-page cross-reference table,
+	 * the hint stream and the main cross-reference table. Everything else must
+	 * have been written.
+	 *
+	 * @param infoRef Reference to the Info dictionary.
+	 * @param fileid  The document IDs.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void close(final ObjectRef infoRef, final byte[][] fileid) throws IOException {
+		if (this.pageRefs.isEmpty()) {
+			throw new IllegalStateException("A linearized document needs at least one page.");
+		}
+		this.firstPageFlow.close();
+		final var builder = this.pdfWriter.builder;
+		final var xref = this.pdfWriter.xref;
+		final var mainFlow = this.pdfWriter.mainFlow;
+		final var linRef = (ObjectRefImpl) xref.nextObjectRef();
+		final var hintRef = (ObjectRefImpl) xref.nextObjectRef();
+		linRef.setPosition(this.headFlow.getId(), 0);
+		this.renumber(builder.getPositionInfo(), hintRef);
+
+		// The first part and the hint stream are still empty here
+		final var emptyInfo = builder.getPositionInfo();
+		final var firstPage = new BitSet();
+		firstPage.set(this.firstPageNumber, xref.getSize());
+
+		// Numbers are zero until known, which does not change the length
+		final var headLength = this.writeHead(emptyInfo, firstPage, linRef, infoRef, fileid).length;
+		final PositionInfo hintlessInfo = id -> emptyInfo.getPosition(id) + headLength;
+		final var hints = this.writeHintTables(hintlessInfo, emptyInfo.getPosition(this.objectsId) + headLength,
+				hintlessInfo.getPosition(mainFlow.getId()) + mainFlow.getLength());
+		this.hintFlow.startObject(hintRef);
+		this.hintFlow.startHash();
+		this.hintFlow.writeName("S");
+		this.hintFlow.writeInt(hints.sharedObjectOffset());
+		this.hintFlow.lineBreak();
+		try (final var out = this.hintFlow.startStreamFromHash(PDFFragmentOutput.Mode.RAW)) {
+			out.write(hints.data());
+		}
+		this.hintFlow.endObject();
+		this.hintFlow.close();
+
+		final var builderInfo = builder.getPositionInfo();
+		final var headId = this.headFlow.getId();
+		final PositionInfo posInfo = id -> id == headId ? builderInfo.getPosition(id)
+				: builderInfo.getPosition(id) + headLength;
+		this.hintOffset = hintRef.getPosition(posInfo);
+		this.hintLength = posInfo.getPosition(this.pagesId) - this.hintOffset;
+		this.firstPageEnd = this.getFirstPageEnd(posInfo);
+		this.mainXrefPosition = posInfo.getPosition(mainFlow.getId()) + mainFlow.getLength();
+
+		// Main cross-reference table with the remaining objects. The last
+		// startxref points to the first-page table, which refers to this one.
+		final var mainXref = new ByteArrayOutputStream();
+		try (final var out = new PDFOutput(mainXref, "ISO-8859-1")) {
+			final var rest = new BitSet();
+			rest.set(0, this.firstPageNumber);
+			xref.writeTable(out, posInfo, rest, this::getObject);
+
+			out.writeOperator("trailer");
+			out.startHash();
+			out.writeName("Size");
+			out.writeInt(xref.getSize());
+			out.endHash();
+			out.writeOperator("startxref");
+			out.lineBreak();
+			out.writeLong(builderInfo.getPosition(headId) + this.headXrefOffset);
+			out.lineBreak();
+			out.write("%%EOF");
+			out.lineBreak();
+		}
+		final var mainXrefBytes = mainXref.toByteArray();
+		this.fileLength = this.mainXrefPosition + mainXrefBytes.length;
+		// The white-space before the first entry ends the subsection header line
+		var eol = 0;
+		for (var lines = 0; lines < 2; ++eol) {
+			if (mainXrefBytes[eol] == '\n') {
+				++lines;
+			}
+		}
+		this.mainXrefEntries = this.mainXrefPosition + eol - 1;
+
+		final var head = this.writeHead(posInfo, firstPage, linRef, infoRef, fileid);
+		if (head.length != headLength) {
+			throw new IllegalStateException("Linearization header changed its length");
+		}
+		this.headFlow.write(head);
+		this.headFlow.close();
+		mainFlow.write(mainXrefBytes);
+	}
+
+	/**
+	 * Numbers the objects in file order and fills in the numbers written so far.
+	 * The objects from the second page on come first, then those given out but
+	 * not written, which are free, and then the first-page section.
+	 *
+	 * @param posInfo Positions before the hint stream is written.
+	 * @param hintRef The hint stream, which precedes the pages.
+	 */
+	private void renumber(final PositionInfo posInfo, final ObjectRef hintRef) throws IOException {
+		final var xref = this.pdfWriter.xref;
+		final var size = xref.getSize();
+
+		// Object numbers in the low bits keep them with their positions. The hint
+		// stream takes 0 to go before the first page at the same position.
+		final var keys = new long[size];
+		var count = 0;
+		for (var objectNumber = 1; objectNumber < size; ++objectNumber) {
+			final var ref = xref.getObjectRef(objectNumber);
+			if (ref.isWritten()) {
+				keys[count++] = ref.getPosition(posInfo) << 31 | objectNumber;
+			}
+		}
+		keys[count++] = posInfo.getPosition(this.hintFlow.getId()) << 31;
+		Arrays.sort(keys, 0, count);
+		final var firstPageObjects = firstIndex(keys, count, this.getFirstPageEnd(posInfo) << 31);
+
+		this.renumbered = new int[size];
+		this.objects = new ObjectRefImpl[size];
+		var next = 1;
+		for (var i = firstPageObjects; i < count; ++i) {
+			next = this.assign(keys[i], next, hintRef);
+		}
+		for (var objectNumber = 1; objectNumber < size; ++objectNumber) {
+			if (!xref.getObjectRef(objectNumber).isWritten() && objectNumber != hintRef.objectNumber()) {
+				next = this.assign(objectNumber, next, hintRef);
+			}
+		}
+		this.firstPageNumber = next;
+		for (var i = 0; i < firstPageObjects; ++i) {
+			next = this.assign(keys[i], next, hintRef);
+		}
+
+		for (var i = 0; i < this.numberFlows.size(); ++i) {
+			final var flow = this.numberFlows.get(i);
+			flow.writeInt(this.renumbered[this.numberRefs.get(i).objectNumber()]);
+			flow.close();
+		}
+		this.numberFlows.clear();
+		this.numberRefs.clear();
+	}
+
+	/**
+	 * Gives the next number to the object of a sort key, whose low bits hold
+	 * the number given out, 0 standing for the hint stream.
+	 *
+	 * @return The number after it.
+	 */
+	private int assign(final long key, final int number, final ObjectRef hintRef) {
+		final var low = (int) (key & 0x7FFFFFFF);
+		final var objectNumber = low == 0 ? hintRef.objectNumber() : low;
+		this.renumbered[objectNumber] = number;
+		this.objects[number] = this.pdfWriter.xref.getObjectRef(objectNumber);
+		return number + 1;
+	}
+
+	/**
+	 * Returns an object by its new number.
+	 */
+	private ObjectRefImpl getObject(final int objectNumber) {
+		return this.objects[objectNumber];
+	}
+
+	/**
+	 * Returns a reference with the new number of an object.
+	 */
+	private ObjectRef renumbered(final ObjectRef ref) {
+		return new ObjectRefImpl(this.renumbered[ref.objectNumber()], ref.generationNumber());
+	}
+
+	/**
+	 * Returns the position following the objects of the first page.
+	 */
+	private long getFirstPageEnd(final PositionInfo posInfo) {
+		return this.pageRefs.size() > 1 ? ((ObjectRefImpl) this.pageRefs.get(1)).getPosition(posInfo)
+				: posInfo.getPosition(this.objectsId);
+	}
+
+	/**
+	 * Returns the linearization dictionary and the first-page cross-reference
+	 * table with the values known so far.
+	 */
+	private byte[] writeHead(final PositionInfo posInfo, final BitSet firstPage, final ObjectRef linRef,
+			final ObjectRef infoRef, final byte[][] fileid) throws IOException {
+		final var xref = this.pdfWriter.xref;
+		final var head = new ByteArrayOutputStream();
+		try (final var out = new PDFOutput(head, "ISO-8859-1")) {
+			out.writeInt(this.renumbered[linRef.objectNumber()]);
+			out.writeInt(linRef.generationNumber());
+			out.writeOperator("obj");
+			out.lineBreak();
+			out.startHash();
+			out.writeName("Linearized");
+			out.writeInt(1);
+			out.writeName("L");
+			this.writeFixed(out, this.fileLength);
+			out.writeName("H");
+			out.startArray();
+			this.writeFixed(out, this.hintOffset);
+			this.writeFixed(out, this.hintLength);
+			out.endArray();
+			out.writeName("O");
+			out.writeInt(this.renumbered[this.pageRefs.get(0).objectNumber()]);
+			out.writeName("E");
+			this.writeFixed(out, this.firstPageEnd);
+			out.writeName("N");
+			out.writeInt(this.pageRefs.size());
+			out.writeName("T");
+			this.writeFixed(out, this.mainXrefEntries);
+			out.endHash();
+			out.lineBreak();
+			out.writeLine("endobj");
+
+			this.headXrefOffset = head.size();
+			xref.writeTable(out, posInfo, firstPage, this::getObject);
+			out.writeOperator("trailer");
+			out.startHash();
+			xref.writeTrailerEntries(out, this.renumbered(xref.getRootRef()),
+					infoRef == null ? null : this.renumbered(infoRef), fileid, null);
+			out.writeName("Prev");
+			this.writeFixed(out, this.mainXrefPosition);
+			out.endHash();
+			out.writeOperator("startxref");
+			out.lineBreak();
+			out.writeInt(0);
+			out.lineBreak();
+			out.write("%%EOF");
+			out.lineBreak();
+		}
+		return head.toByteArray();
+	}
+
+	private void writeFixed(final PDFOutput out, final long value) throws IOException {
+		out.spaceBefore();
+		this.pdfWriter.xref.writeFixedNumber(out, value, FIXED_DIGITS);
+	}
+
+	private record HintTables(byte[] data, int sharedObjectOffset) {
+	}
+
+	/**
+	 * Returns the page offset hint table followed by the shared object hint
+	 * table.
+	 *
+	 * @param posInfo    Positions as if the hint stream were absent.
+	 * @param pagesEnd   Position following the last page.
+	 * @param objectsEnd Position following the shared objects.
+	 */
+	private HintTables writeHintTables(final PositionInfo posInfo, final long pagesEnd, final long objectsEnd)
+			throws IOException {
+		final var xref = this.pdfWriter.xref;
+		final var pageCount = this.pageRefs.size();
+
+		if (objectsEnd > 0xFFFFFFFFL) {
+			throw new IOException("Objects end at " + objectsEnd + ", beyond the range of hint tables.");
+		}
+
+		// Positions of all objects, to find the objects of each page
+		final var positions = new long[xref.getSize()];
+		final var numbers = new int[xref.getSize()];
+		var objectCount = 0;
+		for (var objectNumber = 1; objectNumber < xref.getSize(); ++objectNumber) {
+			final var ref = xref.getObjectRef(objectNumber);
+			if (ref.isWritten()) {
+				// Object numbers in the low bits keep them with their positions
+				positions[objectCount++] = ref.getPosition(posInfo) << 31 | objectNumber;
+			}
+		}
+		Arrays.sort(positions, 0, objectCount);
+		for (var i = 0; i < objectCount; ++i) {
+			numbers[i] = (int) (positions[i] & 0x7FFFFFFF);
+			positions[i] >>>= 31;
+		}
+
+		// A page spans from its page object to the next one
+		final var starts = new long[pageCount + 1];
+		for (var i = 0; i < pageCount; ++i) {
+			starts[i] = ((ObjectRefImpl) this.pageRefs.get(i)).getPosition(posInfo);
+		}
+		starts[pageCount] = pagesEnd;
+
+		final var objects = new long[pageCount];
+		final var lengths = new long[pageCount];
+		final var contentOffsets = new long[pageCount];
+		final var contentLengths = new long[pageCount];
+		for (var i = 0; i < pageCount; ++i) {
+			final var first = firstIndex(positions, objectCount, starts[i]);
+			final var end = firstIndex(positions, objectCount, starts[i + 1]);
+			objects[i] = end - first;
+			lengths[i] = starts[i + 1] - starts[i];
+
+			// The content stream object lasts until the next object of the page
+			final var contentsPos = ((ObjectRefImpl) this.contentsRefs.get(i)).getPosition(posInfo);
+			final var next = firstIndex(positions, objectCount, contentsPos + 1);
+			contentOffsets[i] = contentsPos - starts[i];
+			contentLengths[i] = (next < end ? positions[next] : starts[i + 1]) - contentsPos;
+		}
+
+		// Shared object groups, one per object: those of the first page, from its
+		// page object, then those following the last page
+		final var firstPageStart = firstIndex(positions, objectCount, starts[0]);
+		final var firstPageEnd = firstIndex(positions, objectCount, starts[1]);
+		final var sharedStart = firstIndex(positions, objectCount, pagesEnd);
+		final var firstPageGroups = firstPageEnd - firstPageStart;
+		final var groupCount = firstPageGroups + objectCount - sharedStart;
+		final var groupLengths = new long[groupCount];
+		final var objectToGroup = new int[xref.getSize()];
+		Arrays.fill(objectToGroup, -1);
+		for (var group = 0; group < groupCount; ++group) {
+			final var i = group < firstPageGroups ? firstPageStart + group : sharedStart + group - firstPageGroups;
+			final var end = group == firstPageGroups - 1 ? starts[1]
+					: i + 1 < objectCount ? positions[i + 1] : objectsEnd;
+			groupLengths[group] = end - positions[i];
+			objectToGroup[numbers[i]] = group;
+		}
+
+		// The groups of the resources named by each page
+		final var sharedCounts = new long[pageCount];
+		final var sharedGroups = new ArrayList<Integer>();
+		for (var i = 0; i < pageCount; ++i) {
+			final var resources = this.pageResources.get(i);
+			for (var objectNumber = resources.nextSetBit(0); objectNumber >= 0; objectNumber = resources
+					.nextSetBit(objectNumber + 1)) {
+				final var group = objectToGroup[objectNumber];
+				if (group != -1) {
+					sharedGroups.add(group);
+					++sharedCounts[i];
+				}
+			}
+		}
+
+		final var bits = new BitWriter();
+
+		// Page offset hint table header (Table F.3)
+		final var minObjects = min(objects);
+		final var minLength = min(lengths);
+		final var minContentOffset = min(contentOffsets);
+		final var minContentLength = min(contentLengths);
+		final var objectsBits = bitsFor(max(objects) - minObjects);
+		final var lengthBits = bitsFor(max(lengths) - minLength);
+		final var contentOffsetBits = bitsFor(max(contentOffsets) - minContentOffset);
+		final var contentLengthBits = bitsFor(max(contentLengths) - minContentLength);
+		final var sharedCountBits = bitsFor(max(sharedCounts));
+		final var groupBits = bitsFor(groupCount - 1);
+		bits.write(minObjects, 32);
+		bits.write(starts[0], 32);
+		bits.write(objectsBits, 16);
+		bits.write(minLength, 32);
+		bits.write(lengthBits, 16);
+		bits.write(minContentOffset, 32);
+		bits.write(contentOffsetBits, 16);
+		bits.write(minContentLength, 32);
+		bits.write(contentLengthBits, 16);
+		// Shared object references: count, identifier and numerator widths, and
+		// the denominator
+		bits.write(sharedCountBits, 16);
+		bits.write(groupBits, 16);
+		bits.write(0, 16);
+		bits.write(1, 16);
+
+		// Per-page entries (Table F.4), each item for all pages in turn.
+		// Numerators take no bits.
+		writeDeltas(bits, objects, minObjects, objectsBits);
+		writeDeltas(bits, lengths, minLength, lengthBits);
+		writeDeltas(bits, sharedCounts, 0, sharedCountBits);
+		for (final var group : sharedGroups) {
+			bits.write(group, groupBits);
+		}
+		bits.align();
+		writeDeltas(bits, contentOffsets, minContentOffset, contentOffsetBits);
+		writeDeltas(bits, contentLengths, minContentLength, contentLengthBits);
+
+		// Shared object hint table header (Table F.5)
+		final var sharedObjectOffset = bits.size();
+		final var minGroupLength = groupCount == 0 ? 0 : min(groupLengths);
+		final var groupLengthBits = groupCount == 0 ? 0 : bitsFor(max(groupLengths) - minGroupLength);
+		bits.write(sharedStart < objectCount ? this.renumbered[numbers[sharedStart]] : 0, 32);
+		bits.write(pagesEnd, 32);
+		bits.write(firstPageGroups, 32);
+		bits.write(groupCount, 32);
+		bits.write(0, 16);
+		bits.write(minGroupLength, 32);
+		bits.write(groupLengthBits, 16);
+
+		// Shared object groups (Table F.6): lengths, no MD5 signatures, and one
+		// object each, which takes no bits
+		writeDeltas(bits, groupLengths, minGroupLength, groupLengthBits);
+		for (var group = 0; group < groupCount; ++group) {
+			bits.write(0, 1);
+		}
+		bits.align();
+
+		return new HintTables(bits.toByteArray(), sharedObjectOffset);
+	}
+
+	private static void writeDeltas(final BitWriter bits, final long[] values, final long min, final int width) {
+		for (final var value : values) {
+			bits.write(value - min, width);
+		}
+		bits.align();
+	}
+
+	/**
+	 * Returns the index of the first position not less than the given one.
+	 */
+	private static int firstIndex(final long[] positions, final int count, final long position) {
+		final var i = Arrays.binarySearch(positions, 0, count, position);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	private static long min(final long[] values) {
+		return Arrays.stream(values).min().getAsLong();
+	}
+
+	private static long max(final long[] values) {
+		return Arrays.stream(values).max().getAsLong();
+	}
+
+	private static int bitsFor(final long value) {
+		return 64 - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * Writes big-endian bit fields, as used by hint tables.
+	 */
+	private static class BitWriter {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private int buffer = 0, bitCount = 0;
+
+		void write(final long value, final int width) {
+			for (var i = width - 1; i >= 0; --i) {
+				this.buffer = (this.buffer << 1) | (int) ((value >>> i) & 1);
+				if (++this.bitCount == 8) {
+					this.out.write(this.buffer);
+					this.buffer = 0;
+					this.bitCount = 0;
+				}
+			}
+		}
+
+		/** Skips to the next byte boundary. */
+		void align() {
+			if (this.bitCount > 0) {
+				this.write(0, 8 - this.bitCount);
+			}
+		}
+
+		int size() {
+			return this.out.size();
+		}
+
+		byte[] toByteArray() {
+			return this.out.toByteArray();
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package net.zamasoft.pdfg2d.pdf.impl;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
 
@@ -9,6 +11,10 @@ import net.zamasoft.pdfg2d.pdf.ObjectRef;
  * This class handles mapping of top-level name tree categories (e.g., Dests,
  * EmbeddedFiles)
  * to their respective root nodes.
+ * <p>
+ * In an incremental update, the name trees of the base document that get no
+ * new entries are kept.
+ * </p>
  * 
  * @author MIYABE Tatsuhiko
  * @since 1.0
@@ -18,6 +24,11 @@ class NameDictionaryFlow {
 
 	private final PDFFragmentOutputImpl out, catalogFlow;
 
+	private final BaseDocument base;
+
+	/** Keys of the entries written so far. */
+	private final Set<String> keys = new HashSet<>();
+
 	private boolean hasEntry = false;
 
 	public NameDictionaryFlow(final PDFWriterImpl pdfWriter) throws IOException {
@@ -25,6 +36,7 @@ class NameDictionaryFlow {
 		final var mainFlow = pdfWriter.mainFlow;
 		this.out = mainFlow.forkFragment();
 		this.catalogFlow = pdfWriter.catalogFlow;
+		this.base = pdfWriter.base;
 	}
 
 	public void addEntry(final String key, final ObjectRef ref) throws IOException {
@@ -42,9 +54,26 @@ class NameDictionaryFlow {
 		this.out.writeName(key);
 		this.out.writeObjectRef(ref);
 		this.out.lineBreak();
+		this.keys.add(key);
 	}
 
 	public void close() throws IOException {
+		final var names = this.base == null ? null : this.base.getCatalog().get("Names");
+		if (names != null) {
+			if (!this.hasEntry) {
+				this.catalogFlow.writeName("Names");
+				BaseDocument.writeValue(this.catalogFlow, names);
+				this.catalogFlow.lineBreak();
+			} else {
+				for (final var entry : BaseDocument.toDictionary(this.base.resolve(names)).entrySet()) {
+					if (!this.keys.contains(entry.getKey())) {
+						this.out.writeName(entry.getKey());
+						BaseDocument.writeValue(this.out, entry.getValue());
+						this.out.lineBreak();
+					}
+				}
+			}
+		}
 		if (this.hasEntry) {
 			this.out.endHash();
 			this.out.endObject();
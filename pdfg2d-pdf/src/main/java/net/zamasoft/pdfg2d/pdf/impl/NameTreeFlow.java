@@ -1,6 +1,7 @@
 package net.zamasoft.pdfg2d.pdf.impl;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -10,6 +11,11 @@ import net.zamasoft.pdfg2d.pdf.params.PDFParams;
  * Base class for managing PDF name trees.
  * Name trees are used to map string keys to PDF objects (e.g., Destinations,
  * embedded files).
+ * <p>
+ * In an incremental update, a tree that gets new entries is written again
+ * with the entries of the base document, which are copied as they are unless
+ * a new entry has the same name.
+ * </p>
  * 
  * @author MIYABE Tatsuhiko
  * @since 1.0
@@ -43,6 +49,17 @@ abstract class NameTreeFlow {
 
 	public void close() throws IOException {
 		if (this.nameToEntry != null) {
+			final var base = this.pdfWriter.base;
+			if (base != null) {
+				final var names = base.getCatalog().get("Names");
+				final var tree = names == null ? null : BaseDocument.toDictionary(base.resolve(names)).get(this.key);
+				if (tree != null) {
+					final var baseEntries = new HashMap<String, byte[]>();
+					base.readNameTree(tree, baseEntries);
+					baseEntries.forEach(this.nameToEntry::putIfAbsent);
+				}
+			}
+
 			final var xref = this.pdfWriter.xref;
 			final var rootRef = xref.nextObjectRef();
 			this.nameDict.addEntry(this.key, rootRef);
@@ -79,7 +96,11 @@ abstract class NameTreeFlow {
 			this.out.startArray();
 			for (final var entry : this.nameToEntry.entrySet()) {
 				this.out.writeText(entry.getKey());
-				this.writeEntry(entry.getValue());
+				if (entry.getValue() instanceof final byte[] value) {
+					BaseDocument.writeValue(this.out, value);
+				} else {
+					this.writeEntry(entry.getValue());
+				}
 			}
 			this.out.endArray();
 			this.out.lineBreak();
@@ -7,9 +7,12 @@ import net.zamasoft.pdfg2d.pdf.ObjectRef;
  * Implementation of PDF object reference with position tracking.
  */
 public final class ObjectRefImpl extends ObjectRef {
-	private int position = -1;
+	private long position = -1;
 	private int id;
 
+	/** Containing object stream, or null if the object is written directly. */
+	private ObjectRef objectStream = null;
+
 	/**
 	 * Creates a new object reference with the given object number.
 	 * 
@@ -19,6 +22,17 @@ public final class ObjectRefImpl extends ObjectRef {
 		super(objectNum, 0);
 	}
 
+	/**
+	 * Creates a new object reference with the given object and generation
+	 * numbers.
+	 * 
+	 * @param objectNum     the object number
+	 * @param generationNum the generation number
+	 */
+	public ObjectRefImpl(final int objectNum, final int generationNum) {
+		super(objectNum, generationNum);
+	}
+
 	/**
 	 * Sets the position of this object in the PDF output.
 	 * 
@@ -26,7 +40,7 @@ public final class ObjectRefImpl extends ObjectRef {
 	 * @param position the position within the fragment
 	 * @throws IllegalStateException if the position has already been set
 	 */
-	public void setPosition(final int id, final int position) {
+	public void setPosition(final int id, final long position) {
 		if (this.position != -1) {
 			throw new IllegalStateException("Cannot create object twice with the same reference.");
 		}
@@ -34,6 +48,48 @@ public final class ObjectRefImpl extends ObjectRef {
 		this.position = position;
 	}
 
+	/**
+	 * Sets the position of this object inside an object stream.
+	 * 
+	 * @param objectStream the object stream containing this object
+	 * @param index        the index of this object within the object stream
+	 * @throws IllegalStateException if the position has already been set
+	 */
+	public void setPosition(final ObjectRef objectStream, final int index) {
+		if (this.position != -1) {
+			throw new IllegalStateException("Cannot create object twice with the same reference.");
+		}
+		this.objectStream = objectStream;
+		this.position = index;
+	}
+
+	/**
+	 * Returns whether the object has been written.
+	 * 
+	 * @return true if the position has been set
+	 */
+	public boolean isWritten() {
+		return this.position != -1;
+	}
+
+	/**
+	 * Returns the object stream containing this object.
+	 * 
+	 * @return the object stream, or null if the object is written directly
+	 */
+	public ObjectRef getObjectStream() {
+		return this.objectStream;
+	}
+
+	/**
+	 * Returns the index of this object within its object stream.
+	 * 
+	 * @return the index
+	 */
+	public int getIndex() {
+		return (int) this.position;
+	}
+
 	/**
 	 * Gets the absolute position in the output.
 	 * 
@@ -0,0 +1,110 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import net.zamasoft.pdfg2d.pdf.ObjectRef;
+import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
+
+/**
+ * Packs non-stream objects into compressed object streams (PDF 1.5).
+ * Objects are collected as they are completed and written out as an /ObjStm
+ * stream object once enough of them have accumulated.
+ * 
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class ObjectStreamFlow {
+	/** Maximum number of objects in one object stream. */
+	private static final int MAX_OBJECTS = 100;
+
+	private final XRefImpl xref;
+
+	/** Reference of the object stream being filled. */
+	private ObjectRef streamRef = null;
+
+	private final int[] objectNumbers = new int[MAX_OBJECTS];
+
+	private final int[] offsets = new int[MAX_OBJECTS];
+
+	private int count = 0;
+
+	/** Concatenated object bodies. */
+	private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+	public ObjectStreamFlow(final XRefImpl xref) {
+		this.xref = xref;
+	}
+
+	/**
+	 * Adds a completed object to the current object stream.
+	 * 
+	 * @param out  Flow to write the object stream to when it is full. The flow
+	 *             must be outside of any object.
+	 * @param ref  Reference of the object.
+	 * @param body Serialized object body, without the obj/endobj keywords.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void addObject(final PDFFragmentOutputImpl out, final ObjectRef ref, final byte[] body)
+			throws IOException {
+		if (this.streamRef == null) {
+			this.streamRef = this.xref.nextObjectRef();
+		}
+		((ObjectRefImpl) ref).setPosition(this.streamRef, this.count);
+		this.objectNumbers[this.count] = ref.objectNumber();
+		this.offsets[this.count] = this.data.size();
+		this.data.write(body);
+		if (++this.count >= MAX_OBJECTS) {
+			this.flush(out);
+		}
+	}
+
+	/**
+	 * Writes the collected objects as an object stream.
+	 * 
+	 * @param out Flow to write the object stream to.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void flush(final PDFFragmentOutputImpl out) throws IOException {
+		if (this.count == 0) {
+			return;
+		}
+		final var header = new StringBuilder();
+		for (var i = 0; i < this.count; ++i) {
+			header.append(this.objectNumbers[i]).append(' ').append(this.offsets[i]).append(' ');
+		}
+		final var headerBytes = header.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+		out.startObject(this.streamRef);
+		out.startHash();
+		out.writeName("Type");
+		out.writeName("ObjStm");
+		out.lineBreak();
+		out.writeName("N");
+		out.writeInt(this.count);
+		out.lineBreak();
+		out.writeName("First");
+		out.writeInt(headerBytes.length);
+		out.lineBreak();
+		try (final var sout = out.startStreamFromHash(PDFFragmentOutput.Mode.BINARY)) {
+			sout.write(headerBytes);
+			this.data.writeTo(sout);
+		}
+		out.endObject();
+
+		this.streamRef = null;
+		this.count = 0;
+		this.data.reset();
+	}
+
+	/**
+	 * Writes the remaining objects.
+	 * 
+	 * @param out Flow to write the last object stream to.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void close(final PDFFragmentOutputImpl out) throws IOException {
+		this.flush(out);
+	}
+}
@@ -1,13 +1,15 @@
 package net.zamasoft.pdfg2d.pdf.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.DeflaterOutputStream;
 
 import net.zamasoft.pdfg2d.io.util.FragmentOutputAdapter;
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels.StreamClass;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
 import net.zamasoft.pdfg2d.pdf.util.codec.ASCII85OutputStream;
 import net.zamasoft.pdfg2d.pdf.util.codec.ASCIIHexOutputStream;
 import net.zamasoft.pdfg2d.pdf.util.io.FastBufferedOutputStream;
@@ -21,25 +23,40 @@ import net.zamasoft.pdfg2d.pdf.util.io.FastBufferedOutputStream;
  * @author MIYABE Tatsuhiko
  */
 class PDFFragmentOutputImpl extends PDFFragmentOutput {
+	/** Maximum number of digits of a non-negative long. */
+	static final int LONG_DIGITS = 19;
+
+	/** Maximum number of digits of a non-negative int. */
+	static final int INT_DIGITS = 10;
+
 	private final PDFWriterImpl pdfWriter;
 
 	/** Self and next fragment ID. */
 	private int id, anchorId = -1;
 
 	/** Output byte count. */
-	private int length = 0;
+	private long length = 0;
 
 	/** Writing stream. */
 	private PDFFragmentOutputImpl streamLengthFlow = null;
 
 	/** Stream start position. */
-	private int startStreamPosition = 0;
+	private long startStreamPosition = 0;
 
 	/** Current object reference. */
 	private ObjectRef currentRef;
 
 	private byte[] buff = null;
 
+	/**
+	 * Body of the current object while it is a candidate for an object stream.
+	 * Null when the object is written directly.
+	 */
+	private ByteArrayOutputStream packed = null;
+
+	/** Fragment output suspended while the object body is packed. */
+	private OutputStream fragmentOut = null;
+
 	public PDFFragmentOutputImpl(final OutputStream out, final PDFWriterImpl pdfWriter, final int id,
 			final int nextId, final ObjectRef currentRef) throws IOException {
 		super(out, pdfWriter.getParams().platformEncoding());
@@ -64,7 +81,9 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 	 * @throws IOException If an I/O error occurs.
 	 */
 	protected PDFFragmentOutputImpl forkFragment() throws IOException {
-		this.close();
+		if (this.packed != null) {
+			this.unpack();
+		}
 		final var builder = this.pdfWriter.builder;
 		final var nextId = this.pdfWriter.nextId();
 		if (this.anchorId == -1) {
@@ -73,34 +92,90 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 			builder.insertFragmentBefore(this.anchorId);
 		}
 		final var streamOut = new FragmentOutputAdapter(builder, nextId);
-		this.id = this.pdfWriter.nextId();
+		final var continuationId = this.pdfWriter.nextId();
 		if (this.anchorId == -1) {
 			builder.addFragment();
 		} else {
 			builder.insertFragmentBefore(this.anchorId);
 		}
+		// The current fragment is finished only now, since the builder may write
+		// out finished fragments together with the anchor following them.
+		this.close();
+		this.id = continuationId;
 		final var newFragOut = new PDFFragmentOutputImpl(streamOut, this.pdfWriter, nextId, this.id, this.currentRef);
 		this.out = new FragmentOutputAdapter(builder, this.id);
 		this.length = 0;
 		return newFragOut;
 	}
 
+	/**
+	 * Declares that this fragment holds at most the given number of bytes, so
+	 * that builders writing at final positions need not wait for it to be
+	 * finished. The rest is filled with spaces by such builders.
+	 * 
+	 * @param capacity Maximum number of bytes.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void reserve(final int capacity) throws IOException {
+		this.pdfWriter.builder.reserveFragment(this.id, capacity, (byte) ' ');
+	}
+
 	@Override
 	public void startObject(final ObjectRef ref) throws IOException {
+		if (this.currentRef != null) {
+			throw new IllegalStateException("Already inside object: " + this.currentRef);
+		}
 		this.breakBefore();
+		if (this.pdfWriter.objectStreams != null) {
+			// Defer the object header. The body goes into an object stream unless
+			// the object turns out to be a stream or to contain forked fragments.
+			this.packed = new ByteArrayOutputStream();
+			this.fragmentOut = this.out;
+			this.out = this.packed;
+			this.currentRef = ref;
+			return;
+		}
 		((ObjectRefImpl) ref).setPosition(this.id, this.getLength());
-		this.writeInt(ref.objectNumber());
+		this.writeObjectNumber(ref);
 		this.writeInt(ref.generationNumber());
 		this.writeOperator("obj");
 		this.lineBreak();
-		if (this.currentRef != null) {
-			throw new IllegalStateException("Already inside object: " + this.currentRef);
-		}
 		this.currentRef = ref;
 	}
 
+	@Override
+	public void writeObjectRef(final ObjectRef ref) throws IOException {
+		this.writeObjectNumber(ref);
+		this.writeInt(ref.generationNumber());
+		this.writeOperator("R");
+	}
+
+	/**
+	 * Writes the number of an object, which a linearized file gives when the
+	 * document is closed.
+	 */
+	private void writeObjectNumber(final ObjectRef ref) throws IOException {
+		final var linearization = this.pdfWriter.linearization;
+		if (linearization == null) {
+			this.writeInt(ref.objectNumber());
+			return;
+		}
+		linearization.writeObjectNumber(this, ref);
+	}
+
 	@Override
 	public void endObject() throws IOException {
+		if (this.packed != null) {
+			this.breakBefore();
+			final var body = this.packed.toByteArray();
+			final var ref = this.currentRef;
+			this.out = this.fragmentOut;
+			this.fragmentOut = null;
+			this.packed = null;
+			this.currentRef = null;
+			this.pdfWriter.objectStreams.addObject(this, ref, body);
+			return;
+		}
 		this.writeLine("endobj");
 		if (this.currentRef == null) {
 			throw new IllegalStateException("Already outside object");
@@ -108,6 +183,23 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 		this.currentRef = null;
 	}
 
+	/**
+	 * Writes the deferred object header and the buffered body to the fragment,
+	 * turning the current object into a regular indirect object.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void unpack() throws IOException {
+		final var body = this.packed;
+		this.out = this.fragmentOut;
+		this.fragmentOut = null;
+		this.packed = null;
+		((ObjectRefImpl) this.currentRef).setPosition(this.id, this.getLength());
+		this.write(this.currentRef.objectNumber() + " " + this.currentRef.generationNumber() + " obj");
+		this.write(EOL);
+		body.writeTo(this);
+	}
+
 	@Override
 	public OutputStream startStream(final Mode mode) throws IOException {
 		if (this.streamLengthFlow != null) {
@@ -120,9 +212,7 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 
 	@Override
 	public OutputStream startStreamFromHash(final Mode mode) throws IOException {
-		if (this.streamLengthFlow != null) {
-			throw new IllegalStateException("Cannot nest streams: " + this.streamLengthFlow);
-		}
+		this.checkStreamStart();
 
 		final var compression = this.pdfWriter.params.compression();
 		switch (mode) {
@@ -177,16 +267,77 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 			}
 		}
 
+		// Deflated streams may be compressed in the background
+		if (mode != Mode.RAW && compression != PDFParams.Compression.NONE) {
+			final var streamClass = mode == Mode.ASCII ? StreamClass.CONTENT : StreamClass.BINARY;
+			final var encodedOut = this.startDeflatedStream(compression == PDFParams.Compression.ASCII, streamClass);
+			return new FastBufferedOutputStream(encodedOut, this.getBuff());
+		}
+
+		final var flowOut = this.startStreamBody();
+		return switch (mode) {
+			case RAW -> flowOut;
+			case ASCII -> new FastBufferedOutputStream(flowOut, this.getBuff());
+			case BINARY -> new FastBufferedOutputStream(new ASCIIHexOutputStream(flowOut), this.getBuff());
+		};
+	}
+
+	/**
+	 * Starts a Flate-encoded stream after the /Filter entry has been written.
+	 * With background compression, the data is buffered and compressed on a
+	 * worker thread once the returned stream is closed.
+	 * 
+	 * @param ascii85     Whether to apply ASCII85 after Flate.
+	 * @param streamClass Class of stream, which selects the compression level.
+	 * @return Unbuffered output for the uncompressed stream data.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	OutputStream startDeflatedStream(final boolean ascii85, final StreamClass streamClass) throws IOException {
+		this.checkStreamStart();
+		final var compressor = this.pdfWriter.compressor;
+		if (compressor == null) {
+			final var flowOut = this.startStreamBody();
+			return this.pdfWriter.deflaters.open(ascii85 ? new ASCII85OutputStream(flowOut) : flowOut, streamClass);
+		}
+
+		// The body and its length are filled in when compression completes
+		this.writeName("Length");
+		this.write(' ');
+		final var lengthFlow = this.forkFragment();
+		lengthFlow.reserve(LONG_DIGITS);
+		this.lineBreak();
+		this.endHash();
+		this.writeLine("stream");
+		final var bodyFlow = this.forkFragment();
+		this.streamLengthFlow = lengthFlow;
+		return compressor.open(this, bodyFlow, lengthFlow, ascii85, streamClass);
+	}
+
+	/**
+	 * Writes /Length and the stream keyword, and returns the output for the
+	 * stream data, which ends the stream when closed.
+	 * 
+	 * @return Output for the encoded stream data.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private OutputStream startStreamBody() throws IOException {
 		this.writeName("Length");
 		this.write(' ');
 		this.streamLengthFlow = this.forkFragment();
+		this.streamLengthFlow.reserve(LONG_DIGITS);
 		this.lineBreak();
 		this.endHash();
 		this.writeLine("stream");
 		this.flush();
 		this.startStreamPosition = this.getLength();
 
-		var flowOut = (OutputStream) new FilterOutputStream(this) {
+		final var flowOut = (OutputStream) new FilterOutputStream(this) {
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				// FilterOutputStream would otherwise pass the data on byte by byte
+				PDFFragmentOutputImpl.this.write(b, off, len);
+			}
+
 			@Override
 			public void close() throws IOException {
 				PDFFragmentOutputImpl.this.endStream();
@@ -195,30 +346,19 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 
 		// Apply encryption if enabled
 		if (this.pdfWriter.encryption != null) {
-			flowOut = this.pdfWriter.encryption.getEncryptor(this.currentRef).getOutputStream(flowOut);
+			return this.pdfWriter.encryption.getEncryptor(this.currentRef).getOutputStream(flowOut);
 		}
+		return flowOut;
+	}
 
-		// Apply final output encoding/compression based on mode and configuration
-		final var output = switch (mode) {
-			case RAW -> flowOut;
-			case ASCII -> {
-				final var encodedOut = switch (compression) {
-					case ASCII -> new DeflaterOutputStream(new ASCII85OutputStream(flowOut));
-					case BINARY -> new DeflaterOutputStream(flowOut);
-					default -> flowOut;
-				};
-				yield new FastBufferedOutputStream(encodedOut, this.getBuff());
-			}
-			case BINARY -> {
-				final var encodedOut = switch (compression) {
-					case NONE -> new ASCIIHexOutputStream(flowOut);
-					case ASCII -> new DeflaterOutputStream(new ASCII85OutputStream(flowOut));
-					case BINARY -> new DeflaterOutputStream(flowOut);
-				};
-				yield new FastBufferedOutputStream(encodedOut, this.getBuff());
-			}
-		};
-		return output;
+	private void checkStreamStart() throws IOException {
+		if (this.streamLengthFlow != null) {
+			throw new IllegalStateException("Cannot nest streams: " + this.streamLengthFlow);
+		}
+		if (this.packed != null) {
+			// Streams cannot be stored in object streams
+			this.unpack();
+		}
 	}
 
 	/**
@@ -228,7 +368,7 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 	 * @throws IOException If an I/O error occurs.
 	 */
 	protected void endStream() throws IOException {
-		this.streamLengthFlow.writeInt(this.getLength() - this.startStreamPosition);
+		this.streamLengthFlow.writeLong(this.getLength() - this.startStreamPosition);
 		this.streamLengthFlow.close();
 		this.streamLengthFlow = null;
 		this.startStreamPosition = 0;
@@ -237,6 +377,18 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 		this.writeLine("endstream");
 	}
 
+	/**
+	 * Ends a stream whose body is written to a separate fragment by
+	 * {@link AsyncCompressor}.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void endDetachedStream() throws IOException {
+		this.streamLengthFlow = null;
+		this.lineBreak();
+		this.writeLine("endstream");
+	}
+
 	@Override
 	public void writeBytes16(final int c) throws IOException {
 		if (this.pdfWriter.encryption == null) {
@@ -332,10 +484,14 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 	 * 
 	 * @return the length
 	 */
-	protected int getLength() {
+	protected long getLength() {
 		return this.length;
 	}
 
+	protected ObjectRef getCurrentRef() {
+		return this.currentRef;
+	}
+
 	protected int getId() {
 		return this.id;
 	}
@@ -343,19 +499,25 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 	@Override
 	public void write(final byte[] buff, final int off, final int len) throws IOException {
 		super.write(buff, off, len);
-		this.length += len;
+		if (this.packed == null) {
+			this.length += len;
+		}
 	}
 
 	@Override
 	public void write(final byte[] buff) throws IOException {
 		super.write(buff);
-		this.length += buff.length;
+		if (this.packed == null) {
+			this.length += buff.length;
+		}
 	}
 
 	@Override
 	public void write(final int c) throws IOException {
 		super.write(c);
-		this.length++;
+		if (this.packed == null) {
+			this.length++;
+		}
 	}
 
 	@Override
@@ -366,6 +528,9 @@ class PDFFragmentOutputImpl extends PDFFragmentOutput {
 		if (this.out == null) {
 			throw new IllegalStateException("Already closed");
 		}
+		if (this.packed != null) {
+			this.unpack();
+		}
 		super.close();
 		this.out = null;
 	}
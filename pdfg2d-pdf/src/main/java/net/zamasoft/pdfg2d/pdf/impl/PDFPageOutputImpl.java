@@ -3,6 +3,9 @@ package net.zamasoft.pdfg2d.pdf.impl;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
 import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
@@ -26,19 +29,31 @@ class PDFPageOutputImpl extends PDFPageOutput {
 	/** Current page object. */
 	private final ObjectRef pageRef;
 
-	/** Parameters flow for current page. */
-	private final PDFFragmentOutputImpl paramsFlow;
+	/** Content stream of current page. */
+	private final ObjectRef contentsRef;
 
-	/** Annotations flow for current page. */
-	private final PDFFragmentOutputImpl annotsFlow;
+	/** Parent node in the page tree. */
+	private final ObjectRef parentRef;
 
-	/** Does current page have annotations? */
-	private boolean hasAnnots = false;
+	/**
+	 * Flow of the page dictionary, which is written when the page is closed, or
+	 * null to append it to the body flow then.
+	 */
+	private final PDFFragmentOutputImpl pageDictFlow;
+
+	/** Annotations of current page. */
+	private final List<ObjectRef> annotRefs = new ArrayList<>();
+
+	/**
+	 * Object numbers of the resources used by this page, for the hint tables of
+	 * a linearized file, or null.
+	 */
+	private final BitSet resourceObjects;
 
 	private Rectangle2D mediaBox, cropBox, bleedBox, trimBox, artBox;
 
-	public PDFPageOutputImpl(final PDFWriterImpl pdfWriter, final ObjectRef rootPageRef,
-			final PDFFragmentOutputImpl pagesKidsFlow, final double width, final double height) throws IOException {
+	public PDFPageOutputImpl(final PDFWriterImpl pdfWriter, final ObjectRef parentRef, final double width,
+			final double height) throws IOException {
 		super(pdfWriter, null, width, height);
 		if (width < PDFWriter.MIN_PAGE_WIDTH || height < PDFWriter.MIN_PAGE_HEIGHT) {
 			throw new IllegalArgumentException("Page size is too small: " + width + "x" + height);
@@ -52,51 +67,42 @@ class PDFPageOutputImpl extends PDFPageOutput {
 			this.artBox = new Rectangle2D.Double(0, 0, width, height);
 		}
 
-		final var mainFlow = pdfWriter.mainFlow;
+		final var bodyFlow = pdfWriter.bodyFlow;
 		final var xref = pdfWriter.xref;
 
+		this.parentRef = parentRef;
 		this.pageRef = xref.nextObjectRef();
-		mainFlow.startObject(this.pageRef);
-		pagesKidsFlow.writeObjectRef(this.pageRef);
-		mainFlow.startHash();
-
-		mainFlow.writeName("Type");
-		mainFlow.writeName("Page");
-		mainFlow.lineBreak();
-
-		this.paramsFlow = mainFlow.forkFragment();
+		this.contentsRef = xref.nextObjectRef();
 		this.mediaBox = new Rectangle2D.Double(0, 0, width, height);
+		this.resourceObjects = params.linearized() ? new BitSet() : null;
 
-		mainFlow.writeName("Parent");
-		mainFlow.writeObjectRef(rootPageRef);
-		mainFlow.lineBreak();
-
-		mainFlow.writeName("Resources");
-		mainFlow.writeObjectRef(pdfWriter.pageResourceRef);
-		mainFlow.lineBreak();
-
-		mainFlow.writeName("Contents");
-		final var contentsRef = xref.nextObjectRef();
-		mainFlow.writeObjectRef(contentsRef);
-		mainFlow.lineBreak();
-
-		this.annotsFlow = mainFlow.forkFragment();
-		mainFlow.lineBreak();
-
-		mainFlow.endHash();
-		mainFlow.endObject();
-
-		this.pageFlow = mainFlow.forkFragment();
-		this.pageFlow.startObject(contentsRef);
+		// The boxes and annotations are known only when the page is closed. When
+		// pages are streamed, the page dictionary follows the contents, so that
+		// outputs writing at final positions need not hold the contents back.
+		this.pageDictFlow = params.pageStreaming() ? null : bodyFlow.forkFragment();
+		this.pageFlow = bodyFlow.forkFragment();
+		this.pageFlow.startObject(this.contentsRef);
 
 		// Always use ASCII/Flate compression for page contents
-		this.out = this.pageFlow.startStream(PDFFragmentOutput.Mode.ASCII);
+		this.out = pdfWriter.optimizeContents(this.pageFlow.startStream(PDFFragmentOutput.Mode.ASCII));
 	}
 
 	private PDFWriterImpl getPDFWriterImpl() {
 		return (PDFWriterImpl) this.pdfWriter;
 	}
 
+	ObjectRef getPageRef() {
+		return this.pageRef;
+	}
+
+	ObjectRef getContentsRef() {
+		return this.contentsRef;
+	}
+
+	BitSet getResourceObjects() {
+		return this.resourceObjects;
+	}
+
 	public PDFPageOutput getPDFPageOutput() {
 		return this;
 	}
@@ -104,6 +110,10 @@ class PDFPageOutputImpl extends PDFPageOutput {
 	public void useResource(final String type, final String name) throws IOException {
 		final var pdfWriter = this.getPDFWriterImpl();
 		final var resourceFlow = pdfWriter.pageResourceFlow;
+		if (this.resourceObjects != null) {
+			// Recorded per page, though pages share the resource dictionary
+			this.resourceObjects.set(pdfWriter.nameToResourceRef.get(name).objectNumber());
+		}
 		if (resourceFlow.contains(name)) {
 			return;
 		}
@@ -119,38 +129,7 @@ class PDFPageOutputImpl extends PDFPageOutput {
 	 * @throws IOException If an I/O error occurs
 	 */
 	public void addAnnotation(final Annot annot) throws IOException {
-		final var pdfWriterImpl = this.getPDFWriterImpl();
-		final var params = pdfWriterImpl.getParams();
-		if (params.version() == PDFParams.Version.V_PDFX1A) {
-			throw new UnsupportedOperationException("Annotations are not allowed in PDF/X standards.");
-		}
-
-		if (!this.hasAnnots) {
-			this.annotsFlow.writeName("Annots");
-			this.annotsFlow.startArray();
-			this.hasAnnots = true;
-		}
-
-		final var annotRef = pdfWriterImpl.xref.nextObjectRef();
-		this.annotsFlow.writeObjectRef(annotRef);
-
-		// Write annotation object to a separate fragment
-		try (final var objectsFlow = pdfWriterImpl.objectsFlow.forkFragment()) {
-			objectsFlow.startObject(annotRef);
-			objectsFlow.startHash();
-			annot.writeTo(objectsFlow, this);
-
-			// Required flags for PDF/A or PDF/X
-			if (params.version() == PDFParams.Version.V_PDFA1B
-					|| params.version() == PDFParams.Version.V_PDFX1A) {
-				objectsFlow.writeName("F");
-				objectsFlow.writeInt(0x04); // Print flag
-				objectsFlow.lineBreak();
-			}
-
-			objectsFlow.endHash();
-			objectsFlow.endObject();
-		}
+		this.annotRefs.add(this.getPDFWriterImpl().writeAnnotation(annot, this));
 	}
 
 	/**
@@ -194,14 +173,19 @@ class PDFPageOutputImpl extends PDFPageOutput {
 		}
 	}
 
-	private void paramRect(final Rectangle2D r) throws IOException {
-		this.paramsFlow.startArray();
-		this.paramsFlow.writeReal(r.getMinX());
-		this.paramsFlow.writeReal(this.height - r.getMaxY());
-		this.paramsFlow.writeReal(r.getMaxX());
-		this.paramsFlow.writeReal(this.height - r.getMinY());
-		this.paramsFlow.endArray();
-		this.paramsFlow.lineBreak();
+	private void paramRect(final PDFFragmentOutputImpl out, final String name, final Rectangle2D r)
+			throws IOException {
+		if (r == null) {
+			return;
+		}
+		out.writeName(name);
+		out.startArray();
+		out.writeReal(r.getMinX());
+		out.writeReal(this.height - r.getMaxY());
+		out.writeReal(r.getMaxX());
+		out.writeReal(this.height - r.getMinY());
+		out.endArray();
+		out.lineBreak();
 	}
 
 	public void setMediaBox(final Rectangle2D mediaBox) {
@@ -242,37 +226,49 @@ class PDFPageOutputImpl extends PDFPageOutput {
 		if (this.mediaBox == null) {
 			throw new IllegalStateException();
 		}
-		this.paramsFlow.writeName("MediaBox");
-		this.paramRect(this.mediaBox);
-
-		if (this.cropBox != null) {
-			this.paramsFlow.writeName("CropBox");
-			this.paramRect(this.cropBox);
-		}
-
-		if (this.bleedBox != null) {
-			this.paramsFlow.writeName("BleedBox");
-			this.paramRect(this.bleedBox);
-		}
-
-		if (this.trimBox != null) {
-			this.paramsFlow.writeName("TrimBox");
-			this.paramRect(this.trimBox);
-		}
+		this.pageFlow.endObject();
+		this.pageFlow.close();
 
-		if (this.artBox != null) {
-			this.paramsFlow.writeName("ArtBox");
-			this.paramRect(this.artBox);
+		final var out = this.pageDictFlow != null ? this.pageDictFlow : this.getPDFWriterImpl().bodyFlow;
+		out.startObject(this.pageRef);
+		out.startHash();
+
+		out.writeName("Type");
+		out.writeName("Page");
+		out.lineBreak();
+
+		this.paramRect(out, "MediaBox", this.mediaBox);
+		this.paramRect(out, "CropBox", this.cropBox);
+		this.paramRect(out, "BleedBox", this.bleedBox);
+		this.paramRect(out, "TrimBox", this.trimBox);
+		this.paramRect(out, "ArtBox", this.artBox);
+
+		out.writeName("Parent");
+		out.writeObjectRef(this.parentRef);
+		out.lineBreak();
+
+		out.writeName("Resources");
+		out.writeObjectRef(this.getPDFWriterImpl().pageResourceRef);
+		out.lineBreak();
+
+		out.writeName("Contents");
+		out.writeObjectRef(this.contentsRef);
+		out.lineBreak();
+
+		if (!this.annotRefs.isEmpty()) {
+			out.writeName("Annots");
+			out.startArray();
+			for (final var annotRef : this.annotRefs) {
+				out.writeObjectRef(annotRef);
+			}
+			out.endArray();
 		}
+		out.lineBreak();
 
-		this.paramsFlow.close();
-
-		if (this.hasAnnots) {
-			this.annotsFlow.endArray();
-			this.hasAnnots = false;
+		out.endHash();
+		out.endObject();
+		if (this.pageDictFlow != null) {
+			this.pageDictFlow.close();
 		}
-		this.annotsFlow.close();
-		this.pageFlow.endObject();
-		this.pageFlow.close();
 	}
 }
@@ -0,0 +1,261 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.zamasoft.pdfg2d.pdf.ObjectRef;
+import net.zamasoft.pdfg2d.pdf.PDFFragmentOutput;
+import net.zamasoft.pdfg2d.pdf.PDFPageOutput;
+import net.zamasoft.pdfg2d.pdf.annot.Annot;
+
+/**
+ * Output drawing over a page of the base document of an incremental update.
+ * <p>
+ * Graphics go into a Form XObject with resources of its own, so that their
+ * names cannot clash with those of the page. When the output is closed, a new
+ * version of the page object is written, which draws the form after the
+ * existing contents and lists the new annotations after the existing ones.
+ * The existing contents are enclosed in q/Q, since they may leave the
+ * graphics state changed.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class PDFPageOverlayImpl extends PDFPageOutput {
+	private final BaseDocument.Page page;
+
+	/** Form XObject of the graphics. */
+	private final ObjectRef formRef;
+
+	private final PDFFragmentOutputImpl formFlow;
+
+	private final ResourceFlow resourceFlow;
+
+	/** Annotations added to the page. */
+	private final List<ObjectRef> annots = new ArrayList<>();
+
+	public PDFPageOverlayImpl(final PDFWriterImpl pdfWriter, final BaseDocument.Page page) throws IOException {
+		super(pdfWriter, null, page.mediaBox().getWidth(), page.mediaBox().getHeight());
+		this.page = page;
+
+		final var objectsFlow = pdfWriter.objectsFlow;
+		this.formRef = pdfWriter.xref.nextObjectRef();
+		objectsFlow.startObject(this.formRef);
+		objectsFlow.startHash();
+
+		objectsFlow.writeName("Type");
+		objectsFlow.writeName("XObject");
+		objectsFlow.lineBreak();
+		objectsFlow.writeName("Subtype");
+		objectsFlow.writeName("Form");
+		objectsFlow.lineBreak();
+
+		objectsFlow.writeName("BBox");
+		objectsFlow.startArray();
+		objectsFlow.writeInt(0);
+		objectsFlow.writeInt(0);
+		objectsFlow.writeReal(this.width);
+		objectsFlow.writeReal(this.height);
+		objectsFlow.endArray();
+		objectsFlow.lineBreak();
+
+		// Coordinates are relative to the corner of the media box
+		final var mediaBox = page.mediaBox();
+		if (mediaBox.getX() != 0 || mediaBox.getY() != 0) {
+			objectsFlow.writeName("Matrix");
+			objectsFlow.startArray();
+			objectsFlow.writeInt(1);
+			objectsFlow.writeInt(0);
+			objectsFlow.writeInt(0);
+			objectsFlow.writeInt(1);
+			objectsFlow.writeReal(mediaBox.getX());
+			objectsFlow.writeReal(mediaBox.getY());
+			objectsFlow.endArray();
+			objectsFlow.lineBreak();
+		}
+
+		objectsFlow.writeName("Resources");
+		this.resourceFlow = new ResourceFlow(objectsFlow);
+		objectsFlow.lineBreak();
+
+		this.formFlow = objectsFlow.forkFragment();
+		this.out = pdfWriter.optimizeContents(this.formFlow.startStreamFromHash(PDFFragmentOutput.Mode.ASCII));
+		objectsFlow.endObject();
+	}
+
+	private PDFWriterImpl getPDFWriterImpl() {
+		return (PDFWriterImpl) this.pdfWriter;
+	}
+
+	public void useResource(final String type, final String name) throws IOException {
+		if (this.resourceFlow.contains(name)) {
+			return;
+		}
+		final var nameToResourceRef = this.getPDFWriterImpl().nameToResourceRef;
+		final var objectRef = nameToResourceRef.get(name);
+		this.resourceFlow.put(type, name, objectRef);
+	}
+
+	public void addAnnotation(final Annot annot) throws IOException {
+		this.annots.add(this.getPDFWriterImpl().writeAnnotation(annot, this));
+	}
+
+	public void addFragment(final String id, final Point2D location) throws IOException {
+		// Coordinates are relative to the corner of the media box
+		final var mediaBox = this.page.mediaBox();
+		final var dest = new Destination(this.page.ref(), mediaBox.getX() + location.getX(),
+				mediaBox.getY() + this.height - location.getY(), 0);
+		this.getPDFWriterImpl().fragments.addEntry(id, dest);
+	}
+
+	public void startBookmark(final String title, final Point2D location) throws IOException {
+		// Bookmarks are not available in an incremental update
+	}
+
+	public void endBookmark() throws IOException {
+		// Bookmarks are not available in an incremental update
+	}
+
+	public void setMediaBox(final Rectangle2D mediaBox) {
+		throw new UnsupportedOperationException("The boxes of an existing page are kept.");
+	}
+
+	public void setCropBox(final Rectangle2D cropBox) {
+		throw new UnsupportedOperationException("The boxes of an existing page are kept.");
+	}
+
+	public void setBleedBox(final Rectangle2D bleedBox) {
+		throw new UnsupportedOperationException("The boxes of an existing page are kept.");
+	}
+
+	public void setTrimBox(final Rectangle2D trimBox) {
+		throw new UnsupportedOperationException("The boxes of an existing page are kept.");
+	}
+
+	public void setArtBox(final Rectangle2D artBox) {
+		throw new UnsupportedOperationException("The boxes of an existing page are kept.");
+	}
+
+	/**
+	 * Returns the elements of an array value, which may be an indirect object,
+	 * or the value itself if it is not an array.
+	 */
+	private static List<byte[]> toElements(final BaseDocument base, final byte[] value) throws IOException {
+		if (value == null) {
+			return List.of();
+		}
+		final var resolved = base.resolve(value);
+		if (resolved.length > 0 && resolved[0] == '[') {
+			return BaseDocument.toArray(resolved);
+		}
+		return List.of(value);
+	}
+
+	private static Map<String, byte[]> toDictionary(final BaseDocument base, final byte[] value) throws IOException {
+		return value == null ? Map.of() : BaseDocument.toDictionary(base.resolve(value));
+	}
+
+	public void close() throws IOException {
+		super.close();
+		this.formFlow.close();
+		this.resourceFlow.close();
+
+		final var pdfWriter = this.getPDFWriterImpl();
+		final var base = pdfWriter.base;
+		final var xref = pdfWriter.xref;
+		final var dict = this.page.dictionary();
+		final var resources = toDictionary(base, this.page.resources());
+		final var xobjects = toDictionary(base, resources.get("XObject"));
+
+		// A name that the page does not use yet
+		var name = "Overlay";
+		for (var i = 1; xobjects.containsKey(name); ++i) {
+			name = "Overlay" + i;
+		}
+
+		try (final var out = pdfWriter.objectsFlow.forkFragment()) {
+			final var saveRef = xref.nextObjectRef();
+			out.startObject(saveRef);
+			try (final var content = out.startStream(PDFFragmentOutput.Mode.ASCII)) {
+				content.write("q\n".getBytes(StandardCharsets.ISO_8859_1));
+			}
+			out.endObject();
+
+			final var drawRef = xref.nextObjectRef();
+			out.startObject(drawRef);
+			try (final var content = out.startStream(PDFFragmentOutput.Mode.ASCII)) {
+				content.write(("Q\nq /" + name + " Do Q\n").getBytes(StandardCharsets.ISO_8859_1));
+			}
+			out.endObject();
+
+			out.startObject(xref.replaceObject(this.page.ref()));
+			out.startHash();
+			for (final var entry : dict.entrySet()) {
+				switch (entry.getKey()) {
+					case "Contents", "Resources", "Annots" -> {
+					}
+					default -> {
+						out.writeName(entry.getKey());
+						BaseDocument.writeValue(out, entry.getValue());
+						out.lineBreak();
+					}
+				}
+			}
+
+			out.writeName("Contents");
+			out.startArray();
+			out.writeObjectRef(saveRef);
+			for (final var contents : toElements(base, dict.get("Contents"))) {
+				BaseDocument.writeValue(out, contents);
+			}
+			out.writeObjectRef(drawRef);
+			out.endArray();
+			out.lineBreak();
+
+			// Resources of the page and the form
+			out.writeName("Resources");
+			out.startHash();
+			for (final var entry : resources.entrySet()) {
+				if (!entry.getKey().equals("XObject")) {
+					out.writeName(entry.getKey());
+					BaseDocument.writeValue(out, entry.getValue());
+					out.lineBreak();
+				}
+			}
+			out.writeName("XObject");
+			out.startHash();
+			for (final var entry : xobjects.entrySet()) {
+				out.writeName(entry.getKey());
+				BaseDocument.writeValue(out, entry.getValue());
+			}
+			out.writeName(name);
+			out.writeObjectRef(this.formRef);
+			out.endHash();
+			out.endHash();
+			out.lineBreak();
+
+			final var baseAnnots = toElements(base, dict.get("Annots"));
+			if (!baseAnnots.isEmpty() || !this.annots.isEmpty()) {
+				out.writeName("Annots");
+				out.startArray();
+				for (final var annot : baseAnnots) {
+					BaseDocument.writeValue(out, annot);
+				}
+				for (final var annotRef : this.annots) {
+					out.writeObjectRef(annotRef);
+				}
+				out.endArray();
+				out.lineBreak();
+			}
+
+			out.endHash();
+			out.endObject();
+		}
+	}
+}
@@ -2,6 +2,9 @@ package net.zamasoft.pdfg2d.pdf.impl;
 
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -15,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.sax.SAXTransformerFactory;
@@ -28,6 +32,8 @@ import net.zamasoft.pdfg2d.font.FontStore;
 import net.zamasoft.pdfg2d.gc.font.FontManager;
 import net.zamasoft.pdfg2d.gc.image.Image;
 import net.zamasoft.pdfg2d.io.FragmentedOutput;
+import net.zamasoft.pdfg2d.io.FragmentedOutput.PositionInfo;
+import net.zamasoft.pdfg2d.io.impl.StreamFragmentedOutput;
 import net.zamasoft.pdfg2d.io.util.FragmentOutputAdapter;
 import net.zamasoft.pdfg2d.io.util.PositionTrackingOutput;
 import net.zamasoft.pdfg2d.pdf.Attachment;
@@ -38,7 +44,10 @@ import net.zamasoft.pdfg2d.pdf.PDFNamedOutput;
 import net.zamasoft.pdfg2d.pdf.PDFOutput.Destination;
 import net.zamasoft.pdfg2d.pdf.PDFPageOutput;
 import net.zamasoft.pdfg2d.pdf.PDFWriter;
+import net.zamasoft.pdfg2d.pdf.PageRenderer;
+import net.zamasoft.pdfg2d.pdf.ResourceCache;
 import net.zamasoft.pdfg2d.pdf.action.Action;
+import net.zamasoft.pdfg2d.pdf.annot.Annot;
 import net.zamasoft.pdfg2d.pdf.font.FontManagerImpl;
 import net.zamasoft.pdfg2d.pdf.gc.PDFGroupImage;
 import net.zamasoft.pdfg2d.pdf.params.EncryptionParams;
@@ -46,6 +55,8 @@ import net.zamasoft.pdfg2d.pdf.params.PDFParams;
 import net.zamasoft.pdfg2d.pdf.params.V4EncryptionParams;
 import net.zamasoft.pdfg2d.pdf.params.ViewerPreferences;
 import net.zamasoft.pdfg2d.pdf.util.encryption.Encryption;
+import net.zamasoft.pdfg2d.pdf.util.io.ContentStreamOptimizer;
+import net.zamasoft.pdfg2d.pdf.util.io.DeflaterPool;
 import net.zamasoft.pdfg2d.resolver.Source;
 
 /**
@@ -54,6 +65,15 @@ import net.zamasoft.pdfg2d.resolver.Source;
  * This class manages the PDF Catalog, Page Tree, XRef table, encryption, and
  * various
  * resource flows (fonts, images, etc.).
+ * <p>
+ * Given a {@link BaseDocument}, the writer produces an incremental update
+ * instead: new pages and objects, new versions of the catalog, the page tree
+ * root and edited pages, and a cross-reference section referring to the
+ * previous one. The new catalog keeps the entries of the base document and
+ * merges its name trees and optional content with the new ones, so named
+ * destinations, attachments and optional content groups can be added.
+ * Bookmarks cannot.
+ * </p>
  * 
  * @author MIYABE Tatsuhiko
  * @since 1.0
@@ -90,6 +110,9 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 
 	final PDFParams params;
 
+	/** Document extended by an incremental update, or null. */
+	final BaseDocument base;
+
 	private FontManagerImpl fontManager = null;
 
 	/** XRef Table. */
@@ -101,12 +124,37 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 	/** Encryption. */
 	Encryption encryption = null;
 
+	/** Deflaters shared by all streams of this document. */
+	final DeflaterPool deflaters;
+
+	/** Background compression, or null if streams are compressed synchronously. */
+	final AsyncCompressor compressor;
+
+	/** Operators eliminated from content streams. */
+	private final LongAdder eliminatedOperators = new LongAdder();
+
+	/** Names of the resources shared across the document. */
+	private final ResourceCache resourceCache;
+
+	/** Object streams, or null if objects are written directly. */
+	ObjectStreamFlow objectStreams = null;
+
 	/** File ID. */
 	private final byte[][] fileid;
 
 	/** Main flow. */
 	final PDFFragmentOutputImpl mainFlow;
 
+	/**
+	 * Flow for pages. Same as the main flow unless pages are streamed, in which
+	 * case it lies between the header and the document structure, or the file
+	 * is linearized, in which case it follows the hint stream.
+	 */
+	final PDFFragmentOutputImpl bodyFlow;
+
+	/** Layout of a linearized file, or null. */
+	final LinearizationFlow linearization;
+
 	/** Catalog dictionary flow. */
 	final PDFFragmentOutputImpl catalogFlow;
 
@@ -114,7 +162,9 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 	final PDFFragmentOutputImpl xmpmetaFlow;
 
 	/**
-	 * Object flows.
+	 * Object flows. In a linearized file, this follows the last page, and
+	 * objects drawn on the first page go to the first-page section instead, see
+	 * {@link #getObjectsFlow()}.
 	 */
 	final PDFFragmentOutputImpl objectsFlow;
 
@@ -159,100 +209,100 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 	private List<ObjectRef> ocgs = null;
 
 	public PDFWriterImpl(final FragmentedOutput builder, final PDFParams params) throws IOException {
+		this(builder, params, null);
+	}
+
+	/**
+	 * Creates a writer of an incremental update. The builder receives only the
+	 * update, which must be written right after the bytes of the base document;
+	 * {@link #append(File, PDFParams)} appends it to the file itself. Both the
+	 * builder and the base document are closed with the writer.
+	 * 
+	 * @param builder Output of the update.
+	 * @param params  Parameters; the version should be that of the base
+	 *                document.
+	 * @param base    The document to update, or null to write a new document.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public PDFWriterImpl(final FragmentedOutput builder, final PDFParams params, final BaseDocument base)
+			throws IOException {
 		this.params = (params != null) ? params : PDFParams.createDefault();
+		this.resourceCache = new ResourceCache(this.params.precision(), ResourceCache.DEFAULT_CAPACITY);
+		this.base = base;
+		if (base != null) {
+			if (this.params.linearized()) {
+				throw new IllegalArgumentException("Linearization cannot be combined with an incremental update.");
+			}
+			if (this.params.encryption() != null) {
+				throw new IllegalArgumentException("Encryption cannot be used in an incremental update.");
+			}
+			if (this.params.openAction() != null) {
+				throw new IllegalArgumentException("An incremental update cannot change the open action.");
+			}
+		}
 		this.builder = builder.supportsPositionInfo() ? builder : new PositionTrackingOutput(builder);
+		this.deflaters = new DeflaterPool(this.params.compressionLevels());
+		final var asyncCompression = this.params.asyncCompression();
+		this.compressor = asyncCompression == null ? null : new AsyncCompressor(this, asyncCompression);
 
 		final var id = this.nextId();
 		this.builder.addFragment();
 		final var out = new FragmentOutputAdapter(this.builder, id);
 		this.mainFlow = new PDFFragmentOutputImpl(out, this, id, -1, null);
 
-		// Header
 		final var pdfVersion = this.params.version();
-		this.mainFlow.write(HEADER);
-		switch (pdfVersion) {
-			case V_1_2 -> this.mainFlow.write(PDF12);
-			case V_1_3 -> this.mainFlow.write(PDF13);
-			case V_1_4, V_PDFX1A -> this.mainFlow.write(PDF14);
-			case V_PDFA1B -> {
-				this.mainFlow.write(PDF14);
-				this.mainFlow.lineBreak();
-				// PDF/A-1 binary identification
-				this.mainFlow.write('%');
-				for (var i = 0; i < 4; ++i) {
-					this.mainFlow.write(RND.nextInt(128) + 127);
-				}
-			}
-			case V_1_5 -> this.mainFlow.write(PDF15);
-			case V_1_6 -> this.mainFlow.write(PDF16);
-			case V_1_7 -> this.mainFlow.write(PDF17);
-		}
-		this.mainFlow.lineBreak();
-
-		// Start root element (Catalog)
-		this.xref = new XRefImpl(this.mainFlow);
-
-		this.mainFlow.startHash();
-
-		this.mainFlow.writeName("Type");
-		this.mainFlow.writeName("Catalog");
-		this.mainFlow.lineBreak();
-
-		// Version
-		if (pdfVersion.v >= PDFParams.Version.V_1_4.v) {
-			this.mainFlow.writeName("Version");
+		if (base == null) {
+			// Header
+			this.mainFlow.write(HEADER);
 			switch (pdfVersion) {
-				case V_1_4:
-				case V_PDFA1B:
-				case V_PDFX1A:
-					this.mainFlow.writeName("1.4");
-					break;
-
-				case V_1_5:
-					this.mainFlow.writeName("1.5");
-					break;
-
-				case V_1_6:
-					this.mainFlow.writeName("1.6");
-					break;
-
-				case V_1_7:
-					this.mainFlow.writeName("1.7");
-					break;
-				default:
-					throw new IllegalStateException();
+				case V_1_2 -> this.mainFlow.write(PDF12);
+				case V_1_3 -> this.mainFlow.write(PDF13);
+				case V_1_4, V_PDFX1A -> this.mainFlow.write(PDF14);
+				case V_PDFA1B -> {
+					this.mainFlow.write(PDF14);
+					this.mainFlow.lineBreak();
+					// PDF/A-1 binary identification
+					this.mainFlow.write('%');
+					for (var i = 0; i < 4; ++i) {
+						this.mainFlow.write(RND.nextInt(128) + 127);
+					}
+				}
+				case V_1_5 -> this.mainFlow.write(PDF15);
+				case V_1_6 -> this.mainFlow.write(PDF16);
+				case V_1_7 -> this.mainFlow.write(PDF17);
 			}
 			this.mainFlow.lineBreak();
-		}
-
-		// Page Tree
-		this.mainFlow.writeName("Pages");
-		final var rootPageRef = this.xref.nextObjectRef();
-		this.mainFlow.writeObjectRef(rootPageRef);
-		this.mainFlow.lineBreak();
-
-		// XMP Metadata
-		var xmpmetaRef = (ObjectRef) null;
-		if (this.params.version().v >= PDFParams.Version.V_1_4.v) {
-			xmpmetaRef = this.xref.nextObjectRef();
-			this.mainFlow.writeName("Metadata");
-			this.mainFlow.writeObjectRef(xmpmetaRef);
+		} else if (!base.endsWithLineBreak()) {
+			// The update starts on a line of its own
 			this.mainFlow.lineBreak();
 		}
 
-		// OutputIntents
-		var outputIntentRef = (ObjectRef) null;
-		if (this.params.version().v >= PDFParams.Version.V_1_4.v) {
-			outputIntentRef = this.xref.nextObjectRef();
-			this.mainFlow.writeName("OutputIntents");
-			this.mainFlow.startArray();
-			this.mainFlow.writeObjectRef(outputIntentRef);
-			this.mainFlow.endArray();
-			this.mainFlow.lineBreak();
+		// Pages
+		final PDFFragmentOutputImpl streamedFlow;
+		if (this.params.pageStreaming()) {
+			// Everything that waits for the end of the document (catalog, page tree,
+			// shared resources) follows the pages, so every fragment before an open
+			// page is finished and the builder can pass it to the output.
+			streamedFlow = this.mainFlow.forkFragment();
+		} else {
+			streamedFlow = null;
 		}
 
-		// Inside Catalog
-		this.catalogFlow = this.mainFlow.forkFragment();
+		// Linearization dictionary and first-page cross-reference table
+		this.linearization = this.params.linearized() ? new LinearizationFlow(this) : null;
+
+		// Start root element (Catalog)
+		// Linearized files keep to cross-reference tables, whose hint tables are
+		// simpler without compressed objects.
+		final var xrefStream = this.params.objectStreams() && pdfVersion.v >= PDFParams.Version.V_1_5.v
+				&& this.linearization == null;
+		this.xref = base == null ? new XRefImpl(this.mainFlow, xrefStream)
+				: new XRefImpl(this.mainFlow, xrefStream, base);
+		if (xrefStream && this.params.encryption() == null) {
+			// Strings are encrypted per object as they are written, which does not
+			// apply inside object streams, so only the xref stream is used then.
+			this.objectStreams = new ObjectStreamFlow(this.xref);
+		}
 
 		// File ID
 		var fileId = this.params.fileId();
@@ -260,11 +310,106 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 			fileId = new byte[16];
 			RND.nextBytes(fileId);
 		}
-		this.fileid = new byte[][] { fileId, fileId };
 
-		// End Catalog
-		this.mainFlow.endHash();
-		this.mainFlow.endObject();
+		final ObjectRef rootPageRef;
+		var xmpmetaRef = (ObjectRef) null;
+		var outputIntentRef = (ObjectRef) null;
+		if (base == null) {
+			this.mainFlow.startHash();
+
+			this.mainFlow.writeName("Type");
+			this.mainFlow.writeName("Catalog");
+			this.mainFlow.lineBreak();
+
+			// Version
+			if (pdfVersion.v >= PDFParams.Version.V_1_4.v) {
+				this.mainFlow.writeName("Version");
+				switch (pdfVersion) {
+					case V_1_4:
+					case V_PDFA1B:
+					case V_PDFX1A:
+						this.mainFlow.writeName("1.4");
+						break;
+
+					case V_1_5:
+						this.mainFlow.writeName("1.5");
+						break;
+
+					case V_1_6:
+						this.mainFlow.writeName("1.6");
+						break;
+
+					case V_1_7:
+						this.mainFlow.writeName("1.7");
+						break;
+					default:
+						throw new IllegalStateException();
+				}
+				this.mainFlow.lineBreak();
+			}
+
+			// Page Tree
+			this.mainFlow.writeName("Pages");
+			rootPageRef = this.xref.nextObjectRef();
+			this.mainFlow.writeObjectRef(rootPageRef);
+			this.mainFlow.lineBreak();
+
+			// XMP Metadata
+			if (this.params.version().v >= PDFParams.Version.V_1_4.v) {
+				xmpmetaRef = this.xref.nextObjectRef();
+				this.mainFlow.writeName("Metadata");
+				this.mainFlow.writeObjectRef(xmpmetaRef);
+				this.mainFlow.lineBreak();
+			}
+
+			// OutputIntents
+			if (this.params.version().v >= PDFParams.Version.V_1_4.v) {
+				outputIntentRef = this.xref.nextObjectRef();
+				this.mainFlow.writeName("OutputIntents");
+				this.mainFlow.startArray();
+				this.mainFlow.writeObjectRef(outputIntentRef);
+				this.mainFlow.endArray();
+				this.mainFlow.lineBreak();
+			}
+
+			// Inside Catalog
+			this.catalogFlow = this.mainFlow.forkFragment();
+
+			this.fileid = new byte[][] { fileId, fileId };
+
+			// End Catalog
+			this.mainFlow.endHash();
+			this.mainFlow.endObject();
+		} else {
+			// A new version of the catalog, whose name trees and optional content
+			// are merged with the new ones when closed. The new pages are added to
+			// a new version of the page tree root.
+			this.mainFlow.startObject(this.xref.replaceObject(base.getRootRef()));
+			this.mainFlow.startHash();
+			for (final var entry : base.getCatalog().entrySet()) {
+				switch (entry.getKey()) {
+					case "Names", "OCProperties" -> {
+					}
+					default -> {
+						this.mainFlow.writeName(entry.getKey());
+						BaseDocument.writeValue(this.mainFlow, entry.getValue());
+						this.mainFlow.lineBreak();
+					}
+				}
+			}
+			rootPageRef = this.xref.replaceObject(base.getPagesRef());
+
+			// Inside Catalog
+			this.catalogFlow = this.mainFlow.forkFragment();
+
+			// End Catalog
+			this.mainFlow.endHash();
+			this.mainFlow.endObject();
+
+			// The first part of the file ID is permanent
+			final var permanentId = base.getPermanentId();
+			this.fileid = new byte[][] { permanentId != null ? permanentId : fileId, fileId };
+		}
 
 		// Encryption
 		final var encryptionParams = this.params.encryption();
@@ -353,7 +498,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		}
 
 		// Outline Info
-		if (this.params.bookmarks()) {
+		if (this.params.bookmarks() && base == null) {
 			this.outline = new OutlineFlow(this);
 		} else {
 			this.outline = null;
@@ -412,16 +557,49 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		this.pageResourceFlow = new ResourceFlow(this.mainFlow);
 		this.mainFlow.endObject();
 
-		// Objects
-		this.objectsFlow = this.mainFlow.forkFragment();
-		this.fonts = new FontFlow(this.nameToResourceRef, this.objectsFlow, this.xref);
-		this.images = new ImageFlow(this.nameToResourceRef, this.objectsFlow, this.xref, this.params);
+		// Pages and Objects
+		if (streamedFlow != null) {
+			// Written between the pages, so they are released with them
+			this.bodyFlow = streamedFlow;
+			this.objectsFlow = streamedFlow;
+		} else if (this.linearization != null) {
+			// The document-level objects above come before the first page
+			this.bodyFlow = this.linearization.startPages();
+			this.objectsFlow = this.linearization.startObjects();
+		} else {
+			this.bodyFlow = this.mainFlow;
+			this.objectsFlow = this.mainFlow.forkFragment();
+		}
+		this.fonts = new FontFlow(this.nameToResourceRef, this::getObjectsFlow, this.xref);
+		this.images = new ImageFlow(this.nameToResourceRef, this::getObjectsFlow, this.xref, this.params);
 	}
 
 	public PDFWriterImpl(final FragmentedOutput builder) throws IOException {
 		this(builder, PDFParams.createDefault());
 	}
 
+	/**
+	 * Opens a PDF file to append an incremental update to it. The bytes of the
+	 * file are not rewritten; closing the writer appends the new objects and the
+	 * cross-reference section.
+	 * 
+	 * @param file   A PDF file.
+	 * @param params Parameters; the version should be that of the file.
+	 * @return The writer of the update.
+	 * @throws IOException If the file cannot be read or is not a supported PDF.
+	 */
+	public static PDFWriterImpl append(final File file, final PDFParams params) throws IOException {
+		final var base = BaseDocument.open(file);
+		try {
+			final var builder = new StreamFragmentedOutput(
+					new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+			return new PDFWriterImpl(builder, params, base);
+		} catch (IOException | RuntimeException e) {
+			base.close();
+			throw e;
+		}
+	}
+
 	public PDFParams getParams() {
 		return this.params;
 	}
@@ -430,6 +608,10 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		return this.builder;
 	}
 
+	public ResourceCache getResourceCache() {
+		return this.resourceCache;
+	}
+
 	public Object getAttribute(final Object key) {
 		return this.keyToValue.get(key);
 	}
@@ -438,6 +620,40 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		this.keyToValue.put(key, value);
 	}
 
+	/**
+	 * Returns the Deflater pool, which also holds compression statistics by class
+	 * of stream.
+	 * 
+	 * @return the Deflater pool
+	 */
+	public DeflaterPool getDeflaterPool() {
+		return this.deflaters;
+	}
+
+	/**
+	 * Returns the number of operators eliminated from the content streams
+	 * closed so far, if content stream optimization is enabled.
+	 * 
+	 * @return the number of operators
+	 * @see PDFParams#withOptimizeContents(boolean)
+	 */
+	public long getEliminatedOperators() {
+		return this.eliminatedOperators.sum();
+	}
+
+	/**
+	 * Passes a content stream through the optimizer if it is enabled.
+	 * 
+	 * @param out the content stream
+	 * @return the stream to write operators to
+	 */
+	OutputStream optimizeContents(final OutputStream out) {
+		if (!this.params.optimizeContents()) {
+			return out;
+		}
+		return new ContentStreamOptimizer(out, this.eliminatedOperators::add);
+	}
+
 	public FontManager getFontManager() {
 		if (this.fontManager == null) {
 			this.fontManager = new FontManagerImpl(this.params.fontSourceManager(), this);
@@ -458,6 +674,17 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		return ocgRef;
 	}
 
+	/**
+	 * Returns the flow for objects used by the page being drawn. In a linearized
+	 * file, the objects written before the second page is started go before it,
+	 * so that the first page can be shown before the rest of the file is loaded.
+	 * 
+	 * @return The flow for objects.
+	 */
+	PDFFragmentOutputImpl getObjectsFlow() {
+		return this.linearization != null ? this.linearization.getObjectsFlow() : this.objectsFlow;
+	}
+
 	public Font useFont(final FontSource source) throws IOException {
 		return this.fonts.useFont(source);
 	}
@@ -470,6 +697,26 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		return this.images.addImage(image);
 	}
 
+	/**
+	 * Returns an image already loaded from a source, without loading it.
+	 * 
+	 * @param source The source of the image.
+	 * @return The image, or null if it has not been loaded.
+	 */
+	Image findImage(final Source source) {
+		return this.images.findImage(source);
+	}
+
+	/**
+	 * Returns an image already added, without adding it.
+	 * 
+	 * @param image The buffered image.
+	 * @return The image, or null if it has not been added.
+	 */
+	Image findImage(final BufferedImage image) {
+		return this.images.findImage(image);
+	}
+
 	protected String addResource(final String type, final String prefix, final ObjectRef resourceRef)
 			throws IOException {
 		final var num = this.typeToCount.getOrDefault(type, 0);
@@ -482,7 +729,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 	public PDFNamedOutput createSpecialGraphicsState() throws IOException {
 		final var gsRef = this.xref.nextObjectRef();
 		final var name = this.addResource("ExtGState", "G", gsRef);
-		final var gsOut = this.objectsFlow;
+		final var gsOut = this.getObjectsFlow();
 		gsOut.startObject(gsRef);
 		gsOut.startHash();
 
@@ -516,7 +763,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		final var imageRef = this.xref.nextObjectRef();
 		final var name = this.addResource("XObject", "T", imageRef);
 
-		final var objectsFlow = this.objectsFlow;
+		final var objectsFlow = this.getObjectsFlow();
 
 		objectsFlow.startObject(imageRef);
 		objectsFlow.startHash();
@@ -567,20 +814,55 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 
 		final var formFlow = objectsFlow.forkFragment();
 		final var groupFlow = objectsFlow.forkFragment();
-		final var groupOut = groupFlow.startStreamFromHash(PDFFragmentOutput.Mode.ASCII);
+		final var groupOut = this.optimizeContents(groupFlow.startStreamFromHash(PDFFragmentOutput.Mode.ASCII));
 		objectsFlow.endObject();
 
 		return new PDFGroupImageImpl(this, groupOut, groupFlow, newResourceFlow, width, height, name, imageRef,
 				formFlow);
 	}
 
+	public PDFNamedGraphicsOutput createForm(final double width, final double height) throws IOException {
+		final var formRef = this.xref.nextObjectRef();
+		final var name = this.addResource("XObject", "X", formRef);
+
+		final var objectsFlow = this.getObjectsFlow();
+		objectsFlow.startObject(formRef);
+		objectsFlow.startHash();
+
+		objectsFlow.writeName("Type");
+		objectsFlow.writeName("XObject");
+		objectsFlow.lineBreak();
+		objectsFlow.writeName("Subtype");
+		objectsFlow.writeName("Form");
+		objectsFlow.lineBreak();
+
+		objectsFlow.writeName("Resources");
+		final var newResourceFlow = new ResourceFlow(objectsFlow);
+		objectsFlow.lineBreak();
+
+		objectsFlow.writeName("BBox");
+		objectsFlow.startArray();
+		objectsFlow.writeInt(0);
+		objectsFlow.writeReal(0);
+		objectsFlow.writeReal(width);
+		objectsFlow.writeReal(height);
+		objectsFlow.endArray();
+		objectsFlow.lineBreak();
+
+		final var formFlow = objectsFlow.forkFragment();
+		final var formOut = this.optimizeContents(formFlow.startStreamFromHash(PDFFragmentOutput.Mode.ASCII));
+		objectsFlow.endObject();
+
+		return new PDFNamedGraphicsOutputImpl(this, formOut, formFlow, newResourceFlow, width, height, name);
+	}
+
 	public PDFNamedGraphicsOutput createTilingPattern(final double width, final double height, final double pageHeight,
 			final AffineTransform at) throws IOException {
 		// Pattern Object
 		final var patternRef = this.xref.nextObjectRef();
 		final var name = this.addResource("Pattern", "P", patternRef);
 
-		final var objectsFlow = this.objectsFlow;
+		final var objectsFlow = this.getObjectsFlow();
 		objectsFlow.startObject(patternRef);
 		objectsFlow.startHash();
 
@@ -644,7 +926,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		objectsFlow.lineBreak();
 
 		final var patternFlow = objectsFlow.forkFragment();
-		final var patternOut = patternFlow.startStreamFromHash(PDFFragmentOutput.Mode.ASCII);
+		final var patternOut = this.optimizeContents(patternFlow.startStreamFromHash(PDFFragmentOutput.Mode.ASCII));
 		objectsFlow.endObject();
 
 		return new PDFNamedGraphicsOutputImpl(this, patternOut, patternFlow, newResourceFlow, width, height, name);
@@ -654,7 +936,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 		final var patternRef = this.xref.nextObjectRef();
 		final var name = this.addResource("Pattern", "P", patternRef);
 
-		final var objectsFlow = this.objectsFlow;
+		final var objectsFlow = this.getObjectsFlow();
 		objectsFlow.startObject(patternRef);
 		objectsFlow.startHash();
 
@@ -801,7 +1083,95 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 	}
 
 	public PDFPageOutput nextPage(final double width, final double height) throws IOException {
-		return this.pages.createPage(width, height);
+		final var page = this.pages.createPage(width, height);
+		if (this.linearization != null) {
+			this.linearization.addPage(page);
+		}
+		return page;
+	}
+
+	@Override
+	public <T> void renderPages(final int count, final int threads, final PageRenderer<T> renderer)
+			throws IOException {
+		new PageRenderQueue(threads).render(count, renderer, this);
+	}
+
+	/**
+	 * Returns an output drawing over a page of the base document of an
+	 * incremental update. Graphics are drawn over the existing contents, and
+	 * annotations are added to the existing ones. The page object is replaced
+	 * when the output is closed, so a page can be edited once per update.
+	 * 
+	 * @param index Index of the page, from 0.
+	 * @return The output.
+	 * @throws IOException If the page cannot be read.
+	 */
+	public PDFPageOutput editPage(final int index) throws IOException {
+		if (this.base == null) {
+			throw new IllegalStateException("Only an incremental update can edit existing pages.");
+		}
+		return new PDFPageOverlayImpl(this, this.base.getPage(index));
+	}
+
+	/**
+	 * Writes an annotation object.
+	 * 
+	 * @param annot The annotation.
+	 * @param page  The page of the annotation.
+	 * @return Reference to the annotation object.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	ObjectRef writeAnnotation(final Annot annot, final PDFPageOutput page) throws IOException {
+		if (this.params.version() == PDFParams.Version.V_PDFX1A) {
+			throw new UnsupportedOperationException("Annotations are not allowed in PDF/X standards.");
+		}
+
+		final var annotRef = this.xref.nextObjectRef();
+
+		// Write annotation object to a separate fragment
+		try (final var objectsFlow = this.getObjectsFlow().forkFragment()) {
+			objectsFlow.startObject(annotRef);
+			objectsFlow.startHash();
+			annot.writeTo(objectsFlow, page);
+
+			// Required flags for PDF/A or PDF/X
+			if (this.params.version() == PDFParams.Version.V_PDFA1B
+					|| this.params.version() == PDFParams.Version.V_PDFX1A) {
+				objectsFlow.writeName("F");
+				objectsFlow.writeInt(0x04); // Print flag
+				objectsFlow.lineBreak();
+			}
+
+			objectsFlow.endHash();
+			objectsFlow.endObject();
+		}
+		return annotRef;
+	}
+
+	/**
+	 * Writes a new version of the document information dictionary of the base
+	 * document, with the modification date updated.
+	 */
+	private ObjectRef writeUpdatedInfo(final long modify, final TimeZone zone) throws IOException {
+		final var baseInfoRef = this.base.getInfoRef();
+		final var infoRef = baseInfoRef == null ? this.xref.nextObjectRef() : this.xref.replaceObject(baseInfoRef);
+		this.objectsFlow.startObject(infoRef);
+		this.objectsFlow.startHash();
+		if (baseInfoRef != null) {
+			for (final var entry : this.base.getDictionary(baseInfoRef).entrySet()) {
+				if (!entry.getKey().equals("ModDate")) {
+					this.objectsFlow.writeName(entry.getKey());
+					BaseDocument.writeValue(this.objectsFlow, entry.getValue());
+					this.objectsFlow.lineBreak();
+				}
+			}
+		}
+		this.objectsFlow.writeName("ModDate");
+		this.objectsFlow.writeDate(modify == -1L ? System.currentTimeMillis() : modify, zone);
+		this.objectsFlow.lineBreak();
+		this.objectsFlow.endHash();
+		this.objectsFlow.endObject();
+		return infoRef;
 	}
 
 	public void close() throws IOException {
@@ -822,73 +1192,78 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 			}
 			var modify = info.getModDate();
 
-			final var infoRef = this.xref.nextObjectRef();
-			this.objectsFlow.startObject(infoRef);
-			this.objectsFlow.startHash();
+			final ObjectRef infoRef;
+			if (this.base != null) {
+				infoRef = this.writeUpdatedInfo(modify, zone);
+			} else {
+				infoRef = this.xref.nextObjectRef();
+				this.objectsFlow.startObject(infoRef);
+				this.objectsFlow.startHash();
 
-			if (this.params.version() == PDFParams.Version.V_PDFX1A) {
-				if (title == null || title.isEmpty()) {
-					title = "Untitled";
+				if (this.params.version() == PDFParams.Version.V_PDFX1A) {
+					if (title == null || title.isEmpty()) {
+						title = "Untitled";
+					}
+					this.objectsFlow.writeName("GTS_PDFXVersion");
+					this.objectsFlow.writeText("PDF/X-1a:2003");
+					this.objectsFlow.lineBreak();
 				}
-				this.objectsFlow.writeName("GTS_PDFXVersion");
-				this.objectsFlow.writeText("PDF/X-1a:2003");
+
+				if (author != null) {
+					this.objectsFlow.writeName("Author");
+					this.objectsFlow.writeText(author);
+					this.objectsFlow.lineBreak();
+				}
+
+				this.objectsFlow.writeName("CreationDate");
+				this.objectsFlow.writeDate(create, zone);
 				this.objectsFlow.lineBreak();
-			}
 
-			if (author != null) {
-				this.objectsFlow.writeName("Author");
-				this.objectsFlow.writeText(author);
+				if (modify == -1L) {
+					modify = create;
+				}
+				this.objectsFlow.writeName("ModDate");
+				this.objectsFlow.writeDate(modify, zone);
 				this.objectsFlow.lineBreak();
-			}
 
-			this.objectsFlow.writeName("CreationDate");
-			this.objectsFlow.writeDate(create, zone);
-			this.objectsFlow.lineBreak();
+				if (creator != null) {
+					this.objectsFlow.writeName("Creator");
+					this.objectsFlow.writeText(creator);
+					this.objectsFlow.lineBreak();
+				}
 
-			if (modify == -1L) {
-				modify = create;
-			}
-			this.objectsFlow.writeName("ModDate");
-			this.objectsFlow.writeDate(modify, zone);
-			this.objectsFlow.lineBreak();
+				if (producer != null) {
+					this.objectsFlow.writeName("Producer");
+					this.objectsFlow.writeText(producer);
+					this.objectsFlow.lineBreak();
+				}
 
-			if (creator != null) {
-				this.objectsFlow.writeName("Creator");
-				this.objectsFlow.writeText(creator);
-				this.objectsFlow.lineBreak();
-			}
+				if (title != null) {
+					this.objectsFlow.writeName("Title");
+					this.objectsFlow.writeText(title);
+					this.objectsFlow.lineBreak();
+				}
 
-			if (producer != null) {
-				this.objectsFlow.writeName("Producer");
-				this.objectsFlow.writeText(producer);
-				this.objectsFlow.lineBreak();
-			}
+				if (subject != null) {
+					this.objectsFlow.writeName("Subject");
+					this.objectsFlow.writeText(subject);
+					this.objectsFlow.lineBreak();
+				}
 
-			if (title != null) {
-				this.objectsFlow.writeName("Title");
-				this.objectsFlow.writeText(title);
-				this.objectsFlow.lineBreak();
-			}
+				if (keywords != null) {
+					this.objectsFlow.writeName("Keywords");
+					this.objectsFlow.writeText(keywords);
+					this.objectsFlow.lineBreak();
+				}
 
-			if (subject != null) {
-				this.objectsFlow.writeName("Subject");
-				this.objectsFlow.writeText(subject);
+				this.objectsFlow.writeName("Trapped");
+				this.objectsFlow.writeName("False");
 				this.objectsFlow.lineBreak();
-			}
 
-			if (keywords != null) {
-				this.objectsFlow.writeName("Keywords");
-				this.objectsFlow.writeText(keywords);
-				this.objectsFlow.lineBreak();
+				this.objectsFlow.endHash();
+				this.objectsFlow.endObject();
 			}
 
-			this.objectsFlow.writeName("Trapped");
-			this.objectsFlow.writeName("False");
-			this.objectsFlow.lineBreak();
-
-			this.objectsFlow.endHash();
-			this.objectsFlow.endObject();
-
 			// XML Metadata
 			if (this.xmpmetaFlow != null) {
 				this.xmpmetaFlow.startHash();
@@ -1056,7 +1431,22 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 			this.nameDict.close();
 
 			// OCGs
+			final var baseOCProperties = this.base == null ? null : this.base.getCatalog().get("OCProperties");
 			if (this.ocgs != null) {
+				// Those of the base document come first
+				var baseOCGs = List.<byte[]>of();
+				var baseOn = List.<byte[]>of();
+				var baseConfig = Map.<String, byte[]>of();
+				if (baseOCProperties != null) {
+					final var properties = BaseDocument.toDictionary(this.base.resolve(baseOCProperties));
+					baseOCGs = this.toBaseArray(properties.get("OCGs"));
+					final var config = properties.get("D");
+					if (config != null) {
+						baseConfig = BaseDocument.toDictionary(this.base.resolve(config));
+						baseOn = this.toBaseArray(baseConfig.get("ON"));
+					}
+				}
+
 				final ObjectRef ref = this.xref.nextObjectRef();
 				this.catalogFlow.writeName("OCProperties");
 				this.catalogFlow.writeObjectRef(ref);
@@ -1064,20 +1454,22 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 				this.objectsFlow.startObject(ref);
 				this.objectsFlow.startHash();
 				this.objectsFlow.writeName("OCGs");
-				this.objectsFlow.startArray();
-				for (final var ocgRef : this.ocgs) {
-					this.objectsFlow.writeObjectRef(ocgRef);
-				}
-				this.objectsFlow.endArray();
+				this.writeOCGs(baseOCGs);
 
 				this.objectsFlow.writeName("D");
 				this.objectsFlow.startHash();
-				this.objectsFlow.writeName("ON");
-				this.objectsFlow.startArray();
-				for (final var ocgRef : this.ocgs) {
-					this.objectsFlow.writeObjectRef(ocgRef);
+				for (final var entry : baseConfig.entrySet()) {
+					switch (entry.getKey()) {
+						case "ON", "AS" -> {
+						}
+						default -> {
+							this.objectsFlow.writeName(entry.getKey());
+							BaseDocument.writeValue(this.objectsFlow, entry.getValue());
+						}
+					}
 				}
-				this.objectsFlow.endArray();
+				this.objectsFlow.writeName("ON");
+				this.writeOCGs(baseOn);
 				this.objectsFlow.writeName("AS");
 				this.objectsFlow.startArray();
 
@@ -1085,11 +1477,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 				this.objectsFlow.writeName("Event");
 				this.objectsFlow.writeName("View");
 				this.objectsFlow.writeName("OCGs");
-				this.objectsFlow.startArray();
-				for (final var ocgRef : this.ocgs) {
-					this.objectsFlow.writeObjectRef(ocgRef);
-				}
-				this.objectsFlow.endArray();
+				this.writeOCGs(baseOCGs);
 				this.objectsFlow.writeName("Category");
 				this.objectsFlow.startArray();
 				this.objectsFlow.writeName("View");
@@ -1100,11 +1488,7 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 				this.objectsFlow.writeName("Event");
 				this.objectsFlow.writeName("Print");
 				this.objectsFlow.writeName("OCGs");
-				this.objectsFlow.startArray();
-				for (final var ocgRef : this.ocgs) {
-					this.objectsFlow.writeObjectRef(ocgRef);
-				}
-				this.objectsFlow.endArray();
+				this.writeOCGs(baseOCGs);
 				this.objectsFlow.writeName("Category");
 				this.objectsFlow.startArray();
 				this.objectsFlow.writeName("Print");
@@ -1116,11 +1500,16 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 
 				this.objectsFlow.endHash();
 				this.objectsFlow.endObject();
+			} else if (baseOCProperties != null) {
+				this.catalogFlow.writeName("OCProperties");
+				BaseDocument.writeValue(this.catalogFlow, baseOCProperties);
+				this.catalogFlow.lineBreak();
 			}
 
 			// ViewerPreferences
+			// Those of the base document of an incremental update are kept
 			final ViewerPreferences vp = this.params.viewerPreferences();
-			if (vp != null) {
+			if (vp != null && this.base == null) {
 				this.catalogFlow.writeName("ViewerPreferences");
 				this.catalogFlow.startHash();
 
@@ -1313,20 +1702,67 @@ public class PDFWriterImpl implements PDFWriter, FontStore {
 			// Resources
 			this.fonts.close();
 			this.pageResourceFlow.close();
+			if (this.objectStreams != null) {
+				this.objectStreams.close(this.objectsFlow);
+			}
 			this.objectsFlow.close();
+			if (this.compressor != null) {
+				this.compressor.flush();
+			}
 
 			// XRef
-			this.xref.close(this.builder.getPositionInfo(), infoRef, this.fileid, this.encryption);
+			if (this.linearization != null) {
+				this.linearization.close(infoRef, this.fileid);
+			} else {
+				var posInfo = this.builder.getPositionInfo();
+				if (this.base != null) {
+					// The update follows the bytes of the base document
+					final PositionInfo updateInfo = posInfo;
+					final var baseLength = this.base.getLength();
+					posInfo = id -> updateInfo.getPosition(id) + baseLength;
+				}
+				this.xref.close(posInfo, infoRef, this.fileid, this.encryption);
+			}
 
 			this.mainFlow.close();
 		} finally {
 			this.builder.close();
+			if (this.base != null) {
+				this.base.close();
+			}
+			if (this.compressor != null) {
+				this.compressor.shutdown();
+			}
+			this.deflaters.close();
 		}
 		if (this.fontManager != null) {
 			this.fontManager.close();
 		}
 	}
 
+	/**
+	 * Writes an array of optional content groups: those of the base document
+	 * followed by the new ones.
+	 */
+	private void writeOCGs(final List<byte[]> baseOCGs) throws IOException {
+		this.objectsFlow.startArray();
+		for (final var ocg : baseOCGs) {
+			BaseDocument.writeValue(this.objectsFlow, ocg);
+		}
+		for (final var ocgRef : this.ocgs) {
+			this.objectsFlow.writeObjectRef(ocgRef);
+		}
+		this.objectsFlow.endArray();
+	}
+
+	/**
+	 * Returns the elements of an array of the base document, which may be an
+	 * indirect object.
+	 */
+	private List<byte[]> toBaseArray(final byte[] value) throws IOException {
+		return value == null ? List.of() : BaseDocument.toArray(this.base.resolve(value));
+	}
+
 	private void writeArea(final ViewerPreferences.AreaBox area) throws IOException {
 		switch (area) {
 			case MEDIA -> this.catalogFlow.writeName("MediaBox");
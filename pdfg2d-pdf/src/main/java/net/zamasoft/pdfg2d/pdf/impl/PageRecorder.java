@@ -0,0 +1,813 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.zamasoft.pdfg2d.font.Font;
+import net.zamasoft.pdfg2d.font.FontSource;
+import net.zamasoft.pdfg2d.gc.GC;
+import net.zamasoft.pdfg2d.gc.GraphicsException;
+import net.zamasoft.pdfg2d.gc.font.FontFace;
+import net.zamasoft.pdfg2d.gc.font.FontManager;
+import net.zamasoft.pdfg2d.gc.image.Image;
+import net.zamasoft.pdfg2d.gc.text.Text;
+import net.zamasoft.pdfg2d.pdf.Attachment;
+import net.zamasoft.pdfg2d.pdf.PDFGraphicsOutput;
+import net.zamasoft.pdfg2d.pdf.PDFNamedGraphicsOutput;
+import net.zamasoft.pdfg2d.pdf.PDFNamedOutput;
+import net.zamasoft.pdfg2d.pdf.PDFOutput;
+import net.zamasoft.pdfg2d.pdf.PDFPageOutput;
+import net.zamasoft.pdfg2d.pdf.PDFWriter;
+import net.zamasoft.pdfg2d.pdf.PageRenderer;
+import net.zamasoft.pdfg2d.pdf.ResourceCache;
+import net.zamasoft.pdfg2d.pdf.annot.Annot;
+import net.zamasoft.pdfg2d.pdf.font.FontManagerImpl;
+import net.zamasoft.pdfg2d.pdf.font.PDFFont;
+import net.zamasoft.pdfg2d.pdf.font.PDFFontSource;
+import net.zamasoft.pdfg2d.pdf.gc.PDFGroupImage;
+import net.zamasoft.pdfg2d.pdf.params.PDFParams;
+import net.zamasoft.pdfg2d.resolver.Source;
+
+/**
+ * Records a page drawn on a worker thread, to be committed to the writer
+ * later, in page order.
+ * <p>
+ * The page is drawn through a writer of its own, whose outputs write to a
+ * journal instead of the document. Whatever takes a name, an object number or
+ * a glyph ID from the document is journaled as an operation instead, with a
+ * placeholder standing for the name it is going to get, and the fonts are
+ * fonts of the page. Committing the page replays the journal on the writer,
+ * which gives out the names, numbers and glyph IDs in the same order as
+ * drawing the page there.
+ * </p>
+ * <p>
+ * A lookup in the resource cache always misses while recording. It is replayed
+ * as a lookup in the cache of the document, and if that finds the resource, the
+ * operations up to the registration of the resource are skipped, as drawing
+ * the page on the writer would not have made them.
+ * </p>
+ * <p>
+ * What cannot be replayed this way, such as an image which has not been loaded
+ * yet, makes the page fall back: it is drawn again on the writer when it is
+ * committed.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class PageRecorder {
+	/**
+	 * An operation on the writer.
+	 */
+	private interface Op {
+		void replay(Replay r) throws IOException;
+	}
+
+	/**
+	 * An operation on an output created by the page.
+	 */
+	private interface Use<T> {
+		void replay(T out, Replay r) throws IOException;
+	}
+
+	/**
+	 * Thrown to stop drawing a page which falls back.
+	 */
+	private static class Fallback extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Fallback() {
+			super("The page is drawn again on the writer.", null, false, false);
+		}
+	}
+
+	/**
+	 * State of a replay.
+	 */
+	private static class Replay {
+		final PDFWriterImpl pdf;
+
+		/** Outputs of the document by target, null if their creation was skipped. */
+		final Object[] targets;
+
+		/** Names in the document by placeholder. */
+		final Map<String, String> names = new HashMap<>();
+
+		/** Glyph IDs in the document by those of a font of the page, or null if the same. */
+		final Map<PDFFont, int[]> glyphs = new IdentityHashMap<>();
+
+		/** Index of the operation being replayed. */
+		int index = 0;
+
+		Replay(final PDFWriterImpl pdf, final int targets) {
+			this.pdf = pdf;
+			this.targets = new Object[targets];
+		}
+
+		String name(final String name) {
+			return isPlaceholder(name) ? this.names.get(name) : name;
+		}
+
+		PDFOutput output(final OutputStream out) {
+			return new PDFOutput(out, this.pdf.getParams().platformEncoding());
+		}
+	}
+
+	/**
+	 * Bytes written to an output.
+	 */
+	private static class Bytes extends ByteArrayOutputStream implements Op {
+		final int target;
+
+		Bytes(final int target) {
+			super(256);
+			this.target = target;
+		}
+
+		@Override
+		public void replay(final Replay r) throws IOException {
+			final var out = (OutputStream) r.targets[this.target];
+			if (out != null) {
+				this.writeTo(out);
+			}
+		}
+	}
+
+	/**
+	 * A lookup in the resource cache, and the resource registered after it
+	 * missed.
+	 */
+	private static class Lookup implements Op {
+		final Object key;
+
+		/** Placeholder of the resource. */
+		String name = null;
+
+		/** Index of the registration of the resource, or -1 if not registered. */
+		int end = -1;
+
+		Lookup(final Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public void replay(final Replay r) {
+			final var name = r.pdf.getResourceCache().get(this.key);
+			if (name != null && this.end != -1) {
+				r.names.put(this.name, name);
+				r.index = this.end;
+			}
+		}
+	}
+
+	private final PDFWriterImpl pdf;
+
+	private final String prefix;
+
+	private final List<Op> ops = new ArrayList<>();
+
+	private int targetCount = 0;
+
+	private int placeholderCount = 0;
+
+	private boolean fallback = false;
+
+	/** Font manager of the document, and the number of font faces added to it. */
+	private final FontManagerImpl documentFontManager;
+	private final int fontFaceCount;
+
+	private final FontManagerImpl fontManager;
+
+	/** Fonts of the page by source. */
+	private final Map<FontSource, Font> fonts = new HashMap<>();
+
+	private final Cache cache;
+
+	private final Writer writer = new Writer();
+
+	/**
+	 * Creates a recorder. This is called on the thread of the writer, before
+	 * the page is drawn.
+	 *
+	 * @param pdf   the writer
+	 * @param index the index of the page
+	 */
+	PageRecorder(final PDFWriterImpl pdf, final int index) {
+		this.pdf = pdf;
+		this.prefix = "\0" + index + "/";
+		this.documentFontManager = (FontManagerImpl) pdf.getFontManager();
+		this.fontFaceCount = this.documentFontManager.getFontFaceCount();
+		this.fontManager = new FontManagerImpl(this.documentFontManager, this::useFont) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void addFontFace(final FontFace face) throws IOException {
+				throw PageRecorder.this.fallBack();
+			}
+
+			@Override
+			public void close() {
+				// The font faces belong to the document
+			}
+		};
+		this.cache = new Cache(pdf.getParams().precision());
+	}
+
+	/**
+	 * Draws the page to the recorder. This is called on a worker thread.
+	 *
+	 * @param <T>      Type of a prepared page.
+	 * @param index    Index of the page.
+	 * @param page     The prepared page.
+	 * @param renderer The renderer of the page.
+	 * @throws IOException If the page cannot be drawn.
+	 */
+	<T> void record(final int index, final T page, final PageRenderer<T> renderer) throws IOException {
+		try {
+			renderer.draw(index, page, this.writer);
+		} catch (final IOException | RuntimeException e) {
+			// The page is drawn again, and fails there if it has to
+			if (!this.fallback) {
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Commits the page to the writer. This is called on the thread of the writer,
+	 * in page order.
+	 *
+	 * @return false if the page falls back and has to be drawn on the writer.
+	 * @throws IOException If the page cannot be written.
+	 */
+	boolean commit() throws IOException {
+		// Fonts added since the page was drawn may be found in place of others
+		if (this.fallback || this.documentFontManager.getFontFaceCount() != this.fontFaceCount) {
+			return false;
+		}
+		final var r = new Replay(this.pdf, this.targetCount);
+		for (; r.index < this.ops.size(); ++r.index) {
+			this.ops.get(r.index).replay(r);
+		}
+		return true;
+	}
+
+	private Fallback fallBack() {
+		this.fallback = true;
+		return new Fallback();
+	}
+
+	private static boolean isPlaceholder(final String name) {
+		return !name.isEmpty() && name.charAt(0) == '\0';
+	}
+
+	private String placeholder() {
+		return this.prefix + this.placeholderCount++;
+	}
+
+	private void journal(final Op op) {
+		this.ops.add(op);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void journal(final int target, final Use<T> use) {
+		this.ops.add(r -> {
+			final var out = (T) r.targets[target];
+			if (out != null) {
+				use.replay(out, r);
+			}
+		});
+	}
+
+	/**
+	 * Journals the creation of an output of the document.
+	 */
+	private interface Creation {
+		Object create(Replay r) throws IOException;
+	}
+
+	private int create(final Creation creation) {
+		final var target = this.targetCount++;
+		this.journal(r -> r.targets[target] = creation.create(r));
+		return target;
+	}
+
+	/**
+	 * Returns the bytes being written to an output, which go on until another
+	 * operation is journaled.
+	 */
+	private Bytes bytes(final int target) {
+		if (!this.ops.isEmpty() && this.ops.get(this.ops.size() - 1) instanceof final Bytes last
+				&& last.target == target) {
+			return last;
+		}
+		final var bytes = new Bytes(target);
+		this.ops.add(bytes);
+		return bytes;
+	}
+
+	private Font useFont(final FontSource source) throws IOException {
+		var font = this.fonts.get(source);
+		if (font != null) {
+			return font;
+		}
+		if (source instanceof final PDFFontSource pdfSource) {
+			final var name = this.placeholder();
+			final var pageFont = pdfSource.createFont(name, null);
+			this.checkSkippable();
+			this.journal(r -> {
+				// The glyphs of the page are used in the order they were used
+				final var documentFont = (PDFFont) r.pdf.useFont(source);
+				r.names.put(name, documentFont.getName());
+				r.glyphs.put(pageFont, documentFont.useGlyphs(pageFont));
+			});
+			font = pageFont;
+		} else {
+			font = source.createFont();
+		}
+		this.fonts.put(source, font);
+		return font;
+	}
+
+	/**
+	 * Falls back if what is about to be journaled might be skipped. A font drawn
+	 * in a skipped resource would have glyphs which are not in the document.
+	 */
+	private void checkSkippable() {
+		if (!this.cache.open.isEmpty()) {
+			this.fallback = true;
+		}
+	}
+
+	/**
+	 * Output of the bytes of an output of the page.
+	 */
+	private class Sink extends OutputStream {
+		private final int target;
+
+		Sink(final int target) {
+			this.target = target;
+		}
+
+		@Override
+		public void write(final int b) {
+			PageRecorder.this.bytes(this.target).write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			PageRecorder.this.bytes(this.target).write(b, off, len);
+		}
+
+		@Override
+		public void close() {
+			PageRecorder.this.journal(this.target, (final OutputStream out, final Replay r) -> out.close());
+		}
+	}
+
+	/**
+	 * Journals the names and the glyphs written to a graphics output of the page.
+	 */
+	private class Graphics {
+		private final int target;
+
+		/** Font of the text being drawn, or null. */
+		private PDFFont font = null;
+
+		Graphics(final int target) {
+			this.target = target;
+		}
+
+		void useResource(final String type, final String name) {
+			PageRecorder.this.journal(this.target,
+					(final PDFGraphicsOutput out, final Replay r) -> out.useResource(type, r.name(name)));
+		}
+
+		boolean writeName(final PDFOutput out, final String name) throws IOException {
+			if (!isPlaceholder(name)) {
+				return false;
+			}
+			out.spaceBefore();
+			PageRecorder.this.journal(this.target,
+					(final OutputStream target, final Replay r) -> r.output(target).writeName(r.name(name)));
+			return true;
+		}
+
+		void drawText(final PDFFont font, final GC gc, final Text text) throws IOException, GraphicsException {
+			this.font = font;
+			try {
+				font.drawTo(gc, text);
+			} finally {
+				this.font = null;
+			}
+		}
+
+		boolean writeBytes16(final PDFOutput out, final int[] a, final int off, final int len) throws IOException {
+			final var font = this.font;
+			if (font == null) {
+				return false;
+			}
+			out.spaceBefore();
+			final var gids = Arrays.copyOfRange(a, off, off + len);
+			PageRecorder.this.checkSkippable();
+			PageRecorder.this.journal(this.target, (final OutputStream target, final Replay r) -> {
+				final var documentGids = r.glyphs.get(font);
+				if (documentGids != null) {
+					for (var i = 0; i < gids.length; ++i) {
+						gids[i] = documentGids[gids[i]];
+					}
+				}
+				r.output(target).writeBytes16(gids, 0, gids.length);
+			});
+			return true;
+		}
+	}
+
+	private class PageOutput extends PDFPageOutput {
+		private final int target;
+
+		private final Graphics graphics;
+
+		PageOutput(final int target, final double width, final double height) throws IOException {
+			super(PageRecorder.this.writer, new Sink(target), width, height);
+			this.target = target;
+			this.graphics = new Graphics(target);
+		}
+
+		@Override
+		public void useResource(final String type, final String name) {
+			this.graphics.useResource(type, name);
+		}
+
+		@Override
+		public void writeName(final String name) throws IOException {
+			if (!this.graphics.writeName(this, name)) {
+				super.writeName(name);
+			}
+		}
+
+		@Override
+		public void drawText(final PDFFont font, final GC gc, final Text text) throws IOException, GraphicsException {
+			this.graphics.drawText(font, gc, text);
+		}
+
+		@Override
+		public void writeBytes16(final int[] a, final int off, final int len) throws IOException {
+			if (!this.graphics.writeBytes16(this, a, off, len)) {
+				super.writeBytes16(a, off, len);
+			}
+		}
+
+		@Override
+		public void writeBytes16(final int a) throws IOException {
+			if (!this.graphics.writeBytes16(this, new int[] { a }, 0, 1)) {
+				super.writeBytes16(a);
+			}
+		}
+
+		@Override
+		public void addAnnotation(final Annot annot) {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.addAnnotation(annot));
+		}
+
+		@Override
+		public void addFragment(final String id, final Point2D location) {
+			PageRecorder.this.journal(this.target,
+					(final PDFPageOutput out, final Replay r) -> out.addFragment(id, location));
+		}
+
+		@Override
+		public void startBookmark(final String title, final Point2D location) {
+			PageRecorder.this.journal(this.target,
+					(final PDFPageOutput out, final Replay r) -> out.startBookmark(title, location));
+		}
+
+		@Override
+		public void endBookmark() {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.endBookmark());
+		}
+
+		@Override
+		public void setMediaBox(final Rectangle2D mediaBox) {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.setMediaBox(mediaBox));
+		}
+
+		@Override
+		public void setCropBox(final Rectangle2D cropBox) {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.setCropBox(cropBox));
+		}
+
+		@Override
+		public void setBleedBox(final Rectangle2D bleedBox) {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.setBleedBox(bleedBox));
+		}
+
+		@Override
+		public void setTrimBox(final Rectangle2D trimBox) {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.setTrimBox(trimBox));
+		}
+
+		@Override
+		public void setArtBox(final Rectangle2D artBox) {
+			PageRecorder.this.journal(this.target, (final PDFPageOutput out, final Replay r) -> out.setArtBox(artBox));
+		}
+	}
+
+	private class NamedGraphicsOutput extends PDFNamedGraphicsOutput {
+		private final String name;
+
+		private final Graphics graphics;
+
+		NamedGraphicsOutput(final int target, final String name, final double width, final double height)
+				throws IOException {
+			super(PageRecorder.this.writer, new Sink(target), width, height);
+			this.name = name;
+			this.graphics = new Graphics(target);
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public void useResource(final String type, final String name) {
+			this.graphics.useResource(type, name);
+		}
+
+		@Override
+		public void writeName(final String name) throws IOException {
+			if (!this.graphics.writeName(this, name)) {
+				super.writeName(name);
+			}
+		}
+
+		@Override
+		public void drawText(final PDFFont font, final GC gc, final Text text) throws IOException, GraphicsException {
+			this.graphics.drawText(font, gc, text);
+		}
+
+		@Override
+		public void writeBytes16(final int[] a, final int off, final int len) throws IOException {
+			if (!this.graphics.writeBytes16(this, a, off, len)) {
+				super.writeBytes16(a, off, len);
+			}
+		}
+
+		@Override
+		public void writeBytes16(final int a) throws IOException {
+			if (!this.graphics.writeBytes16(this, new int[] { a }, 0, 1)) {
+				super.writeBytes16(a);
+			}
+		}
+	}
+
+	private class GroupImage extends PDFGroupImage {
+		private final int target;
+
+		private final Graphics graphics;
+
+		GroupImage(final int target, final String name, final double width, final double height)
+				throws IOException {
+			super(PageRecorder.this.writer, new Sink(target), width, height, name, null);
+			this.target = target;
+			this.graphics = new Graphics(target);
+		}
+
+		@Override
+		public void useResource(final String type, final String name) {
+			this.graphics.useResource(type, name);
+		}
+
+		@Override
+		public void writeName(final String name) throws IOException {
+			if (!this.graphics.writeName(this, name)) {
+				super.writeName(name);
+			}
+		}
+
+		@Override
+		public void drawText(final PDFFont font, final GC gc, final Text text) throws IOException, GraphicsException {
+			this.graphics.drawText(font, gc, text);
+		}
+
+		@Override
+		public void writeBytes16(final int[] a, final int off, final int len) throws IOException {
+			if (!this.graphics.writeBytes16(this, a, off, len)) {
+				super.writeBytes16(a, off, len);
+			}
+		}
+
+		@Override
+		public void writeBytes16(final int a) throws IOException {
+			if (!this.graphics.writeBytes16(this, new int[] { a }, 0, 1)) {
+				super.writeBytes16(a);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			final var ocgFlags = this.ocgFlags;
+			if (ocgFlags != 0) {
+				PageRecorder.this.journal(this.target, (final PDFGroupImage out, final Replay r) -> out.setOCG(ocgFlags));
+			}
+			super.close();
+		}
+	}
+
+	private class NamedOutput extends PDFNamedOutput {
+		private final String name;
+
+		NamedOutput(final int target, final String name) throws IOException {
+			super(new Sink(target), PageRecorder.this.pdf.getParams().platformEncoding());
+			this.setPrecision(PageRecorder.this.pdf.getParams().precision());
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+	}
+
+	/**
+	 * Cache of the page, which always misses and journals the lookups.
+	 */
+	private class Cache extends ResourceCache {
+		/** Lookups waiting for their resources to be registered, latest first. */
+		final Deque<Lookup> open = new ArrayDeque<>();
+
+		Cache(final int precision) {
+			// Nothing is kept
+			super(precision, 1);
+		}
+
+		@Override
+		public String get(final Object key) {
+			final var lookup = new Lookup(key);
+			PageRecorder.this.journal(lookup);
+			this.open.push(lookup);
+			return null;
+		}
+
+		@Override
+		public void put(final Object key, final String name) {
+			for (final var i = this.open.iterator(); i.hasNext();) {
+				final var lookup = i.next();
+				if (lookup.key.equals(key)) {
+					i.remove();
+					lookup.name = name;
+					lookup.end = PageRecorder.this.ops.size();
+					break;
+				}
+			}
+			PageRecorder.this.journal(r -> r.pdf.getResourceCache().put(key, r.name(name)));
+		}
+	}
+
+	/**
+	 * Writer of the page.
+	 */
+	private class Writer implements PDFWriter {
+		@Override
+		public PDFParams getParams() {
+			return PageRecorder.this.pdf.getParams();
+		}
+
+		@Override
+		public FontManager getFontManager() {
+			return PageRecorder.this.fontManager;
+		}
+
+		@Override
+		public Image loadImage(final Source source) throws IOException {
+			// An image is loaded on the writer, when it is first used
+			final var image = PageRecorder.this.pdf.findImage(source);
+			if (image == null) {
+				throw PageRecorder.this.fallBack();
+			}
+			return image;
+		}
+
+		@Override
+		public Image addImage(final BufferedImage image) throws IOException {
+			final var pdfImage = PageRecorder.this.pdf.findImage(image);
+			if (pdfImage == null) {
+				throw PageRecorder.this.fallBack();
+			}
+			return pdfImage;
+		}
+
+		@Override
+		public OutputStream addAttachment(final String name, final Attachment attachment) throws IOException {
+			return new Sink(PageRecorder.this.create(r -> r.pdf.addAttachment(name, attachment)));
+		}
+
+		@Override
+		public PDFNamedOutput createSpecialGraphicsState() throws IOException {
+			final var name = PageRecorder.this.placeholder();
+			final var target = PageRecorder.this.create(r -> {
+				final var out = r.pdf.createSpecialGraphicsState();
+				r.names.put(name, out.getName());
+				return out;
+			});
+			return new NamedOutput(target, name);
+		}
+
+		@Override
+		public PDFGroupImage createGroupImage(final double width, final double height) throws IOException {
+			if (this.getParams().version().v < PDFParams.Version.V_1_4.v) {
+				// Fails on the writer
+				throw PageRecorder.this.fallBack();
+			}
+			final var name = PageRecorder.this.placeholder();
+			final var target = PageRecorder.this.create(r -> {
+				final var out = r.pdf.createGroupImage(width, height);
+				r.names.put(name, out.getName());
+				return out;
+			});
+			return new GroupImage(target, name, width, height);
+		}
+
+		@Override
+		public PDFNamedGraphicsOutput createForm(final double width, final double height) throws IOException {
+			final var name = PageRecorder.this.placeholder();
+			final var target = PageRecorder.this.create(r -> {
+				final var out = r.pdf.createForm(width, height);
+				r.names.put(name, out.getName());
+				return out;
+			});
+			return new NamedGraphicsOutput(target, name, width, height);
+		}
+
+		@Override
+		public PDFNamedGraphicsOutput createTilingPattern(final double width, final double height,
+				final double pageHeight, final AffineTransform at) throws IOException {
+			final var name = PageRecorder.this.placeholder();
+			final var transform = at == null ? null : new AffineTransform(at);
+			final var target = PageRecorder.this.create(r -> {
+				final var out = r.pdf.createTilingPattern(width, height, pageHeight, transform);
+				r.names.put(name, out.getName());
+				return out;
+			});
+			return new NamedGraphicsOutput(target, name, width, height);
+		}
+
+		@Override
+		public PDFNamedOutput createShadingPattern(final double pageHeight, final AffineTransform at)
+				throws IOException {
+			final var name = PageRecorder.this.placeholder();
+			final var transform = at == null ? null : new AffineTransform(at);
+			final var target = PageRecorder.this.create(r -> {
+				final var out = r.pdf.createShadingPattern(pageHeight, transform);
+				r.names.put(name, out.getName());
+				return out;
+			});
+			return new NamedOutput(target, name);
+		}
+
+		@Override
+		public PDFPageOutput nextPage(final double width, final double height) throws IOException {
+			final var target = PageRecorder.this.create(r -> r.pdf.nextPage(width, height));
+			return new PageOutput(target, width, height);
+		}
+
+		@Override
+		public ResourceCache getResourceCache() {
+			return PageRecorder.this.cache;
+		}
+
+		@Override
+		public Object getAttribute(final Object key) {
+			throw PageRecorder.this.fallBack();
+		}
+
+		@Override
+		public void putAttribute(final Object key, final Object value) {
+			throw PageRecorder.this.fallBack();
+		}
+
+		@Override
+		public <T> void renderPages(final int count, final int threads, final PageRenderer<T> renderer) {
+			throw new UnsupportedOperationException("Pages cannot be rendered while a page is drawn.");
+		}
+
+		@Override
+		public void close() {
+			throw new UnsupportedOperationException("The writer of a page cannot be closed.");
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.zamasoft.pdfg2d.pdf.PageRenderer;
+
+/**
+ * Prepares and draws pages on worker threads and commits them in page order.
+ * <p>
+ * Each page is drawn to a {@link PageRecorder}, and committed to the writer
+ * when the pages before it have been. A page which cannot be recorded is drawn
+ * again on the writer instead, and so are all of them if the shapes are
+ * cached, since whether a shape is shared depends on the pages before.
+ * </p>
+ * <p>
+ * Only a few pages per thread are rendered ahead of the page being committed,
+ * so memory use does not grow with the number of pages.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class PageRenderQueue {
+	/** Pages rendered ahead per thread. */
+	private static final int LOOKAHEAD = 2;
+
+	private final int threads;
+
+	PageRenderQueue(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * A prepared page, and its recording if it has been drawn.
+	 */
+	private record Rendered<T>(T page, PageRecorder recorder) {
+	}
+
+	<T> void render(final int count, final PageRenderer<T> renderer, final PDFWriterImpl pdf) throws IOException {
+		final var record = pdf.getParams().shapeCacheThreshold() <= 0;
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads, r -> {
+			final var thread = new Thread(r, "pdfg2d-renderer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			final var pending = new ArrayDeque<Future<Rendered<T>>>();
+			var next = 0;
+			for (var index = 0; index < count; ++index) {
+				while (next < count && pending.size() < this.threads * LOOKAHEAD) {
+					final var i = next++;
+					final var recorder = record ? new PageRecorder(pdf, i) : null;
+					pending.add(executor.submit(() -> {
+						final var page = renderer.prepare(i);
+						if (recorder != null) {
+							recorder.record(i, page, renderer);
+						}
+						return new Rendered<>(page, recorder);
+					}));
+				}
+				final Rendered<T> rendered;
+				try {
+					rendered = pending.poll().get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				} catch (final ExecutionException e) {
+					if (e.getCause() instanceof IOException ioe) {
+						throw ioe;
+					}
+					throw new IOException(e.getCause());
+				}
+				if (rendered.recorder() == null || !rendered.recorder().commit()) {
+					renderer.draw(index, rendered.page(), pdf);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
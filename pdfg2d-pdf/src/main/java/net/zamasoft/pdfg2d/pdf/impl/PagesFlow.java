@@ -1,12 +1,26 @@
 package net.zamasoft.pdfg2d.pdf.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
 
 /**
  * Manages PDF page structure (Pages tree).
- * 
+ * <p>
+ * By default all pages are kids of the root node. With a fan-out set in
+ * {@link net.zamasoft.pdfg2d.pdf.params.PDFParams#pageTreeFanout()}, the tree
+ * is built bottom-up while pages are added: only the last node of each level
+ * is kept open, and a node is written as soon as it is full. The topmost node
+ * is the only kid of the root, since the root reference is fixed before the
+ * height of the tree is known.
+ * </p>
+ * <p>
+ * An incremental update writes a new version of the root of the base
+ * document, whose kids come before the new pages.
+ * </p>
+ *
  * @author MIYABE Tatsuhiko
  * @since 1.0
  */
@@ -25,9 +39,35 @@ class PagesFlow {
 	/** Page count counter. */
 	private int pageCount = 0;
 
+	/** Maximum kids per intermediate node, or 0 for a flat tree. */
+	private final int fanout;
+
+	/** Open intermediate nodes, from the parents of pages upward. */
+	private final List<Node> openNodes = new ArrayList<>();
+
+	/**
+	 * Intermediate page tree node that still accepts kids.
+	 */
+	private static class Node {
+		final ObjectRef ref;
+
+		final ObjectRef[] kids;
+
+		int kidCount = 0;
+
+		/** Number of pages below this node. */
+		int pageCount = 0;
+
+		Node(final ObjectRef ref, final int fanout) {
+			this.ref = ref;
+			this.kids = new ObjectRef[fanout];
+		}
+	}
+
 	public PagesFlow(final PDFWriterImpl pdfWriter, final ObjectRef rootPageRef) throws IOException {
 		this.pdfWriter = pdfWriter;
 		this.rootPageRef = rootPageRef;
+		this.fanout = pdfWriter.getParams().pageTreeFanout();
 
 		final PDFFragmentOutputImpl mainFlow = pdfWriter.mainFlow;
 		mainFlow.startObject(rootPageRef);
@@ -38,8 +78,32 @@ class PagesFlow {
 		mainFlow.writeName("Pages");
 		mainFlow.lineBreak();
 
+		final var base = pdfWriter.base;
+		if (base != null) {
+			// Inheritable attributes and the like are kept
+			for (final var entry : base.getPagesRoot().entrySet()) {
+				switch (entry.getKey()) {
+					case "Type", "Kids", "Count" -> {
+					}
+					default -> {
+						mainFlow.writeName(entry.getKey());
+						BaseDocument.writeValue(mainFlow, entry.getValue());
+						mainFlow.lineBreak();
+					}
+				}
+			}
+		}
+
 		mainFlow.writeName("Kids");
 		mainFlow.startArray();
+		if (base != null) {
+			for (final var kid : BaseDocument.toArray(base.resolve(base.getPagesRoot().get("Kids")))) {
+				BaseDocument.writeValue(mainFlow, kid);
+			}
+			// Separates the new kids, which are written to the fork
+			mainFlow.write(' ');
+			this.pageCount = base.getPageCount();
+		}
 		this.pagesKidsFlow = mainFlow.forkFragment();
 		mainFlow.endArray();
 		mainFlow.lineBreak();
@@ -47,6 +111,7 @@ class PagesFlow {
 		mainFlow.writeName("Count");
 		mainFlow.write(' ');
 		this.pageCountFlow = mainFlow.forkFragment();
+		this.pageCountFlow.reserve(PDFFragmentOutputImpl.INT_DIGITS);
 		mainFlow.lineBreak();
 
 		mainFlow.endHash();
@@ -54,13 +119,99 @@ class PagesFlow {
 	}
 
 	public PDFPageOutputImpl createPage(final double width, final double height) throws IOException {
-		// Page Object
+		if (this.fanout == 0) {
+			final var page = new PDFPageOutputImpl(this.pdfWriter, this.rootPageRef, width, height);
+			this.pagesKidsFlow.writeObjectRef(page.getPageRef());
+			++this.pageCount;
+			return page;
+		}
+
+		final var parent = this.openNode(0);
+		final var page = new PDFPageOutputImpl(this.pdfWriter, parent.ref, width, height);
+		parent.kids[parent.kidCount++] = page.getPageRef();
+		++parent.pageCount;
 		++this.pageCount;
+		return page;
+	}
+
+	/**
+	 * Returns the open node of a level that has room for another kid. A full
+	 * node is written first and replaced with a new one.
+	 */
+	private Node openNode(final int level) throws IOException {
+		if (level < this.openNodes.size()) {
+			final var node = this.openNodes.get(level);
+			if (node.kidCount < this.fanout) {
+				return node;
+			}
+			this.closeNode(level, node);
+		}
+		final var node = new Node(this.pdfWriter.xref.nextObjectRef(), this.fanout);
+		if (level < this.openNodes.size()) {
+			this.openNodes.set(level, node);
+		} else {
+			this.openNodes.add(node);
+		}
+		return node;
+	}
 
-		return new PDFPageOutputImpl(this.pdfWriter, this.rootPageRef, this.pagesKidsFlow, width, height);
+	/**
+	 * Writes a node and adds it to the open node of the level above.
+	 */
+	private void closeNode(final int level, final Node node) throws IOException {
+		final var parent = this.openNode(level + 1);
+		this.writeNode(node, parent.ref);
+		parent.kids[parent.kidCount++] = node.ref;
+		parent.pageCount += node.pageCount;
+	}
+
+	private void writeNode(final Node node, final ObjectRef parentRef) throws IOException {
+		final var out = this.pdfWriter.bodyFlow;
+		out.startObject(node.ref);
+		out.startHash();
+
+		out.writeName("Type");
+		out.writeName("Pages");
+		out.lineBreak();
+
+		out.writeName("Parent");
+		out.writeObjectRef(parentRef);
+		out.lineBreak();
+
+		out.writeName("Kids");
+		out.startArray();
+		for (var i = 0; i < node.kidCount; ++i) {
+			out.writeObjectRef(node.kids[i]);
+		}
+		out.endArray();
+		out.lineBreak();
+
+		out.writeName("Count");
+		out.writeInt(node.pageCount);
+		out.lineBreak();
+
+		out.endHash();
+		out.endObject();
 	}
 
 	public void close() throws IOException {
+		// Nodes are created just before a kid is added, so only the parent of a
+		// page that failed to be created can be empty
+		for (var level = 0; level < this.openNodes.size(); ++level) {
+			final var node = this.openNodes.get(level);
+			if (node.kidCount == 0) {
+				continue;
+			}
+			if (level == this.openNodes.size() - 1) {
+				this.writeNode(node, this.rootPageRef);
+				this.pagesKidsFlow.writeObjectRef(node.ref);
+			} else {
+				// May add a level if the node above is full
+				this.closeNode(level, node);
+			}
+		}
+		this.openNodes.clear();
+
 		this.pageCountFlow.writeInt(this.pageCount);
 		this.pageCountFlow.close();
 		this.pagesKidsFlow.close();
@@ -0,0 +1,339 @@
+package net.zamasoft.pdfg2d.pdf.impl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import net.zamasoft.pdfg2d.util.ColorUtils;
+
+/**
+ * Reads the pixels of a buffered image a row at a time, and writes its samples
+ * into a stream.
+ * <p>
+ * The rows of the common image types are copied out of the raster in bulk and
+ * converted with plain arithmetic or a lookup table. Other images are
+ * converted pixel by pixel through their color model. Both give the same bytes.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+class RasterEncoder {
+	/** How the rows of an image are read. */
+	private enum Layout {
+		/** Packed 8-bit sRGB in ints, with or without alpha. */
+		INT,
+		/** Interleaved 8-bit sRGB bytes in RGB(A) band order. */
+		BYTE,
+		/** Linear gray bytes, through a lookup table. */
+		GRAY,
+		/** Indices to a palette, through a lookup table. */
+		INDEXED,
+		/** Any other image, through the color model. */
+		GENERIC;
+	}
+
+	private final BufferedImage image;
+
+	private final int width, height;
+
+	private final WritableRaster raster;
+
+	private final ColorModel cm;
+
+	private final Layout layout;
+
+	/** sRGB colors of the sample values of a gray or indexed image. */
+	private final int[] lut;
+
+	RasterEncoder(final BufferedImage image) {
+		this.image = image;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.raster = image.getRaster();
+		this.cm = image.getColorModel();
+		this.layout = layout(image);
+		this.lut = switch (this.layout) {
+			case GRAY -> {
+				final var lut = new int[256];
+				final var pixel = new byte[1];
+				for (var i = 0; i < lut.length; ++i) {
+					pixel[0] = (byte) i;
+					lut[i] = this.cm.getRGB(pixel);
+				}
+				yield lut;
+			}
+			case INDEXED -> {
+				final var lut = new int[1 << this.cm.getPixelSize()];
+				for (var i = 0; i < lut.length; ++i) {
+					lut[i] = this.cm.getRGB(i);
+				}
+				yield lut;
+			}
+			default -> null;
+		};
+	}
+
+	private static Layout layout(final BufferedImage image) {
+		// The types imply the standard color models, whose components are the
+		// stored samples
+		return switch (image.getType()) {
+			case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> Layout.INT;
+			case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> Layout.BYTE;
+			case BufferedImage.TYPE_BYTE_GRAY -> Layout.GRAY;
+			default -> image.getColorModel() instanceof final IndexColorModel icm
+					&& image.getRaster().getNumBands() == 1 && icm.getPixelSize() <= 16 ? Layout.INDEXED
+							: Layout.GENERIC;
+		};
+	}
+
+	/**
+	 * Returns whether rows may be read on several threads at once, which is not
+	 * the case when colors are converted from a color space other than sRGB.
+	 *
+	 * @return true if rows are read concurrently
+	 */
+	boolean isConcurrent() {
+		return this.layout != Layout.GENERIC || this.cm.getColorSpace().isCS_sRGB();
+	}
+
+	/**
+	 * Reads a row of pixels in the default sRGB color model, like
+	 * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+	 *
+	 * @param y   the row
+	 * @param row the array of the width of the image to store the pixels into
+	 */
+	void getRGB(final int y, final int[] row) {
+		switch (this.layout) {
+			case INT -> {
+				this.raster.getDataElements(0, y, this.width, 1, row);
+				if (!this.cm.hasAlpha()) {
+					for (var x = 0; x < this.width; ++x) {
+						row[x] |= 0xFF000000;
+					}
+				}
+			}
+			case BYTE -> {
+				final int bands = this.raster.getNumBands();
+				final byte[] data = (byte[]) this.raster.getDataElements(0, y, this.width, 1, null);
+				for (int x = 0, j = 0; x < this.width; ++x, j += bands) {
+					row[x] = (bands == 4 ? (data[j + 3] & 0xFF) << 24 : 0xFF000000) | ((data[j] & 0xFF) << 16)
+							| ((data[j + 1] & 0xFF) << 8) | (data[j + 2] & 0xFF);
+				}
+			}
+			case GRAY -> {
+				final byte[] data = (byte[]) this.raster.getDataElements(0, y, this.width, 1, null);
+				for (var x = 0; x < this.width; ++x) {
+					row[x] = this.lut[data[x] & 0xFF];
+				}
+			}
+			case INDEXED -> {
+				this.raster.getSamples(0, y, this.width, 1, 0, row);
+				for (var x = 0; x < this.width; ++x) {
+					row[x] = this.lut[row[x]];
+				}
+			}
+			case GENERIC -> this.image.getRGB(0, y, this.width, 1, row, 0, this.width);
+		}
+	}
+
+	/**
+	 * Writes the color samples, one byte for each component, gray or RGB as the
+	 * color model has one or three components.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	void writeColors(final OutputStream out) throws IOException {
+		final boolean gray = this.cm.getNumComponents() == 1;
+		final byte[] row = new byte[this.width * (gray ? 1 : 3)];
+		switch (this.layout) {
+			case INT -> {
+				final int[] data = new int[this.width];
+				for (var y = 0; y < this.height; ++y) {
+					this.raster.getDataElements(0, y, this.width, 1, data);
+					for (int x = 0, i = 0; x < this.width; ++x) {
+						final int p = data[x];
+						row[i++] = (byte) (p >> 16);
+						row[i++] = (byte) (p >> 8);
+						row[i++] = (byte) p;
+					}
+					out.write(row);
+				}
+			}
+			case BYTE -> {
+				final int bands = this.raster.getNumBands();
+				final byte[] data = new byte[this.width * bands];
+				for (var y = 0; y < this.height; ++y) {
+					this.raster.getDataElements(0, y, this.width, 1, data);
+					if (bands == 3) {
+						out.write(data);
+						continue;
+					}
+					for (int x = 0, i = 0, j = 0; x < this.width; ++x, j += bands) {
+						row[i++] = data[j];
+						row[i++] = data[j + 1];
+						row[i++] = data[j + 2];
+					}
+					out.write(row);
+				}
+			}
+			case GRAY -> {
+				final byte[] data = new byte[this.width];
+				for (var y = 0; y < this.height; ++y) {
+					this.raster.getDataElements(0, y, this.width, 1, data);
+					for (var x = 0; x < this.width; ++x) {
+						row[x] = (byte) (this.lut[data[x] & 0xFF] >> 8);
+					}
+					out.write(row);
+				}
+			}
+			case INDEXED -> {
+				final int[] data = new int[this.width];
+				for (var y = 0; y < this.height; ++y) {
+					this.raster.getSamples(0, y, this.width, 1, 0, data);
+					for (int x = 0, i = 0; x < this.width; ++x) {
+						final int p = this.lut[data[x]];
+						row[i++] = (byte) (p >> 16);
+						row[i++] = (byte) (p >> 8);
+						row[i++] = (byte) p;
+					}
+					out.write(row);
+				}
+			}
+			case GENERIC -> {
+				Object pixel = null;
+				for (var y = 0; y < this.height; ++y) {
+					for (int x = 0, i = 0; x < this.width; ++x) {
+						pixel = this.raster.getDataElements(x, y, pixel);
+						if (gray) {
+							row[i++] = (byte) this.cm.getGreen(pixel);
+						} else {
+							row[i++] = (byte) this.cm.getRed(pixel);
+							row[i++] = (byte) this.cm.getGreen(pixel);
+							row[i++] = (byte) this.cm.getBlue(pixel);
+						}
+					}
+					out.write(row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the alpha samples, as an 8-bit soft mask, or as a 1-bit image mask
+	 * which paints the pixels less than half opaque.
+	 *
+	 * @param out  the stream to write to
+	 * @param soft whether to write a soft mask
+	 * @throws IOException if an I/O error occurs
+	 */
+	void writeAlpha(final OutputStream out, final boolean soft) throws IOException {
+		final byte[] alpha = new byte[this.width];
+		final byte[] bits = soft ? null : new byte[(this.width + 7) / 8];
+		final int[] ints = this.layout == Layout.INT || this.layout == Layout.INDEXED ? new int[this.width] : null;
+		final byte[] bytes = this.layout == Layout.BYTE ? new byte[this.width * this.raster.getNumBands()] : null;
+		Object pixel = null;
+		for (var y = 0; y < this.height; ++y) {
+			switch (this.layout) {
+				case INT -> {
+					this.raster.getDataElements(0, y, this.width, 1, ints);
+					for (var x = 0; x < this.width; ++x) {
+						alpha[x] = (byte) (ints[x] >>> 24);
+					}
+				}
+				case BYTE -> {
+					this.raster.getDataElements(0, y, this.width, 1, bytes);
+					for (int x = 0, j = 3; x < this.width; ++x, j += 4) {
+						alpha[x] = bytes[j];
+					}
+				}
+				case INDEXED -> {
+					this.raster.getSamples(0, y, this.width, 1, 0, ints);
+					for (var x = 0; x < this.width; ++x) {
+						alpha[x] = (byte) (this.lut[ints[x]] >>> 24);
+					}
+				}
+				default -> {
+					for (var x = 0; x < this.width; ++x) {
+						pixel = this.raster.getDataElements(x, y, pixel);
+						alpha[x] = (byte) this.cm.getAlpha(pixel);
+					}
+				}
+			}
+			if (soft) {
+				out.write(alpha);
+				continue;
+			}
+			// Rows of the mask start at byte boundaries
+			Arrays.fill(bits, (byte) 0);
+			for (var x = 0; x < this.width; ++x) {
+				if ((alpha[x] & 0xFF) <= 0x7F) {
+					bits[x >> 3] |= (byte) (0x80 >> (x & 7));
+				}
+			}
+			out.write(bits);
+		}
+	}
+
+	/**
+	 * Converts the colors of an image to gray in place, keeping the alpha.
+	 *
+	 * @param image the image to convert
+	 */
+	static void toGray(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final var raster = image.getRaster();
+		switch (layout(image)) {
+			case INT -> {
+				final boolean alpha = image.getType() == BufferedImage.TYPE_INT_ARGB;
+				final int[] data = new int[width];
+				for (var y = 0; y < height; ++y) {
+					raster.getDataElements(0, y, width, 1, data);
+					for (var x = 0; x < width; ++x) {
+						final int p = data[x];
+						final int octet = gray(p >> 16, p >> 8, p);
+						data[x] = (alpha ? p & 0xFF000000 : 0) | (octet << 16) | (octet << 8) | octet;
+					}
+					raster.setDataElements(0, y, width, 1, data);
+				}
+			}
+			case BYTE -> {
+				final int bands = raster.getNumBands();
+				final byte[] data = new byte[width * bands];
+				for (var y = 0; y < height; ++y) {
+					raster.getDataElements(0, y, width, 1, data);
+					for (var i = 0; i < data.length; i += bands) {
+						final var octet = (byte) gray(data[i], data[i + 1], data[i + 2]);
+						data[i] = octet;
+						data[i + 1] = octet;
+						data[i + 2] = octet;
+					}
+					raster.setDataElements(0, y, width, 1, data);
+				}
+			}
+			default -> {
+				final var cm = image.getColorModel();
+				final var pixel = raster.getDataElements(0, 0, null);
+				for (var y = 0; y < height; ++y) {
+					for (var x = 0; x < width; ++x) {
+						raster.getDataElements(x, y, pixel);
+						final int octet = gray(cm.getRed(pixel), cm.getGreen(pixel), cm.getBlue(pixel));
+						image.setRGB(x, y, (cm.getAlpha(pixel) << 24) | (octet << 16) | (octet << 8) | octet);
+					}
+				}
+			}
+		}
+	}
+
+	private static int gray(final int r, final int g, final int b) {
+		final var gr = ColorUtils.toGray((r & 0xFF) / 255.0f, (g & 0xFF) / 255.0f, (b & 0xFF) / 255.0f);
+		return (int) (gr * 255.0f);
+	}
+}
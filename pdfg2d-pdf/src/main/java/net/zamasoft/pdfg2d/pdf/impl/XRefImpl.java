@@ -2,10 +2,15 @@ package net.zamasoft.pdfg2d.pdf.impl;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.zip.DeflaterOutputStream;
 
 import net.zamasoft.pdfg2d.io.FragmentedOutput.PositionInfo;
 import net.zamasoft.pdfg2d.pdf.ObjectRef;
@@ -16,7 +21,13 @@ import net.zamasoft.pdfg2d.pdf.util.encryption.Encryption;
 /**
  * Implementation of the PDF cross-reference table (xref).
  * This class tracks object positions and generates the trailer and xref table
- * during the finalization of the PDF document.
+ * during the finalization of the PDF document. For PDF 1.5 or later, a
+ * cross-reference stream can be written instead of the textual table.
+ * <p>
+ * For an incremental update, new objects are numbered after those of the base
+ * document, objects of the base document may be replaced, and the section
+ * refers to the previous one with /Prev.
+ * </p>
  * 
  * @author MIYABE Tatsuhiko
  * @since 1.0
@@ -27,29 +38,79 @@ class XRefImpl implements XRef {
 
 	private final ObjectRef rootRef;
 
+	/** Number of the first object in {@link #xref}. */
+	private final int firstNumber;
+
+	/** Objects of the base document replaced by an incremental update. */
+	private final Map<Integer, ObjectRefImpl> replaced = new TreeMap<>();
+
+	/** Position of the previous cross-reference section, or -1. */
+	private final long prev;
+
 	protected final PDFFragmentOutputImpl mainFlow;
 
+	/** Whether to write a cross-reference stream instead of a table. */
+	private final boolean xrefStream;
+
 	private Map<String, Object> attributes;
 
 	private static final byte[] EOF = { '%', '%', 'E', 'O', 'F' };
 
-	XRefImpl(final PDFFragmentOutputImpl mainFlow) throws IOException {
+	/** Largest offset expressible by the 10 digits of an xref table entry. */
+	private static final long MAX_TABLE_OFFSET = 9_999_999_999L;
+
+	XRefImpl(final PDFFragmentOutputImpl mainFlow, final boolean xrefStream) throws IOException {
 		this.mainFlow = mainFlow;
+		this.xrefStream = xrefStream;
+		this.firstNumber = 1;
+		this.prev = -1;
 		this.rootRef = this.nextObjectRef();
 		this.mainFlow.startObject(rootRef);
 	}
 
+	/**
+	 * Creates the cross-reference section of an incremental update. The catalog
+	 * keeps its object number.
+	 * 
+	 * @param mainFlow   Main flow.
+	 * @param xrefStream Whether to write a cross-reference stream.
+	 * @param base       The document to update.
+	 */
+	XRefImpl(final PDFFragmentOutputImpl mainFlow, final boolean xrefStream, final BaseDocument base) {
+		this.mainFlow = mainFlow;
+		this.xrefStream = xrefStream;
+		this.firstNumber = base.getSize();
+		this.prev = base.getStartxref();
+		this.rootRef = base.getRootRef();
+	}
+
 	/**
 	 * Creates and returns the next object reference.
 	 * 
 	 * @return A new ObjectRefImpl instance.
 	 */
 	public ObjectRef nextObjectRef() {
-		final var ref = new ObjectRefImpl(this.xref.size() + 1);
+		final var ref = new ObjectRefImpl(this.getSize());
 		this.xref.add(ref);
 		return ref;
 	}
 
+	/**
+	 * Returns a reference to write a new version of an object of the base
+	 * document.
+	 * 
+	 * @param ref Reference of the object in the base document.
+	 * @return A reference with the same object and generation numbers.
+	 */
+	ObjectRef replaceObject(final ObjectRef ref) {
+		if (ref.objectNumber() >= this.firstNumber || this.replaced.containsKey(ref.objectNumber())) {
+			throw new IllegalStateException("Cannot replace object twice: " + ref);
+		}
+		final var impl = new ObjectRefImpl(ref.objectNumber(), ref.generationNumber());
+		this.replaced.put(ref.objectNumber(), impl);
+		return impl;
+	}
+
 	/**
 	 * Finalizes the PDF by writing the xref table and trailer.
 	 * 
@@ -61,8 +122,13 @@ class XRefImpl implements XRef {
 	 */
 	void close(final PositionInfo posInfo, final ObjectRef infoRef, final byte[][] fileid,
 			final Encryption encrypter) throws IOException {
+		if (this.xrefStream) {
+			this.closeWithStream(posInfo, infoRef, fileid, encrypter);
+			return;
+		}
+
 		// Calculate the starting position of the xref table
-		final int xrefPosition = (int) posInfo.getPosition(this.mainFlow.getId()) + this.mainFlow.getLength();
+		final long xrefPosition = posInfo.getPosition(this.mainFlow.getId()) + this.mainFlow.getLength();
 
 		// Generate trailer content in a memory buffer first
 		final var trailerBytes = new ByteArrayOutputStream();
@@ -70,63 +136,286 @@ class XRefImpl implements XRef {
 			trailerFlow.writeOperator("trailer");
 			trailerFlow.startHash();
 
-			trailerFlow.writeName("Size");
-			trailerFlow.writeInt(this.xref.size() + 1);
+			this.writeTrailerEntries(trailerFlow, this.rootRef, infoRef, fileid, encrypter);
+			trailerFlow.endHash();
+			trailerFlow.writeOperator("startxref");
 			trailerFlow.lineBreak();
+			trailerFlow.writeLong(xrefPosition);
 
-			trailerFlow.writeName("Root");
-			trailerFlow.writeObjectRef(this.rootRef);
 			trailerFlow.lineBreak();
+			trailerFlow.write(EOF);
+			trailerFlow.lineBreak();
+		}
+		final var trailer = trailerBytes.toString("ISO-8859-1");
+
+		this.writeTable(this.mainFlow, posInfo, this.getObjectNumbers());
+
+		// Append trailer content
+		this.mainFlow.write(trailer);
+	}
+
+	/**
+	 * Returns the reference of the catalog.
+	 * 
+	 * @return The reference.
+	 */
+	ObjectRef getRootRef() {
+		return this.rootRef;
+	}
+
+	/**
+	 * Returns the number of entries of the table, including the free entry of
+	 * object number 0.
+	 * 
+	 * @return The size to write as /Size.
+	 */
+	int getSize() {
+		return this.firstNumber + this.xref.size();
+	}
+
+	/**
+	 * Returns the object numbers of this section: all of them, or only the
+	 * replaced and new ones of an incremental update.
+	 */
+	private BitSet getObjectNumbers() {
+		final var objectNumbers = new BitSet();
+		if (this.firstNumber == 1) {
+			objectNumbers.set(0, this.getSize());
+		} else {
+			this.replaced.keySet().forEach(objectNumbers::set);
+			objectNumbers.set(this.firstNumber, this.getSize());
+		}
+		return objectNumbers;
+	}
+
+	/**
+	 * Returns the reference of an object number.
+	 * 
+	 * @param objectNumber Object number, from 1.
+	 * @return The reference.
+	 */
+	ObjectRefImpl getObjectRef(final int objectNumber) {
+		if (objectNumber < this.firstNumber) {
+			return this.replaced.get(objectNumber);
+		}
+		return (ObjectRefImpl) this.xref.get(objectNumber - this.firstNumber);
+	}
+
+	/**
+	 * Writes a cross-reference table of the given objects, with one subsection
+	 * for each run of consecutive object numbers. A linearized file divides the
+	 * objects between two such tables.
+	 * 
+	 * @param out           Output target.
+	 * @param posInfo       Position information of fragments.
+	 * @param objectNumbers Object numbers to include; 0 is the head of the free
+	 *                      list.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeTable(final PDFOutput out, final PositionInfo posInfo, final BitSet objectNumbers)
+			throws IOException {
+		this.writeTable(out, posInfo, objectNumbers, this::getObjectRef);
+	}
 
-			if (infoRef != null) {
-				trailerFlow.writeName("Info");
-				trailerFlow.writeObjectRef(infoRef);
-				trailerFlow.lineBreak();
+	/**
+	 * Writes a cross-reference table of the given objects, looking them up by
+	 * the numbers they are written with, which differ from those given out in a
+	 * linearized file.
+	 * 
+	 * @param out           Output target.
+	 * @param posInfo       Position information of fragments.
+	 * @param objectNumbers Object numbers to include; 0 is the head of the free
+	 *                      list.
+	 * @param objects       The object of each number, from 1.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeTable(final PDFOutput out, final PositionInfo posInfo, final BitSet objectNumbers,
+			final IntFunction<ObjectRefImpl> objects) throws IOException {
+		out.writeOperator("xref");
+		out.lineBreak();
+		for (var start = objectNumbers.nextSetBit(0); start != -1;) {
+			final var end = objectNumbers.nextClearBit(start);
+			out.writeInt(start);
+			out.writeInt(end - start);
+			for (var objectNumber = start; objectNumber < end; ++objectNumber) {
+				if (objectNumber == 0) {
+					// First entry is always the free object at generation 65535
+					this.writeXrefEntry(out, 0, 65535, false);
+					continue;
+				}
+				final var impl = objects.apply(objectNumber);
+				if (!impl.isWritten()) {
+					this.writeXrefEntry(out, 0, 0, false);
+					continue;
+				}
+				this.writeXrefEntry(out, impl.getPosition(posInfo), impl.generationNumber(), true);
 			}
+			start = objectNumbers.nextSetBit(end);
+		}
+	}
+
+	/**
+	 * Finalizes the PDF by writing a cross-reference stream (PDF 1.5).
+	 * Objects packed into object streams are recorded as compressed entries.
+	 * 
+	 * @param posInfo   Position information of fragments.
+	 * @param infoRef   Reference to the Info dictionary.
+	 * @param fileid    The document IDs.
+	 * @param encrypter Encryption settings, if any.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void closeWithStream(final PositionInfo posInfo, final ObjectRef infoRef, final byte[][] fileid,
+			final Encryption encrypter) throws IOException {
+		this.mainFlow.breakBefore();
+		final var xrefRef = (ObjectRefImpl) this.nextObjectRef();
+		xrefRef.setPosition(this.mainFlow.getId(), this.mainFlow.getLength());
+		final long xrefPosition = xrefRef.getPosition(posInfo);
 
-			if (fileid != null) {
-				trailerFlow.writeName("ID");
-				trailerFlow.startArray();
-				trailerFlow.writeBytes8(fileid[0], 0, fileid[0].length);
-				trailerFlow.writeBytes8(fileid[1], 0, fileid[1].length);
-				trailerFlow.endArray();
-				trailerFlow.lineBreak();
+		// Width of the offset field; every offset and object number is below the
+		// position of the xref stream itself.
+		var offsetWidth = 1;
+		for (var max = Math.max(xrefPosition, this.getSize()); (max >>>= 8) != 0;) {
+			++offsetWidth;
+		}
+
+		// Entries: type (1 byte), offset or object stream number, generation or index
+		final var objectNumbers = this.getObjectNumbers();
+		final var entries = new ByteArrayOutputStream();
+		try (final var entryOut = new DeflaterOutputStream(entries)) {
+			for (var i = objectNumbers.nextSetBit(0); i != -1; i = objectNumbers.nextSetBit(i + 1)) {
+				if (i == 0) {
+					this.writeStreamEntry(entryOut, offsetWidth, 0, 0, 65535);
+					continue;
+				}
+				final var impl = this.getObjectRef(i);
+				if (!impl.isWritten()) {
+					this.writeStreamEntry(entryOut, offsetWidth, 0, 0, 0);
+				} else if (impl.getObjectStream() != null) {
+					this.writeStreamEntry(entryOut, offsetWidth, 2, impl.getObjectStream().objectNumber(),
+							impl.getIndex());
+				} else {
+					this.writeStreamEntry(entryOut, offsetWidth, 1, impl.getPosition(posInfo),
+							impl.generationNumber());
+				}
 			}
+		}
+
+		// The xref stream is never encrypted, so it is written as plain bytes.
+		final var streamBytes = new ByteArrayOutputStream();
+		try (final var streamFlow = new PDFOutput(streamBytes, "ISO-8859-1")) {
+			streamFlow.writeInt(xrefRef.objectNumber());
+			streamFlow.writeInt(xrefRef.generationNumber());
+			streamFlow.writeOperator("obj");
+			streamFlow.lineBreak();
+			streamFlow.startHash();
 
-			if (encrypter != null) {
-				trailerFlow.writeName("Encrypt");
-				trailerFlow.writeObjectRef(encrypter.getObjectRef());
-				trailerFlow.lineBreak();
+			streamFlow.writeName("Type");
+			streamFlow.writeName("XRef");
+			streamFlow.lineBreak();
+
+			streamFlow.writeName("W");
+			streamFlow.startArray();
+			streamFlow.writeInt(1);
+			streamFlow.writeInt(offsetWidth);
+			streamFlow.writeInt(2);
+			streamFlow.endArray();
+			streamFlow.lineBreak();
+
+			if (this.firstNumber != 1) {
+				// Subsections of the incremental update
+				streamFlow.writeName("Index");
+				streamFlow.startArray();
+				for (var start = objectNumbers.nextSetBit(0); start != -1;) {
+					final var end = objectNumbers.nextClearBit(start);
+					streamFlow.writeInt(start);
+					streamFlow.writeInt(end - start);
+					start = objectNumbers.nextSetBit(end);
+				}
+				streamFlow.endArray();
+				streamFlow.lineBreak();
 			}
 
-			trailerFlow.endHash();
-			trailerFlow.writeOperator("startxref");
-			trailerFlow.lineBreak();
-			trailerFlow.writeInt(xrefPosition);
+			this.writeTrailerEntries(streamFlow, this.rootRef, infoRef, fileid, encrypter);
 
-			trailerFlow.lineBreak();
-			trailerFlow.write(EOF);
-			trailerFlow.lineBreak();
+			streamFlow.writeName("Filter");
+			streamFlow.writeName("FlateDecode");
+			streamFlow.lineBreak();
+
+			streamFlow.writeName("Length");
+			streamFlow.writeInt(entries.size());
+			streamFlow.lineBreak();
+
+			streamFlow.endHash();
+			streamFlow.writeLine("stream");
+			entries.writeTo(streamFlow);
+			streamFlow.lineBreak();
+			streamFlow.writeLine("endstream");
+			streamFlow.writeLine("endobj");
+
+			streamFlow.writeOperator("startxref");
+			streamFlow.lineBreak();
+			streamFlow.writeLong(xrefPosition);
+			streamFlow.lineBreak();
+			streamFlow.write(EOF);
+			streamFlow.lineBreak();
 		}
-		final var trailer = trailerBytes.toString("ISO-8859-1");
+		streamBytes.writeTo(this.mainFlow);
+	}
 
-		// Write xref table header
-		this.mainFlow.writeOperator("xref");
-		this.mainFlow.lineBreak();
-		this.mainFlow.writeInt(0);
-		this.mainFlow.writeInt(this.xref.size() + 1);
+	/**
+	 * Writes the entries shared by the trailer and the cross-reference stream
+	 * dictionary. The references are given as they are written, so that a
+	 * linearized file can pass renumbered ones.
+	 */
+	void writeTrailerEntries(final PDFOutput out, final ObjectRef rootRef, final ObjectRef infoRef,
+			final byte[][] fileid, final Encryption encrypter) throws IOException {
+		out.writeName("Size");
+		out.writeInt(this.getSize());
+		out.lineBreak();
 
-		// First entry is always the free object at generation 65535
-		this.writeXrefEntry(this.mainFlow, 0, 65535, false);
+		out.writeName("Root");
+		out.writeObjectRef(rootRef);
+		out.lineBreak();
 
-		// Write actual object positions
-		for (final var ref : this.xref) {
-			final var impl = (ObjectRefImpl) ref;
-			this.writeXrefEntry(this.mainFlow, impl.getPosition(posInfo), impl.generationNumber(), true);
+		if (infoRef != null) {
+			out.writeName("Info");
+			out.writeObjectRef(infoRef);
+			out.lineBreak();
 		}
 
-		// Append trailer content
-		this.mainFlow.write(trailer);
+		if (fileid != null) {
+			out.writeName("ID");
+			out.startArray();
+			out.writeBytes8(fileid[0], 0, fileid[0].length);
+			out.writeBytes8(fileid[1], 0, fileid[1].length);
+			out.endArray();
+			out.lineBreak();
+		}
+
+		if (encrypter != null) {
+			out.writeName("Encrypt");
+			out.writeObjectRef(encrypter.getObjectRef());
+			out.lineBreak();
+		}
+
+		if (this.prev != -1) {
+			out.writeName("Prev");
+			out.writeLong(this.prev);
+			out.lineBreak();
+		}
+	}
+
+	/**
+	 * Writes a binary cross-reference stream entry with big-endian fields.
+	 */
+	private void writeStreamEntry(final OutputStream out, final int offsetWidth, final int type, final long field2,
+			final int field3) throws IOException {
+		out.write(type);
+		for (var i = offsetWidth - 1; i >= 0; --i) {
+			out.write((int) (field2 >>> (i * 8)));
+		}
+		out.write(field3 >>> 8);
+		out.write(field3);
 	}
 
 	private final byte[] work = new byte[10];
@@ -141,8 +430,12 @@ class XRefImpl implements XRef {
 	 * @param inUse         Whether the object is in use ('n') or free ('f').
 	 * @throws IOException If an I/O error occurs.
 	 */
-	private void writeXrefEntry(final PDFFragmentOutputImpl out, final long byteOffset, final int generationNum,
+	private void writeXrefEntry(final PDFOutput out, final long byteOffset, final int generationNum,
 			final boolean inUse) throws IOException {
+		if (byteOffset > MAX_TABLE_OFFSET) {
+			throw new IOException("Offset " + byteOffset
+					+ " does not fit in an xref table; use object streams with PDF 1.5 or later.");
+		}
 		out.breakBefore();
 
 		// Write 10-digit offset with leading zeros
@@ -160,7 +453,7 @@ class XRefImpl implements XRef {
 	/**
 	 * Helper to write a zero-padded number of fixed width.
 	 */
-	private void writeFixedNumber(final PDFFragmentOutputImpl out, long val, final int width) throws IOException {
+	void writeFixedNumber(final PDFOutput out, long val, final int width) throws IOException {
 		for (var i = width - 1; i >= 0; --i) {
 			this.work[i] = (byte) ('0' + (val % 10));
 			val /= 10;
@@ -0,0 +1,35 @@
+package net.zamasoft.pdfg2d.pdf.params;
+
+/**
+ * Settings for compressing streams on background threads.
+ * <p>
+ * Finished streams are compressed by a pool of worker threads while drawing
+ * continues. The output is identical to synchronous compression.
+ * </p>
+ * 
+ * @param threads   Number of worker threads
+ * @param maxMemory Maximum number of uncompressed bytes held for pending
+ *                  streams; the writer waits for workers beyond this limit
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public record AsyncCompression(int threads, long maxMemory) {
+	public AsyncCompression {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+		if (maxMemory < 1) {
+			throw new IllegalArgumentException("maxMemory must be positive: " + maxMemory);
+		}
+	}
+
+	/**
+	 * Creates settings using one thread per available processor and 64MB of
+	 * pending data.
+	 * 
+	 * @return the settings
+	 */
+	public static AsyncCompression create() {
+		return new AsyncCompression(Runtime.getRuntime().availableProcessors(), 64L * 1024 * 1024);
+	}
+}
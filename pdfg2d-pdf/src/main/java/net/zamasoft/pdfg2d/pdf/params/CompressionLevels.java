@@ -0,0 +1,62 @@
+package net.zamasoft.pdfg2d.pdf.params;
+
+import java.util.zip.Deflater;
+
+/**
+ * Flate compression levels by class of stream.
+ * Each level is 0-9, or {@link Deflater#DEFAULT_COMPRESSION}.
+ * 
+ * @param content Level for content streams (pages, forms, patterns, CMaps)
+ * @param binary  Level for binary streams (embedded fonts, ICC profiles,
+ *                attachments, object streams)
+ * @param image   Level for image data
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public record CompressionLevels(int content, int binary, int image) {
+	/** zlib default level for every class of stream. */
+	public static final CompressionLevels DEFAULT = new CompressionLevels(Deflater.DEFAULT_COMPRESSION,
+			Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_COMPRESSION);
+
+	/**
+	 * Fast compression for content streams, which are numerous and small, and best
+	 * compression for fonts and images, which are written once and dominate the
+	 * file size.
+	 */
+	public static final CompressionLevels BALANCED = new CompressionLevels(Deflater.BEST_SPEED,
+			Deflater.BEST_COMPRESSION, Deflater.BEST_COMPRESSION);
+
+	/**
+	 * Class of stream.
+	 */
+	public enum StreamClass {
+		CONTENT, BINARY, IMAGE
+	}
+
+	public CompressionLevels {
+		checkLevel(content);
+		checkLevel(binary);
+		checkLevel(image);
+	}
+
+	private static void checkLevel(final int level) {
+		if (level != Deflater.DEFAULT_COMPRESSION
+				&& (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+	}
+
+	/**
+	 * Returns the level for the given class of stream.
+	 * 
+	 * @param streamClass the class of stream
+	 * @return the compression level
+	 */
+	public int level(final StreamClass streamClass) {
+		return switch (streamClass) {
+			case CONTENT -> this.content;
+			case BINARY -> this.binary;
+			case IMAGE -> this.image;
+		};
+	}
+}
@@ -25,6 +25,16 @@ import net.zamasoft.pdfg2d.pdf.font.ConfigurablePDFFontSourceManager;
  * @param metaInfo                 Metadata information
  * @param viewerPreferences        Viewer preferences
  * @param openAction               Action to perform when document opens
+ * @param objectStreams            Whether to use object streams and an xref stream (PDF 1.5+)
+ * @param compressionLevels        Flate compression levels by class of stream
+ * @param asyncCompression         Background stream compression (null for synchronous)
+ * @param pageStreaming            Whether to write each page out as soon as it is closed
+ * @param pageTreeFanout           Maximum kids per page tree node (0 for a single flat /Kids array)
+ * @param linearized               Whether to write a linearized ("Fast Web View") file
+ * @param optimizeContents         Whether to remove redundant operators from content streams
+ * @param shapeCacheThreshold      Number of times a path is drawn before it is shared as a form (0 to disable)
+ * @param pathTolerance            Distance within which paths are simplified (0 to disable)
+ * @param imageBandMemory          Bytes of decoded pixels above which images are read in bands (0 to disable)
  */
 public record PDFParams(
 		FontSourceManager fontSourceManager,
@@ -43,7 +53,17 @@ public record PDFParams(
 		byte[] fileId,
 		PDFMetaInfo metaInfo,
 		ViewerPreferences viewerPreferences,
-		Action openAction) {
+		Action openAction,
+		boolean objectStreams,
+		CompressionLevels compressionLevels,
+		AsyncCompression asyncCompression,
+		boolean pageStreaming,
+		int pageTreeFanout,
+		boolean linearized,
+		boolean optimizeContents,
+		int shapeCacheThreshold,
+		double pathTolerance,
+		long imageBandMemory) {
 
 	/**
 	 * Represents the PDF version.
@@ -99,6 +119,26 @@ public record PDFParams(
 		if (platformEncoding == null) {
 			platformEncoding = "UTF-8";
 		}
+		if (compressionLevels == null) {
+			compressionLevels = CompressionLevels.DEFAULT;
+		}
+		if (pageTreeFanout < 0 || pageTreeFanout == 1) {
+			throw new IllegalArgumentException("Page tree fan-out must be 0 or at least 2.");
+		}
+		if (shapeCacheThreshold < 0) {
+			throw new IllegalArgumentException("Shape cache threshold must not be negative.");
+		}
+		if (!(pathTolerance >= 0)) {
+			throw new IllegalArgumentException("Path tolerance must not be negative.");
+		}
+		if (linearized && pageStreaming) {
+			throw new IllegalArgumentException("Linearization cannot be combined with page streaming.");
+		}
+		if (linearized && encryption != null) {
+			// Keys are made from object numbers, which a linearized file gives out
+			// only when it is closed.
+			throw new IllegalArgumentException("Linearization cannot be combined with encryption.");
+		}
 		if (fileId != null && fileId.length != 16) {
 			throw new IllegalArgumentException("File ID must be a 16-byte array.");
 		}
@@ -135,7 +175,17 @@ public record PDFParams(
 				null, // fileId
 				new PDFMetaInfo(),
 				new ViewerPreferences(),
-				null // openAction
+				null, // openAction
+				false, // objectStreams
+				CompressionLevels.DEFAULT,
+				null, // asyncCompression
+				false, // pageStreaming
+				0, // pageTreeFanout
+				false, // linearized
+				false, // optimizeContents
+				0, // shapeCacheThreshold
+				0, // pathTolerance
+				128L * 1024 * 1024 // imageBandMemory
 		);
 	}
 
@@ -148,7 +198,9 @@ public record PDFParams(
 	public PDFParams withFontSourceManager(FontSourceManager fontSourceManager) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -160,7 +212,9 @@ public record PDFParams(
 	public PDFParams withVersion(Version version) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -172,7 +226,9 @@ public record PDFParams(
 	public PDFParams withCompression(Compression compression) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -184,7 +240,9 @@ public record PDFParams(
 	public PDFParams withJPEGImage(JPEGImage jpegImage) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -196,7 +254,9 @@ public record PDFParams(
 	public PDFParams withImageCompression(ImageCompression imageCompression) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -209,7 +269,9 @@ public record PDFParams(
 	public PDFParams withImageCompressionLossless(int imageCompressionLossless) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -221,7 +283,9 @@ public record PDFParams(
 	public PDFParams withPlatformEncoding(String platformEncoding) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -233,7 +297,9 @@ public record PDFParams(
 	public PDFParams withBookmarks(boolean bookmarks) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -245,7 +311,9 @@ public record PDFParams(
 	public PDFParams withEncryption(EncryptionParams encryption) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -257,7 +325,9 @@ public record PDFParams(
 	public PDFParams withColorMode(ColorMode colorMode) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -269,7 +339,9 @@ public record PDFParams(
 	public PDFParams withMaxImageWidth(int maxImageWidth) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -281,7 +353,9 @@ public record PDFParams(
 	public PDFParams withMaxImageHeight(int maxImageHeight) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -293,7 +367,9 @@ public record PDFParams(
 	public PDFParams withPrecision(int precision) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -305,7 +381,9 @@ public record PDFParams(
 	public PDFParams withFileId(byte[] fileId) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -317,7 +395,9 @@ public record PDFParams(
 	public PDFParams withMetaInfo(PDFMetaInfo metaInfo) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -329,7 +409,9 @@ public record PDFParams(
 	public PDFParams withViewerPreferences(ViewerPreferences viewerPreferences) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 
 	/**
@@ -341,6 +423,195 @@ public record PDFParams(
 	public PDFParams withOpenAction(Action openAction) {
 		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
 				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
-				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction);
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified object stream setting.
+	 * 
+	 * @param objectStreams true to pack objects into object streams, false otherwise
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withObjectStreams(boolean objectStreams) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified compression levels.
+	 * 
+	 * @param compressionLevels the compression levels by class of stream
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withCompressionLevels(CompressionLevels compressionLevels) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified background compression settings.
+	 * 
+	 * @param asyncCompression the settings, or null to compress synchronously
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withAsyncCompression(AsyncCompression asyncCompression) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with page streaming enabled or disabled.
+	 * <p>
+	 * When enabled, pages and the objects they use are written before the
+	 * document catalog and the page tree, so the data of a page is passed to the
+	 * output and released as soon as the page is closed. Memory use then does
+	 * not grow with the number of pages.
+	 * </p>
+	 * 
+	 * @param pageStreaming true to stream pages, false otherwise
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withPageStreaming(boolean pageStreaming) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified page tree fan-out.
+	 * <p>
+	 * With a fan-out of 2 or more, pages are grouped under intermediate page
+	 * tree nodes of at most that many kids, which are written out as soon as
+	 * they are full. Values of 32 to 64 keep the nodes small for viewers.
+	 * </p>
+	 * 
+	 * @param pageTreeFanout the maximum number of kids per node, or 0 for a flat page tree
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withPageTreeFanout(int pageTreeFanout) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with linearization enabled or disabled.
+	 * <p>
+	 * A linearized file starts with the document catalog and everything needed
+	 * to display the first page, followed by hint tables that locate the other
+	 * pages, so viewers can show the first page before the whole file has been
+	 * downloaded. The whole document is kept until it is closed, and object
+	 * streams are not used. It cannot be combined with page streaming or encryption.
+	 * </p>
+	 * 
+	 * @param linearized true to linearize, false otherwise
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withLinearized(boolean linearized) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with content stream optimization enabled or
+	 * disabled.
+	 * <p>
+	 * Operators of page, form and pattern contents pass through a small window
+	 * that drops empty q/Q pairs, identity and consecutive cm operators, and
+	 * state settings that are overwritten or restored before anything uses
+	 * them.
+	 * </p>
+	 * 
+	 * @param optimizeContents true to optimize content streams, false otherwise
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withOptimizeContents(boolean optimizeContents) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified shape cache threshold.
+	 * <p>
+	 * Paths that are filled or stroked again and again with a plain color,
+	 * such as map symbols or glyph outlines, are written once as a form
+	 * XObject after they have been seen the given number of times, and are
+	 * drawn by reference from then on. The path is compared regardless of its
+	 * position.
+	 * </p>
+	 * 
+	 * @param shapeCacheThreshold the number of times a path is drawn before it is shared, or 0 to disable
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withShapeCacheThreshold(int shapeCacheThreshold) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified path tolerance.
+	 * <p>
+	 * Runs of straight segments are simplified so that no point moves further
+	 * than the tolerance, and curves that are straight within it are written as
+	 * lines. This shrinks dense polylines such as plots and map outlines. The
+	 * tolerance is in the units of the path, and is never finer than half of
+	 * the last digit written by {@link #precision()}.
+	 * </p>
+	 * 
+	 * @param pathTolerance the tolerance, or 0 to write paths as they are
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withPathTolerance(double pathTolerance) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
+	}
+
+	/**
+	 * Returns a new instance with the specified memory for image bands.
+	 * <p>
+	 * Images whose decoded pixels take more bytes than this are read from the
+	 * file in bands of rows of at most this size, and written to the image
+	 * stream band by band, so that they need not fit in memory. Images with
+	 * alpha are read twice, since the mask is a separate stream. This applies to
+	 * images written with Flate that are not scaled down. Most readers decode
+	 * the image from its start for each band, so larger bands are faster.
+	 * </p>
+	 * 
+	 * @param imageBandMemory the bytes of a band, or 0 to always read images whole
+	 * @return new PDFParams instance
+	 */
+	public PDFParams withImageBandMemory(long imageBandMemory) {
+		return new PDFParams(fontSourceManager, version, compression, jpegImage, imageCompression,
+				imageCompressionLossless, platformEncoding, bookmarks, encryption, colorMode, maxImageWidth,
+				maxImageHeight, precision, fileId, metaInfo, viewerPreferences, openAction, objectStreams,
+				compressionLevels, asyncCompression, pageStreaming, pageTreeFanout, linearized,
+				optimizeContents, shapeCacheThreshold, pathTolerance, imageBandMemory);
 	}
 }
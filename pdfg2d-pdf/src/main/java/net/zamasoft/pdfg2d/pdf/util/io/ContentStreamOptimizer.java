@@ -0,0 +1,621 @@
+package net.zamasoft.pdfg2d.pdf.util.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Peephole optimizer of content streams.
+ * <p>
+ * Operators are parsed as they are written and held back in a small window
+ * before they are passed on. Within the window,
+ * </p>
+ * <ul>
+ * <li>q/Q pairs that enclose nothing visible are dropped,</li>
+ * <li>identity cm operators are dropped, and consecutive ones are folded into
+ * one,</li>
+ * <li>settings of the graphics state (line width, colors, text state and so
+ * on) are dropped when they are set again or restored by Q before any
+ * operator uses them, or when they set the value already in effect.</li>
+ * </ul>
+ * <p>
+ * The state at the start of the stream is taken as unknown, so that the
+ * stream may be drawn as a form in any state. Operators are passed on
+ * separated by single spaces. {@link #flush()} passes on only the operators
+ * that have left the window; the rest follow when the stream is closed.
+ * </p>
+ *
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public class ContentStreamOptimizer extends FilterOutputStream {
+	/** Number of operators held back. */
+	private static final int WINDOW = 128;
+
+	/** Number of written bytes that are parsed at once. */
+	private static final int PARSE_THRESHOLD = 2048;
+
+	/** Decimal places of folded matrices. */
+	private static final int DECIMALS = 6;
+
+	// Parameters of the graphics state
+	private static final int LINE_WIDTH = 0, LINE_CAP = 1, LINE_JOIN = 2, MITER_LIMIT = 3, DASH = 4, INTENT = 5,
+			FLATNESS = 6, FILL_COLOR = 7, STROKE_COLOR = 8, CHAR_SPACING = 9, WORD_SPACING = 10, HORIZONTAL_SCALING = 11,
+			LEADING = 12, FONT = 13, RENDERING_MODE = 14, RISE = 15, CTM = 16;
+
+	private static final int PARAMS = 17;
+
+	private static final int ALL = (1 << PARAMS) - 1;
+
+	private static final int STROKE = bits(LINE_WIDTH, LINE_CAP, LINE_JOIN, MITER_LIMIT, DASH, INTENT, FLATNESS,
+			STROKE_COLOR, CTM);
+
+	private static final int FILL = bits(INTENT, FLATNESS, FILL_COLOR, CTM);
+
+	/** Parameters that an ExtGState may change. */
+	private static final int EXT_G_STATE = bits(LINE_WIDTH, LINE_CAP, LINE_JOIN, MITER_LIMIT, DASH, INTENT, FLATNESS,
+			FONT);
+
+	/**
+	 * Effect of an operator.
+	 *
+	 * @param sets        the parameter that the operands determine entirely, or
+	 *                    -1
+	 * @param uses        the parameters that the operator depends on, including
+	 *                    the ones it invalidates
+	 * @param invalidates the parameters changed to values that are not known
+	 * @param visible     whether the operator paints or marks anything
+	 */
+	private record Kind(int sets, int uses, int invalidates, boolean visible) {
+	}
+
+	/** Operators that are not known are kept in place. */
+	private static final Kind BARRIER = new Kind(-1, ALL, ALL, true);
+
+	private static final Map<String, Kind> KINDS = new HashMap<>();
+
+	static {
+		setting(LINE_WIDTH, "w");
+		setting(LINE_CAP, "J");
+		setting(LINE_JOIN, "j");
+		setting(MITER_LIMIT, "M");
+		setting(DASH, "d");
+		setting(INTENT, "ri");
+		setting(FLATNESS, "i");
+		setting(FILL_COLOR, "g", "rg", "k");
+		setting(STROKE_COLOR, "G", "RG", "K");
+		setting(CHAR_SPACING, "Tc");
+		setting(WORD_SPACING, "Tw");
+		setting(HORIZONTAL_SCALING, "Tz");
+		setting(LEADING, "TL");
+		setting(FONT, "Tf");
+		setting(RENDERING_MODE, "Tr");
+		setting(RISE, "Ts");
+		KINDS.put("cm", new Kind(CTM, bits(CTM), 0, false));
+
+		// q and Q are handled apart, but nothing moves across them
+		kind(new Kind(-1, ALL, 0, false), "q", "Q");
+		kind(new Kind(-1, bits(CTM), 0, false), "m", "l", "c", "v", "y", "h", "re");
+		kind(new Kind(-1, 0, 0, false), "W", "W*", "n", "BT", "ET", "Td", "Tm");
+		kind(new Kind(-1, bits(LEADING), bits(LEADING), false), "TD");
+		kind(new Kind(-1, bits(LEADING), 0, false), "T*");
+		kind(new Kind(-1, bits(CTM) | EXT_G_STATE, EXT_G_STATE, false), "gs");
+		kind(new Kind(-1, bits(FILL_COLOR), bits(FILL_COLOR), false), "cs", "sc", "scn");
+		kind(new Kind(-1, bits(STROKE_COLOR), bits(STROKE_COLOR), false), "CS", "SC", "SCN");
+
+		kind(new Kind(-1, STROKE, 0, true), "S", "s");
+		kind(new Kind(-1, FILL, 0, true), "f", "F", "f*");
+		kind(new Kind(-1, STROKE | FILL, 0, true), "B", "B*", "b", "b*");
+		kind(new Kind(-1, ALL, 0, true), "Tj", "TJ", "'", "Do", "sh");
+		kind(new Kind(-1, ALL, bits(CHAR_SPACING, WORD_SPACING), true), "\"");
+	}
+
+	private static int bits(final int... params) {
+		var bits = 0;
+		for (final var param : params) {
+			bits |= 1 << param;
+		}
+		return bits;
+	}
+
+	private static void setting(final int param, final String... operators) {
+		kind(new Kind(param, 0, 0, false), operators);
+	}
+
+	private static void kind(final Kind kind, final String... operators) {
+		for (final var operator : operators) {
+			KINDS.put(operator, kind);
+		}
+	}
+
+	private static final class Op {
+		final String operator;
+
+		final Kind kind;
+
+		/** Operands separated by spaces. */
+		final byte[] operands;
+
+		/** Data of an inline image, following ID. */
+		byte[] data = null;
+
+		/** Value of the parameter before a setting. */
+		byte[] prev = null;
+
+		Op(final String operator, final byte[] operands) {
+			this.operator = operator;
+			this.kind = KINDS.getOrDefault(operator, BARRIER);
+			this.operands = operands;
+		}
+	}
+
+	/** Written bytes that are not parsed yet. */
+	private byte[] in = new byte[PARSE_THRESHOLD * 2];
+
+	private int inLength = 0;
+
+	/** Operands of the operator being parsed. */
+	private byte[] operands = new byte[256];
+
+	private int operandsLength = 0;
+
+	/** ID operator waiting for the data of the inline image. */
+	private Op inlineImage = null;
+
+	private final List<Op> pending = new ArrayList<>();
+
+	/** Values in effect, or null if not known. */
+	private byte[][] values = new byte[PARAMS][];
+
+	/** q operators not restored yet, and the values when they were saved. */
+	private final Deque<Op> saves = new ArrayDeque<>();
+
+	private final Deque<byte[][]> savedValues = new ArrayDeque<>();
+
+	private boolean started = false, closed = false;
+
+	private int eliminated = 0;
+
+	private final LongConsumer onClose;
+
+	/**
+	 * Creates an optimizer.
+	 *
+	 * @param out     the destination of the optimized stream
+	 * @param onClose receives the number of eliminated operators when the
+	 *                stream is closed, or null
+	 */
+	public ContentStreamOptimizer(final OutputStream out, final LongConsumer onClose) {
+		super(out);
+		this.onClose = onClose;
+	}
+
+	public ContentStreamOptimizer(final OutputStream out) {
+		this(out, null);
+	}
+
+	/**
+	 * Returns the number of operators eliminated so far.
+	 *
+	 * @return the number of operators
+	 */
+	public int getEliminated() {
+		return this.eliminated;
+	}
+
+	private void ensureCapacity(final int length) {
+		if (this.in.length < length) {
+			this.in = Arrays.copyOf(this.in, Math.max(length, this.in.length * 2));
+		}
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		this.ensureCapacity(this.inLength + 1);
+		this.in[this.inLength++] = (byte) b;
+		if (this.inLength >= PARSE_THRESHOLD) {
+			this.parse(false);
+		}
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		this.ensureCapacity(this.inLength + len);
+		System.arraycopy(b, off, this.in, this.inLength, len);
+		this.inLength += len;
+		if (this.inLength >= PARSE_THRESHOLD) {
+			this.parse(false);
+		}
+	}
+
+	private static boolean isWhitespace(final int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+	}
+
+	private static boolean isDelimiter(final int c) {
+		return switch (c) {
+			case '(', ')', '<', '>', '[', ']', '{', '}', '/', '%' -> true;
+			default -> false;
+		};
+	}
+
+	/**
+	 * Parses the complete tokens of the written bytes, and keeps the rest.
+	 */
+	private void parse(final boolean eof) throws IOException {
+		final var in = this.in;
+		final var length = this.inLength;
+		var pos = 0;
+		while (pos < length) {
+			if (this.inlineImage != null) {
+				final var end = this.findInlineImageEnd(pos, eof);
+				if (end == -1) {
+					break;
+				}
+				this.inlineImage.data = Arrays.copyOfRange(in, pos, end);
+				final var op = this.inlineImage;
+				this.inlineImage = null;
+				this.operator(op);
+				pos = end;
+				continue;
+			}
+			final var c = in[pos] & 0xFF;
+			if (isWhitespace(c)) {
+				++pos;
+				continue;
+			}
+			final var end = this.findTokenEnd(pos, eof);
+			if (end == -1) {
+				break;
+			}
+			if (c != '%') {
+				this.token(pos, end);
+			}
+			pos = end;
+		}
+		System.arraycopy(in, pos, in, 0, length - pos);
+		this.inLength = length - pos;
+	}
+
+	/**
+	 * Returns the end of the token at the position, or -1 if it may continue
+	 * in bytes not written yet.
+	 */
+	private int findTokenEnd(final int pos, final boolean eof) {
+		final var in = this.in;
+		final var length = this.inLength;
+		switch (in[pos]) {
+			case '%' -> {
+				for (var i = pos + 1; i < length; ++i) {
+					if (in[i] == '\r' || in[i] == '\n') {
+						return i;
+					}
+				}
+				return eof ? length : -1;
+			}
+			case '(' -> {
+				var depth = 0;
+				for (var i = pos; i < length; ++i) {
+					switch (in[i]) {
+						case '\\' -> ++i;
+						case '(' -> ++depth;
+						case ')' -> {
+							if (--depth == 0) {
+								return i + 1;
+							}
+						}
+						default -> {
+						}
+					}
+				}
+				return eof ? length : -1;
+			}
+			case '<' -> {
+				if (pos + 1 >= length) {
+					return eof ? length : -1;
+				}
+				if (in[pos + 1] == '<') {
+					return pos + 2;
+				}
+				for (var i = pos + 1; i < length; ++i) {
+					if (in[i] == '>') {
+						return i + 1;
+					}
+				}
+				return eof ? length : -1;
+			}
+			case '>' -> {
+				if (pos + 1 >= length) {
+					return eof ? length : -1;
+				}
+				return in[pos + 1] == '>' ? pos + 2 : pos + 1;
+			}
+			case ')', '[', ']', '{', '}' -> {
+				return pos + 1;
+			}
+			default -> {
+				// Names and regular tokens
+				for (var i = pos + 1; i < length; ++i) {
+					final var c = in[i] & 0xFF;
+					if (isWhitespace(c) || isDelimiter(c)) {
+						return i;
+					}
+				}
+				return eof ? length : -1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of EI after the data of an inline image, or -1 if
+	 * it is not written yet.
+	 */
+	private int findInlineImageEnd(final int pos, final boolean eof) {
+		final var in = this.in;
+		final var length = this.inLength;
+		for (var i = pos + 1; i + 1 < length; ++i) {
+			if (in[i] == 'E' && in[i + 1] == 'I' && isWhitespace(in[i - 1] & 0xFF)) {
+				if (i + 2 == length) {
+					if (eof) {
+						return i - 1;
+					}
+					return -1;
+				}
+				final var c = in[i + 2] & 0xFF;
+				if (isWhitespace(c) || isDelimiter(c)) {
+					return i - 1;
+				}
+			}
+		}
+		return eof ? length : -1;
+	}
+
+	private void token(final int start, final int end) throws IOException {
+		final var c = this.in[start];
+		if (!isDelimiter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+			final var token = new String(this.in, start, end - start, StandardCharsets.ISO_8859_1);
+			switch (token) {
+				case "true", "false", "null" -> {
+				}
+				default -> {
+					final var op = new Op(token, Arrays.copyOf(this.operands, this.operandsLength));
+					this.operandsLength = 0;
+					if (token.equals("ID")) {
+						this.inlineImage = op;
+					} else {
+						this.operator(op);
+					}
+					return;
+				}
+			}
+		}
+		final var length = end - start;
+		if (this.operands.length < this.operandsLength + length + 1) {
+			this.operands = Arrays.copyOf(this.operands, Math.max(this.operandsLength + length + 1,
+					this.operands.length * 2));
+		}
+		if (this.operandsLength > 0) {
+			this.operands[this.operandsLength++] = ' ';
+		}
+		System.arraycopy(this.in, start, this.operands, this.operandsLength, length);
+		this.operandsLength += length;
+	}
+
+	private void operator(final Op op) throws IOException {
+		switch (op.operator) {
+			case "q" -> {
+				this.saves.push(op);
+				this.savedValues.push(this.values.clone());
+				this.append(op);
+			}
+			case "Q" -> this.restore(op);
+			case "cm" -> this.transform(op);
+			default -> {
+				final var kind = op.kind;
+				if (kind.sets() != -1) {
+					this.set(op);
+					return;
+				}
+				for (var i = 0; i < PARAMS; ++i) {
+					if ((kind.invalidates() & (1 << i)) != 0) {
+						this.values[i] = null;
+					}
+				}
+				this.append(op);
+			}
+		}
+	}
+
+	private void set(final Op op) throws IOException {
+		final var param = op.kind.sets();
+		// A setting that nothing has used since is overwritten
+		for (var i = this.pending.size() - 1; i >= 0; --i) {
+			final var kind = this.pending.get(i).kind;
+			if (kind.sets() == param) {
+				this.values[param] = this.pending.remove(i).prev;
+				++this.eliminated;
+				break;
+			}
+			if ((kind.uses() & (1 << param)) != 0) {
+				break;
+			}
+		}
+		final var value = this.values[param];
+		if (value != null && Arrays.equals(value, op.operands)) {
+			++this.eliminated;
+			return;
+		}
+		op.prev = value;
+		this.values[param] = op.operands;
+		this.append(op);
+	}
+
+	private void restore(final Op op) throws IOException {
+		if (this.saves.isEmpty()) {
+			// Not balanced, so the state is not known any more
+			Arrays.fill(this.values, null);
+			this.append(op);
+			return;
+		}
+		final var save = this.saves.pop();
+		this.values = this.savedValues.pop();
+		final var start = this.pending.lastIndexOf(save);
+		this.removeUnused(start + 1);
+		if (start != -1) {
+			final var block = this.pending.subList(start, this.pending.size());
+			if (block.stream().noneMatch(o -> o.kind.visible())) {
+				this.eliminated += block.size() + 1;
+				block.clear();
+				return;
+			}
+		}
+		this.append(op);
+	}
+
+	/**
+	 * Removes the settings after the position that nothing uses before the
+	 * state is restored or the stream ends.
+	 */
+	private void removeUnused(final int from) {
+		var used = 0;
+		for (var i = this.pending.size() - 1; i >= from && used != ALL; --i) {
+			final var kind = this.pending.get(i).kind;
+			if (kind.sets() != -1 && (used & (1 << kind.sets())) == 0) {
+				this.pending.remove(i);
+				++this.eliminated;
+				continue;
+			}
+			used |= kind.uses();
+		}
+	}
+
+	private void transform(Op op) throws IOException {
+		final var matrix = toMatrix(op.operands);
+		if (matrix == null) {
+			this.append(op);
+			return;
+		}
+		if (isIdentity(matrix)) {
+			++this.eliminated;
+			return;
+		}
+		if (!this.pending.isEmpty() && this.pending.getLast().operator.equals("cm")) {
+			final var last = toMatrix(this.pending.getLast().operands);
+			if (last != null) {
+				this.pending.removeLast();
+				++this.eliminated;
+				final var operands = toOperands(multiply(matrix, last));
+				if (isIdentity(toMatrix(operands))) {
+					++this.eliminated;
+					return;
+				}
+				op = new Op("cm", operands);
+			}
+		}
+		this.append(op);
+	}
+
+	private static double[] toMatrix(final byte[] operands) {
+		final var values = new String(operands, StandardCharsets.ISO_8859_1).split(" ");
+		if (values.length != 6) {
+			return null;
+		}
+		final var matrix = new double[6];
+		try {
+			for (var i = 0; i < 6; ++i) {
+				matrix[i] = Double.parseDouble(values[i]);
+			}
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+		return matrix;
+	}
+
+	private static boolean isIdentity(final double[] m) {
+		return m[0] == 1 && m[1] == 0 && m[2] == 0 && m[3] == 1 && m[4] == 0 && m[5] == 0;
+	}
+
+	/**
+	 * Returns the matrix of cm operators with the matrices a and b, applied in
+	 * the order b, a.
+	 */
+	private static double[] multiply(final double[] a, final double[] b) {
+		return new double[] { a[0] * b[0] + a[1] * b[2], a[0] * b[1] + a[1] * b[3], a[2] * b[0] + a[3] * b[2],
+				a[2] * b[1] + a[3] * b[3], a[4] * b[0] + a[5] * b[2] + b[4], a[4] * b[1] + a[5] * b[3] + b[5] };
+	}
+
+	private static byte[] toOperands(final double[] matrix) {
+		final var buff = new StringBuilder();
+		for (final var value : matrix) {
+			if (!buff.isEmpty()) {
+				buff.append(' ');
+			}
+			final var decimal = BigDecimal.valueOf(value).setScale(DECIMALS, RoundingMode.HALF_EVEN)
+					.stripTrailingZeros();
+			buff.append(decimal.signum() == 0 ? "0" : decimal.toPlainString());
+		}
+		return buff.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private void append(final Op op) throws IOException {
+		this.pending.add(op);
+		if (this.pending.size() > WINDOW) {
+			this.emit(this.pending.removeFirst());
+		}
+	}
+
+	private void emit(final Op op) throws IOException {
+		if (this.started) {
+			this.out.write(' ');
+		}
+		this.started = true;
+		this.out.write(op.operands);
+		if (!op.operator.isEmpty()) {
+			if (op.operands.length > 0) {
+				this.out.write(' ');
+			}
+			this.out.write(op.operator.getBytes(StandardCharsets.ISO_8859_1));
+		}
+		if (op.data != null) {
+			this.out.write(op.data);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		this.parse(true);
+		if (this.inlineImage != null) {
+			this.inlineImage.data = new byte[0];
+			this.operator(this.inlineImage);
+			this.inlineImage = null;
+		}
+		// Nothing follows the settings at the end
+		this.removeUnused(0);
+		while (!this.pending.isEmpty()) {
+			this.emit(this.pending.removeFirst());
+		}
+		if (this.operandsLength > 0) {
+			// Operands without an operator are passed on as they are
+			this.emit(new Op("", Arrays.copyOf(this.operands, this.operandsLength)));
+		}
+		if (this.onClose != null) {
+			this.onClose.accept(this.eliminated);
+		}
+		super.close();
+	}
+}
@@ -0,0 +1,127 @@
+package net.zamasoft.pdfg2d.pdf.util.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels;
+import net.zamasoft.pdfg2d.pdf.params.CompressionLevels.StreamClass;
+
+/**
+ * Pool of Deflaters shared by the streams of one PDF writer.
+ * <p>
+ * Creating a Deflater allocates native zlib state, which is costly for
+ * documents with thousands of small streams. Deflaters are reset and reused
+ * when their stream is closed. The pool also counts uncompressed and
+ * compressed bytes by class of stream.
+ * </p>
+ * 
+ * @author MIYABE Tatsuhiko
+ * @since 1.0
+ */
+public class DeflaterPool {
+	/** Buffer size of the compressing streams; the JDK default is 512 bytes. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Maximum number of idle Deflaters kept per level. */
+	private static final int MAX_IDLE = 8;
+
+	private final CompressionLevels levels;
+
+	/** Idle Deflaters by level; index 0 is the default level. */
+	@SuppressWarnings("unchecked")
+	private final ArrayDeque<Deflater>[] idle = new ArrayDeque[Deflater.BEST_COMPRESSION + 2];
+
+	private final Map<StreamClass, long[]> counters = new EnumMap<>(StreamClass.class);
+
+	public DeflaterPool(final CompressionLevels levels) {
+		this.levels = levels;
+		for (var i = 0; i < this.idle.length; ++i) {
+			this.idle[i] = new ArrayDeque<>();
+		}
+		for (final var streamClass : StreamClass.values()) {
+			this.counters.put(streamClass, new long[2]);
+		}
+	}
+
+	/**
+	 * Returns a compressing stream using a pooled Deflater. The Deflater returns
+	 * to the pool when the stream is closed.
+	 * 
+	 * @param out         the destination of compressed data
+	 * @param streamClass the class of stream, which selects the compression level
+	 * @return the compressing stream
+	 */
+	public DeflaterOutputStream open(final OutputStream out, final StreamClass streamClass) {
+		final var deflater = this.acquire(this.levels.level(streamClass));
+		return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+			private boolean released = false;
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if (!this.released) {
+						this.released = true;
+						DeflaterPool.this.release(streamClass, deflater);
+					}
+				}
+			}
+		};
+	}
+
+	private synchronized Deflater acquire(final int level) {
+		final var deflater = this.idle[level + 1].poll();
+		return deflater != null ? deflater : new Deflater(level);
+	}
+
+	private synchronized void release(final StreamClass streamClass, final Deflater deflater) {
+		final var counter = this.counters.get(streamClass);
+		counter[0] += deflater.getBytesRead();
+		counter[1] += deflater.getBytesWritten();
+		final var queue = this.idle[this.levels.level(streamClass) + 1];
+		if (queue.size() < MAX_IDLE) {
+			deflater.reset();
+			queue.push(deflater);
+		} else {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Returns the number of uncompressed bytes for the given class of stream.
+	 * 
+	 * @param streamClass the class of stream
+	 * @return the number of bytes before compression
+	 */
+	public synchronized long getBytesIn(final StreamClass streamClass) {
+		return this.counters.get(streamClass)[0];
+	}
+
+	/**
+	 * Returns the number of compressed bytes for the given class of stream.
+	 * 
+	 * @param streamClass the class of stream
+	 * @return the number of bytes after compression
+	 */
+	public synchronized long getBytesOut(final StreamClass streamClass) {
+		return this.counters.get(streamClass)[1];
+	}
+
+	/**
+	 * Releases the native resources of the idle Deflaters.
+	 */
+	public synchronized void close() {
+		for (final var queue : this.idle) {
+			for (final var deflater : queue) {
+				deflater.end();
+			}
+			queue.clear();
+		}
+	}
+}
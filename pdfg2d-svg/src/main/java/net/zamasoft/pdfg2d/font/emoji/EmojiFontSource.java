@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -221,29 +222,55 @@ public class EmojiFontSource extends AbstractFontSource {
 		return null;
 	}
 
-	private static java.util.zip.ZipFile emojiZip;
+	/** Guards the extraction of the emoji archive. */
+	private static final ReentrantLock ZIP_LOCK = new ReentrantLock();
 
-	public static synchronized java.io.InputStream getEmojiStream(final String name) throws java.io.IOException {
-		if (emojiZip == null) {
-			final java.io.File tempFile = java.io.File.createTempFile("emoji", ".zip");
-			tempFile.deleteOnExit();
-			try (final var is = EmojiFontSource.class.getResourceAsStream("emoji.zip")) {
-				if (is == null) {
-					throw new java.io.FileNotFoundException("emoji.zip not found in classpath");
+	private static volatile java.util.zip.ZipFile emojiZip;
+
+	/**
+	 * Returns the SVG of an emoji. The archive is extracted once, under a lock
+	 * that is not a monitor; later calls do not lock at all.
+	 *
+	 * @param name the name of the entry
+	 * @return the SVG, or null if there is no such emoji
+	 * @throws java.io.IOException in case of I/O error
+	 */
+	public static java.io.InputStream getEmojiStream(final String name) throws java.io.IOException {
+		java.util.zip.ZipFile zip = emojiZip;
+		if (zip == null) {
+			ZIP_LOCK.lock();
+			try {
+				zip = emojiZip;
+				if (zip == null) {
+					zip = openEmojiZip();
+					emojiZip = zip;
 				}
-				java.nio.file.Files.copy(is, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				ZIP_LOCK.unlock();
 			}
-			emojiZip = new java.util.zip.ZipFile(tempFile);
-			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-				try {
-					emojiZip.close();
-				} catch (final Exception e) {
-					// ignore
-				}
-			}));
 		}
-		final ZipEntry entry = emojiZip.getEntry(name);
-		return entry != null ? emojiZip.getInputStream(entry) : null;
+		final ZipEntry entry = zip.getEntry(name);
+		return entry != null ? zip.getInputStream(entry) : null;
+	}
+
+	private static java.util.zip.ZipFile openEmojiZip() throws java.io.IOException {
+		final java.io.File tempFile = java.io.File.createTempFile("emoji", ".zip");
+		tempFile.deleteOnExit();
+		try (final var is = EmojiFontSource.class.getResourceAsStream("emoji.zip")) {
+			if (is == null) {
+				throw new java.io.FileNotFoundException("emoji.zip not found in classpath");
+			}
+			java.nio.file.Files.copy(is, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		}
+		final java.util.zip.ZipFile zip = new java.util.zip.ZipFile(tempFile);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				zip.close();
+			} catch (final Exception e) {
+				// ignore
+			}
+		}));
+		return zip;
 	}
 
 	/**